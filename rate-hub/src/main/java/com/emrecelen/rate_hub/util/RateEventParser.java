@@ -21,7 +21,9 @@ public class RateEventParser {
      * <p>
      * This parser is intentionally defensive:
      * <ul>
-     *   <li>Handles double-encoded JSON payloads</li>
+     *   <li>Still unwraps double-encoded JSON payloads sent by older producers,
+     *   which serialized the stored JSON document once more before publishing;
+     *   current producers send the plain JSON document</li>
      *   <li>Validates required schema fields</li>
      *   <li>Never throws exceptions to caller</li>
      * </ul>
@@ -41,7 +43,7 @@ public class RateEventParser {
         try {
             JsonNode node = mapper.readTree(raw);
             if (node.isString()) {
-                log.trace("Detected stringified JSON payload, unwrapping");
+                log.trace("Detected legacy stringified JSON payload, unwrapping");
                 node = mapper.readTree(node.asString());
             }
 
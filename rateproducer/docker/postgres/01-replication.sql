@@ -0,0 +1,4 @@
+-- The CDC outbox relay (outbox.relay.mode=CDC) streams from a logical
+-- replication slot, which needs a user with the REPLICATION attribute.
+-- Runs once, when the database volume is initialised.
+ALTER ROLE rate_user WITH REPLICATION;
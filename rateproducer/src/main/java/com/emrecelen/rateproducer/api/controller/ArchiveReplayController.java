@@ -0,0 +1,56 @@
+package com.emrecelen.rateproducer.api.controller;
+
+import com.emrecelen.rateproducer.api.dto.ArchiveReplayRequest;
+import com.emrecelen.rateproducer.outbox.archive.OutboxReplayService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/archive")
+@ConditionalOnProperty(name = "outbox.archive.enabled", havingValue = "true")
+public class ArchiveReplayController {
+
+    private final OutboxReplayService replayService;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public ArchiveReplayController(OutboxReplayService replayService) {
+        this.replayService = replayService;
+    }
+
+    /**
+     * Starts replaying archived ticks in the background.
+     *
+     * <p>
+     * A paced replay can run as long as the original time range, so the request
+     * is accepted immediately and the replay runs on its own virtual thread.
+     * Progress is reported through the {@code outbox.archive.replayed} counter.
+     * </p>
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<Void> replay(@RequestBody @Valid ArchiveReplayRequest req) {
+        Thread.ofVirtual()
+                .name("outbox-replay")
+                .start(() -> {
+                    try {
+                        replayService.replay(req.pair(), req.from(), req.to(), req.speedOrDefault());
+                    } catch (Exception ex) {
+                        log.error(
+                                "Outbox replay failed. pair={} from={} to={}",
+                                req.pair(),
+                                req.from(),
+                                req.to(),
+                                ex
+                        );
+                    }
+                });
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.emrecelen.rateproducer.api.controller;
+
+import com.emrecelen.rateproducer.api.dto.FailedEventPage;
+import com.emrecelen.rateproducer.api.dto.FailedRequeueRequest;
+import com.emrecelen.rateproducer.outbox.service.OutboxFailedEventService;
+import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/outbox/failed")
+public class FailedEventController {
+
+    private final OutboxFailedEventService failedEventService;
+
+    public FailedEventController(OutboxFailedEventService failedEventService) {
+        this.failedEventService = failedEventService;
+    }
+
+    /**
+     * Lists {@code FAILED} events oldest first.
+     *
+     * <p>
+     * Pages are keyset-paginated: pass the {@code next} cursor of a page as
+     * {@code afterCreatedAt}/{@code afterId} to get the following one.
+     * </p>
+     */
+    @GetMapping
+    public FailedEventPage list(
+            @RequestParam(required = false) String pair,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String error,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterCreatedAt,
+            @RequestParam(required = false) UUID afterId,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        int pageSize = failedEventService.pageSize(limit);
+        return FailedEventPage.of(
+                failedEventService.listFailed(pair, from, to, error, afterCreatedAt, afterId, pageSize),
+                pageSize
+        );
+    }
+
+    /**
+     * Starts returning the matching {@code FAILED} events to the outbox in the
+     * background, paced to the configured requeue rate.
+     *
+     * <p>
+     * Progress is reported through the {@code outbox.failed.requeued} counter.
+     * Only one requeue runs at a time; a second request is rejected with
+     * {@code 409}.
+     * </p>
+     */
+    @PostMapping("/requeue")
+    public ResponseEntity<Void> requeue(@RequestBody @Valid FailedRequeueRequest req) {
+        failedEventService.startRequeue(req.pair(), req.from(), req.to(), req.error());
+        return ResponseEntity.accepted().build();
+    }
+}
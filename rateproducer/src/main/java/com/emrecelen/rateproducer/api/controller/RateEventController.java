@@ -1,27 +1,84 @@
 package com.emrecelen.rateproducer.api.controller;
 
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse;
 import com.emrecelen.rateproducer.api.dto.RawRateRequest;
 import com.emrecelen.rateproducer.service.RateEventService;
+import com.emrecelen.rateproducer.service.RateIngestPipeline;
+import com.emrecelen.rateproducer.service.RateStreamIngestor;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/rates")
 public class RateEventController {
 
     private final RateEventService rateEventService;
+    private final ObjectProvider<RateIngestPipeline> ingestPipeline;
+    private final RateStreamIngestor rateStreamIngestor;
 
-    public RateEventController(RateEventService rateEventService) {
+    public RateEventController(
+            RateEventService rateEventService,
+            ObjectProvider<RateIngestPipeline> ingestPipeline,
+            RateStreamIngestor rateStreamIngestor
+    ) {
         this.rateEventService = rateEventService;
+        this.ingestPipeline = ingestPipeline;
+        this.rateStreamIngestor = rateStreamIngestor;
     }
 
+    /**
+     * Ingests a single tick.
+     *
+     * <p>
+     * When group commit is enabled the tick is handed to {@link RateIngestPipeline}
+     * before any transaction is opened, so the request thread does not hold a
+     * database connection while it waits for its micro-batch to commit.
+     * </p>
+     */
     @PostMapping
     public ResponseEntity<Void> create(@RequestBody @Valid RawRateRequest req) {
-        rateEventService.createRateEvent(req);
+        RateIngestPipeline pipeline = ingestPipeline.getIfAvailable();
+        if (pipeline != null) {
+            pipeline.submit(req);
+        } else {
+            rateEventService.createRateEvent(req);
+        }
         return ResponseEntity.accepted().build();
     }
+
+    @PostMapping("/batch")
+    public ResponseEntity<RateBatchResponse> createBatch(@RequestBody List<RawRateRequest> requests) {
+        return ResponseEntity.accepted().body(rateEventService.createRateEvents(requests));
+    }
+
+    /**
+     * Ingests a long-lived NDJSON stream of {@link RawRateRequest} lines.
+     *
+     * <p>
+     * The response is an NDJSON stream of cumulative acknowledgements written
+     * while the request body is still being read. See {@link RateStreamIngestor}.
+     * </p>
+     */
+    @PostMapping(
+            value = "/stream",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public void stream(InputStream body, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        rateStreamIngestor.ingest(body, response.getOutputStream());
+    }
 }
@@ -0,0 +1,35 @@
+package com.emrecelen.rateproducer.api.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.time.LocalDateTime;
+
+/**
+ * Replay of the archived ticks of one pair created in {@code [from, to)}.
+ *
+ * @param speed replay speed relative to the original pace, {@code 0} for no pacing;
+ *              defaults to {@code 1.0}
+ */
+public record ArchiveReplayRequest(
+        @NotBlank(message = "pair must not be blank")
+        String pair,
+        @NotNull(message = "from must not be null")
+        LocalDateTime from,
+        @NotNull(message = "to must not be null")
+        LocalDateTime to,
+        @PositiveOrZero(message = "speed must not be negative")
+        Double speed
+) {
+
+    @AssertTrue(message = "from must be before to")
+    public boolean isRangeValid() {
+        return from == null || to == null || from.isBefore(to);
+    }
+
+    public double speedOrDefault() {
+        return speed == null ? 1.0 : speed;
+    }
+}
@@ -0,0 +1,59 @@
+package com.emrecelen.rateproducer.api.dto;
+
+import com.emrecelen.rateproducer.model.OutboxEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One page of {@code FAILED} outbox events.
+ *
+ * @param next key to pass as {@code afterCreatedAt}/{@code afterId} for the next
+ *             page, {@code null} when the page is not full and nothing follows
+ */
+public record FailedEventPage(
+        List<Item> items,
+        Cursor next
+) {
+    public record Item(
+            UUID id,
+            String eventKey,
+            String eventType,
+            String pair,
+            Long seq,
+            int attempts,
+            String lastError,
+            LocalDateTime createdAt
+    ) {
+        public static Item of(OutboxEvent e) {
+            return new Item(
+                    e.getId(),
+                    e.getEventKey(),
+                    e.getEventType().name(),
+                    e.getAggregateKey(),
+                    e.getAggregateSeq(),
+                    e.getAttempts(),
+                    e.getLastError(),
+                    e.getCreatedAt()
+            );
+        }
+    }
+
+    public record Cursor(
+            LocalDateTime afterCreatedAt,
+            UUID afterId
+    ) {
+    }
+
+    public static FailedEventPage of(List<OutboxEvent> events, int pageSize) {
+        List<Item> items = events.stream()
+                .map(Item::of)
+                .toList();
+        if (items.size() < pageSize) {
+            return new FailedEventPage(items, null);
+        }
+        Item last = items.getLast();
+        return new FailedEventPage(items, new Cursor(last.createdAt(), last.id()));
+    }
+}
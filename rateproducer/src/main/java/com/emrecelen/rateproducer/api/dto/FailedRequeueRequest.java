@@ -0,0 +1,26 @@
+package com.emrecelen.rateproducer.api.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+
+import java.time.LocalDateTime;
+
+/**
+ * Requeue of the {@code FAILED} outbox events matching every given filter.
+ *
+ * @param pair  aggregate key (currency pair), {@code null} for every pair
+ * @param from  inclusive lower bound of {@code created_at}, {@code null} for unbounded
+ * @param to    exclusive upper bound of {@code created_at}, {@code null} for unbounded
+ * @param error case-insensitive substring of the last error, {@code null} for any error
+ */
+public record FailedRequeueRequest(
+        String pair,
+        LocalDateTime from,
+        LocalDateTime to,
+        String error
+) {
+
+    @AssertTrue(message = "from must be before to")
+    public boolean isRangeValid() {
+        return from == null || to == null || from.isBefore(to);
+    }
+}
@@ -0,0 +1,38 @@
+package com.emrecelen.rateproducer.api.dto;
+
+import java.util.List;
+
+public record RateBatchResponse(
+        int accepted,
+        int rejected,
+        List<ItemResult> results
+) {
+    public record ItemResult(
+            int index,
+            String pair,
+            ItemStatus status,
+            Long seq,
+            String code,
+            String message
+    ) {
+        public static ItemResult accepted(int index, String pair, long seq) {
+            return new ItemResult(index, pair, ItemStatus.ACCEPTED, seq, null, null);
+        }
+
+        public static ItemResult rejected(int index, String pair, String code, String message) {
+            return new ItemResult(index, pair, ItemStatus.REJECTED, null, code, message);
+        }
+    }
+
+    public enum ItemStatus {
+        ACCEPTED,
+        REJECTED,
+    }
+
+    public static RateBatchResponse of(List<ItemResult> results) {
+        int accepted = (int) results.stream()
+                .filter(r -> r.status() == ItemStatus.ACCEPTED)
+                .count();
+        return new RateBatchResponse(accepted, results.size() - accepted, results);
+    }
+}
@@ -0,0 +1,37 @@
+package com.emrecelen.rateproducer.api.dto;
+
+import java.util.List;
+
+/**
+ * Cumulative acknowledgement written to a rate stream.
+ *
+ * @param committed  number of lines handled so far; every line with a lower index
+ *                   is blank, committed to the outbox or listed as rejected
+ * @param accepted   total accepted lines
+ * @param rejected   total rejected lines
+ * @param rejections lines rejected since the previous acknowledgement
+ * @param complete   {@code true} on the last acknowledgement of the stream
+ * @param error      set when the stream was aborted; lines from {@code committed} on were not written
+ */
+public record RateStreamAck(
+        long committed,
+        long accepted,
+        long rejected,
+        List<LineRejection> rejections,
+        boolean complete,
+        String error
+) {
+    /**
+     * A rejected stream line. The line index is a {@code long} like the stream
+     * counters, so it stays correct on streams of more than 2^31 lines.
+     *
+     * @param line zero-based index of the line in the stream
+     */
+    public record LineRejection(
+            long line,
+            String pair,
+            String code,
+            String message
+    ) {
+    }
+}
@@ -8,7 +8,7 @@ import jakarta.validation.constraints.Size;
 public record RawRateRequest(
         @NotBlank(message = "pair must not be blank")
         @Size(min = 6, max = 12, message = "pair length must be between {min} and {max}")
-        @Pattern(regexp = "^[A-Z]{3}/[A-Z]{3}([A-Z]{1,4})?$",
+        @Pattern(regexp = RawRateRequest.PAIR_PATTERN,
                 message = "pair format must be like EUR/USD or BTC/USDT")
         String pair,
         @NotNull
@@ -24,4 +24,10 @@ public record RawRateRequest(
         )
         String ask
 ) {
+
+    /**
+     * Accepted currency pair format, shared with ingest paths that do not go
+     * through bean validation.
+     */
+    public static final String PAIR_PATTERN = "^[A-Z]{3}/[A-Z]{3}([A-Z]{1,4})?$";
 }
@@ -1,7 +1,11 @@
 package com.emrecelen.rateproducer.api.error;
 
+import com.emrecelen.rateproducer.exception.IngestOverloadedException;
+import com.emrecelen.rateproducer.exception.InvalidBatchException;
+import com.emrecelen.rateproducer.exception.InvalidCursorException;
 import com.emrecelen.rateproducer.exception.InvalidRateException;
 import com.emrecelen.rateproducer.exception.PairNotActiveException;
+import com.emrecelen.rateproducer.exception.RequeueInProgressException;
 import com.emrecelen.rateproducer.monitoring.metrics.RateProducerMetrics;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -47,7 +51,6 @@ public class GlobalExceptionHandler {
     public ResponseEntity<ApiErrorResponse> handlePairNotActive(
             PairNotActiveException ex
     ) {
-        rateProducerMetrics.rejected();
         ApiErrorResponse body = new ApiErrorResponse(
                 "PAIR_NOT_AVAILABLE",
                 "Requested pair is currently not available",
@@ -77,6 +80,58 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
     }
 
+    @ExceptionHandler(InvalidBatchException.class)
+    public ResponseEntity<ApiErrorResponse> handleInvalidBatch(InvalidBatchException ex) {
+        rateProducerMetrics.rejected();
+        ApiErrorResponse body = new ApiErrorResponse(
+                "INVALID_BATCH",
+                ex.getMessage(),
+                Instant.now(),
+                List.of(
+                        new ApiErrorResponse.FieldErrorItem(
+                                "size",
+                                ex.getMessage(),
+                                ex.getSize()
+                        )
+                )
+        );
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+    }
+
+    @ExceptionHandler(IngestOverloadedException.class)
+    public ResponseEntity<ApiErrorResponse> handleIngestOverloaded(IngestOverloadedException ex) {
+        rateProducerMetrics.rejected();
+        ApiErrorResponse body = new ApiErrorResponse(
+                "INGEST_OVERLOADED",
+                ex.getMessage(),
+                Instant.now(),
+                null
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(body);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ApiErrorResponse> handleInvalidCursor(InvalidCursorException ex) {
+        ApiErrorResponse body = new ApiErrorResponse(
+                "INVALID_CURSOR",
+                ex.getMessage(),
+                Instant.now(),
+                null
+        );
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+    }
+
+    @ExceptionHandler(RequeueInProgressException.class)
+    public ResponseEntity<ApiErrorResponse> handleRequeueInProgress(RequeueInProgressException ex) {
+        ApiErrorResponse body = new ApiErrorResponse(
+                "REQUEUE_IN_PROGRESS",
+                ex.getMessage(),
+                Instant.now(),
+                null
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+
     private ApiErrorResponse.FieldErrorItem toItem(FieldError fe) {
         return new ApiErrorResponse.FieldErrorItem(
                 fe.getField(),
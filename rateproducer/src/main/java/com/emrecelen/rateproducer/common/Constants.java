@@ -13,6 +13,38 @@ public final class Constants {
         SENT,
         RETRY,
         FAILED,
+        SUPERSEDED,
+        /**
+         * Written in {@link OutboxRelayMode#CDC} mode. Delivered from the WAL by the
+         * CDC relay and never claimed or updated.
+         */
+        RELAY,
+    }
+
+    public enum OutboxRelayMode {
+        /**
+         * Events are claimed from {@code outbox_event} by the poller.
+         */
+        POLL,
+        /**
+         * Events are streamed from a logical replication slot.
+         */
+        CDC;
+
+        public OutboxStatus initialStatus() {
+            return this == CDC ? OutboxStatus.RELAY : OutboxStatus.PENDING;
+        }
+    }
+
+    public enum OutboxPayloadFormat {
+        /**
+         * The event is stored as a JSON document in {@code payload}.
+         */
+        JSON,
+        /**
+         * The event is stored in the compact binary layout in {@code payload_bin}.
+         */
+        BINARY,
     }
 
 }
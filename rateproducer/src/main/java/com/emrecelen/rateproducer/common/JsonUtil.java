@@ -29,4 +29,15 @@ public final class JsonUtil {
             throw new IllegalStateException("JSON serialization failed", e);
         }
     }
+
+    /**
+     * @throws IllegalArgumentException if {@code json} is not valid JSON for {@code type}
+     */
+    public static <T> T fromJson(String json, Class<T> type) {
+        try {
+            return MAPPER.readValue(json, type);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("JSON deserialization failed", e);
+        }
+    }
 }
@@ -1,21 +1,116 @@
 package com.emrecelen.rateproducer.domain.model;
 
-import java.math.BigDecimal;
-
+/**
+ * Fixed-point representation of prices.
+ *
+ * <p>
+ * Prices are carried as {@code long} pips with {@value #SCALE} decimal places
+ * (e.g. {@code "1.08455"} is {@code 108455}). Conversion from the decimal string
+ * of the request is done once, without allocating, so the ingest path does not
+ * need {@link java.math.BigDecimal}.
+ * </p>
+ */
 public final class MoneyScale {
-    private final static int MOVE_POINT_VALUE = 5;
+
+    public static final int SCALE = 5;
 
     private MoneyScale() {
     }
 
+    /**
+     * Converts a decimal string to pips.
+     *
+     * @param value decimal string, {@code null} is treated as zero
+     * @return value in pips
+     * @throws NumberFormatException if the value is not a plain decimal number,
+     *                               has more than {@value #SCALE} significant decimal places
+     *                               or does not fit into a {@code long}
+     */
     public static long toPips(String value) {
         if (value == null) {
-            return BigDecimal.ZERO
-                    .movePointRight(MOVE_POINT_VALUE)
-                    .longValueExact();
+            return 0L;
+        }
+        return parsePips(value);
+    }
+
+    /**
+     * Parses a plain decimal number into pips in a single pass.
+     *
+     * <p>
+     * Accepted format is an optional sign, digits and an optional fraction
+     * ({@code "1"}, {@code "1.08"}, {@code "-0.5"}, {@code ".5"}). Exponents are not
+     * supported. Trailing zeros beyond {@value #SCALE} decimal places are accepted,
+     * any other digit there would lose precision and is rejected.
+     * </p>
+     *
+     * <p>
+     * No objects are allocated unless the value is rejected.
+     * </p>
+     *
+     * @param value decimal number
+     * @return value in pips
+     * @throws NumberFormatException if the value is malformed, has too many decimal
+     *                               places or does not fit into a {@code long}
+     */
+    public static long parsePips(CharSequence value) {
+        if (value == null) {
+            throw new NumberFormatException("value must not be null");
+        }
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i = 1;
+        }
+
+        long pips = 0;
+        int fractionDigits = -1;
+        boolean digitSeen = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                if (fractionDigits >= 0) {
+                    throw malformed(value);
+                }
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = c - '0';
+            if (digit < 0 || digit > 9) {
+                throw malformed(value);
+            }
+            digitSeen = true;
+            if (fractionDigits >= 0) {
+                if (fractionDigits == SCALE) {
+                    if (digit != 0) {
+                        throw new NumberFormatException(
+                                "more than " + SCALE + " decimal places: " + value
+                        );
+                    }
+                    continue;
+                }
+                fractionDigits++;
+            }
+            pips = append(pips, digit, value);
+        }
+        if (!digitSeen) {
+            throw malformed(value);
+        }
+        for (int f = Math.max(fractionDigits, 0); f < SCALE; f++) {
+            pips = append(pips, 0, value);
+        }
+        return negative ? -pips : pips;
+    }
+
+    private static long append(long pips, int digit, CharSequence value) {
+        if (pips > (Long.MAX_VALUE - digit) / 10) {
+            throw new NumberFormatException("value out of range: " + value);
         }
-        return new BigDecimal(value)
-                .movePointRight(MOVE_POINT_VALUE)
-                .longValueExact();
+        return pips * 10 + digit;
+    }
+
+    private static NumberFormatException malformed(CharSequence value) {
+        return new NumberFormatException("not a decimal number: " + value);
     }
 }
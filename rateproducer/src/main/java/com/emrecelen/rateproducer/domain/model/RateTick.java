@@ -0,0 +1,15 @@
+package com.emrecelen.rateproducer.domain.model;
+
+/**
+ * Incoming tick with prices already in pips (see {@link MoneyScale}), before a
+ * sequence number is assigned.
+ *
+ * @param timestamp client timestamp in epoch milliseconds
+ */
+public record RateTick(
+        String pair,
+        long bidPips,
+        long askPips,
+        long timestamp
+) {
+}
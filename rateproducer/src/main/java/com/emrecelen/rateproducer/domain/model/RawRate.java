@@ -1,11 +1,14 @@
 package com.emrecelen.rateproducer.domain.model;
 
+/**
+ * Validated tick with prices already converted to pips (see {@link MoneyScale}).
+ */
 public record RawRate(
         String source,
         String pair,
         long seq,
-        String bid,
-        String ask,
+        long bidPips,
+        long askPips,
         long timestamp
 ) {
 }
@@ -8,4 +8,23 @@ public interface DomainEventFactory<T> {
     String eventKey(T input);
 
     Object createEvent(T input);
+
+    /**
+     * Key of the entity the event describes the latest state of, used to conflate
+     * events in the outbox (e.g. the currency pair of a rate).
+     *
+     * @return aggregate key, or {@code null} if events of this type cannot be conflated
+     */
+    default String aggregateKey(T input) {
+        return null;
+    }
+
+    /**
+     * Order of the event within its aggregate; the highest one is the newest.
+     *
+     * @return aggregate sequence, or {@code null} if events of this type cannot be conflated
+     */
+    default Long aggregateSeq(T input) {
+        return null;
+    }
 }
@@ -1,7 +1,6 @@
 package com.emrecelen.rateproducer.domain.service;
 
 import com.emrecelen.rateproducer.common.Constants.OutboxType;
-import com.emrecelen.rateproducer.domain.model.MoneyScale;
 import com.emrecelen.rateproducer.domain.model.RateEvent;
 import com.emrecelen.rateproducer.domain.model.RawRate;
 import org.springframework.stereotype.Component;
@@ -27,10 +26,18 @@ public class RateEventFactory implements DomainEventFactory<RawRate> {
         return raw.source().concat(":").concat(raw.pair()).concat(":").concat(String.valueOf(raw.seq()));
     }
 
+    @Override
+    public String aggregateKey(RawRate raw) {
+        return raw.pair();
+    }
+
+    @Override
+    public Long aggregateSeq(RawRate raw) {
+        return raw.seq();
+    }
+
     @Override
     public RateEvent createEvent(RawRate raw) {
-        long bid = MoneyScale.toPips(raw.bid());
-        long ask = MoneyScale.toPips(raw.ask());
         return new RateEvent(
                 eventKey(raw),
                 schemaVersion(),
@@ -38,8 +45,8 @@ public class RateEventFactory implements DomainEventFactory<RawRate> {
                 raw.source(),
                 raw.pair(),
                 raw.seq(),
-                bid,
-                ask
+                raw.bidPips(),
+                raw.askPips()
         );
     }
 }
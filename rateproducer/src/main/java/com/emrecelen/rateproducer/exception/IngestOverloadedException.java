@@ -0,0 +1,8 @@
+package com.emrecelen.rateproducer.exception;
+
+public class IngestOverloadedException extends RuntimeException {
+
+    public IngestOverloadedException(String message) {
+        super(message);
+    }
+}
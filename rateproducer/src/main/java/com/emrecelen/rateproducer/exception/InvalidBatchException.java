@@ -0,0 +1,15 @@
+package com.emrecelen.rateproducer.exception;
+
+public class InvalidBatchException extends RuntimeException {
+
+    private final int size;
+
+    public InvalidBatchException(String message, int size) {
+        super(message);
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,8 @@
+package com.emrecelen.rateproducer.exception;
+
+public class RequeueInProgressException extends RuntimeException {
+
+    public RequeueInProgressException(String message) {
+        super(message);
+    }
+}
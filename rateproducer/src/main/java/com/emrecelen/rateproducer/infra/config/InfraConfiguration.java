@@ -1,32 +1,42 @@
 package com.emrecelen.rateproducer.infra.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.support.converter.JacksonJsonMessageConverter;
-import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class InfraConfiguration {
 
-    @Bean
-    public MessageConverter jacksonMessageConverter() {
-        return new JacksonJsonMessageConverter();
-    }
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
 
+    /**
+     * Outbox payloads are stored as serialized JSON and sent as raw bytes, so the
+     * template is used without a JSON message converter.
+     *
+     * <p>
+     * Messages are published as mandatory so that unroutable messages come back
+     * as returns and fail the publisher confirm instead of being dropped.
+     * </p>
+     */
     @Bean
-    public RabbitTemplate rabbitTemplate(
-            ConnectionFactory cf,
-            MessageConverter converter
-    ) {
-        RabbitTemplate t = new RabbitTemplate(cf);
-        t.setMessageConverter(converter);
-        return t;
+    public RabbitTemplate rabbitTemplate(ConnectionFactory cf) {
+        RabbitTemplate template = new RabbitTemplate(cf);
+        template.setMandatory(true);
+        template.setReturnsCallback(returned -> log.warn(
+                "Message returned by broker. exchange={}, routingKey={}, replyCode={}, replyText={}",
+                returned.getExchange(),
+                returned.getRoutingKey(),
+                returned.getReplyCode(),
+                returned.getReplyText()
+        ));
+        return template;
     }
 
     @Bean
@@ -1,23 +1,59 @@
 package com.emrecelen.rateproducer.infra.rabbit;
 
 import com.emrecelen.rateproducer.common.Constants.OutboxType;
-import com.emrecelen.rateproducer.common.JsonUtil;
 import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec;
 import com.emrecelen.rateproducer.outbox.publisher.EventPublisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes rate events to RabbitMQ.
+ *
+ * <p>
+ * {@link #publishConfirmed(OutboxEvent)} sends with a {@link CorrelationData}
+ * carrying the outbox id and returns immediately. The broker ack or nack
+ * completes the returned future asynchronously, which requires
+ * {@code spring.rabbitmq.publisher-confirm-type=correlated}. Messages are
+ * published as mandatory, so an unroutable message is reported as a failure
+ * instead of being dropped silently.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.publish.confirm-timeout-ms (default: 5000)
+ * </pre>
+ * </p>
+ */
 @Component
 public class RateRabbitPublisher implements EventPublisher {
 
+    private static final String EXCHANGE = "rate.exchange";
+    private static final String ROUTING_KEY = "rate.update";
+
     private final RabbitTemplate rabbit;
+    private final long confirmTimeoutMs;
 
     private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
 
-    public RateRabbitPublisher(RabbitTemplate rabbit) {
+    public RateRabbitPublisher(
+            RabbitTemplate rabbit,
+            @Value("${outbox.publish.confirm-timeout-ms:5000}") long confirmTimeoutMs
+    ) {
         this.rabbit = rabbit;
+        this.confirmTimeoutMs = confirmTimeoutMs;
     }
 
     @Override
@@ -25,6 +61,20 @@ public class RateRabbitPublisher implements EventPublisher {
         return OutboxType.RATE_EVENT.name();
     }
 
+    /**
+     * Publishes the stored payload as the message body.
+     *
+     * <p>
+     * A JSON payload is already serialized text, as read back from the
+     * {@code jsonb} column, so it is sent as raw UTF-8 bytes without going through
+     * a message converter. Re-serializing it here would wrap the document in a JSON
+     * string. That text is Postgres' normalized rendering of the document (see
+     * {@link OutboxEvent#getPayload()}), not the writer's bytes, so consumers must
+     * not rely on key order or formatting. A binary payload is decoded into the
+     * same JSON document first, see {@link OutboxPayloadCodec}, so consumers see
+     * one wire format.
+     * </p>
+     */
     @Override
     public void publish(OutboxEvent event) {
         log.debug(
@@ -33,21 +83,75 @@ public class RateRabbitPublisher implements EventPublisher {
                 event.getSchemaVersion()
         );
 
-        rabbit.convertAndSend(
-                "rate.exchange",
-                "rate.update",
-                JsonUtil.toJsonString(event.getPayload()),
-                msg -> {
-                    msg.getMessageProperties().setHeader("eventKey", event.getEventKey());
-                    msg.getMessageProperties().setHeader("schemaVersion", event.getSchemaVersion());
-                    msg.getMessageProperties().setHeader("eventType", event.getEventType().name());
-                    msg.getMessageProperties().setContentType("application/json");
-                    return msg;
-                }
+        rabbit.send(
+                EXCHANGE,
+                ROUTING_KEY,
+                toMessage(event)
         );
         log.info(
                 "Rate event published successfully. eventKey={}",
                 event.getEventKey()
         );
     }
+
+    /**
+     * Sends the event without waiting and completes when the broker confirms it.
+     *
+     * <p>
+     * The future fails when the broker nacks the message, returns it as
+     * unroutable, or does not confirm it within the configured timeout.
+     * </p>
+     */
+    @Override
+    public CompletableFuture<Void> publishConfirmed(OutboxEvent event) {
+        CorrelationData correlation = new CorrelationData(String.valueOf(event.getId()));
+        CompletableFuture<Void> confirmed = new CompletableFuture<>();
+        try {
+            rabbit.send(
+                    EXCHANGE,
+                    ROUTING_KEY,
+                    toMessage(event),
+                    correlation
+            );
+        } catch (Exception ex) {
+            confirmed.completeExceptionally(ex);
+            return confirmed;
+        }
+
+        correlation.getFuture()
+                .orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((confirm, ex) -> {
+                    if (ex != null) {
+                        confirmed.completeExceptionally(new AmqpException(
+                                "No publisher confirm within " + confirmTimeoutMs + " ms", ex
+                        ));
+                    } else if (!confirm.ack()) {
+                        confirmed.completeExceptionally(new AmqpException(
+                                "Broker nack: " + confirm.reason()
+                        ));
+                    } else if (correlation.getReturned() != null) {
+                        confirmed.completeExceptionally(new AmqpException(
+                                "Message returned as unroutable: " + correlation.getReturned().getReplyText()
+                        ));
+                    } else {
+                        log.debug(
+                                "Rate event confirmed by broker. id={}, eventKey={}",
+                                event.getId(),
+                                event.getEventKey()
+                        );
+                        confirmed.complete(null);
+                    }
+                });
+        return confirmed;
+    }
+
+    private Message toMessage(OutboxEvent event) {
+        MessageProperties props = new MessageProperties();
+        props.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        props.setContentEncoding(StandardCharsets.UTF_8.name());
+        props.setHeader("eventKey", event.getEventKey());
+        props.setHeader("schemaVersion", OutboxPayloadCodec.jsonSchemaVersion(event));
+        props.setHeader("eventType", event.getEventType().name());
+        return new Message(OutboxPayloadCodec.toJson(event).getBytes(StandardCharsets.UTF_8), props);
+    }
 }
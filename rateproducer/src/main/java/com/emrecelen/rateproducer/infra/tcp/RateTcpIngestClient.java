@@ -0,0 +1,144 @@
+package com.emrecelen.rateproducer.infra.tcp;
+
+import com.emrecelen.rateproducer.domain.model.MoneyScale;
+import com.emrecelen.rateproducer.domain.model.RateTick;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * Minimal blocking client for the binary TCP ingest listener.
+ *
+ * <p>
+ * Ticks are buffered by {@link #send(RateTick)} and written by {@link #flush()};
+ * acknowledgements are read with {@link #readAcks()}. Not thread-safe.
+ * </p>
+ *
+ * <p>
+ * Can also be run as a load generator against a local instance:
+ * <pre>
+ * java -cp rateproducer.jar -Dloader.main=com.emrecelen.rateproducer.infra.tcp.RateTcpIngestClient \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher localhost 9090 EUR/USD 100000
+ * </pre>
+ * </p>
+ */
+public class RateTcpIngestClient implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ACK_FRAME_LENGTH = 1024 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer in = ByteBuffer.allocate(MAX_ACK_FRAME_LENGTH + Integer.BYTES).flip();
+    private long nextCorrelationId;
+
+    private static final Logger log = LoggerFactory.getLogger(RateTcpIngestClient.class.getSimpleName());
+
+    private RateTcpIngestClient(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    public static RateTcpIngestClient connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return new RateTcpIngestClient(channel);
+    }
+
+    /**
+     * Buffers one tick, flushing first if the buffer is full.
+     *
+     * @return correlation id of the tick, echoed back in its acknowledgement
+     */
+    public long send(RateTick tick) throws IOException {
+        if (out.remaining() < TickFrameCodec.LENGTH_PREFIX + TickFrameCodec.MAX_TICK_FRAME_LENGTH) {
+            flush();
+        }
+        long correlationId = ++nextCorrelationId;
+        TickFrameCodec.encodeTick(new TickFrame(correlationId, tick), out);
+        return correlationId;
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Blocks until the next ACK frame has been received.
+     */
+    public List<TickAck> readAcks() throws IOException {
+        while (true) {
+            List<TickAck> acks = TickFrameCodec.decodeAcks(in, MAX_ACK_FRAME_LENGTH);
+            if (acks != null) {
+                return acks;
+            }
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0) {
+                throw new EOFException("Connection closed by server");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Sends {@code count} ticks for one pair, keeping at most {@code window} of
+     * them unacknowledged, and logs the throughput.
+     *
+     * <p>
+     * Arguments: {@code host port pair count [window]}
+     * </p>
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 9090;
+        String pair = args.length > 2 ? args[2] : "EUR/USD";
+        long count = args.length > 3 ? Long.parseLong(args[3]) : 100_000;
+        int window = args.length > 4 ? Integer.parseInt(args[4]) : 2_000;
+
+        long bid = MoneyScale.parsePips("1.08000");
+        long sent = 0;
+        long acked = 0;
+        long rejected = 0;
+        long start = System.nanoTime();
+        try (RateTcpIngestClient client = connect(host, port)) {
+            while (acked < count) {
+                while (sent < count && sent - acked < window) {
+                    long pips = bid + (sent % 100);
+                    client.send(new RateTick(pair, pips, pips + 2, System.currentTimeMillis()));
+                    sent++;
+                }
+                client.flush();
+                for (TickAck ack : client.readAcks()) {
+                    acked++;
+                    if (ack.status() != TickAck.Status.ACCEPTED) {
+                        rejected++;
+                    }
+                }
+            }
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info(
+                "TCP ingest run finished. ticks={} rejected={} elapsedMs={} ticksPerSecond={}",
+                acked,
+                rejected,
+                elapsedMs,
+                acked * 1000 / elapsedMs
+        );
+    }
+}
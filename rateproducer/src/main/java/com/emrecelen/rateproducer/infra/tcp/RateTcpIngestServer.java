@@ -0,0 +1,474 @@
+package com.emrecelen.rateproducer.infra.tcp;
+
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse;
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse.ItemResult;
+import com.emrecelen.rateproducer.service.RateEventService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking TCP listener for binary tick frames (see {@link TickFrameCodec}).
+ *
+ * <p>
+ * A single selector thread accepts connections, decodes frames and writes
+ * acknowledgements. Decoded ticks are committed by a small pool of writer
+ * threads through {@link RateEventService#createRateTicks(List)}, so they go
+ * through the same validation, sequencing and outbox write as the HTTP batch
+ * endpoint. Each commit is answered with one ACK frame carrying the assigned
+ * sequence number (or rejection status) of every tick in it.
+ * </p>
+ *
+ * <p>
+ * Per connection:
+ * <ul>
+ *     <li>At most one batch is being committed at a time, so ticks of a
+ *     connection are sequenced in the order they were sent. Frames that arrive
+ *     meanwhile are collected into the next batch.</li>
+ *     <li>When too many frames are waiting or the client does not read its
+ *     acknowledgements, the connection stops reading. The kernel buffers fill
+ *     up and TCP flow control slows the sender down.</li>
+ *     <li>A malformed frame closes the connection. Ticks that were not
+ *     acknowledged before a disconnect may or may not have been written.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * rate.ingest.tcp.enabled                 (default: false)
+ * rate.ingest.tcp.host                    (default: 0.0.0.0)
+ * rate.ingest.tcp.port                    (default: 9090, 0 picks a free port)
+ * rate.ingest.tcp.writers                 (default: 2)
+ * rate.ingest.tcp.max-batch-size          (default: 500, capped by rate.ingest.batch.max-size)
+ * rate.ingest.tcp.max-pending-frames      (default: 5000)
+ * rate.ingest.tcp.max-pending-ack-bytes   (default: 1048576)
+ * </pre>
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "rate.ingest.tcp.enabled", havingValue = "true")
+public class RateTcpIngestServer implements SmartLifecycle {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long SELECT_TIMEOUT_MS = 500;
+
+    private final RateEventService rateEventService;
+    private final String host;
+    private final int port;
+    private final int writers;
+    private final int maxBatchSize;
+    private final int maxPendingFrames;
+    private final long maxPendingAckBytes;
+
+    private final Counter framesReceived;
+    private final Counter backpressurePauses;
+    private final Counter protocolErrors;
+    private final DistributionSummary batchSize;
+    private final AtomicLong unackedFrames = new AtomicLong();
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private ExecutorService writerPool;
+    private volatile boolean running;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public RateTcpIngestServer(
+            RateEventService rateEventService,
+            MeterRegistry registry,
+            @Value("${rate.ingest.tcp.host:0.0.0.0}") String host,
+            @Value("${rate.ingest.tcp.port:9090}") int port,
+            @Value("${rate.ingest.tcp.writers:2}") int writers,
+            @Value("${rate.ingest.tcp.max-batch-size:500}") int maxBatchSize,
+            @Value("${rate.ingest.batch.max-size:1000}") int serviceMaxBatchSize,
+            @Value("${rate.ingest.tcp.max-pending-frames:5000}") int maxPendingFrames,
+            @Value("${rate.ingest.tcp.max-pending-ack-bytes:1048576}") long maxPendingAckBytes
+    ) {
+        this.rateEventService = rateEventService;
+        this.host = host;
+        this.port = port;
+        this.writers = writers;
+        this.maxBatchSize = Math.min(maxBatchSize, serviceMaxBatchSize);
+        this.maxPendingFrames = maxPendingFrames;
+        this.maxPendingAckBytes = maxPendingAckBytes;
+
+        this.framesReceived = registry.counter("rate.ingest.tcp.frames");
+        this.backpressurePauses = registry.counter("rate.ingest.tcp.backpressure.pauses");
+        this.protocolErrors = registry.counter("rate.ingest.tcp.protocol.errors");
+        this.batchSize = DistributionSummary.builder("rate.ingest.tcp.batch.size")
+                .description("Number of ticks committed per TCP ingest batch")
+                .register(registry);
+        Gauge.builder("rate.ingest.tcp.connections", connections, Set::size)
+                .description("Number of open TCP ingest connections")
+                .register(registry);
+        Gauge.builder("rate.ingest.tcp.unacked.frames", unackedFrames, AtomicLong::get)
+                .description("Number of received tick frames not acknowledged yet")
+                .register(registry);
+    }
+
+    @Override
+    public void start() {
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(host, port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to start TCP ingest listener on port " + port, ex);
+        }
+        writerPool = Executors.newFixedThreadPool(
+                writers,
+                Thread.ofPlatform().name("tcp-ingest-writer-", 0).factory()
+        );
+        running = true;
+        selectorThread = Thread.ofPlatform()
+                .name("tcp-ingest-selector")
+                .start(this::selectLoop);
+        log.info(
+                "TCP ingest listener started. port={} writers={} maxBatchSize={}",
+                port(),
+                writers,
+                maxBatchSize
+        );
+    }
+
+    /**
+     * Stops accepting and reading, then lets the writers finish their batches.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+            writerPool.shutdown();
+            writerPool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        connections.forEach(c -> close(c, "listener stopped"));
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException ex) {
+            log.warn(
+                    "Failed to close TCP ingest listener. error={}",
+                    ex.getMessage()
+            );
+        }
+        log.info("TCP ingest listener stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return port the listener is bound to
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT_MS);
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.error(
+                        "TCP ingest selector failed. error={}",
+                        ex.getMessage(),
+                        ex
+                );
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                read(connection);
+            }
+            if (key.isValid() && key.isWritable()) {
+                write(connection);
+            }
+        } catch (IOException ex) {
+            close(connection, ex.getMessage());
+        } catch (RuntimeException ex) {
+            // a bug or an unexpected input must only cost this connection, not the listener
+            log.error(
+                    "Unexpected error on TCP ingest connection, closing it. remote={} error={}",
+                    connection.remote,
+                    ex.getMessage(),
+                    ex
+            );
+            close(connection, ex.getMessage());
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+            log.info(
+                    "TCP ingest connection accepted. remote={}",
+                    connection.remote
+            );
+        } catch (IOException ex) {
+            log.warn(
+                    "Failed to accept TCP ingest connection. error={}",
+                    ex.getMessage()
+            );
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        int read = connection.channel.read(connection.readBuffer);
+        if (read < 0) {
+            close(connection, "closed by peer");
+            return;
+        }
+        ByteBuffer buffer = connection.readBuffer.flip();
+        try {
+            TickFrame frame;
+            while ((frame = TickFrameCodec.decodeTick(buffer)) != null) {
+                connection.pending.add(frame);
+                framesReceived.increment();
+                unackedFrames.incrementAndGet();
+            }
+        } catch (ProtocolException ex) {
+            protocolErrors.increment();
+            log.warn(
+                    "Malformed tick frame, closing connection. remote={} error={}",
+                    connection.remote,
+                    ex.getMessage()
+            );
+            close(connection, ex.getMessage());
+            return;
+        }
+        buffer.compact();
+        dispatch(connection);
+        updateInterest(connection);
+    }
+
+    private void write(Connection connection) throws IOException {
+        while (!connection.writes.isEmpty()) {
+            ByteBuffer buffer = connection.writes.peek();
+            connection.pendingAckBytes -= connection.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                break;
+            }
+            connection.writes.poll();
+        }
+        updateInterest(connection);
+    }
+
+    /**
+     * Hands the waiting frames of a connection to a writer unless a batch of
+     * that connection is already being committed.
+     */
+    private void dispatch(Connection connection) {
+        if (connection.inFlight || connection.pending.isEmpty()) {
+            return;
+        }
+        int size = Math.min(connection.pending.size(), maxBatchSize);
+        List<TickFrame> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(connection.pending.poll());
+        }
+        connection.inFlight = true;
+        writerPool.execute(() -> commit(connection, batch));
+    }
+
+    /**
+     * Runs on a writer thread; the result is handed back to the selector thread.
+     */
+    private void commit(Connection connection, List<TickFrame> batch) {
+        batchSize.record(batch.size());
+        List<TickAck> acks = new ArrayList<>(batch.size());
+        try {
+            RateBatchResponse response = rateEventService.createRateTicks(
+                    batch.stream().map(TickFrame::tick).toList()
+            );
+            List<ItemResult> results = response.results();
+            for (int i = 0; i < batch.size(); i++) {
+                acks.add(toAck(batch.get(i), results.get(i)));
+            }
+        } catch (Exception ex) {
+            log.error(
+                    "TCP ingest batch failed. remote={} size={}",
+                    connection.remote,
+                    batch.size(),
+                    ex
+            );
+            acks.clear();
+            batch.forEach(frame -> acks.add(
+                    new TickAck(frame.correlationId(), TickAck.Status.UNAVAILABLE, 0L)
+            ));
+        }
+        ByteBuffer encoded = TickFrameCodec.encodeAcks(acks);
+        unackedFrames.addAndGet(-batch.size());
+        selectorTasks.add(() -> completed(connection, encoded));
+        selector.wakeup();
+    }
+
+    private void completed(Connection connection, ByteBuffer acks) {
+        connection.inFlight = false;
+        if (connection.closed) {
+            return;
+        }
+        connection.writes.add(acks);
+        connection.pendingAckBytes += acks.remaining();
+        try {
+            write(connection);
+        } catch (IOException ex) {
+            close(connection, ex.getMessage());
+            return;
+        }
+        dispatch(connection);
+        updateInterest(connection);
+    }
+
+    /**
+     * Stops reading from a connection while it has too much unfinished work and
+     * writes only while acknowledgements are queued.
+     */
+    private void updateInterest(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        boolean pause = connection.pending.size() >= maxPendingFrames
+                || connection.pendingAckBytes >= maxPendingAckBytes;
+        if (pause && !connection.readPaused) {
+            backpressurePauses.increment();
+            log.debug(
+                    "TCP ingest connection paused. remote={} pendingFrames={} pendingAckBytes={}",
+                    connection.remote,
+                    connection.pending.size(),
+                    connection.pendingAckBytes
+            );
+        }
+        connection.readPaused = pause;
+        int ops = (pause ? 0 : SelectionKey.OP_READ)
+                | (connection.writes.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+        connection.key.interestOps(ops);
+    }
+
+    private void close(Connection connection, String reason) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        connections.remove(connection);
+        unackedFrames.addAndGet(-connection.pending.size());
+        connection.pending.clear();
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+        try {
+            connection.channel.close();
+        } catch (IOException ex) {
+            log.debug(
+                    "Failed to close TCP ingest connection. remote={} error={}",
+                    connection.remote,
+                    ex.getMessage()
+            );
+        }
+        log.info(
+                "TCP ingest connection closed. remote={} reason={}",
+                connection.remote,
+                reason
+        );
+    }
+
+    private static TickAck toAck(TickFrame frame, ItemResult result) {
+        if (result.status() == RateBatchResponse.ItemStatus.ACCEPTED) {
+            return new TickAck(frame.correlationId(), TickAck.Status.ACCEPTED, result.seq());
+        }
+        return new TickAck(frame.correlationId(), TickAck.Status.valueOf(result.code()), 0L);
+    }
+
+    /**
+     * Connection state. Only touched by the selector thread, except
+     * {@code inFlight} which is reset through a selector task.
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final String remote;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final Queue<TickFrame> pending = new ArrayDeque<>();
+        private final Queue<ByteBuffer> writes = new ArrayDeque<>();
+        private SelectionKey key;
+        private long pendingAckBytes;
+        private boolean inFlight;
+        private boolean readPaused;
+        private boolean closed;
+
+        private Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.remote = String.valueOf(channel.getRemoteAddress());
+        }
+    }
+}
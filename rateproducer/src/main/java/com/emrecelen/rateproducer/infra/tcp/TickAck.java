@@ -0,0 +1,38 @@
+package com.emrecelen.rateproducer.infra.tcp;
+
+/**
+ * Acknowledgement of one tick frame.
+ *
+ * @param correlationId id of the acknowledged frame
+ * @param status        outcome of the tick
+ * @param seq           assigned sequence number, {@code 0} unless {@link Status#ACCEPTED}
+ */
+public record TickAck(long correlationId, Status status, long seq) {
+
+    public enum Status {
+        ACCEPTED((byte) 0),
+        VALIDATION_ERROR((byte) 1),
+        INVALID_RATE((byte) 2),
+        PAIR_NOT_AVAILABLE((byte) 3),
+        UNAVAILABLE((byte) 4);
+
+        private final byte code;
+
+        Status(byte code) {
+            this.code = code;
+        }
+
+        public byte code() {
+            return code;
+        }
+
+        public static Status of(byte code) {
+            for (Status status : values()) {
+                if (status.code == code) {
+                    return status;
+                }
+            }
+            throw new IllegalArgumentException("Unknown ack status code: " + code);
+        }
+    }
+}
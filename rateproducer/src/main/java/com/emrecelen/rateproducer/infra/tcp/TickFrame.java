@@ -0,0 +1,12 @@
+package com.emrecelen.rateproducer.infra.tcp;
+
+import com.emrecelen.rateproducer.domain.model.RateTick;
+
+/**
+ * Decoded tick frame.
+ *
+ * @param correlationId client-chosen id echoed back in the acknowledgement
+ * @param tick          tick carried by the frame
+ */
+public record TickFrame(long correlationId, RateTick tick) {
+}
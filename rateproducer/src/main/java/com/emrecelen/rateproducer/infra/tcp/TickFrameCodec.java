@@ -0,0 +1,171 @@
+package com.emrecelen.rateproducer.infra.tcp;
+
+import com.emrecelen.rateproducer.domain.model.RateTick;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Wire format of the binary TCP ingest protocol.
+ *
+ * <p>
+ * Every frame is a big-endian {@code int32} length followed by that many bytes:
+ * <pre>
+ * TICK (client to server)
+ *   int8   type = 1
+ *   int64  correlationId
+ *   int8   pairLength
+ *   byte[] pair (US-ASCII, e.g. EUR/USD)
+ *   int64  bidPips
+ *   int64  askPips
+ *   int64  timestamp (epoch millis)
+ *
+ * ACK (server to client)
+ *   int8   type = 2
+ *   int32  count
+ *   count x { int64 correlationId, int8 status, int64 seq }
+ * </pre>
+ * Prices are fixed-point longs with {@link com.emrecelen.rateproducer.domain.model.MoneyScale#SCALE}
+ * decimal places.
+ * </p>
+ */
+public final class TickFrameCodec {
+
+    public static final byte TYPE_TICK = 1;
+    public static final byte TYPE_ACK = 2;
+
+    static final int LENGTH_PREFIX = Integer.BYTES;
+    static final int MAX_PAIR_LENGTH = 16;
+    static final int MIN_TICK_FRAME_LENGTH = 1 + Long.BYTES + 1;
+    static final int MAX_TICK_FRAME_LENGTH = 1 + Long.BYTES + 1 + MAX_PAIR_LENGTH + 3 * Long.BYTES;
+    static final int MIN_ACK_FRAME_LENGTH = 1 + Integer.BYTES;
+    static final int ACK_ENTRY_LENGTH = Long.BYTES + 1 + Long.BYTES;
+
+    private TickFrameCodec() {
+    }
+
+    /**
+     * Writes one tick frame.
+     *
+     * @throws java.nio.BufferOverflowException if {@code out} has not enough space
+     */
+    public static void encodeTick(TickFrame frame, ByteBuffer out) {
+        RateTick tick = frame.tick();
+        byte[] pair = tick.pair().getBytes(StandardCharsets.US_ASCII);
+        if (pair.length > MAX_PAIR_LENGTH) {
+            throw new IllegalArgumentException("pair is too long: " + tick.pair());
+        }
+        out.putInt(1 + Long.BYTES + 1 + pair.length + 3 * Long.BYTES);
+        out.put(TYPE_TICK);
+        out.putLong(frame.correlationId());
+        out.put((byte) pair.length);
+        out.put(pair);
+        out.putLong(tick.bidPips());
+        out.putLong(tick.askPips());
+        out.putLong(tick.timestamp());
+    }
+
+    /**
+     * Decodes the next tick frame from {@code in} (read mode).
+     *
+     * @return decoded frame, or {@code null} if {@code in} does not hold a complete frame yet;
+     * in that case the position is left unchanged
+     * @throws ProtocolException if the frame is malformed
+     */
+    public static TickFrame decodeTick(ByteBuffer in) throws ProtocolException {
+        int length = peekLength(in, MIN_TICK_FRAME_LENGTH, MAX_TICK_FRAME_LENGTH);
+        if (length < 0) {
+            return null;
+        }
+        int end = in.position() + LENGTH_PREFIX + length;
+        in.position(in.position() + LENGTH_PREFIX);
+
+        byte type = in.get();
+        if (type != TYPE_TICK) {
+            throw new ProtocolException("Unexpected frame type: " + type);
+        }
+        long correlationId = in.getLong();
+        int pairLength = in.get();
+        if (pairLength <= 0 || pairLength > MAX_PAIR_LENGTH
+                || length != 1 + Long.BYTES + 1 + pairLength + 3 * Long.BYTES) {
+            throw new ProtocolException("Invalid tick frame length: " + length);
+        }
+        byte[] pair = new byte[pairLength];
+        in.get(pair);
+        RateTick tick = new RateTick(
+                new String(pair, StandardCharsets.US_ASCII),
+                in.getLong(),
+                in.getLong(),
+                in.getLong()
+        );
+        in.position(end);
+        return new TickFrame(correlationId, tick);
+    }
+
+    /**
+     * Encodes all acknowledgements into a single ACK frame.
+     *
+     * @return buffer in read mode
+     */
+    public static ByteBuffer encodeAcks(List<TickAck> acks) {
+        int length = 1 + Integer.BYTES + acks.size() * ACK_ENTRY_LENGTH;
+        ByteBuffer out = ByteBuffer.allocate(LENGTH_PREFIX + length);
+        out.putInt(length);
+        out.put(TYPE_ACK);
+        out.putInt(acks.size());
+        for (TickAck ack : acks) {
+            out.putLong(ack.correlationId());
+            out.put(ack.status().code());
+            out.putLong(ack.seq());
+        }
+        return out.flip();
+    }
+
+    /**
+     * Decodes the next ACK frame from {@code in} (read mode).
+     *
+     * @param maxLength largest accepted frame length
+     * @return decoded acknowledgements, or {@code null} if {@code in} does not hold
+     * a complete frame yet; in that case the position is left unchanged
+     * @throws ProtocolException if the frame is malformed
+     */
+    public static List<TickAck> decodeAcks(ByteBuffer in, int maxLength) throws ProtocolException {
+        int length = peekLength(in, MIN_ACK_FRAME_LENGTH, maxLength);
+        if (length < 0) {
+            return null;
+        }
+        in.position(in.position() + LENGTH_PREFIX);
+        byte type = in.get();
+        if (type != TYPE_ACK) {
+            throw new ProtocolException("Unexpected frame type: " + type);
+        }
+        int count = in.getInt();
+        if (count < 0 || length != 1 + Integer.BYTES + count * ACK_ENTRY_LENGTH) {
+            throw new ProtocolException("Invalid ack frame length: " + length);
+        }
+        TickAck[] acks = new TickAck[count];
+        for (int i = 0; i < count; i++) {
+            acks[i] = new TickAck(in.getLong(), TickAck.Status.of(in.get()), in.getLong());
+        }
+        return List.of(acks);
+    }
+
+    /**
+     * Checks the length prefix before anything of the frame is read, so a frame
+     * too short for its fixed header is rejected instead of read past its end.
+     *
+     * @return frame length if a complete frame is available, otherwise {@code -1}
+     */
+    private static int peekLength(ByteBuffer in, int minLength, int maxLength) throws ProtocolException {
+        if (in.remaining() < LENGTH_PREFIX) {
+            return -1;
+        }
+        int length = in.getInt(in.position());
+        if (length < minLength || length > maxLength) {
+            throw new ProtocolException("Invalid frame length: " + length);
+        }
+        return in.remaining() - LENGTH_PREFIX < length ? -1 : length;
+    }
+}
@@ -1,6 +1,6 @@
 package com.emrecelen.rateproducer.mapper;
 
-import com.emrecelen.rateproducer.api.dto.RawRateRequest;
+import com.emrecelen.rateproducer.domain.model.RateTick;
 import com.emrecelen.rateproducer.domain.model.RawRate;
 import org.springframework.stereotype.Component;
 
@@ -9,18 +9,44 @@ import java.time.Instant;
 @Component
 public class RateEventMapper {
 
+    /**
+     * Builds the domain tick from an already validated quote.
+     *
+     * @param bidPips bid in pips, see {@link com.emrecelen.rateproducer.domain.model.MoneyScale}
+     * @param askPips ask in pips
+     */
     public RawRate toRawRate(
             String source,
-            Long seq,
-            RawRateRequest request
+            long seq,
+            String pair,
+            long bidPips,
+            long askPips
     ) {
         return new RawRate(
                 source,
-                request.pair(),
+                pair,
                 seq,
-                request.bid(),
-                request.ask(),
+                bidPips,
+                askPips,
                 Instant.now().toEpochMilli()
         );
     }
+
+    /**
+     * Builds the domain tick from an already validated tick, keeping its timestamp.
+     */
+    public RawRate toRawRate(
+            String source,
+            long seq,
+            RateTick tick
+    ) {
+        return new RawRate(
+                source,
+                tick.pair(),
+                seq,
+                tick.bidPips(),
+                tick.askPips(),
+                tick.timestamp()
+        );
+    }
 }
@@ -4,14 +4,12 @@ package com.emrecelen.rateproducer.model;
 import com.emrecelen.rateproducer.model.common.BaseEntity;
 import com.emrecelen.rateproducer.common.Constants.OutboxType;
 import com.emrecelen.rateproducer.common.Constants.OutboxStatus;
-import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Table;
 import org.hibernate.annotations.JdbcTypeCode;
-import org.hibernate.annotations.Type;
 import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
@@ -27,8 +25,10 @@ public class OutboxEvent extends BaseEntity {
     @Column(name = "schema_version", nullable = false)
     private int schemaVersion;
     @JdbcTypeCode(SqlTypes.JSON)
-    @Column(name = "payload", nullable = false)
-    private JsonNode payload;
+    @Column(name = "payload")
+    private String payload;
+    @Column(name = "payload_bin")
+    private byte[] payloadBin;
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
     private OutboxStatus status;
@@ -42,16 +42,39 @@ public class OutboxEvent extends BaseEntity {
     private LocalDateTime processingStartedAt;
     @Column(name = "last_error")
     private String lastError;
+    @Column(name = "claimed_by")
+    private String claimedBy;
+    @Column(name = "aggregate_key")
+    private String aggregateKey;
+    @Column(name = "aggregate_seq")
+    private Long aggregateSeq;
 
     protected OutboxEvent() {
     }
 
-    public static OutboxEvent pending(String eventKey, OutboxType type, int schemaVersion, JsonNode payload) {
+    public static OutboxEvent pending(String eventKey, OutboxType type, int schemaVersion, String payload) {
+        return pending(eventKey, type, schemaVersion, payload, null, null);
+    }
+
+    /**
+     * @param aggregateKey key events are conflated by (e.g. the currency pair), {@code null} if not conflatable
+     * @param aggregateSeq order of the event within its aggregate, newest is highest
+     */
+    public static OutboxEvent pending(
+            String eventKey,
+            OutboxType type,
+            int schemaVersion,
+            String payload,
+            String aggregateKey,
+            Long aggregateSeq
+    ) {
         OutboxEvent e = new OutboxEvent();
         e.eventKey = eventKey;
         e.eventType = type;
         e.schemaVersion = schemaVersion;
         e.payload = payload;
+        e.aggregateKey = aggregateKey;
+        e.aggregateSeq = aggregateSeq;
         e.status = OutboxStatus.PENDING;
         e.attempts = 0;
         e.availableAt = LocalDateTime.now();
@@ -59,6 +82,23 @@ public class OutboxEvent extends BaseEntity {
         return e;
     }
 
+    /**
+     * Same as {@link #pending(String, OutboxType, int, String, String, Long)} for an
+     * event stored in a binary layout ({@code payload_bin}) instead of JSON.
+     */
+    public static OutboxEvent pendingBinary(
+            String eventKey,
+            OutboxType type,
+            int schemaVersion,
+            byte[] payloadBin,
+            String aggregateKey,
+            Long aggregateSeq
+    ) {
+        OutboxEvent e = pending(eventKey, type, schemaVersion, null, aggregateKey, aggregateSeq);
+        e.payloadBin = payloadBin;
+        return e;
+    }
+
     public String getEventKey() {
         return eventKey;
     }
@@ -71,10 +111,34 @@ public class OutboxEvent extends BaseEntity {
         return schemaVersion;
     }
 
-    public JsonNode getPayload() {
+    /**
+     * The column is {@code jsonb}, which keeps the parsed document rather than the
+     * written text. A loaded payload is Postgres' rendering of it: whitespace is
+     * normalized, keys are reordered and only the last of duplicate keys is kept.
+     * It is the same document, but not the same bytes the writer produced.
+     *
+     * @return JSON payload, {@code null} if the event is stored in a binary layout
+     */
+    public String getPayload() {
         return payload;
     }
 
+    /**
+     * @return binary payload, {@code null} if the event is stored as JSON
+     */
+    public byte[] getPayloadBin() {
+        return payloadBin;
+    }
+
+    /**
+     * Replaces the JSON payload by its binary encoding.
+     */
+    public void convertPayload(int schemaVersion, byte[] payloadBin) {
+        this.schemaVersion = schemaVersion;
+        this.payloadBin = payloadBin;
+        this.payload = null;
+    }
+
     public OutboxStatus getStatus() {
         return status;
     }
@@ -118,4 +182,23 @@ public class OutboxEvent extends BaseEntity {
     public void setProcessingStartedAt(LocalDateTime processingStartedAt) {
         this.processingStartedAt = processingStartedAt;
     }
+
+    /**
+     * @return id of the instance that claimed the event last, {@code null} if never claimed
+     */
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+
+    public String getAggregateKey() {
+        return aggregateKey;
+    }
+
+    public Long getAggregateSeq() {
+        return aggregateSeq;
+    }
 }
@@ -0,0 +1,34 @@
+package com.emrecelen.rateproducer.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Heartbeat of one producer instance. An instance whose heartbeat is older
+ * than {@code outbox.instance.ttl-ms} is considered dead.
+ */
+@Entity
+@Table(name = "outbox_instance")
+public class OutboxInstance {
+
+    @Id
+    @Column(name = "instance_id", nullable = false)
+    private String instanceId;
+    @Column(name = "heartbeat_at", nullable = false)
+    private LocalDateTime heartbeatAt;
+
+    protected OutboxInstance() {
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public LocalDateTime getHeartbeatAt() {
+        return heartbeatAt;
+    }
+}
@@ -0,0 +1,40 @@
+package com.emrecelen.rateproducer.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease on one outbox shard. An outbox event belongs to shard
+ * {@code hash(aggregate_key or event_key) % 64}, computed by the database.
+ */
+@Entity
+@Table(name = "outbox_shard_lease")
+public class OutboxShardLease {
+
+    @Id
+    @Column(name = "shard", nullable = false)
+    private Short shard;
+    @Column(name = "owner")
+    private String owner;
+    @Column(name = "lease_until", nullable = false)
+    private LocalDateTime leaseUntil;
+
+    protected OutboxShardLease() {
+    }
+
+    public Short getShard() {
+        return shard;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public LocalDateTime getLeaseUntil() {
+        return leaseUntil;
+    }
+}
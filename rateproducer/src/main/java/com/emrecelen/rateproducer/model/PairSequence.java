@@ -38,6 +38,10 @@ public class PairSequence {
         this.lastSeq++;
     }
 
+    public void advance(long count) {
+        this.lastSeq += count;
+    }
+
     public static Builder builder(String pair) {
         return new Builder(pair);
     }
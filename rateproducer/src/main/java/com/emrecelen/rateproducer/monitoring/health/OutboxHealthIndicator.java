@@ -1,6 +1,7 @@
 package com.emrecelen.rateproducer.monitoring.health;
 
-import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import com.emrecelen.rateproducer.common.Constants.OutboxStatus;
+import com.emrecelen.rateproducer.monitoring.metrics.OutboxBacklogTracker;
 import org.springframework.boot.health.contributor.Health;
 import org.springframework.boot.health.contributor.HealthIndicator;
 import org.springframework.stereotype.Component;
@@ -8,19 +9,22 @@ import org.springframework.stereotype.Component;
 @Component
 public class OutboxHealthIndicator implements HealthIndicator {
 
-    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxBacklogTracker backlogTracker;
 
-    public OutboxHealthIndicator(OutboxEventRepository outboxEventRepository) {
-        this.outboxEventRepository = outboxEventRepository;
+    public OutboxHealthIndicator(OutboxBacklogTracker backlogTracker) {
+        this.backlogTracker = backlogTracker;
     }
 
     @Override
     public Health health() {
-        long pending = outboxEventRepository.countPending();
+        long pending = backlogTracker.count(OutboxStatus.PENDING);
 
-        if (pending > 10_000) {
-            return Health.down().withDetail("outboxPending", pending).build();
-        }
-        return Health.up().withDetail("outboxPending", pending).build();
+        Health.Builder builder = pending > 10_000 ? Health.down() : Health.up();
+        return builder
+                .withDetail("outboxPending", pending)
+                .withDetail("outboxRetry", backlogTracker.count(OutboxStatus.RETRY))
+                .withDetail("outboxProcessing", backlogTracker.count(OutboxStatus.PROCESSING))
+                .withDetail("outboxFailed", backlogTracker.count(OutboxStatus.FAILED))
+                .build();
     }
 }
@@ -0,0 +1,104 @@
+package com.emrecelen.rateproducer.monitoring.metrics;
+
+import com.emrecelen.rateproducer.common.Constants.OutboxStatus;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory snapshot of the outbox backlog per status.
+ *
+ * <p>
+ * Statement-level triggers on {@code outbox_event} keep per-status counters in
+ * the {@code outbox_backlog} table up to date in the same transaction as every
+ * insert, claim, status change and delete. Each database connection writes its
+ * own counter row, so concurrent writers never wait on each other. The counts
+ * are therefore exact and cluster-wide, not per instance.
+ * </p>
+ *
+ * <p>
+ * This tracker:
+ * <ul>
+ *     <li>refreshes its snapshot from {@code outbox_backlog} (a handful of rows)
+ *     every {@code refresh-delay-ms}; gauges and the health check only read the
+ *     snapshot and never query the database</li>
+ *     <li>re-syncs the counters against {@code outbox_event} every
+ *     {@code resync-delay-ms}, folding the rows of closed connections together
+ *     and correcting drift (e.g. after a manual {@code TRUNCATE})</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.backlog.refresh-delay-ms  (default: 5000)
+ * outbox.backlog.resync-delay-ms   (default: 3600000)
+ * </pre>
+ * </p>
+ */
+@Component
+public class OutboxBacklogTracker {
+
+    public static final List<OutboxStatus> TRACKED_STATUSES = List.of(
+            OutboxStatus.PENDING,
+            OutboxStatus.RETRY,
+            OutboxStatus.PROCESSING,
+            OutboxStatus.FAILED
+    );
+
+    private final OutboxEventRepository repository;
+
+    private volatile Map<OutboxStatus, Long> counts = emptyCounts();
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxBacklogTracker(OutboxEventRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * @return last refreshed number of events in the given status, {@code 0} for untracked statuses
+     */
+    public long count(OutboxStatus status) {
+        return counts.getOrDefault(status, 0L);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.backlog.refresh-delay-ms:5000}")
+    public void refresh() {
+        Map<OutboxStatus, Long> refreshed = emptyCounts();
+        for (OutboxEventRepository.BacklogCount row : repository.backlogCounts()) {
+            refreshed.put(OutboxStatus.valueOf(row.getStatus()), row.getCount());
+        }
+        counts = refreshed;
+    }
+
+    @Transactional
+    @Scheduled(
+            initialDelayString = "${outbox.backlog.resync-delay-ms:3600000}",
+            fixedDelayString = "${outbox.backlog.resync-delay-ms:3600000}"
+    )
+    public void resync() {
+        long drift = repository.resyncBacklog();
+        if (drift != 0) {
+            log.warn(
+                    "Outbox backlog counters drifted and were corrected. drift={}",
+                    drift
+            );
+        } else {
+            log.debug("Outbox backlog counters are in sync");
+        }
+    }
+
+    private static Map<OutboxStatus, Long> emptyCounts() {
+        Map<OutboxStatus, Long> empty = new EnumMap<>(OutboxStatus.class);
+        TRACKED_STATUSES.forEach(status -> empty.put(status, 0L));
+        return empty;
+    }
+}
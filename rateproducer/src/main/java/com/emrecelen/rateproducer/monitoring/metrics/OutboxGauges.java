@@ -1,16 +1,26 @@
 package com.emrecelen.rateproducer.monitoring.metrics;
 
-import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import com.emrecelen.rateproducer.common.Constants.OutboxStatus;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Component;
 
+/**
+ * Outbox backlog gauges, read from the {@link OutboxBacklogTracker} snapshot.
+ */
 @Component
 public class OutboxGauges {
 
-    public OutboxGauges(MeterRegistry registry, OutboxEventRepository outboxRepository) {
-        Gauge.builder("outbox.pending.count", outboxRepository, OutboxEventRepository::countPending)
+    public OutboxGauges(MeterRegistry registry, OutboxBacklogTracker tracker) {
+        Gauge.builder("outbox.pending.count", tracker, t -> t.count(OutboxStatus.PENDING))
                 .description("Number of pending outbox events")
                 .register(registry);
+
+        for (OutboxStatus status : OutboxBacklogTracker.TRACKED_STATUSES) {
+            Gauge.builder("outbox.backlog", tracker, t -> t.count(status))
+                    .description("Number of outbox events per status")
+                    .tag("status", status.name())
+                    .register(registry);
+        }
     }
 }
@@ -24,8 +24,12 @@ public class RateProducerMetrics {
 
     public void received() { ingestReceived.increment(); }
 
+    public void received(long count) { ingestReceived.increment(count); }
+
     public void rejected() { ingestRejected.increment(); }
 
+    public void rejected(long count) { ingestRejected.increment(count); }
+
     public void publishFailed() { publishFailed.increment(); }
 
     public <T> T recordLatency(Supplier<T> supplier) {
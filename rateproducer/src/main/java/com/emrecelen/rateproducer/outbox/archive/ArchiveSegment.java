@@ -0,0 +1,368 @@
+package com.emrecelen.rateproducer.outbox.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * One append-only archive segment: a data file of Deflate-compressed blocks
+ * ({@code .seg}) and its sparse index ({@code .idx}).
+ *
+ * <p>
+ * File formats, all big-endian:
+ * <pre>
+ * .seg  block*
+ *   block   int32 magic, int32 recordCount, int32 rawLength, int32 compressedLength,
+ *           int64 crc32(compressed), byte[compressedLength] deflate(record*)
+ *   record  int64 idMsb, int64 idLsb, int64 createdAt (epoch millis, local time),
+ *           utf eventKey, utf eventType, int32 schemaVersion,
+ *           utf aggregateKey ("" if none), int64 aggregateSeq (-1 if none),
+ *           int32 payloadLength, byte[payloadLength] payload (UTF-8)
+ *
+ * .idx  entry*  (one per pair per block)
+ *   entry   utf pair, int64 minCreatedAt, int64 maxCreatedAt,
+ *           int64 blockOffset, int32 blockLength, int32 recordCount
+ * </pre>
+ * </p>
+ *
+ * <p>
+ * A block is written and forced to disk before its index entries, and the
+ * index entries before {@link #append(List)} returns. A block without index
+ * entries is therefore never visible, and {@link #open(Path, Path)} truncates
+ * it away after a crash.
+ * </p>
+ *
+ * <p>
+ * Not thread-safe for writing; {@link OutboxArchiveStore} serializes appends.
+ * {@link #readBlock(IndexEntry, Consumer)} may run concurrently with appends.
+ * </p>
+ */
+public final class ArchiveSegment implements AutoCloseable {
+
+    static final int BLOCK_MAGIC = 0x4F58424B;
+    static final int BLOCK_HEADER_LENGTH = 4 * Integer.BYTES + Long.BYTES;
+    static final String NO_PAIR = "";
+
+    /**
+     * Sparse index entry: the time range one pair covers inside one block.
+     */
+    public record IndexEntry(
+            ArchiveSegment segment,
+            String pair,
+            long minCreatedAt,
+            long maxCreatedAt,
+            long blockOffset,
+            int blockLength,
+            int recordCount
+    ) {
+        boolean overlaps(long from, long to) {
+            return minCreatedAt < to && maxCreatedAt >= from;
+        }
+    }
+
+    private final Path dataFile;
+    private final FileChannel data;
+    private final FileChannel index;
+    private final List<IndexEntry> entries;
+
+    private ArchiveSegment(Path dataFile, FileChannel data, FileChannel index, List<IndexEntry> entries) {
+        this.dataFile = dataFile;
+        this.data = data;
+        this.index = index;
+        this.entries = entries;
+    }
+
+    /**
+     * Opens or creates a segment and drops any block or index entry that was
+     * not completely written.
+     */
+    public static ArchiveSegment open(Path dataFile, Path indexFile) throws IOException {
+        FileChannel data = FileChannel.open(dataFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index = FileChannel.open(indexFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        List<IndexEntry> entries = new CopyOnWriteArrayList<>();
+        ArchiveSegment segment = new ArchiveSegment(dataFile, data, index, entries);
+
+        long indexEnd = segment.loadIndex();
+        index.truncate(indexEnd);
+        long dataEnd = entries.stream()
+                .mapToLong(e -> e.blockOffset() + e.blockLength())
+                .max()
+                .orElse(0L);
+        data.truncate(dataEnd);
+        data.position(dataEnd);
+        index.position(indexEnd);
+        return segment;
+    }
+
+    public Path dataFile() {
+        return dataFile;
+    }
+
+    public long size() throws IOException {
+        return data.size();
+    }
+
+    public List<IndexEntry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Appends the events as one compressed block and indexes it.
+     *
+     * @return index entries of the new block, one per pair
+     */
+    public List<IndexEntry> append(List<ArchivedEvent> events) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(events.size() * 256);
+        DataOutputStream out = new DataOutputStream(raw);
+        Map<String, long[]> ranges = new LinkedHashMap<>();
+        for (ArchivedEvent event : events) {
+            long createdAt = toMillis(event.createdAt());
+            writeRecord(out, event, createdAt);
+            String pair = event.aggregateKey() == null ? NO_PAIR : event.aggregateKey();
+            long[] range = ranges.computeIfAbsent(pair, k -> new long[]{Long.MAX_VALUE, Long.MIN_VALUE, 0});
+            range[0] = Math.min(range[0], createdAt);
+            range[1] = Math.max(range[1], createdAt);
+            range[2]++;
+        }
+        out.flush();
+
+        byte[] compressed = deflate(raw.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(compressed);
+
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_LENGTH + compressed.length);
+        block.putInt(BLOCK_MAGIC)
+                .putInt(events.size())
+                .putInt(raw.size())
+                .putInt(compressed.length)
+                .putLong(crc.getValue())
+                .put(compressed)
+                .flip();
+
+        long offset = data.position();
+        writeFully(data, block);
+        data.force(false);
+
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream indexOut = new DataOutputStream(indexBytes);
+        List<IndexEntry> added = new ArrayList<>(ranges.size());
+        for (Map.Entry<String, long[]> range : ranges.entrySet()) {
+            IndexEntry entry = new IndexEntry(
+                    this,
+                    range.getKey(),
+                    range.getValue()[0],
+                    range.getValue()[1],
+                    offset,
+                    block.limit(),
+                    (int) range.getValue()[2]
+            );
+            writeIndexEntry(indexOut, entry);
+            added.add(entry);
+        }
+        indexOut.flush();
+        writeFully(index, ByteBuffer.wrap(indexBytes.toByteArray()));
+        index.force(false);
+
+        entries.addAll(added);
+        return added;
+    }
+
+    /**
+     * Reads and decompresses the block an index entry points to.
+     */
+    public void readBlock(IndexEntry entry, Consumer<ArchivedEvent> consumer) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(entry.blockLength());
+        long position = entry.blockOffset();
+        while (block.hasRemaining()) {
+            int read = data.read(block, position + block.position());
+            if (read < 0) {
+                throw new EOFException("Archive block is truncated. file=" + dataFile + " offset=" + position);
+            }
+        }
+        block.flip();
+
+        if (block.getInt() != BLOCK_MAGIC) {
+            throw new IOException("Not an archive block. file=" + dataFile + " offset=" + position);
+        }
+        int recordCount = block.getInt();
+        int rawLength = block.getInt();
+        int compressedLength = block.getInt();
+        long expectedCrc = block.getLong();
+
+        byte[] compressed = new byte[compressedLength];
+        block.get(compressed);
+        CRC32 crc = new CRC32();
+        crc.update(compressed);
+        if (crc.getValue() != expectedCrc) {
+            throw new IOException("Archive block checksum mismatch. file=" + dataFile + " offset=" + position);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(inflate(compressed, rawLength)));
+        for (int i = 0; i < recordCount; i++) {
+            consumer.accept(readRecord(in));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private long loadIndex() throws IOException {
+        long size = index.size();
+        ByteBuffer bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining() && index.read(bytes, bytes.position()) >= 0) {
+            // read the whole index
+        }
+        bytes.flip();
+
+        long dataSize = data.size();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array(), 0, bytes.limit()));
+        long validEnd = 0;
+        while (true) {
+            try {
+                IndexEntry entry = new IndexEntry(
+                        this,
+                        in.readUTF(),
+                        in.readLong(),
+                        in.readLong(),
+                        in.readLong(),
+                        in.readInt(),
+                        in.readInt()
+                );
+                if (entry.blockOffset() + entry.blockLength() > dataSize) {
+                    break;
+                }
+                entries.add(entry);
+                validEnd = size - in.available();
+            } catch (EOFException ex) {
+                break;
+            }
+        }
+        return validEnd;
+    }
+
+    private static void writeRecord(DataOutputStream out, ArchivedEvent event, long createdAt) throws IOException {
+        out.writeLong(event.id().getMostSignificantBits());
+        out.writeLong(event.id().getLeastSignificantBits());
+        out.writeLong(createdAt);
+        out.writeUTF(event.eventKey());
+        out.writeUTF(event.eventType());
+        out.writeInt(event.schemaVersion());
+        out.writeUTF(event.aggregateKey() == null ? NO_PAIR : event.aggregateKey());
+        out.writeLong(event.aggregateSeq() == null ? -1L : event.aggregateSeq());
+        byte[] payload = event.payload().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    private static ArchivedEvent readRecord(DataInputStream in) throws IOException {
+        UUID id = new UUID(in.readLong(), in.readLong());
+        long createdAt = in.readLong();
+        String eventKey = in.readUTF();
+        String eventType = in.readUTF();
+        int schemaVersion = in.readInt();
+        String aggregateKey = in.readUTF();
+        long aggregateSeq = in.readLong();
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return new ArchivedEvent(
+                id,
+                eventKey,
+                eventType,
+                schemaVersion,
+                aggregateKey.isEmpty() ? null : aggregateKey,
+                aggregateSeq < 0 ? null : aggregateSeq,
+                LocalDateTime.ofEpochSecond(
+                        Math.floorDiv(createdAt, 1000),
+                        (int) Math.floorMod(createdAt, 1000) * 1_000_000,
+                        ZoneOffset.UTC
+                ),
+                new String(payload, StandardCharsets.UTF_8)
+        );
+    }
+
+    private static void writeIndexEntry(DataOutputStream out, IndexEntry entry) throws IOException {
+        out.writeUTF(entry.pair());
+        out.writeLong(entry.minCreatedAt());
+        out.writeLong(entry.maxCreatedAt());
+        out.writeLong(entry.blockOffset());
+        out.writeInt(entry.blockLength());
+        out.writeInt(entry.recordCount());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int filled = 0;
+            while (filled < rawLength && !inflater.finished()) {
+                filled += inflater.inflate(raw, filled, rawLength - filled);
+            }
+            if (filled != rawLength) {
+                throw new IOException("Archive block inflated to " + filled + " bytes, expected " + rawLength);
+            }
+            return raw;
+        } catch (DataFormatException ex) {
+            throw new IOException("Archive block is not valid deflate data", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.emrecelen.rateproducer.outbox.archive;
+
+import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A published outbox event as stored in the archive.
+ *
+ * <p>
+ * The archive always holds the JSON document, so binary rows are decoded on the
+ * way in and replay does not depend on the storage format.
+ * </p>
+ *
+ * @param aggregateKey currency pair of the event, {@code null} if the event has none
+ * @param aggregateSeq order of the event within its pair, {@code null} if the event has none
+ */
+public record ArchivedEvent(
+        UUID id,
+        String eventKey,
+        String eventType,
+        int schemaVersion,
+        String aggregateKey,
+        Long aggregateSeq,
+        LocalDateTime createdAt,
+        String payload
+) {
+
+    public static ArchivedEvent of(OutboxEvent event) {
+        return new ArchivedEvent(
+                event.getId(),
+                event.getEventKey(),
+                event.getEventType().name(),
+                OutboxPayloadCodec.jsonSchemaVersion(event),
+                event.getAggregateKey(),
+                event.getAggregateSeq(),
+                event.getCreatedAt(),
+                OutboxPayloadCodec.toJson(event)
+        );
+    }
+
+    /**
+     * Rebuilds a transient outbox event that can be handed to an
+     * {@link com.emrecelen.rateproducer.outbox.publisher.EventPublisher}.
+     * The result is never persisted.
+     */
+    public OutboxEvent toOutboxEvent() {
+        return OutboxEvent.pending(
+                eventKey,
+                Constants.OutboxType.valueOf(eventType),
+                schemaVersion,
+                payload,
+                aggregateKey,
+                aggregateSeq
+        );
+    }
+}
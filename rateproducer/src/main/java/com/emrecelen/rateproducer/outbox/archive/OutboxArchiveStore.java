@@ -0,0 +1,194 @@
+package com.emrecelen.rateproducer.outbox.archive;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Local-disk archive of published outbox events.
+ *
+ * <p>
+ * The archive is a directory of numbered, append-only segments
+ * ({@code 00000000000000000001.seg} plus its {@code .idx}, see
+ * {@link ArchiveSegment} for the format). Events are appended in
+ * Deflate-compressed blocks of up to {@code block-max-records} events, and the
+ * active segment is rolled once it reaches {@code segment-max-bytes}. Segments
+ * are never rewritten.
+ * </p>
+ *
+ * <p>
+ * Every block has one sparse index entry per pair it contains, holding the
+ * pair's time range inside the block. A scan for one pair and time range only
+ * reads and inflates the blocks whose entries overlap the range.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.archive.enabled            (default: false)
+ * outbox.archive.dir                (default: ./data/outbox-archive)
+ * outbox.archive.segment-max-bytes  (default: 67108864)
+ * outbox.archive.block-max-records  (default: 1000)
+ * </pre>
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.archive.enabled", havingValue = "true")
+public class OutboxArchiveStore implements AutoCloseable {
+
+    private static final String DATA_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final Path dir;
+    private final long segmentMaxBytes;
+    private final int blockMaxRecords;
+
+    private final List<ArchiveSegment> segments = new CopyOnWriteArrayList<>();
+    private long nextSegmentNumber;
+
+    private final Counter archivedEvents;
+    private final Counter archivedBytes;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxArchiveStore(
+            MeterRegistry registry,
+            @Value("${outbox.archive.dir:./data/outbox-archive}") Path dir,
+            @Value("${outbox.archive.segment-max-bytes:67108864}") long segmentMaxBytes,
+            @Value("${outbox.archive.block-max-records:1000}") int blockMaxRecords
+    ) throws IOException {
+        this.dir = dir;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.blockMaxRecords = blockMaxRecords;
+
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> existing = files
+                    .filter(p -> p.getFileName().toString().endsWith(DATA_SUFFIX))
+                    .sorted()
+                    .toList();
+            for (Path dataFile : existing) {
+                segments.add(ArchiveSegment.open(dataFile, indexFileOf(dataFile)));
+                nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumberOf(dataFile) + 1);
+            }
+        }
+
+        this.archivedEvents = Counter.builder("outbox.archive.events")
+                .description("Number of published outbox events written to the archive")
+                .register(registry);
+        this.archivedBytes = Counter.builder("outbox.archive.bytes")
+                .description("Compressed bytes written to the outbox archive")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("outbox.archive.segments", segments, List::size)
+                .description("Number of outbox archive segments on disk")
+                .register(registry);
+
+        log.info(
+                "Outbox archive opened. dir={} segments={}",
+                dir.toAbsolutePath(),
+                segments.size()
+        );
+    }
+
+    /**
+     * Appends the events in compressed blocks and forces them to disk.
+     *
+     * <p>
+     * When this method returns, the events are durable and visible to
+     * {@link #scan(String, LocalDateTime, LocalDateTime, Consumer)}.
+     * </p>
+     */
+    public synchronized void append(List<ArchivedEvent> events) throws IOException {
+        for (int from = 0; from < events.size(); from += blockMaxRecords) {
+            List<ArchivedEvent> block = events.subList(from, Math.min(events.size(), from + blockMaxRecords));
+            ArchiveSegment segment = activeSegment();
+            long before = segment.size();
+            segment.append(block);
+            archivedBytes.increment(segment.size() - before);
+            archivedEvents.increment(block.size());
+        }
+    }
+
+    /**
+     * Streams the archived events of one pair created in {@code [from, to)}, in
+     * archive order.
+     *
+     * <p>
+     * Archive order is creation order, except for events that were published
+     * late (after retries) and archived by a later run than their neighbours.
+     * </p>
+     */
+    public void scan(String pair, LocalDateTime from, LocalDateTime to, Consumer<ArchivedEvent> consumer) {
+        long fromMillis = ArchiveSegment.toMillis(from);
+        long toMillis = ArchiveSegment.toMillis(to);
+        for (ArchiveSegment segment : segments) {
+            for (ArchiveSegment.IndexEntry entry : segment.entries()) {
+                if (!entry.pair().equals(pair) || !entry.overlaps(fromMillis, toMillis)) {
+                    continue;
+                }
+                try {
+                    segment.readBlock(entry, event -> {
+                        if (pair.equals(event.aggregateKey())
+                                && !event.createdAt().isBefore(from)
+                                && event.createdAt().isBefore(to)) {
+                            consumer.accept(event);
+                        }
+                    });
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (ArchiveSegment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private ArchiveSegment activeSegment() throws IOException {
+        if (!segments.isEmpty()) {
+            ArchiveSegment last = segments.getLast();
+            if (last.size() < segmentMaxBytes) {
+                return last;
+            }
+        }
+        Path dataFile = dir.resolve("%020d%s".formatted(nextSegmentNumber++, DATA_SUFFIX));
+        ArchiveSegment segment = ArchiveSegment.open(dataFile, indexFileOf(dataFile));
+        segments.add(segment);
+        log.info(
+                "Rolled outbox archive segment. file={}",
+                dataFile.getFileName()
+        );
+        return segment;
+    }
+
+    private static Path indexFileOf(Path dataFile) {
+        String name = dataFile.getFileName().toString();
+        return dataFile.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    private static long segmentNumberOf(Path dataFile) {
+        String name = dataFile.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - DATA_SUFFIX.length()));
+    }
+}
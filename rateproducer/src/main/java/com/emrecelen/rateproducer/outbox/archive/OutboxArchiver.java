@@ -0,0 +1,112 @@
+package com.emrecelen.rateproducer.outbox.archive;
+
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.model.common.BaseEntity;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves published outbox events from Postgres into the {@link OutboxArchiveStore}.
+ *
+ * <p>
+ * Every run locks a batch of {@code SENT} events older than {@code min-age}
+ * ({@code FOR UPDATE SKIP LOCKED}), appends them to the archive, and deletes them
+ * in the same transaction. The archive is forced to disk before the delete is
+ * committed, so an event is never deleted without being archived.
+ * </p>
+ *
+ * <p>
+ * A crash between the archive write and the commit leaves the rows in place,
+ * and the next run archives them again. The archive is therefore
+ * at-least-once; replay consumers deduplicate by event key like any other
+ * consumer.
+ * </p>
+ *
+ * <p>
+ * In CDC relay mode events stay {@code RELAY} until the relay has them
+ * confirmed and marks them {@code SENT}, so a lagging relay keeps its events
+ * in the table, where a parked one can still be marked {@code FAILED}.
+ * </p>
+ *
+ * <p>
+ * {@code min-age} must stay well below {@code outbox.partition.retention-days},
+ * otherwise the partition manager drops partitions before they are archived.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.archive.enabled     (default: false)
+ * outbox.archive.delay-ms    (default: 10000)
+ * outbox.archive.batch-size  (default: 5000)
+ * outbox.archive.min-age     (default: 10m)
+ * </pre>
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.archive.enabled", havingValue = "true")
+public class OutboxArchiver {
+
+    private final OutboxEventRepository repository;
+    private final OutboxArchiveStore store;
+    private final int batchSize;
+    private final Duration minAge;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxArchiver(
+            OutboxEventRepository repository,
+            OutboxArchiveStore store,
+            @Value("${outbox.archive.batch-size:5000}") int batchSize,
+            @Value("${outbox.archive.min-age:10m}") Duration minAge
+    ) {
+        this.repository = repository;
+        this.store = store;
+        this.batchSize = batchSize;
+        this.minAge = minAge;
+    }
+
+    /**
+     * Archives and deletes one batch of published events.
+     *
+     * @return number of archived events
+     */
+    @Transactional
+    @Scheduled(fixedDelayString = "${outbox.archive.delay-ms:10000}")
+    public int archiveBatch() {
+        List<OutboxEvent> events = repository.lockArchivable(
+                LocalDateTime.now().minus(minAge),
+                batchSize
+        );
+        if (events.isEmpty()) {
+            log.debug("No published outbox events to archive");
+            return 0;
+        }
+
+        try {
+            store.append(events.stream().map(ArchivedEvent::of).toList());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write outbox archive", ex);
+        }
+        int deleted = repository.deleteArchived(events.stream().map(BaseEntity::getId).toList());
+
+        log.info(
+                "Archived {} published outbox events. deleted={}",
+                events.size(),
+                deleted
+        );
+        return events.size();
+    }
+}
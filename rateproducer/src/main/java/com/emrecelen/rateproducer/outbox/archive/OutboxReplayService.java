@@ -0,0 +1,98 @@
+package com.emrecelen.rateproducer.outbox.archive;
+
+import com.emrecelen.rateproducer.outbox.registry.PublisherRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays archived ticks through the registered {@link com.emrecelen.rateproducer.outbox.publisher.EventPublisher}s.
+ *
+ * <p>
+ * Events are read from the {@link OutboxArchiveStore} block by block and
+ * published synchronously, one at a time, so the archive is never loaded into
+ * memory as a whole.
+ * </p>
+ *
+ * <p>
+ * Pacing follows the original {@code created_at} gaps divided by
+ * {@code speed}: {@code 1.0} replays in real time, {@code 10.0} ten times
+ * faster, and {@code 0} as fast as the publisher accepts.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "outbox.archive.enabled", havingValue = "true")
+public class OutboxReplayService {
+
+    private final OutboxArchiveStore store;
+    private final PublisherRegistry publisherRegistry;
+
+    private final Counter replayed;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxReplayService(
+            OutboxArchiveStore store,
+            PublisherRegistry publisherRegistry,
+            MeterRegistry registry
+    ) {
+        this.store = store;
+        this.publisherRegistry = publisherRegistry;
+        this.replayed = Counter.builder("outbox.archive.replayed")
+                .description("Number of archived outbox events published again by a replay")
+                .register(registry);
+    }
+
+    /**
+     * Publishes the archived events of {@code pair} created in {@code [from, to)}.
+     * Blocks until the replay is done.
+     *
+     * @param speed replay speed relative to the original pace, {@code 0} for no pacing
+     * @return number of published events
+     */
+    public long replay(String pair, LocalDateTime from, LocalDateTime to, double speed) {
+        log.info(
+                "Outbox replay started. pair={} from={} to={} speed={}",
+                pair,
+                from,
+                to,
+                speed
+        );
+        long startedAt = System.nanoTime();
+        AtomicLong firstCreatedAt = new AtomicLong(Long.MIN_VALUE);
+        AtomicLong published = new AtomicLong();
+
+        store.scan(pair, from, to, event -> {
+            long createdAt = ArchiveSegment.toMillis(event.createdAt());
+            if (firstCreatedAt.get() == Long.MIN_VALUE) {
+                firstCreatedAt.set(createdAt);
+            }
+            if (speed > 0) {
+                long dueNanos = (long) (TimeUnit.MILLISECONDS.toNanos(createdAt - firstCreatedAt.get()) / speed);
+                long waitNanos = startedAt + dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+            }
+            publisherRegistry.get(event.eventType()).publish(event.toOutboxEvent());
+            replayed.increment();
+            published.incrementAndGet();
+        });
+
+        log.info(
+                "Outbox replay finished. pair={} published={} tookMs={}",
+                pair,
+                published.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)
+        );
+        return published.get();
+    }
+}
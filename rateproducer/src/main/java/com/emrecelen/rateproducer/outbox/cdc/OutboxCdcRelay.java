@@ -0,0 +1,379 @@
+package com.emrecelen.rateproducer.outbox.cdc;
+
+import com.emrecelen.rateproducer.outbox.registry.PublisherRegistry;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.PGReplicationStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relays outbox events from a Postgres logical replication slot instead of
+ * polling the outbox table.
+ *
+ * <p>
+ * In CDC mode ({@code outbox.relay.mode=CDC}) new events are inserted as
+ * {@code RELAY}. They are never claimed or retried in the table. The
+ * {@code outbox_relay} publication streams every insert into
+ * {@code outbox_event} (of any partition) through a {@code pgoutput} slot. The
+ * relay publishes them in commit order and acknowledges the slot position only
+ * after the broker has confirmed them (see {@link OutboxRelayStream}). Latency
+ * is bounded by WAL streaming instead of the poll interval.
+ * </p>
+ *
+ * <p>
+ * Confirmed events are marked {@code SENT} with one {@code UPDATE} per
+ * acknowledgement, right before the slot position is advanced. A row is
+ * therefore {@code RELAY} exactly as long as it has not been relayed, and the
+ * archiver and partition expiry, which only take finished rows, never remove
+ * an event the relay has not reached yet, e.g. during a broker outage. The
+ * publication only streams inserts, so these updates are not relayed.
+ * </p>
+ *
+ * <p>
+ * An event the broker keeps rejecting, or that cannot be published at all, is
+ * marked {@code FAILED} after {@code max-attempts} and the relay moves past it
+ * (see {@link OutboxRelayStream}). It can be requeued like any other failed
+ * event and is then published by the poller.
+ * </p>
+ *
+ * <p>
+ * The slot is created on start if it does not exist, and keeps WAL until the
+ * relay acknowledges it. A slot that is no longer consumed keeps WAL forever
+ * and eventually fills the disk, so leaving CDC mode is done in this order:
+ * <ol>
+ *     <li>switch every instance to {@code outbox.relay.mode=POLL}; new events
+ *     are written as {@code PENDING} and go to the poller</li>
+ *     <li>wait until the last instance in CDC mode has relayed the remaining
+ *     {@code RELAY} rows: no {@code RELAY} row is left, apart from rows
+ *     written after the switch by instances not yet restarted</li>
+ *     <li>stop that instance and drop the slot:
+ *     {@code SELECT pg_drop_replication_slot('outbox_relay')}</li>
+ * </ol>
+ * {@code RELAY} rows that were not relayed before the slot is dropped are never
+ * published; they can be returned to the poller with
+ * {@code UPDATE outbox_event SET status = 'PENDING' WHERE status = 'RELAY'}.
+ * </p>
+ *
+ * <p>
+ * The slot is owned by a single relay at a time. Every instance must use the
+ * same {@code outbox.relay.slot}: a slot streams every insert into the table,
+ * so one slot per instance would publish each event once per instance. Only
+ * one connection can stream from a slot; with several instances, one relays
+ * and the others stand by, retrying every {@code reconnect-delay-ms}, and take
+ * over when it goes away, continuing from the last acknowledged position. The
+ * same applies after a publish failure or a lost connection.
+ * </p>
+ *
+ * <p>
+ * Requires {@code wal_level=logical}, a free {@code max_replication_slots} and
+ * {@code max_wal_senders} entry, and a database user with the
+ * {@code REPLICATION} attribute. The bundled {@code docker-compose.yml} sets
+ * all of them up.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.relay.mode                (default: POLL)
+ * outbox.relay.slot                (default: outbox_relay)
+ * outbox.relay.publication         (default: outbox_relay)
+ * outbox.relay.max-in-flight       (default: 1000)
+ * outbox.relay.max-attempts        (default: 5)
+ * outbox.relay.status-interval-ms  (default: 1000)
+ * outbox.relay.reconnect-delay-ms  (default: 1000)
+ * </pre>
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.relay.mode", havingValue = "CDC")
+public class OutboxCdcRelay implements SmartLifecycle {
+
+    private static final String DUPLICATE_OBJECT = "42710";
+    private static final String OBJECT_IN_USE = "55006";
+    private static final long IDLE_WAIT_MS = 10;
+
+    private final PublisherRegistry publishers;
+    private final OutboxEventRepository repository;
+    private final TransactionTemplate stateTransaction;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String slot;
+    private final String publication;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final long statusIntervalMs;
+    private final long reconnectDelayMs;
+
+    private final Counter relayed;
+    private final Counter parked;
+    private final Counter restarts;
+    private final Timer commitLag;
+
+    private volatile boolean running;
+    private Thread relayThread;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxCdcRelay(
+            PublisherRegistry publishers,
+            OutboxEventRepository repository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry registry,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${outbox.relay.slot:outbox_relay}") String slot,
+            @Value("${outbox.relay.publication:outbox_relay}") String publication,
+            @Value("${outbox.relay.max-in-flight:1000}") int maxInFlight,
+            @Value("${outbox.relay.max-attempts:5}") int maxAttempts,
+            @Value("${outbox.relay.status-interval-ms:1000}") long statusIntervalMs,
+            @Value("${outbox.relay.reconnect-delay-ms:1000}") long reconnectDelayMs
+    ) {
+        this.publishers = publishers;
+        this.repository = repository;
+        this.stateTransaction = new TransactionTemplate(transactionManager);
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.slot = slot;
+        this.publication = publication;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.statusIntervalMs = statusIntervalMs;
+        this.reconnectDelayMs = reconnectDelayMs;
+
+        this.relayed = Counter.builder("outbox.relay.events")
+                .description("Number of outbox events relayed from the replication slot and confirmed")
+                .register(registry);
+        this.parked = Counter.builder("outbox.relay.parked")
+                .description("Number of outbox events the relay gave up on and marked FAILED")
+                .register(registry);
+        this.restarts = Counter.builder("outbox.relay.restarts")
+                .description("Number of times the outbox relay restarted its replication stream")
+                .register(registry);
+        this.commitLag = Timer.builder("outbox.relay.commit.lag")
+                .description("Time from the commit of outbox events to their broker confirm")
+                .register(registry);
+    }
+
+    /**
+     * Creates the slot before ingest starts, so no event committed in CDC mode
+     * is written before the slot exists.
+     */
+    @Override
+    public void start() {
+        try (Connection connection = connect()) {
+            ensureSlot(connection.unwrap(PGConnection.class));
+        } catch (SQLException ex) {
+            log.error(
+                    "Could not create the outbox replication slot. The relay will retry. slot={}",
+                    slot,
+                    ex
+            );
+        }
+        running = true;
+        relayThread = Thread.ofPlatform()
+                .name("outbox-cdc-relay")
+                .start(this::relayLoop);
+        log.info(
+                "Outbox CDC relay started. slot={} publication={}",
+                slot,
+                publication
+        );
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (relayThread != null) {
+            try {
+                relayThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            relayThread = null;
+        }
+        log.info("Outbox CDC relay stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before the web server and the ingest listeners, and stops after them.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void relayLoop() {
+        while (running) {
+            try (Connection connection = connect()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                ensureSlot(pgConnection);
+                try (PGReplicationStream stream = pgConnection.getReplicationAPI()
+                        .replicationStream()
+                        .logical()
+                        .withSlotName(slot)
+                        .withSlotOption("proto_version", 1)
+                        .withSlotOption("publication_names", publication)
+                        .withStatusInterval((int) statusIntervalMs, TimeUnit.MILLISECONDS)
+                        .start()) {
+                    log.info(
+                            "Outbox CDC relay streaming. slot={}",
+                            slot
+                    );
+                    OutboxRelayStream relay = new OutboxRelayStream(
+                            stream,
+                            publishers,
+                            this::park,
+                            this::markSent,
+                            maxInFlight,
+                            maxAttempts,
+                            relayed,
+                            parked,
+                            commitLag
+                    );
+                    while (running) {
+                        if (!relay.pollOnce()) {
+                            Thread.sleep(IDLE_WAIT_MS);
+                        }
+                    }
+                    relay.flush();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception ex) {
+                if (!running) {
+                    return;
+                }
+                if (ex instanceof SQLException sql && OBJECT_IN_USE.equals(sql.getSQLState())) {
+                    log.debug(
+                            "Outbox replication slot is streamed by another instance. Standing by. slot={}",
+                            slot
+                    );
+                    sleepBeforeReconnect();
+                    continue;
+                }
+                restarts.increment();
+                log.warn(
+                        "Outbox CDC relay stream failed. Restarting from the last confirmed position in {} ms. slot={}",
+                        reconnectDelayMs,
+                        slot,
+                        ex
+                );
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    /**
+     * Marks an event the relay gave up on as {@code FAILED}. A row that cannot
+     * even be identified is only logged.
+     */
+    private void park(Map<String, String> columns, int attempts, String error) {
+        log.error(
+                "Outbox CDC relay gave up on an event, marking it FAILED. eventKey={} attempts={} error={}",
+                columns.get("event_key"),
+                attempts,
+                error
+        );
+        UUID id;
+        Timestamp createdAt;
+        try {
+            id = UUID.fromString(columns.get("id"));
+            createdAt = Timestamp.valueOf(columns.get("created_at"));
+        } catch (RuntimeException ex) {
+            log.error(
+                    "Outbox CDC relay skipped an unreadable row. columns={}",
+                    columns,
+                    ex
+            );
+            return;
+        }
+        stateTransaction.executeWithoutResult(status -> repository.markRelayFailed(
+                id,
+                createdAt.toLocalDateTime(),
+                attempts,
+                error
+        ));
+    }
+
+    /**
+     * Marks the confirmed events {@code SENT} in one statement.
+     */
+    private void markSent(List<Map<String, String>> columns) {
+        UUID[] ids = new UUID[columns.size()];
+        LocalDateTime[] createdAts = new LocalDateTime[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            ids[i] = UUID.fromString(columns.get(i).get("id"));
+            createdAts[i] = Timestamp.valueOf(columns.get(i).get("created_at")).toLocalDateTime();
+        }
+        stateTransaction.executeWithoutResult(status -> repository.markRelayed(ids, createdAts));
+    }
+
+    private Connection connect() throws SQLException {
+        Properties props = new Properties();
+        PGProperty.USER.set(props, username);
+        PGProperty.PASSWORD.set(props, password);
+        PGProperty.REPLICATION.set(props, "database");
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(props, "10");
+        PGProperty.PREFER_QUERY_MODE.set(props, "simple");
+        return DriverManager.getConnection(url, props);
+    }
+
+    private void ensureSlot(PGConnection connection) throws SQLException {
+        try {
+            connection.getReplicationAPI()
+                    .createReplicationSlot()
+                    .logical()
+                    .withSlotName(slot)
+                    .withOutputPlugin("pgoutput")
+                    .make();
+            log.info(
+                    "Created outbox replication slot. slot={}",
+                    slot
+            );
+        } catch (SQLException ex) {
+            if (!DUPLICATE_OBJECT.equals(ex.getSQLState())) {
+                throw ex;
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(reconnectDelayMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
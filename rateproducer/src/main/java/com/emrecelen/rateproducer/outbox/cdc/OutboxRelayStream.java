@@ -0,0 +1,342 @@
+package com.emrecelen.rateproducer.outbox.cdc;
+
+import com.emrecelen.rateproducer.common.Constants.OutboxStatus;
+import com.emrecelen.rateproducer.common.Constants.OutboxType;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec;
+import com.emrecelen.rateproducer.outbox.publisher.EventPublisher;
+import com.emrecelen.rateproducer.outbox.registry.PublisherRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes the outbox inserts of one logical replication stream and
+ * acknowledges the stream position once the broker has confirmed them.
+ *
+ * <p>
+ * Inserts are published with publisher confirms as they are decoded, so they
+ * reach the broker in commit order. Each committed transaction waits in a queue
+ * until all of its events are settled. The stream position is only advanced
+ * past a transaction when it and every transaction before it are settled.
+ * </p>
+ *
+ * <p>
+ * Confirmed events are handed to {@link Delivery} in one call per
+ * acknowledgement, before the position is advanced, which marks their rows
+ * {@code SENT}. Until then a row stays {@code RELAY}, so {@code RELAY} always
+ * means not yet relayed and the archiver and partition expiry leave it alone.
+ * </p>
+ *
+ * <p>
+ * An event is settled when the broker confirms it, or when it is parked. A
+ * rejected or unconfirmed event is published again, up to {@code maxAttempts}
+ * attempts in total, and then parked. An event that cannot be published at all
+ * (unknown event type, unreadable row) is parked right away. Parking hands the
+ * row to {@link Parking}, which marks it {@code FAILED} so it can be requeued,
+ * and lets the relay move on instead of retrying it forever.
+ * </p>
+ *
+ * <p>
+ * If the stream fails, Postgres resends every transaction after the last
+ * acknowledged position. Events that were already confirmed after that position
+ * are published again, so consumers see them twice, as after any outbox retry.
+ * </p>
+ *
+ * <p>
+ * Only {@code RELAY} rows are published. Rows written by instances still in
+ * poll mode are left to their poller.
+ * </p>
+ */
+public class OutboxRelayStream {
+
+    /**
+     * Records an event the relay gave up on.
+     */
+    @FunctionalInterface
+    public interface Parking {
+        /**
+         * @param columns  decoded row of the event
+         * @param attempts number of publish attempts made
+         * @param error    reason of the last failure
+         */
+        void park(Map<String, String> columns, int attempts, String error);
+    }
+
+    /**
+     * Records events the broker has confirmed.
+     */
+    @FunctionalInterface
+    public interface Delivery {
+        /**
+         * @param columns decoded rows of the confirmed events
+         */
+        void delivered(List<Map<String, String>> columns);
+    }
+
+    private static final class RelayedEvent {
+        private final Map<String, String> columns;
+        private final OutboxEvent event;
+        private final EventPublisher publisher;
+        private int attempts;
+        private boolean parked;
+        private CompletableFuture<Void> confirmed;
+
+        private RelayedEvent(Map<String, String> columns, OutboxEvent event, EventPublisher publisher) {
+            this.columns = columns;
+            this.event = event;
+            this.publisher = publisher;
+        }
+    }
+
+    private record PendingCommit(
+            LogSequenceNumber endLsn,
+            Instant commitTime,
+            List<RelayedEvent> events
+    ) {
+    }
+
+    private final PGReplicationStream stream;
+    private final PublisherRegistry publishers;
+    private final Parking parking;
+    private final Delivery delivery;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final Counter relayed;
+    private final Counter parked;
+    private final Timer commitLag;
+
+    private final PgOutputDecoder decoder = new PgOutputDecoder();
+    private final Deque<PendingCommit> pending = new ArrayDeque<>();
+    private List<RelayedEvent> transaction;
+    private int inFlight;
+    private LogSequenceNumber flushed = LogSequenceNumber.INVALID_LSN;
+
+    public OutboxRelayStream(
+            PGReplicationStream stream,
+            PublisherRegistry publishers,
+            Parking parking,
+            Delivery delivery,
+            int maxInFlight,
+            int maxAttempts,
+            Counter relayed,
+            Counter parked,
+            Timer commitLag
+    ) {
+        this.stream = stream;
+        this.publishers = publishers;
+        this.parking = parking;
+        this.delivery = delivery;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.relayed = relayed;
+        this.parked = parked;
+        this.commitLag = commitLag;
+    }
+
+    /**
+     * Handles the next pending stream message, if any, and acknowledges every
+     * transaction settled so far.
+     *
+     * @return {@code true} if a message was read
+     */
+    public boolean pollOnce() throws SQLException {
+        ByteBuffer message = stream.readPending();
+        if (message != null) {
+            handle(message);
+        }
+        acknowledge();
+        while (inFlight >= maxInFlight && !pending.isEmpty()) {
+            settle(pending.peekFirst());
+            acknowledge();
+        }
+        return message != null;
+    }
+
+    /**
+     * Waits until every committed transaction is settled and acknowledges them.
+     */
+    public void flush() throws SQLException {
+        while (!pending.isEmpty()) {
+            settle(pending.peekFirst());
+            acknowledge();
+        }
+        stream.forceUpdateStatus();
+    }
+
+    /**
+     * @return number of published events not acknowledged yet
+     */
+    public int inFlight() {
+        return inFlight;
+    }
+
+    private void handle(ByteBuffer message) {
+        switch (decoder.decode(message)) {
+            case PgOutputDecoder.Begin begin -> transaction = new ArrayList<>();
+            case PgOutputDecoder.Insert insert -> {
+                if (OutboxStatus.RELAY.name().equals(insert.columns().get("status"))) {
+                    transaction.add(relay(insert.columns()));
+                    inFlight++;
+                }
+            }
+            case PgOutputDecoder.Commit commit -> {
+                pending.addLast(new PendingCommit(
+                        LogSequenceNumber.valueOf(commit.endLsn()),
+                        commit.commitTime(),
+                        transaction
+                ));
+                transaction = null;
+            }
+            case null -> {
+            }
+        }
+    }
+
+    private RelayedEvent relay(Map<String, String> columns) {
+        RelayedEvent relayed;
+        try {
+            OutboxEvent event = toEvent(columns);
+            relayed = new RelayedEvent(columns, event, publishers.get(event.getEventType().name()));
+        } catch (RuntimeException ex) {
+            RelayedEvent unreadable = new RelayedEvent(columns, null, null);
+            park(unreadable, ex);
+            return unreadable;
+        }
+        publish(relayed);
+        return relayed;
+    }
+
+    private void publish(RelayedEvent relayed) {
+        relayed.attempts++;
+        try {
+            relayed.confirmed = relayed.publisher.publishConfirmed(relayed.event);
+        } catch (RuntimeException ex) {
+            relayed.confirmed = CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    private OutboxEvent toEvent(Map<String, String> columns) {
+        String aggregateSeq = columns.get("aggregate_seq");
+        int schemaVersion = Integer.parseInt(columns.get("schema_version"));
+        return schemaVersion == OutboxPayloadCodec.BINARY_SCHEMA_VERSION
+                ? OutboxEvent.pendingBinary(
+                        columns.get("event_key"),
+                        OutboxType.valueOf(columns.get("event_type")),
+                        schemaVersion,
+                        bytea(columns.get("payload_bin")),
+                        columns.get("aggregate_key"),
+                        aggregateSeq == null ? null : Long.valueOf(aggregateSeq)
+                )
+                : OutboxEvent.pending(
+                        columns.get("event_key"),
+                        OutboxType.valueOf(columns.get("event_type")),
+                        schemaVersion,
+                        columns.get("payload"),
+                        columns.get("aggregate_key"),
+                        aggregateSeq == null ? null : Long.valueOf(aggregateSeq)
+                );
+    }
+
+    /**
+     * Parses the text form of a {@code bytea} value, hex with a {@code \x} prefix.
+     */
+    private static byte[] bytea(String text) {
+        return HexFormat.of().parseHex(text, 2, text.length());
+    }
+
+    /**
+     * Publishes the failed events of a transaction again, or parks them once
+     * they are out of attempts.
+     *
+     * @return {@code true} if every event of the transaction is settled
+     */
+    private boolean retryFailed(PendingCommit commit) {
+        boolean settled = true;
+        for (RelayedEvent e : commit.events()) {
+            if (!e.confirmed.isDone()) {
+                settled = false;
+            } else if (e.confirmed.isCompletedExceptionally()) {
+                Throwable error = e.confirmed.exceptionNow();
+                if (e.attempts < maxAttempts) {
+                    publish(e);
+                    settled = false;
+                } else {
+                    park(e, error);
+                }
+            }
+        }
+        return settled;
+    }
+
+    /**
+     * Blocks until every event of the transaction is settled.
+     */
+    private void settle(PendingCommit commit) {
+        while (!retryFailed(commit)) {
+            CompletableFuture.allOf(commit.events().stream()
+                    .map(e -> e.confirmed.exceptionally(ex -> null))
+                    .toArray(CompletableFuture[]::new)
+            ).join();
+        }
+    }
+
+    private void park(RelayedEvent e, Throwable error) {
+        parking.park(e.columns, e.attempts, error.toString());
+        parked.increment();
+        e.parked = true;
+        e.confirmed = CompletableFuture.completedFuture(null);
+    }
+
+    private void acknowledge() {
+        LogSequenceNumber confirmed = flushed;
+        List<Map<String, String>> delivered = new ArrayList<>();
+        PendingCommit head;
+        while ((head = pending.peekFirst()) != null && retryFailed(head)) {
+            pending.removeFirst();
+            inFlight -= head.events().size();
+            int before = delivered.size();
+            head.events().stream()
+                    .filter(e -> !e.parked)
+                    .forEach(e -> delivered.add(e.columns));
+            if (delivered.size() > before) {
+                relayed.increment(delivered.size() - before);
+                commitLag.record(Duration.between(head.commitTime(), Instant.now()));
+            }
+            confirmed = head.endLsn();
+        }
+        if (!delivered.isEmpty()) {
+            // a failure here restarts the stream from the last position, so the
+            // events are published again rather than left RELAY after an ack
+            delivery.delivered(delivered);
+        }
+
+        // Between transactions everything received so far is handled, including
+        // keepalives past changes of other tables, which lets Postgres recycle WAL.
+        if (transaction == null && pending.isEmpty()) {
+            LogSequenceNumber received = stream.getLastReceiveLSN();
+            if (received.compareTo(confirmed) > 0) {
+                confirmed = received;
+            }
+        }
+
+        if (confirmed.compareTo(flushed) > 0) {
+            flushed = confirmed;
+            stream.setFlushedLSN(flushed);
+            stream.setAppliedLSN(flushed);
+        }
+    }
+}
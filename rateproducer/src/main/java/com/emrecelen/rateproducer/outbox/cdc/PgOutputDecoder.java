@@ -0,0 +1,133 @@
+package com.emrecelen.rateproducer.outbox.cdc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the messages of the {@code pgoutput} logical decoding plugin
+ * (protocol version 1) that the outbox relay needs.
+ *
+ * <p>
+ * Only transaction boundaries and inserts are decoded:
+ * <ul>
+ *     <li>{@code B} (begin) and {@code C} (commit)</li>
+ *     <li>{@code R} (relation): remembered to name the columns of later inserts</li>
+ *     <li>{@code I} (insert): column values in text format, by column name</li>
+ * </ul>
+ * Every other message type is skipped. Relations are sent once per stream
+ * before their first change, so one decoder must be used per stream.
+ * </p>
+ */
+public class PgOutputDecoder {
+
+    private static final Instant POSTGRES_EPOCH = Instant.parse("2000-01-01T00:00:00Z");
+
+    public sealed interface Message permits Begin, Commit, Insert {
+    }
+
+    /**
+     * @param finalLsn LSN of the commit record of the transaction
+     */
+    public record Begin(long finalLsn, Instant commitTime, int xid) implements Message {
+    }
+
+    /**
+     * @param endLsn LSN right after the commit record; acknowledging it confirms the whole transaction
+     */
+    public record Commit(long commitLsn, long endLsn, Instant commitTime) implements Message {
+    }
+
+    /**
+     * @param columns column values in text format by column name, {@code null} for SQL NULL
+     */
+    public record Insert(String table, Map<String, String> columns) implements Message {
+    }
+
+    private record Relation(String table, List<String> columns) {
+    }
+
+    private final Map<Integer, Relation> relations = new HashMap<>();
+
+    /**
+     * @return the decoded message, or {@code null} for message types the relay does not use
+     */
+    public Message decode(ByteBuffer buffer) {
+        byte type = buffer.get();
+        return switch (type) {
+            case 'B' -> new Begin(buffer.getLong(), toInstant(buffer.getLong()), buffer.getInt());
+            case 'C' -> {
+                buffer.get(); // flags, currently unused
+                yield new Commit(buffer.getLong(), buffer.getLong(), toInstant(buffer.getLong()));
+            }
+            case 'R' -> {
+                readRelation(buffer);
+                yield null;
+            }
+            case 'I' -> readInsert(buffer);
+            default -> null;
+        };
+    }
+
+    private void readRelation(ByteBuffer buffer) {
+        int relationId = buffer.getInt();
+        String namespace = readString(buffer);
+        String name = readString(buffer);
+        buffer.get(); // replica identity
+        int columnCount = buffer.getShort();
+        List<String> columns = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            buffer.get(); // flags
+            columns.add(readString(buffer));
+            buffer.getInt(); // type oid
+            buffer.getInt(); // type modifier
+        }
+        relations.put(relationId, new Relation(namespace + "." + name, columns));
+    }
+
+    private Insert readInsert(ByteBuffer buffer) {
+        int relationId = buffer.getInt();
+        Relation relation = relations.get(relationId);
+        if (relation == null) {
+            throw new IllegalStateException("Insert for unknown relation id=" + relationId);
+        }
+        buffer.get(); // 'N', new tuple
+        int columnCount = buffer.getShort();
+        Map<String, String> values = new HashMap<>(columnCount * 2);
+        for (int i = 0; i < columnCount; i++) {
+            byte kind = buffer.get();
+            String value = switch (kind) {
+                case 'n', 'u' -> null;
+                case 't' -> {
+                    byte[] bytes = new byte[buffer.getInt()];
+                    buffer.get(bytes);
+                    yield new String(bytes, StandardCharsets.UTF_8);
+                }
+                default -> throw new IllegalStateException("Unsupported tuple data kind=" + (char) kind);
+            };
+            values.put(relation.columns().get(i), value);
+        }
+        return new Insert(relation.table(), values);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int start = buffer.position();
+        int end = start;
+        while (buffer.get(end) != 0) {
+            end++;
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(bytes);
+        buffer.get(); // terminator
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Instant toInstant(long postgresMicros) {
+        return POSTGRES_EPOCH.plus(postgresMicros, ChronoUnit.MICROS);
+    }
+}
@@ -0,0 +1,165 @@
+package com.emrecelen.rateproducer.outbox.codec;
+
+import com.emrecelen.rateproducer.common.JsonUtil;
+import com.emrecelen.rateproducer.domain.model.RateEvent;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Encodes rate events in the compact binary outbox layout and turns stored
+ * payloads back into the JSON document that is published.
+ *
+ * <p>
+ * The {@code schema_version} of a row selects its encoding:
+ * <ul>
+ *     <li>{@value #JSON_SCHEMA_VERSION}: JSON document in {@code payload}</li>
+ *     <li>{@value #BINARY_SCHEMA_VERSION}: the same event in {@code payload_bin}</li>
+ * </ul>
+ * Both describe the same event. Consumers always receive the JSON document with
+ * schema version {@value #JSON_SCHEMA_VERSION}; the binary layout only changes
+ * how the event is stored.
+ * </p>
+ *
+ * <p>
+ * Binary layout (field names are not stored):
+ * <pre>
+ * uint8    layout (1)
+ * int64    seq, big-endian; fixed width so that the ingest statement can write it ({@code int8send})
+ * varint   producedAt epoch second (UTC), varint producedAt nano
+ * varint   source length, byte[] source (UTF-8)
+ * varint   pair length, byte[] pair (UTF-8)
+ * zigzag   bidPips, zigzag askPips - bidPips
+ * </pre>
+ * The event key is not stored either; it is derived as {@code source:pair:seq},
+ * like the event key of the row.
+ * </p>
+ */
+public final class OutboxPayloadCodec {
+
+    public static final int JSON_SCHEMA_VERSION = 1;
+    public static final int BINARY_SCHEMA_VERSION = 2;
+
+    /**
+     * Offset of the fixed-width {@code seq} field in the binary layout.
+     */
+    public static final int SEQ_OFFSET = 1;
+
+    private static final byte LAYOUT = 1;
+
+    private OutboxPayloadCodec() {
+    }
+
+    public static byte[] encode(RateEvent event) {
+        byte[] source = event.source().getBytes(StandardCharsets.UTF_8);
+        byte[] pair = event.pair().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(1 + 8 + 10 + 5 + 5 + source.length + 5 + pair.length + 10 + 10);
+        out.put(LAYOUT);
+        out.putLong(event.seq());
+        writeVarLong(out, event.producedAt().toEpochSecond(ZoneOffset.UTC));
+        writeVarLong(out, event.producedAt().getNano());
+        writeVarLong(out, source.length);
+        out.put(source);
+        writeVarLong(out, pair.length);
+        out.put(pair);
+        writeVarLong(out, zigzag(event.bidPips()));
+        writeVarLong(out, zigzag(event.askPips() - event.bidPips()));
+
+        byte[] encoded = new byte[out.position()];
+        out.flip().get(encoded);
+        return encoded;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code payload} is not in a known binary layout
+     */
+    public static RateEvent decode(byte[] payload) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(payload);
+            byte layout = in.get();
+            if (layout != LAYOUT) {
+                throw new IllegalArgumentException("Unknown outbox payload layout: " + layout);
+            }
+            long seq = in.getLong();
+            LocalDateTime producedAt = LocalDateTime.ofEpochSecond(
+                    readVarLong(in),
+                    (int) readVarLong(in),
+                    ZoneOffset.UTC
+            );
+            String source = readString(in);
+            String pair = readString(in);
+            long bidPips = unzigzag(readVarLong(in));
+            long askPips = bidPips + unzigzag(readVarLong(in));
+            return new RateEvent(
+                    source + ":" + pair + ":" + seq,
+                    JSON_SCHEMA_VERSION,
+                    producedAt,
+                    source,
+                    pair,
+                    seq,
+                    bidPips,
+                    askPips
+            );
+        } catch (BufferUnderflowException | NegativeArraySizeException | DateTimeException ex) {
+            throw new IllegalArgumentException("Malformed outbox payload", ex);
+        }
+    }
+
+    /**
+     * @return the JSON document of a stored event, whatever its encoding
+     */
+    public static String toJson(OutboxEvent event) {
+        if (event.getSchemaVersion() == BINARY_SCHEMA_VERSION) {
+            return JsonUtil.toJsonString(decode(event.getPayloadBin()));
+        }
+        return event.getPayload();
+    }
+
+    /**
+     * @return schema version of the document returned by {@link #toJson(OutboxEvent)}
+     */
+    public static int jsonSchemaVersion(OutboxEvent event) {
+        return event.getSchemaVersion() == BINARY_SCHEMA_VERSION
+                ? JSON_SCHEMA_VERSION
+                : event.getSchemaVersion();
+    }
+
+    private static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in outbox payload");
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -2,6 +2,8 @@ package com.emrecelen.rateproducer.outbox.publisher;
 
 import com.emrecelen.rateproducer.model.OutboxEvent;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Contract for publishing outbox events to external systems.
  *
@@ -30,4 +32,27 @@ public interface EventPublisher {
     String eventType();
 
     void publish(OutboxEvent event);
+
+    /**
+     * Publishes the event and completes once the transport has confirmed delivery.
+     *
+     * <p>
+     * Implementations backed by a transport with acknowledgements should send
+     * without waiting and complete the future when the acknowledgement arrives,
+     * so that many events can be in flight at once. The returned future fails if
+     * the transport rejects the event or does not confirm it in time.
+     * </p>
+     *
+     * <p>
+     * The default implementation publishes synchronously.
+     * </p>
+     */
+    default CompletableFuture<Void> publishConfirmed(OutboxEvent event) {
+        try {
+            publish(event);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
 }
@@ -0,0 +1,212 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how many outbox events the poller claims at once and how long it
+ * waits between claims.
+ *
+ * <p>
+ * When adaptive claiming is disabled the batch size is the fixed
+ * {@code outbox.claim.batch-size} and the poller claims one batch per poll, as
+ * before. When enabled, every claim is reported through
+ * {@link #record(int, int, long)} and the controller adjusts:
+ * <ul>
+ *     <li>full batch, publish within budget: double the batch size and claim
+ *     again immediately ({@link Decision#GROW})</li>
+ *     <li>publish slower than {@code target-batch-publish-ms}: shrink the batch
+ *     size in proportion to the overrun ({@link Decision#SHRINK}); a full batch
+ *     is still followed by an immediate claim</li>
+ *     <li>partial batch: keep the size and wait for the next poll
+ *     ({@link Decision#HOLD})</li>
+ *     <li>empty batch: halve the batch size and double the idle delay, up to
+ *     {@code max-idle-delay-ms} ({@link Decision#BACKOFF})</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * The measured publish time is the time the coordinator needs for the whole
+ * batch. In confirms mode that includes waiting for the last broker confirm, so
+ * a slow broker shrinks the batch as well. The idle delay is checked on every
+ * timed poll, so it is rounded up to {@code outbox.poll.delay-ms}.
+ * </p>
+ *
+ * <p>
+ * Metrics:
+ * <pre>
+ * outbox.claim.batch.size            current batch size
+ * outbox.claim.idle.delay            current idle delay (ms)
+ * outbox.claim.decisions{decision}   number of decisions by kind
+ * outbox.claim.batch.publish         publish time per claimed batch
+ * </pre>
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.claim.batch-size                        (default: 200)
+ * outbox.claim.adaptive.enabled                  (default: false)
+ * outbox.claim.adaptive.min-batch-size           (default: 50)
+ * outbox.claim.adaptive.max-batch-size           (default: 2000)
+ * outbox.claim.adaptive.target-batch-publish-ms  (default: 500)
+ * outbox.claim.adaptive.max-idle-delay-ms        (default: 2000)
+ * </pre>
+ * </p>
+ */
+@Component
+public class OutboxClaimController {
+
+    public enum Decision {
+        GROW,
+        SHRINK,
+        HOLD,
+        BACKOFF,
+    }
+
+    private final boolean adaptive;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetPublishNanos;
+    private final long minIdleDelayNanos;
+    private final long maxIdleDelayNanos;
+
+    private int batchSize;
+    private long idleDelayNanos;
+    private long nextPollAt;
+    private boolean claimAgain;
+
+    private final Map<Decision, Counter> decisions = new EnumMap<>(Decision.class);
+    private final Timer batchPublish;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxClaimController(
+            MeterRegistry registry,
+            @Value("${outbox.claim.batch-size:200}") int batchSize,
+            @Value("${outbox.claim.adaptive.enabled:false}") boolean adaptive,
+            @Value("${outbox.claim.adaptive.min-batch-size:50}") int minBatchSize,
+            @Value("${outbox.claim.adaptive.max-batch-size:2000}") int maxBatchSize,
+            @Value("${outbox.claim.adaptive.target-batch-publish-ms:500}") long targetBatchPublishMs,
+            @Value("${outbox.poll.delay-ms:200}") long pollDelayMs,
+            @Value("${outbox.claim.adaptive.max-idle-delay-ms:2000}") long maxIdleDelayMs
+    ) {
+        if (adaptive && (minBatchSize < 1 || minBatchSize > maxBatchSize)) {
+            throw new IllegalArgumentException(
+                    "outbox.claim.adaptive.min-batch-size must be between 1 and max-batch-size"
+            );
+        }
+        this.adaptive = adaptive;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetPublishNanos = TimeUnit.MILLISECONDS.toNanos(targetBatchPublishMs);
+        this.minIdleDelayNanos = TimeUnit.MILLISECONDS.toNanos(pollDelayMs);
+        this.maxIdleDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(pollDelayMs, maxIdleDelayMs));
+        this.batchSize = adaptive ? Math.clamp(batchSize, minBatchSize, maxBatchSize) : batchSize;
+
+        for (Decision decision : Decision.values()) {
+            decisions.put(decision, Counter.builder("outbox.claim.decisions")
+                    .description("Number of adaptive claim decisions by kind")
+                    .tag("decision", decision.name())
+                    .register(registry));
+        }
+        this.batchPublish = Timer.builder("outbox.claim.batch.publish")
+                .description("Time to publish one claimed outbox batch")
+                .register(registry);
+        Gauge.builder("outbox.claim.batch.size", this, OutboxClaimController::batchSize)
+                .description("Current outbox claim batch size")
+                .register(registry);
+        Gauge.builder("outbox.claim.idle.delay", this, c -> c.idleDelayMs())
+                .description("Current delay before the next outbox claim after an empty claim")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    public synchronized int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return {@code false} while backing off after empty claims
+     */
+    public synchronized boolean isPollDue() {
+        return !adaptive || System.nanoTime() - nextPollAt >= 0;
+    }
+
+    /**
+     * @return {@code true} if the last batch was full and the next one should
+     * be claimed without waiting for the next poll
+     */
+    public synchronized boolean shouldClaimAgain() {
+        return claimAgain;
+    }
+
+    /**
+     * Records the outcome of one claim and adjusts the batch size and delay.
+     *
+     * @param requested    batch size the claim was made with
+     * @param claimed      number of events the claim returned
+     * @param publishNanos time it took to publish the claimed events, {@code 0} if none
+     */
+    public synchronized Decision record(int requested, int claimed, long publishNanos) {
+        if (claimed > 0) {
+            batchPublish.record(publishNanos, TimeUnit.NANOSECONDS);
+        }
+        if (!adaptive) {
+            return Decision.HOLD;
+        }
+
+        Decision decision;
+        int previous = batchSize;
+        if (claimed == 0) {
+            batchSize = Math.max(minBatchSize, batchSize / 2);
+            idleDelayNanos = idleDelayNanos == 0
+                    ? minIdleDelayNanos
+                    : Math.min(maxIdleDelayNanos, idleDelayNanos * 2);
+            nextPollAt = System.nanoTime() + idleDelayNanos;
+            claimAgain = false;
+            decision = Decision.BACKOFF;
+        } else {
+            idleDelayNanos = 0;
+            nextPollAt = System.nanoTime();
+            claimAgain = claimed >= requested;
+            if (publishNanos > targetPublishNanos) {
+                double ratio = (double) targetPublishNanos / publishNanos;
+                batchSize = Math.max(minBatchSize, (int) (requested * ratio));
+                decision = Decision.SHRINK;
+            } else if (claimAgain) {
+                batchSize = Math.min(maxBatchSize, requested * 2);
+                decision = Decision.GROW;
+            } else {
+                decision = Decision.HOLD;
+            }
+        }
+
+        decisions.get(decision).increment();
+        if (batchSize != previous) {
+            log.debug(
+                    "Outbox claim batch size adjusted. decision={} from={} to={} claimed={} publishMs={}",
+                    decision,
+                    previous,
+                    batchSize,
+                    claimed,
+                    TimeUnit.NANOSECONDS.toMillis(publishNanos)
+            );
+        }
+        return decision;
+    }
+
+    private synchronized double idleDelayMs() {
+        return TimeUnit.NANOSECONDS.toMillis(idleDelayNanos);
+    }
+}
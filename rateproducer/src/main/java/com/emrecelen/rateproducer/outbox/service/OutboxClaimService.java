@@ -1,12 +1,10 @@
 package com.emrecelen.rateproducer.outbox.service;
 
-import com.emrecelen.rateproducer.common.Constants;
 import com.emrecelen.rateproducer.model.OutboxEvent;
 import com.emrecelen.rateproducer.repository.OutboxEventRepository;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -16,16 +14,19 @@ import java.util.List;
  * Service responsible for claiming outbox events for publishing.
  *
  * <p>
- * This service selects a batch of events that are ready to be processed,
- * applies row-level locking to prevent multiple instances from processing
- * the same events, and marks them as {@code PROCESSING}.
+ * This service claims a batch of events that are ready to be processed and
+ * marks them as {@code PROCESSING} in a single statement
+ * ({@code UPDATE ... FOR UPDATE SKIP LOCKED ... RETURNING}). Rows already locked
+ * by another instance are skipped instead of waited for, so instances claim
+ * disjoint batches in parallel.
  * </p>
  *
  * <p>
  * Claiming strategy:
  * <ul>
- *     <li>Retry events are always prioritized</li>
- *     <li>If no retry events exist, pending events are claimed</li>
+ *     <li>Pending and retry events are claimed once their {@code available_at} has passed</li>
+ *     <li>Events are claimed oldest {@code available_at} first, so a retry is picked up
+ *     as soon as its backoff has elapsed</li>
  * </ul>
  * </p>
  *
@@ -38,71 +39,79 @@ import java.util.List;
 public class OutboxClaimService {
 
     private final OutboxEventRepository repository;
+    private final OutboxConflator conflator;
+    private final OutboxShardManager shardManager;
+    private final OutboxInstanceHeartbeat instance;
 
     private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
 
-    public OutboxClaimService(OutboxEventRepository repository) {
+    public OutboxClaimService(
+            OutboxEventRepository repository,
+            OutboxConflator conflator,
+            OutboxShardManager shardManager,
+            OutboxInstanceHeartbeat instance
+    ) {
         this.repository = repository;
+        this.conflator = conflator;
+        this.shardManager = shardManager;
+        this.instance = instance;
     }
 
-    private static final int BATCH_SIZE = 200;
-
     /**
      * Claims the next batch of outbox events to be processed.
      *
      * <p>
-     * Retry events are always claimed first. If no retry events are available,
-     * a batch of new pending events is claimed instead.
+     * Selecting, locking and marking the events {@code PROCESSING} happen in one
+     * round trip; the returned entities already carry the new status.
+     * </p>
+     *
+     * <p>
+     * When conflation is enabled, events superseded by a newer event of the same
+     * aggregate are marked {@code SUPERSEDED} instead of being returned
+     * (see {@link OutboxConflator}).
+     * </p>
+     *
+     * <p>
+     * With sharding enabled only events of the shards this instance holds a
+     * lease on are claimed (see {@link OutboxShardManager}).
+     * </p>
+     *
+     * <p>
+     * Claimed events are marked with this instance's id. Nothing is claimed
+     * while the instance's own heartbeat is overdue (see {@link OutboxInstanceHeartbeat}).
      * </p>
      *
-     * @return list of claimed events, possibly empty
+     * @param limit maximum number of events to claim, see {@link OutboxClaimController}
+     * @return list of claimed events to publish, possibly empty
      */
     @Transactional
-    public List<OutboxEvent> claimBatch() {
-        List<OutboxEvent> retryEvents =
-                repository.lockRetryBatch(
-                        Constants.OutboxStatus.RETRY,
-                        LocalDateTime.now(),
-                        PageRequest.of(0, BATCH_SIZE)
-                );
-
-        if (!retryEvents.isEmpty()) {
-            log.debug(
-                    "Claimed {} RETRY outbox events for processing",
-                    retryEvents.size()
-            );
-            markProcessing(retryEvents, LocalDateTime.now());
-            return retryEvents;
+    public List<OutboxEvent> claimBatch(int limit) {
+        if (!instance.isAlive()) {
+            log.debug("Outbox instance heartbeat overdue. Skipping claim.");
+            return List.of();
         }
+        conflator.conflateBacklog();
 
-        List<OutboxEvent> newEvents = repository.lockNextBatch(
-                List.of(Constants.OutboxStatus.PENDING),
-                LocalDateTime.now(),
-                PageRequest.of(0, BATCH_SIZE)
-        );
-        if (!newEvents.isEmpty()) {
-            log.debug(
-                    "Claimed {} PENDING outbox events for processing",
-                    newEvents.size()
-            );
+        List<OutboxEvent> claimed;
+        if (shardManager.isEnabled()) {
+            List<Short> shards = shardManager.ownedShards();
+            if (shards.isEmpty()) {
+                log.debug("No outbox shards owned. Skipping claim.");
+                return List.of();
+            }
+            claimed = repository.claimNextBatchInShards(LocalDateTime.now(), limit, shards, instance.instanceId());
+        } else {
+            claimed = repository.claimNextBatch(LocalDateTime.now(), limit, instance.instanceId());
+        }
+        if (claimed.isEmpty()) {
+            return claimed;
         }
-        markProcessing(newEvents, LocalDateTime.now());
-        return newEvents;
-    }
 
-    /**
-     * Marks claimed events as {@code PROCESSING} and persists the change.
-     *
-     * <p>
-     * This timestamp is later used by the watchdog to detect stuck events.
-     * </p>
-     */
-    private void markProcessing(List<OutboxEvent> events, LocalDateTime time) {
-        events.forEach(e -> {
-            e.setStatus(Constants.OutboxStatus.PROCESSING);
-            e.setProcessingStartedAt(time);
-        });
-        repository.saveAll(events);
+        log.debug(
+                "Claimed {} outbox events for processing",
+                claimed.size()
+        );
+        return conflator.conflateBatch(claimed);
     }
 
 }
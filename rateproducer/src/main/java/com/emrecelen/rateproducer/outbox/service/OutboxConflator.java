@@ -0,0 +1,162 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import com.emrecelen.rateproducer.common.Constants.OutboxStatus;
+import com.emrecelen.rateproducer.common.Constants.OutboxType;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Drops outbox events that are superseded by a newer event of the same aggregate.
+ *
+ * <p>
+ * For latest-value consumers (rate-hub keeps only the highest seq per pair) only
+ * the newest event of an aggregate needs to be published. Conflated event types
+ * carry an aggregate key and sequence (see
+ * {@link com.emrecelen.rateproducer.domain.service.DomainEventFactory#aggregateKey(Object)});
+ * older events are marked {@link OutboxStatus#SUPERSEDED} with one bulk UPDATE
+ * and never published.
+ * </p>
+ *
+ * <p>
+ * Scopes:
+ * <ul>
+ *     <li>{@code BATCH}: only events claimed together are conflated</li>
+ *     <li>{@code BACKLOG}: before each claim, all waiting events are conflated as
+ *     well, so the backlog shrinks to one event per aggregate</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.conflation.event-types   (default: empty, conflation disabled)
+ * outbox.conflation.scope         (default: BATCH)
+ * </pre>
+ * </p>
+ */
+@Component
+public class OutboxConflator {
+
+    public enum Scope {
+        BATCH,
+        BACKLOG,
+    }
+
+    private final OutboxEventRepository repository;
+    private final Set<OutboxType> eventTypes;
+    private final List<String> eventTypeNames;
+    private final Scope scope;
+    private final Counter superseded;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxConflator(
+            OutboxEventRepository repository,
+            MeterRegistry registry,
+            @Value("${outbox.conflation.event-types:}") List<OutboxType> eventTypes,
+            @Value("${outbox.conflation.scope:BATCH}") Scope scope
+    ) {
+        this.repository = repository;
+        this.eventTypes = eventTypes.isEmpty() ? EnumSet.noneOf(OutboxType.class) : EnumSet.copyOf(eventTypes);
+        this.eventTypeNames = this.eventTypes.stream().map(OutboxType::name).toList();
+        this.scope = scope;
+        this.superseded = registry.counter("outbox.conflation.superseded");
+    }
+
+    public boolean enabled() {
+        return !eventTypes.isEmpty();
+    }
+
+    /**
+     * Supersedes older waiting events across the whole backlog when the scope is
+     * {@code BACKLOG}.
+     *
+     * @return number of superseded events
+     */
+    public int conflateBacklog() {
+        if (!enabled() || scope != Scope.BACKLOG) {
+            return 0;
+        }
+        int count = repository.supersedeBacklog(eventTypeNames);
+        if (count > 0) {
+            superseded.increment(count);
+            log.info(
+                    "Outbox backlog conflated. superseded={}",
+                    count
+            );
+        }
+        return count;
+    }
+
+    /**
+     * Keeps only the newest event per aggregate of a claimed batch and marks the
+     * others superseded.
+     *
+     * <p>
+     * The superseded entities are updated in the database only; their in-memory
+     * state is left untouched so they are not written back one by one.
+     * </p>
+     *
+     * @return events to publish, in claim order
+     */
+    public List<OutboxEvent> conflateBatch(List<OutboxEvent> claimed) {
+        if (!enabled() || claimed.size() < 2) {
+            return claimed;
+        }
+        Map<String, OutboxEvent> newest = new HashMap<>();
+        for (OutboxEvent event : claimed) {
+            if (!conflatable(event)) {
+                continue;
+            }
+            newest.merge(
+                    event.getEventType().name() + '|' + event.getAggregateKey(),
+                    event,
+                    (a, b) -> a.getAggregateSeq() >= b.getAggregateSeq() ? a : b
+            );
+        }
+
+        List<OutboxEvent> survivors = new ArrayList<>(claimed.size());
+        List<UUID> supersededIds = new ArrayList<>();
+        for (OutboxEvent event : claimed) {
+            if (!conflatable(event)
+                    || newest.get(event.getEventType().name() + '|' + event.getAggregateKey()) == event) {
+                survivors.add(event);
+            } else {
+                supersededIds.add(event.getId());
+            }
+        }
+        if (supersededIds.isEmpty()) {
+            return claimed;
+        }
+
+        repository.markSuperseded(supersededIds, OutboxStatus.SUPERSEDED);
+        superseded.increment(supersededIds.size());
+        log.debug(
+                "Claimed batch conflated. claimed={} published={} superseded={}",
+                claimed.size(),
+                survivors.size(),
+                supersededIds.size()
+        );
+        return survivors;
+    }
+
+    private boolean conflatable(OutboxEvent event) {
+        return eventTypes.contains(event.getEventType())
+                && event.getAggregateKey() != null
+                && event.getAggregateSeq() != null;
+    }
+}
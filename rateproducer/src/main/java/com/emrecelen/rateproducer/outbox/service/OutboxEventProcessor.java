@@ -11,6 +11,14 @@ import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Processes a single outbox event and publishes it using the appropriate publisher.
@@ -27,7 +35,7 @@ import java.time.LocalDateTime;
  * <p>
  * Retry strategy:
  * <ul>
- *     <li>Exponential backoff (capped at 30s)</li>
+ *     <li>Exponential backoff with full jitter (capped at 30s)</li>
  *     <li>Max attempts = 5</li>
  *     <li>After max attempts, event is marked as FAILED</li>
  * </ul>
@@ -37,24 +45,56 @@ import java.time.LocalDateTime;
  * This method is transactional to guarantee state consistency between
  * publish attempts and database updates.
  * </p>
+ *
+ * <p>
+ * For batch processing, {@link #publish(OutboxEvent)} and
+ * {@link #publishConfirmed(OutboxEvent)} only record the outcome on the event and
+ * {@link #finalizeBatch(List)} persists the outcomes of a whole batch with a few
+ * set-based updates, one per distinct outcome. Callers may hand the
+ * {@code RETRY} outcomes to {@link OutboxRetryScheduler} first, which retries
+ * them in memory instead of writing them back to the table.
+ * </p>
  */
 @Service
 public class OutboxEventProcessor {
     private final PublisherRegistry registry;
     private final OutboxEventRepository repository;
+    private final OutboxInstanceHeartbeat instance;
 
     private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
 
     public OutboxEventProcessor(PublisherRegistry registry,
-                                OutboxEventRepository repository) {
+                                OutboxEventRepository repository,
+                                OutboxInstanceHeartbeat instance) {
         this.registry = registry;
         this.repository = repository;
+        this.instance = instance;
     }
 
     private static final int MAX_ATTEMPTS = 5;
 
+    /**
+     * Publishes a single event and persists the outcome with the same guarded
+     * statements as {@link #finalizeBatch(List)}, so an event reclaimed by another
+     * instance in the meantime is left to its new owner.
+     */
     @Transactional
     public void process(OutboxEvent e) {
+        publish(e);
+        finalizeBatch(List.of(e));
+    }
+
+    /**
+     * Publishes a single event and records the outcome on the event without
+     * persisting it.
+     *
+     * <p>
+     * On success the event is marked {@code SENT}. On failure the attempt counter,
+     * error and next availability are updated and the event is marked
+     * {@code RETRY} or, after the last attempt, {@code FAILED}.
+     * </p>
+     */
+    public void publish(OutboxEvent e) {
         try {
             log.debug(
                     "Publishing outbox event. id={}, type={}, attempt={}",
@@ -63,61 +103,182 @@ public class OutboxEventProcessor {
                     e.getAttempts()
             );
             registry.get(e.getEventType().name()).publish(e);
+            markSent(e);
+        } catch (Exception ex) {
+            recordFailure(e, ex);
+        }
+    }
+
+    /**
+     * Publishes a single event without waiting for the transport to confirm it.
+     *
+     * <p>
+     * The outcome is recorded on the event, as in {@link #publish(OutboxEvent)},
+     * once the confirmation arrives. The event is only marked {@code SENT} when
+     * the transport has confirmed delivery; a rejection or a missing confirmation
+     * counts as a failed attempt. The returned future never fails.
+     * </p>
+     */
+    public CompletableFuture<OutboxEvent> publishConfirmed(OutboxEvent e) {
+        CompletableFuture<Void> confirmed;
+        try {
+            log.debug(
+                    "Publishing outbox event with confirm. id={}, type={}, attempt={}",
+                    e.getId(),
+                    e.getEventType(),
+                    e.getAttempts()
+            );
+            confirmed = registry.get(e.getEventType().name()).publishConfirmed(e);
+        } catch (Exception ex) {
+            confirmed = CompletableFuture.failedFuture(ex);
+        }
+
+        return confirmed.handle((ignored, ex) -> {
+            if (ex == null) {
+                markSent(e);
+            } else {
+                recordFailure(e, ex instanceof CompletionException ? ex.getCause() : ex);
+            }
+            return e;
+        });
+    }
+
+    private void markSent(OutboxEvent e) {
+        e.setStatus(OutboxStatus.SENT);
+        e.setLastError(null);
+
+        log.info(
+                "Outbox event published successfully. id={}, type={}",
+                e.getId(),
+                e.getEventType()
+        );
+    }
 
-            e.setStatus(OutboxStatus.SENT);
-            e.setLastError(null);
+    private void recordFailure(OutboxEvent e, Throwable ex) {
+        int nextAttempt = e.getAttempts() + 1;
+        e.setAttempts(nextAttempt);
+        e.setLastError(ex.getMessage());
 
-            log.info(
-                    "Outbox event published successfully. id={}, type={}",
+        if (nextAttempt >= MAX_ATTEMPTS) {
+            e.setStatus(OutboxStatus.FAILED);
+            e.setAvailableAt(null);
+
+            log.error(
+                    "Outbox event permanently failed after {} attempts. id={}, type={}, error={}",
+                    nextAttempt,
+                    e.getId(),
+                    e.getEventType(),
+                    ex.getMessage(),
+                    ex
+            );
+        } else {
+            LocalDateTime next = nextAvailableAt(nextAttempt);
+            e.setStatus(OutboxStatus.RETRY);
+            e.setAvailableAt(next);
+            log.warn(
+                    "Outbox event publish failed. Retrying. id={}, type={}, attempt={}, nextAt={}",
                     e.getId(),
-                    e.getEventType()
+                    e.getEventType(),
+                    nextAttempt,
+                    next
             );
+        }
+    }
 
-        } catch (Exception ex) {
-            int nextAttempt = e.getAttempts() + 1;
-            e.setAttempts(nextAttempt);
-            e.setLastError(ex.getMessage());
-
-            if (nextAttempt >= MAX_ATTEMPTS) {
-                e.setStatus(OutboxStatus.FAILED);
-                e.setAvailableAt(null);
-
-                log.error(
-                        "Outbox event permanently failed after {} attempts. id={}, type={}, error={}",
-                        nextAttempt,
-                        e.getId(),
-                        e.getEventType(),
-                        ex.getMessage(),
-                        ex
+    /**
+     * Persists the outcomes recorded by {@link #publish(OutboxEvent)} for a batch
+     * of events in one transaction.
+     *
+     * <p>
+     * Events are grouped by outcome (status and attempts) and each group is
+     * written with one bulk {@code UPDATE}: all {@code SENT} events share a single
+     * statement, failures add one statement per distinct attempt count, with each
+     * event's own error passed alongside its id. Retry times are computed once per
+     * group.
+     * </p>
+     *
+     * <p>
+     * Only events this instance still owns ({@code PROCESSING} and claimed by it)
+     * are updated. Events reclaimed by another instance in the meantime, e.g.
+     * after a missed heartbeat, are left to their new owner.
+     * </p>
+     */
+    @Transactional
+    public void finalizeBatch(List<OutboxEvent> events) {
+        Map<Outcome, List<OutboxEvent>> groups = new LinkedHashMap<>();
+        for (OutboxEvent e : events) {
+            Outcome outcome = e.getStatus() == OutboxStatus.SENT
+                    ? new Outcome(OutboxStatus.SENT, 0)
+                    : new Outcome(e.getStatus(), e.getAttempts());
+            groups.computeIfAbsent(outcome, k -> new ArrayList<>()).add(e);
+        }
+
+        String instanceId = instance.instanceId();
+        int updated = 0;
+        for (Map.Entry<Outcome, List<OutboxEvent>> group : groups.entrySet()) {
+            Outcome outcome = group.getKey();
+            List<OutboxEvent> grouped = group.getValue();
+            updated += switch (outcome.status()) {
+                case SENT -> repository.markPublished(
+                        grouped.stream().map(OutboxEvent::getId).toList(),
+                        OutboxStatus.SENT,
+                        instanceId
                 );
-            } else {
-                LocalDateTime next = nextAvailableAt(nextAttempt);
-                e.setStatus(OutboxStatus.RETRY);
-                e.setAvailableAt(next);
-                log.warn(
-                        "Outbox event publish failed. Retrying. id={}, type={}, attempt={}, nextAt={}",
-                        e.getId(),
-                        e.getEventType(),
-                        nextAttempt,
-                        next
+                case RETRY -> repository.markAttemptFailed(
+                        grouped.stream().map(OutboxEvent::getId).toArray(UUID[]::new),
+                        grouped.stream().map(OutboxEvent::getLastError).toArray(String[]::new),
+                        instanceId,
+                        OutboxStatus.RETRY.name(),
+                        outcome.attempts(),
+                        nextAvailableAt(outcome.attempts())
                 );
-            }
+                case FAILED -> repository.markAttemptFailed(
+                        grouped.stream().map(OutboxEvent::getId).toArray(UUID[]::new),
+                        grouped.stream().map(OutboxEvent::getLastError).toArray(String[]::new),
+                        instanceId,
+                        OutboxStatus.FAILED.name(),
+                        outcome.attempts(),
+                        null
+                );
+                default -> throw new IllegalStateException(
+                        "Unexpected outbox status after publish: " + outcome.status()
+                );
+            };
+        }
+        if (updated < events.size()) {
+            log.warn(
+                    "Outbox events were reclaimed before their outcome was persisted. Left to their new owner. instance={} events={} updated={}",
+                    instanceId,
+                    events.size(),
+                    updated
+            );
         }
-        repository.save(e);
+
+        log.debug(
+                "Finalized outbox batch. events={} statements={}",
+                events.size(),
+                groups.size()
+        );
     }
 
     /**
-     * Calculates next retry time using exponential backoff.
+     * Calculates next retry time using exponential backoff with full jitter.
      *
      * <p>
      * Delay formula:
      * <pre>
-     * delay = min(250ms * 2^attempt, 30s)
+     * delay = random(0, min(250ms * 2^attempt, 30s))
      * </pre>
+     * Spreading the retries over the whole window keeps events that failed
+     * together, e.g. during a broker outage, from being retried in lockstep.
      * </p>
      */
     private LocalDateTime nextAvailableAt(int attempts) {
-        long delayMs = Math.min(250L * (1L << Math.min(attempts, 6)), 30_000L);
+        long capMs = Math.min(250L * (1L << Math.min(attempts, 6)), 30_000L);
+        long delayMs = ThreadLocalRandom.current().nextLong(capMs + 1);
         return LocalDateTime.now().plus(Duration.ofMillis(delayMs));
     }
+
+    private record Outcome(OutboxStatus status, int attempts) {
+    }
 }
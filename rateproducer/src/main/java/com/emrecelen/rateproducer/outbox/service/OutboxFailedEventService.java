@@ -0,0 +1,213 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import com.emrecelen.rateproducer.exception.InvalidCursorException;
+import com.emrecelen.rateproducer.exception.RequeueInProgressException;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lists and requeues dead-lettered ({@code FAILED}) outbox events.
+ *
+ * <p>
+ * Events that exhausted their attempts stay {@code FAILED} until requeued here.
+ * Listing uses keyset pagination on {@code (created_at, id)}, so a page costs the
+ * same no matter how deep into the backlog it is.
+ * </p>
+ *
+ * <p>
+ * A requeue returns the matching events to {@code PENDING} with a fresh attempt
+ * budget, oldest first, in chunks of {@code batch-size}. It walks the events
+ * once with a keyset cursor on {@code (created_at, id)}, up to the time it was
+ * started: events created later, or requeued events that fail again, are left
+ * for the next requeue, so a run always ends. Every chunk is one
+ * {@code UPDATE} in its own short transaction, so rows are never locked for
+ * longer than one chunk. Chunks are paced to {@code rate-per-second} events, so
+ * tens of thousands of requeued events reach the poller at a rate it can publish
+ * next to the live flow instead of all at once. Only one requeue runs at a time.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.failed.page-size-max            (default: 1000)
+ * outbox.failed.requeue.batch-size       (default: 500)
+ * outbox.failed.requeue.rate-per-second  (default: 2000, 0 for no pacing)
+ * </pre>
+ * </p>
+ */
+@Service
+public class OutboxFailedEventService {
+
+    private final OutboxEventRepository repository;
+    private final TransactionTemplate chunkTransaction;
+    private final int pageSizeMax;
+    private final int batchSize;
+    private final int ratePerSecond;
+
+    private final AtomicBoolean requeueing = new AtomicBoolean();
+    private final Counter requeued;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxFailedEventService(
+            OutboxEventRepository repository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry registry,
+            @Value("${outbox.failed.page-size-max:1000}") int pageSizeMax,
+            @Value("${outbox.failed.requeue.batch-size:500}") int batchSize,
+            @Value("${outbox.failed.requeue.rate-per-second:2000}") int ratePerSecond
+    ) {
+        this.repository = repository;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.pageSizeMax = pageSizeMax;
+        this.batchSize = batchSize;
+        this.ratePerSecond = ratePerSecond;
+        this.requeued = Counter.builder("outbox.failed.requeued")
+                .description("Number of FAILED outbox events returned to PENDING by a requeue")
+                .register(registry);
+    }
+
+    /**
+     * Returns the next page of {@code FAILED} events after the given key.
+     *
+     * @param afterCreatedAt {@code created_at} of the last event of the previous page,
+     *                       {@code null} for the first page
+     * @param afterId        id of the last event of the previous page,
+     *                       given together with {@code afterCreatedAt}
+     * @param limit          page size, see {@link #pageSize(int)}
+     * @throws InvalidCursorException if only one half of the key is given
+     */
+    public List<OutboxEvent> listFailed(
+            String pair,
+            LocalDateTime from,
+            LocalDateTime to,
+            String error,
+            LocalDateTime afterCreatedAt,
+            UUID afterId,
+            int limit
+    ) {
+        if ((afterCreatedAt == null) != (afterId == null)) {
+            throw new InvalidCursorException("afterCreatedAt and afterId must be given together");
+        }
+        return repository.findFailedPage(
+                pair,
+                from,
+                to,
+                error,
+                afterCreatedAt,
+                afterId,
+                pageSize(limit)
+        );
+    }
+
+    /**
+     * @return the requested page size capped at {@code page-size-max}
+     */
+    public int pageSize(int requested) {
+        return Math.clamp(requested, 1, pageSizeMax);
+    }
+
+    /**
+     * Starts requeueing the matching {@code FAILED} events on a virtual thread.
+     *
+     * @throws RequeueInProgressException if another requeue is still running
+     */
+    public void startRequeue(String pair, LocalDateTime from, LocalDateTime to, String error) {
+        if (!requeueing.compareAndSet(false, true)) {
+            throw new RequeueInProgressException("A requeue of failed outbox events is already running");
+        }
+        Thread.ofVirtual()
+                .name("outbox-failed-requeue")
+                .start(() -> {
+                    try {
+                        requeue(pair, from, to, error);
+                    } catch (Exception ex) {
+                        log.error(
+                                "Requeue of failed outbox events aborted. pair={} from={} to={} error={}",
+                                pair,
+                                from,
+                                to,
+                                error,
+                                ex
+                        );
+                    } finally {
+                        requeueing.set(false);
+                    }
+                });
+    }
+
+    /**
+     * Requeues the matching {@code FAILED} events created until now chunk by
+     * chunk, until the cursor has passed all of them. Blocks until done.
+     *
+     * @return number of requeued events
+     */
+    public long requeue(String pair, LocalDateTime from, LocalDateTime to, String error) {
+        log.info(
+                "Requeue of failed outbox events started. pair={} from={} to={} error={} ratePerSecond={}",
+                pair,
+                from,
+                to,
+                error,
+                ratePerSecond
+        );
+        long startedAt = System.nanoTime();
+        LocalDateTime until = LocalDateTime.now();
+        LocalDateTime afterCreatedAt = null;
+        UUID afterId = null;
+        long total = 0;
+        while (true) {
+            LocalDateTime cursorCreatedAt = afterCreatedAt;
+            UUID cursorId = afterId;
+            Optional<OutboxEventRepository.RequeueChunk> chunk = chunkTransaction.execute(status -> repository.requeueFailed(
+                    pair,
+                    from,
+                    to,
+                    error,
+                    until,
+                    cursorCreatedAt,
+                    cursorId,
+                    LocalDateTime.now(),
+                    batchSize
+            ));
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+            afterCreatedAt = chunk.get().getLastCreatedAt();
+            afterId = chunk.get().getLastId();
+            long count = chunk.get().getRequeued();
+            total += count;
+            requeued.increment(count);
+            if (ratePerSecond > 0) {
+                long dueNanos = TimeUnit.SECONDS.toNanos(total) / ratePerSecond;
+                long waitNanos = startedAt + dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+            }
+        }
+
+        log.info(
+                "Requeue of failed outbox events finished. requeued={} tookMs={}",
+                total,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)
+        );
+        return total;
+    }
+}
@@ -0,0 +1,246 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process hand-off of freshly written outbox events to the publisher.
+ *
+ * <p>
+ * When enabled, the outbox writer reserves room in the hand-off queue before
+ * inserting. Events with a reservation are inserted as {@code PROCESSING}, claimed
+ * by this instance, so the poller never claims them, and are queued once the ingest transaction commits
+ * ({@link TransactionSynchronization#afterCommit()}). A rolled back transaction
+ * gives the reservation back. Events are never read back from the table.
+ * </p>
+ *
+ * <p>
+ * A single worker publishes queued events with publisher confirms, in sequence
+ * order, and persists the outcomes with
+ * {@link OutboxEventProcessor#finalizeBatch(List)}: confirmed events become
+ * {@code SENT}, rejected ones {@code RETRY}/{@code FAILED} for the poller, unless
+ * {@link OutboxRetryScheduler} retries them in memory.
+ * </p>
+ *
+ * <p>
+ * Events the hand-off misses are recovered by the regular pipeline:
+ * <ul>
+ *     <li>no reservation (queue full, hand-off stopped): inserted as {@code PENDING}
+ *     and claimed by the poller</li>
+ *     <li>crash after commit: left {@code PROCESSING} and reclaimed by
+ *     {@link OutboxWatchdog} once the instance stops heartbeating</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.handoff.enabled          (default: false)
+ * outbox.handoff.queue-capacity   (default: 10000)
+ * outbox.handoff.max-batch-size   (default: 200)
+ * </pre>
+ * </p>
+ */
+@Component
+public class OutboxHandoff implements SmartLifecycle {
+
+    private final OutboxEventProcessor processor;
+    private final OutboxRetryScheduler retries;
+    private final OutboxInstanceHeartbeat instance;
+    private final boolean enabled;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<OutboxEvent> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+
+    private final Counter handedOff;
+    private final Counter fallbacks;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxHandoff(
+            OutboxEventProcessor processor,
+            OutboxRetryScheduler retries,
+            OutboxInstanceHeartbeat instance,
+            MeterRegistry registry,
+            @Value("${outbox.handoff.enabled:false}") boolean enabled,
+            @Value("${outbox.handoff.queue-capacity:10000}") int queueCapacity,
+            @Value("${outbox.handoff.max-batch-size:200}") int maxBatchSize
+    ) {
+        this.processor = processor;
+        this.retries = retries;
+        this.instance = instance;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.capacity = new Semaphore(queueCapacity);
+
+        this.handedOff = Counter.builder("outbox.handoff.events")
+                .description("Number of outbox events handed to the publisher after commit")
+                .register(registry);
+        this.fallbacks = Counter.builder("outbox.handoff.fallbacks")
+                .description("Number of outbox events left to the poller because the hand-off queue was full")
+                .register(registry);
+        Gauge.builder("outbox.handoff.queue.depth", queue, BlockingQueue::size)
+                .description("Number of committed outbox events waiting for the hand-off publisher")
+                .register(registry);
+    }
+
+    /**
+     * Reserves queue room for events about to be written in the current transaction.
+     *
+     * <p>
+     * On success the events are marked {@code PROCESSING}, claimed by this
+     * instance, and must be passed to {@link #afterCommit(List)} before they are
+     * saved, so that a failing insert still returns the reservation on rollback. Without a reservation
+     * the events keep their state and are published by the poller.
+     * </p>
+     *
+     * @return {@code true} if the events will be handed off after commit
+     */
+    public boolean reserve(List<OutboxEvent> events) {
+        if (!enabled || !running || !instance.isAlive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        if (!capacity.tryAcquire(events.size())) {
+            fallbacks.increment(events.size());
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        events.forEach(e -> {
+            e.setStatus(Constants.OutboxStatus.PROCESSING);
+            e.setProcessingStartedAt(now);
+            e.setClaimedBy(instance.instanceId());
+        });
+        return true;
+    }
+
+    private void release(int count) {
+        capacity.release(count);
+    }
+
+    /**
+     * Queues the reserved events when the current transaction commits and returns
+     * the reservation if it rolls back.
+     */
+    public void afterCommit(List<OutboxEvent> events) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                queue.addAll(events);
+                handedOff.increment(events.size());
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(events.size());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("outbox-handoff")
+                .start(this::publishLoop);
+        log.info(
+                "Outbox hand-off started. queueCapacity={} maxBatchSize={}",
+                capacity.availablePermits(),
+                maxBatchSize
+        );
+    }
+
+    /**
+     * Stops taking new reservations and publishes what is already queued.
+     */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        log.info(
+                "Outbox hand-off stopped. unpublished={}",
+                queue.size()
+        );
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void publishLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                OutboxEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<OutboxEvent> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                release(batch.size());
+                publish(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    void publish(List<OutboxEvent> batch) {
+        CompletableFuture<?>[] confirmations = batch.stream()
+                .sorted(OutboxPartitionedDispatcher.SEQUENCE_ORDER)
+                .map(processor::publishConfirmed)
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(confirmations).join();
+
+        List<OutboxEvent> toPersist = retries.holdRetries(batch);
+        if (toPersist.isEmpty()) {
+            return;
+        }
+        try {
+            processor.finalizeBatch(toPersist);
+        } catch (Exception ex) {
+            log.error(
+                    "Failed to finalize handed-off outbox batch. Events are left for the watchdog. size={}",
+                    batch.size(),
+                    ex
+            );
+        }
+    }
+}
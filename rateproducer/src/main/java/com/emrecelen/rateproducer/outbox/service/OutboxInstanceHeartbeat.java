@@ -0,0 +1,189 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import com.emrecelen.rateproducer.repository.OutboxInstanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Identity and liveness of this producer instance.
+ *
+ * <p>
+ * Every instance records a heartbeat in {@code outbox_instance} every
+ * {@code heartbeat-ms}. Outbox events are claimed with the instance id
+ * ({@code claimed_by}). Once an instance has not heartbeated for
+ * {@code ttl-ms}, it is considered dead:
+ * <ul>
+ *     <li>{@link OutboxWatchdog} returns its {@code PROCESSING} events to {@code RETRY}</li>
+ *     <li>{@link OutboxShardManager} no longer counts it when sharing out shards</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * If its own heartbeat fails for longer than {@code ttl-ms}, the instance stops
+ * claiming ({@link #isAlive()}), since the other instances may already reclaim
+ * what it claims. The first heartbeat returns the {@code PROCESSING} events this
+ * id claimed before the start, so an instance restarted with a fixed id does not
+ * leave its previous run's events behind.
+ * </p>
+ *
+ * <p>
+ * The heartbeat runs on its own thread rather than on the shared
+ * {@code @Scheduled} thread, so a poller blocked on publisher confirms or a long
+ * archive run never delays it past the TTL and gets a live instance's events
+ * reclaimed by its peers.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.instance.id            (default: host:pid)
+ * outbox.instance.heartbeat-ms  (default: 2000)
+ * outbox.instance.ttl-ms        (default: 6000)
+ * </pre>
+ * </p>
+ */
+@Component
+public class OutboxInstanceHeartbeat implements SmartLifecycle {
+
+    private final OutboxInstanceRepository repository;
+    private final OutboxEventRepository eventRepository;
+    private final TransactionTemplate beatTransaction;
+    private final String instanceId;
+    private final long heartbeatMs;
+    private final long ttlMs;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    private volatile boolean registered;
+    private volatile long aliveUntil;
+    private ScheduledExecutorService beater;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxInstanceHeartbeat(
+            OutboxInstanceRepository repository,
+            OutboxEventRepository eventRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${outbox.instance.id:}") String instanceId,
+            @Value("${outbox.instance.heartbeat-ms:2000}") long heartbeatMs,
+            @Value("${outbox.instance.ttl-ms:6000}") long ttlMs
+    ) {
+        this.repository = repository;
+        this.eventRepository = eventRepository;
+        this.beatTransaction = new TransactionTemplate(transactionManager);
+        this.instanceId = instanceId.isBlank() ? defaultInstanceId() : instanceId;
+        this.heartbeatMs = heartbeatMs;
+        this.ttlMs = ttlMs;
+    }
+
+    public String instanceId() {
+        return instanceId;
+    }
+
+    /**
+     * @return time without a heartbeat after which an instance is considered dead
+     */
+    public long ttlMs() {
+        return ttlMs;
+    }
+
+    /**
+     * @return {@code true} if this instance has heartbeated within the TTL
+     */
+    public boolean isAlive() {
+        return registered && System.nanoTime() - aliveUntil < 0;
+    }
+
+    public long countLiveInstances() {
+        return repository.countLiveInstances(ttlMs);
+    }
+
+    @Override
+    public void start() {
+        beater = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("outbox-instance-heartbeat").daemon().factory()
+        );
+        beater.scheduleWithFixedDelay(this::beat, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        beater.shutdownNow();
+        beater = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return beater != null;
+    }
+
+    /**
+     * Starts before and stops after everything that claims or finalizes events.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    /**
+     * Records one heartbeat. A failed heartbeat is logged and retried on the next
+     * beat; {@link #isAlive()} turns {@code false} once they fail for the TTL.
+     */
+    void beat() {
+        try {
+            beatTransaction.executeWithoutResult(status -> heartbeat());
+        } catch (Exception ex) {
+            log.error(
+                    "Outbox instance heartbeat failed. instance={}",
+                    instanceId,
+                    ex
+            );
+        }
+    }
+
+    private void heartbeat() {
+        long beatAt = System.nanoTime();
+        repository.heartbeat(instanceId);
+        if (!registered) {
+            int leftovers = eventRepository.reclaimFromPreviousRun(instanceId, startedAt);
+            if (leftovers > 0) {
+                log.warn(
+                        "Reclaimed {} outbox events left in PROCESSING by a previous run. instance={}",
+                        leftovers,
+                        instanceId
+                );
+            }
+            log.info(
+                    "Outbox instance registered. instance={} ttlMs={}",
+                    instanceId,
+                    ttlMs
+            );
+        }
+        repository.removeExpiredInstances(ttlMs * 10);
+        aliveUntil = beatAt + TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        registered = true;
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException ex) {
+            host = "unknown";
+        }
+        return host + ":" + ManagementFactory.getRuntimeMXBean().getPid();
+    }
+}
@@ -0,0 +1,172 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Wakes the outbox poller up as soon as new outbox events are committed.
+ *
+ * <p>
+ * An {@code AFTER INSERT} statement trigger on {@code outbox_event} calls
+ * {@code pg_notify('outbox_event', '')} when the statement inserted claimable
+ * ({@code PENDING}/{@code RETRY}) rows, so rows handed off in-process
+ * ({@link OutboxHandoff}) do not wake the poller. Postgres delivers the
+ * notification when the inserting transaction commits, so the poller never
+ * wakes up for rows it cannot see yet. This listener keeps a dedicated connection (outside the pool)
+ * subscribed with {@code LISTEN outbox_event} and calls
+ * {@link OutboxPoller#drain()} for every notification it receives.
+ * </p>
+ *
+ * <p>
+ * Waiting for notifications does not run any query, so an idle instance only
+ * produces the slow safety-net poll. After connecting, and after every
+ * reconnect, the poller is drained once to pick up events inserted while
+ * nothing was listening.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.wakeup.enabled             (default: false)
+ * outbox.wakeup.reconnect-delay-ms  (default: 1000)
+ * </pre>
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.wakeup.enabled", havingValue = "true")
+public class OutboxNotificationListener implements SmartLifecycle {
+
+    static final String CHANNEL = "outbox_event";
+    private static final int RECEIVE_TIMEOUT_MS = 500;
+
+    private final OutboxPoller poller;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final long reconnectDelayMs;
+
+    private final Counter wakeups;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxNotificationListener(
+            OutboxPoller poller,
+            MeterRegistry registry,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${outbox.wakeup.reconnect-delay-ms:1000}") long reconnectDelayMs
+    ) {
+        this.poller = poller;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.reconnectDelayMs = reconnectDelayMs;
+
+        this.wakeups = Counter.builder("outbox.wakeup.notifications")
+                .description("Number of outbox insert notifications that woke up the poller")
+                .register(registry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        listenerThread = Thread.ofPlatform()
+                .name("outbox-listener")
+                .daemon(true)
+                .start(this::listenLoop);
+        log.info(
+                "Outbox notification listener started. channel={}",
+                CHANNEL
+        );
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            try {
+                listenerThread.join(RECEIVE_TIMEOUT_MS * 4L);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            listenerThread = null;
+        }
+        log.info("Outbox notification listener stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info(
+                        "Listening for outbox notifications. channel={}",
+                        CHANNEL
+                );
+
+                drain();
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(RECEIVE_TIMEOUT_MS);
+                    if (notifications != null && notifications.length > 0) {
+                        wakeups.increment(notifications.length);
+                        drain();
+                    }
+                }
+            } catch (SQLException ex) {
+                if (!running) {
+                    return;
+                }
+                log.warn(
+                        "Outbox notification listener lost its connection. Reconnecting in {} ms",
+                        reconnectDelayMs,
+                        ex
+                );
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            poller.drain();
+        } catch (Exception ex) {
+            log.error(
+                    "Outbox drain after notification failed. The safety poll will retry.",
+                    ex
+            );
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(reconnectDelayMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
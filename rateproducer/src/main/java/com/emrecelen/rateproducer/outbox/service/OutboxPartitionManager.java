@@ -0,0 +1,151 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Maintains the daily range partitions of {@code outbox_event}.
+ *
+ * <p>
+ * {@code outbox_event} is partitioned by {@code created_at}, one partition per
+ * day. On every run this component:
+ * <ul>
+ *     <li>pre-creates the partitions for today and the next
+ *     {@code precreate-days} days, so inserts never land in the default
+ *     partition; rows that landed there anyway (e.g. while maintenance was
+ *     down) are moved into the partition of their day, which is created for
+ *     them</li>
+ *     <li>drops, or only detaches, partitions that ended more than
+ *     {@code retention-days} days ago and contain nothing but finished
+ *     ({@code SENT}/{@code FAILED}/{@code SUPERSEDED}) events; a partition that
+ *     still holds work is kept until a later run</li>
+ *     <li>forgets the event keys claimed before the same cutoff
+ *     ({@code outbox_event_key}), so duplicates are detected within the
+ *     retention window only</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Removing a whole partition replaces row-by-row deletes, so the table and its
+ * indexes only ever hold the retention window and expired rows leave without
+ * any VACUUM work. Detached partitions are left as plain tables for archiving.
+ * Each step runs in its own transaction, so a failing pre-create does not
+ * stop expiry.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.partition.precreate-days     (default: 3)
+ * outbox.partition.retention-days     (default: 7)
+ * outbox.partition.detach-only        (default: false)
+ * outbox.partition.maintenance-delay-ms (default: 3600000)
+ * </pre>
+ * </p>
+ */
+@Component
+public class OutboxPartitionManager {
+
+    private final OutboxEventRepository repository;
+    private final TransactionTemplate stepTransaction;
+    private final int precreateDays;
+    private final int retentionDays;
+    private final boolean detachOnly;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxPartitionManager(
+            OutboxEventRepository repository,
+            PlatformTransactionManager transactionManager,
+            @Value("${outbox.partition.precreate-days:3}") int precreateDays,
+            @Value("${outbox.partition.retention-days:7}") int retentionDays,
+            @Value("${outbox.partition.detach-only:false}") boolean detachOnly
+    ) {
+        if (retentionDays < 1) {
+            throw new IllegalArgumentException("outbox.partition.retention-days must be at least 1");
+        }
+        this.repository = repository;
+        this.stepTransaction = new TransactionTemplate(transactionManager);
+        this.precreateDays = precreateDays;
+        this.retentionDays = retentionDays;
+        this.detachOnly = detachOnly;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.partition.maintenance-delay-ms:3600000}")
+    public void maintain() {
+        try {
+            createPartitions();
+        } catch (Exception ex) {
+            log.error(
+                    "Failed to create outbox partitions. precreateDays={}",
+                    precreateDays,
+                    ex
+            );
+        }
+        try {
+            expirePartitions();
+        } catch (Exception ex) {
+            log.error(
+                    "Failed to expire outbox partitions. retentionDays={}",
+                    retentionDays,
+                    ex
+            );
+        }
+        try {
+            pruneEventKeys();
+        } catch (Exception ex) {
+            log.error(
+                    "Failed to prune outbox event keys. retentionDays={}",
+                    retentionDays,
+                    ex
+            );
+        }
+    }
+
+    private void createPartitions() {
+        Integer created = stepTransaction.execute(status -> repository.createPartitions(precreateDays));
+        if (created != null && created > 0) {
+            log.info(
+                    "Created {} outbox partitions. precreateDays={}",
+                    created,
+                    precreateDays
+            );
+        }
+    }
+
+    private void expirePartitions() {
+        List<String> expired = stepTransaction.execute(status -> repository.expirePartitions(retentionDays, detachOnly));
+        if (expired != null && !expired.isEmpty()) {
+            log.info(
+                    "{} expired outbox partitions. retentionDays={} partitions={}",
+                    detachOnly ? "Detached" : "Dropped",
+                    retentionDays,
+                    expired
+            );
+        } else {
+            log.debug("No expired outbox partitions to remove");
+        }
+    }
+
+    private void pruneEventKeys() {
+        LocalDateTime cutoff = LocalDate.now().minusDays(retentionDays).atStartOfDay();
+        Integer pruned = stepTransaction.execute(status -> repository.pruneEventKeys(cutoff));
+        if (pruned != null && pruned > 0) {
+            log.info(
+                    "Pruned {} outbox event keys. cutoff={}",
+                    pruned,
+                    cutoff
+            );
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Dispatches outbox events to a fixed set of ordered lanes keyed by aggregate.
+ *
+ * <p>
+ * Every event is routed to a lane by the hash of its aggregate key (the currency
+ * pair for rate events). Each lane runs on a single thread, so events of the same
+ * pair are handed to the task one after another in ascending
+ * {@code aggregate_seq} order, while different lanes run in parallel. Events
+ * without an aggregate key are spread by their event key.
+ * </p>
+ *
+ * <p>
+ * Ordering is guaranteed per instance and per attempt: an event that fails and
+ * is retried later can still be overtaken by a newer event of the same pair.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.publish.partitions (default: 8)
+ * </pre>
+ * </p>
+ */
+@Component
+public class OutboxPartitionedDispatcher implements AutoCloseable {
+
+    /**
+     * Order in which events of one aggregate are published.
+     */
+    public static final Comparator<OutboxEvent> SEQUENCE_ORDER = Comparator.comparing(
+            OutboxEvent::getAggregateSeq,
+            Comparator.nullsFirst(Comparator.naturalOrder())
+    );
+
+    private final ExecutorService[] lanes;
+    private final AtomicInteger[] depths;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxPartitionedDispatcher(
+            MeterRegistry registry,
+            @Value("${outbox.publish.partitions:8}") int partitions
+    ) {
+        this.lanes = new ExecutorService[partitions];
+        this.depths = new AtomicInteger[partitions];
+        for (int i = 0; i < partitions; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(
+                    Thread.ofVirtual().name("outbox-lane-" + i).factory()
+            );
+            depths[i] = new AtomicInteger();
+            Gauge.builder("outbox.dispatch.partition.depth", depths[i], AtomicInteger::get)
+                    .description("Number of outbox events queued in a dispatch partition")
+                    .tag("partition", String.valueOf(i))
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Runs the task for every event, in sequence order per lane, and blocks until
+     * all events have been handled.
+     *
+     * <p>
+     * A failing task is logged and does not stop the remaining events of the lane.
+     * </p>
+     */
+    public void dispatch(List<OutboxEvent> events, Consumer<OutboxEvent> task) {
+        List<List<OutboxEvent>> byLane = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            byLane.add(new ArrayList<>());
+        }
+        for (OutboxEvent event : events) {
+            byLane.get(laneOf(event)).add(event);
+        }
+
+        List<CompletableFuture<Void>> running = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            List<OutboxEvent> laneEvents = byLane.get(i);
+            if (laneEvents.isEmpty()) {
+                continue;
+            }
+            laneEvents.sort(SEQUENCE_ORDER);
+            AtomicInteger depth = depths[i];
+            depth.addAndGet(laneEvents.size());
+            running.add(CompletableFuture.runAsync(() -> {
+                for (OutboxEvent event : laneEvents) {
+                    try {
+                        task.accept(event);
+                    } catch (Exception ex) {
+                        log.error(
+                                "Outbox dispatch task failed. id={}, aggregateKey={}",
+                                event.getId(),
+                                event.getAggregateKey(),
+                                ex
+                        );
+                    } finally {
+                        depth.decrementAndGet();
+                    }
+                }
+            }, lanes[i]));
+        }
+        CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+    }
+
+    int laneOf(OutboxEvent event) {
+        String key = event.getAggregateKey() != null
+                ? event.getAggregateKey()
+                : event.getEventKey();
+        return Math.floorMod(key.hashCode(), lanes.length);
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService lane : lanes) {
+            lane.close();
+        }
+    }
+}
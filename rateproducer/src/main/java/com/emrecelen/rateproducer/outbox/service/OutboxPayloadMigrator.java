@@ -0,0 +1,93 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import com.emrecelen.rateproducer.common.JsonUtil;
+import com.emrecelen.rateproducer.domain.model.RateEvent;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Converts rate events stored as JSON to the binary layout of
+ * {@link OutboxPayloadCodec}.
+ *
+ * <p>
+ * Switching {@code outbox.payload.format} to {@code BINARY} only affects new
+ * events. This migrator converts the rows written before, oldest first, in
+ * batches of {@code batch-size} every {@code delay-ms}, each batch in its own
+ * transaction. Rows are locked with {@code FOR UPDATE SKIP LOCKED}, so the
+ * poller is never blocked. Both formats can be published at any time, so the
+ * migration can be stopped and resumed freely.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.payload.migrate.enabled     (default: false)
+ * outbox.payload.migrate.batch-size  (default: 1000)
+ * outbox.payload.migrate.delay-ms    (default: 1000)
+ * </pre>
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.payload.migrate.enabled", havingValue = "true")
+public class OutboxPayloadMigrator {
+
+    private final OutboxEventRepository repository;
+    private final int batchSize;
+    private final Counter migrated;
+
+    private volatile boolean caughtUp;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxPayloadMigrator(
+            OutboxEventRepository repository,
+            MeterRegistry registry,
+            @Value("${outbox.payload.migrate.batch-size:1000}") int batchSize
+    ) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.migrated = Counter.builder("outbox.payload.migrated")
+                .description("Number of outbox events converted from JSON to the binary payload layout")
+                .register(registry);
+    }
+
+    /**
+     * Converts the next batch.
+     *
+     * @return number of converted events, {@code 0} once no JSON row is left
+     */
+    @Transactional
+    @Scheduled(fixedDelayString = "${outbox.payload.migrate.delay-ms:1000}")
+    public int migrateBatch() {
+        List<OutboxEvent> events = repository.lockJsonPayloads(batchSize);
+        for (OutboxEvent e : events) {
+            RateEvent event = JsonUtil.fromJson(e.getPayload(), RateEvent.class);
+            e.convertPayload(OutboxPayloadCodec.BINARY_SCHEMA_VERSION, OutboxPayloadCodec.encode(event));
+        }
+        repository.saveAll(events);
+        migrated.increment(events.size());
+
+        if (events.isEmpty() && !caughtUp) {
+            log.info("No outbox events stored as JSON are left to convert");
+        } else if (!events.isEmpty()) {
+            log.debug(
+                    "Converted outbox events to the binary payload layout. size={}",
+                    events.size()
+            );
+        }
+        caughtUp = events.isEmpty();
+        return events.size();
+    }
+}
@@ -3,10 +3,13 @@ package com.emrecelen.rateproducer.outbox.service;
 import com.emrecelen.rateproducer.model.OutboxEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Periodically polls the outbox table and dispatches events for publishing.
@@ -27,9 +30,28 @@ import java.util.List;
  * </p>
  *
  * <p>
+ * In wakeup mode ({@code outbox.wakeup.enabled}) the poller is driven by
+ * {@link OutboxNotificationListener}: every committed outbox insert triggers
+ * {@link #drain()}, which claims and publishes batches until nothing is left.
+ * The timed poll then only runs every {@code outbox.wakeup.safety-poll-delay-ms}
+ * as a safety net (e.g. for retries that became due) and drains as well.
+ * </p>
+ *
+ * <p>
+ * The batch size comes from {@link OutboxClaimController}. With adaptive claiming
+ * enabled, a timed poll keeps claiming back-to-back while batches come back full,
+ * up to {@code outbox.poll.max-claims} claims, and is skipped while the
+ * controller backs off after empty claims. The cap hands the scheduler thread
+ * back between polls even when the backlog never runs dry.
+ * </p>
+ *
+ * <p>
  * Poll interval is configurable via:
  * <pre>
- * outbox.poll.delay-ms (default: 200ms)
+ * outbox.poll.delay-ms                  (default: 200ms)
+ * outbox.poll.max-claims                (default: 10)
+ * outbox.wakeup.enabled                 (default: false)
+ * outbox.wakeup.safety-poll-delay-ms    (default: 1000ms)
  * </pre>
  * </p>
  */
@@ -38,29 +60,92 @@ public class OutboxPoller {
 
     private final OutboxClaimService claimService;
     private final OutboxPublishCoordinator coordinator;
+    private final OutboxClaimController claimController;
+    private final boolean wakeupEnabled;
+    private final int maxClaims;
+
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
 
     private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
 
     public OutboxPoller(
             OutboxClaimService claimService,
-            OutboxPublishCoordinator coordinator
+            OutboxPublishCoordinator coordinator,
+            OutboxClaimController claimController,
+            @Value("${outbox.wakeup.enabled:false}") boolean wakeupEnabled,
+            @Value("${outbox.poll.max-claims:10}") int maxClaims
     ) {
         this.claimService = claimService;
         this.coordinator = coordinator;
+        this.claimController = claimController;
+        this.wakeupEnabled = wakeupEnabled;
+        this.maxClaims = maxClaims;
     }
 
-    @Scheduled(fixedDelayString = "${outbox.poll.delay-ms:200}")
+    @Scheduled(fixedDelayString = "#{${outbox.wakeup.enabled:false} "
+            + "? ${outbox.wakeup.safety-poll-delay-ms:1000} "
+            + ": ${outbox.poll.delay-ms:200}}")
     public void poll() {
-        List<OutboxEvent> claimed = claimService.claimBatch();
+        if (wakeupEnabled) {
+            drain();
+            return;
+        }
+        if (!claimController.isPollDue()) {
+            log.debug("Outbox poll skipped while backing off.");
+            return;
+        }
+        for (int claims = 1; pollOnce() > 0 && claimController.shouldClaimAgain(); claims++) {
+            if (claims >= maxClaims) {
+                log.debug(
+                        "Outbox poll reached its claim limit. Continuing on the next poll. maxClaims={}",
+                        maxClaims
+                );
+                return;
+            }
+            log.debug("Outbox poll claimed a full batch. Claiming again.");
+        }
+    }
+
+    /**
+     * Claims and publishes batches until no more events can be claimed.
+     *
+     * <p>
+     * Safe to call from several threads: only one caller drains at a time, and a
+     * request arriving while a drain is running makes that drain run once more
+     * instead of being lost.
+     * </p>
+     */
+    public void drain() {
+        drainRequested.set(true);
+        while (drainRequested.get() && drainLock.tryLock()) {
+            try {
+                drainRequested.set(false);
+                while (pollOnce() > 0) {
+                    log.debug("Outbox drain continuing with next batch.");
+                }
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    private int pollOnce() {
+        int limit = claimController.batchSize();
+        List<OutboxEvent> claimed = claimService.claimBatch(limit);
         if (claimed.isEmpty()) {
+            claimController.record(limit, 0, 0);
             log.debug("Outbox poll executed. No events claimed.");
-            return;
+            return 0;
         }
 
         log.info(
                 "Outbox poll claimed {} events. Dispatching for publish.",
                 claimed.size()
         );
+        long startedAt = System.nanoTime();
         coordinator.publishAsync(claimed);
+        claimController.record(limit, claimed.size(), System.nanoTime() - startedAt);
+        return claimed.size();
     }
 }
@@ -3,9 +3,11 @@ package com.emrecelen.rateproducer.outbox.service;
 import com.emrecelen.rateproducer.model.OutboxEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -27,6 +29,45 @@ import java.util.concurrent.Executors;
  * </p>
  *
  * <p>
+ * In batch-finalize mode the virtual threads only publish, and once the whole
+ * batch has been attempted the outcomes are persisted together through
+ * {@link OutboxEventProcessor#finalizeBatch(List)}. A poll then uses a constant
+ * number of transactions instead of one per event. If finalization fails, the
+ * events stay {@code PROCESSING} and are reclaimed by {@link OutboxWatchdog}.
+ * </p>
+ *
+ * <p>
+ * In confirms mode the whole batch is sent back-to-back from the calling thread
+ * through {@link OutboxEventProcessor#publishConfirmed(OutboxEvent)} without
+ * waiting per event. Broker acks and nacks arrive asynchronously, and once every
+ * event is confirmed, rejected or timed out the batch is finalized as above.
+ * Only confirmed events are marked {@code SENT}.
+ * </p>
+ *
+ * <p>
+ * Before a batch is finalized its {@code RETRY} outcomes are offered to
+ * {@link OutboxRetryScheduler}; the ones it holds are retried in memory and not
+ * written back. Per-event processing does the same with a batch of one, right
+ * after the event has been published.
+ * </p>
+ *
+ * <p>
+ * In partitioned mode events are not given a thread each but are handed to
+ * {@link OutboxPartitionedDispatcher}, which publishes the events of one pair in
+ * sequence order while different pairs are published in parallel. Confirms mode
+ * sends in sequence order as well.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.publish.batch-finalize (default: false)
+ * outbox.publish.confirms       (default: false)
+ * outbox.publish.partitioned    (default: false)
+ * </pre>
+ * </p>
+ *
+ * <p>
  * This class is stateless and safe to be used concurrently
  * by multiple scheduler invocations and application instances.
  * </p>
@@ -34,11 +75,28 @@ import java.util.concurrent.Executors;
 @Service
 public class OutboxPublishCoordinator {
     private final OutboxEventProcessor processor;
+    private final OutboxPartitionedDispatcher dispatcher;
+    private final OutboxRetryScheduler retries;
+    private final boolean batchFinalize;
+    private final boolean confirms;
+    private final boolean partitioned;
 
     private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
 
-    public OutboxPublishCoordinator(OutboxEventProcessor processor) {
+    public OutboxPublishCoordinator(
+            OutboxEventProcessor processor,
+            OutboxPartitionedDispatcher dispatcher,
+            OutboxRetryScheduler retries,
+            @Value("${outbox.publish.batch-finalize:false}") boolean batchFinalize,
+            @Value("${outbox.publish.confirms:false}") boolean confirms,
+            @Value("${outbox.publish.partitioned:false}") boolean partitioned
+    ) {
         this.processor = processor;
+        this.dispatcher = dispatcher;
+        this.retries = retries;
+        this.batchFinalize = batchFinalize;
+        this.confirms = confirms;
+        this.partitioned = partitioned;
     }
 
     public void publishAsync(List<OutboxEvent> events) {
@@ -49,8 +107,67 @@ public class OutboxPublishCoordinator {
 
         log.info("Dispatching {} outbox events for async publishing", events.size());
 
+        if (confirms) {
+            publishConfirmedAndFinalize(events);
+            return;
+        }
+        if (partitioned) {
+            publishPartitioned(events);
+            return;
+        }
+        if (batchFinalize) {
+            publishAndFinalize(events);
+            return;
+        }
+
         try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            events.forEach(e -> executor.submit(() -> processor.process(e)));
+            events.forEach(e -> executor.submit(() -> process(e)));
+        }
+    }
+
+    private void process(OutboxEvent e) {
+        processor.publish(e);
+        finalizeBatch(List.of(e));
+    }
+
+    private void publishConfirmedAndFinalize(List<OutboxEvent> events) {
+        CompletableFuture<?>[] confirmations = events.stream()
+                .sorted(OutboxPartitionedDispatcher.SEQUENCE_ORDER)
+                .map(processor::publishConfirmed)
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(confirmations).join();
+        finalizeBatch(events);
+    }
+
+    private void publishPartitioned(List<OutboxEvent> events) {
+        if (!batchFinalize) {
+            dispatcher.dispatch(events, this::process);
+            return;
+        }
+        dispatcher.dispatch(events, processor::publish);
+        finalizeBatch(events);
+    }
+
+    private void publishAndFinalize(List<OutboxEvent> events) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            events.forEach(e -> executor.submit(() -> processor.publish(e)));
+        }
+        finalizeBatch(events);
+    }
+
+    private void finalizeBatch(List<OutboxEvent> events) {
+        List<OutboxEvent> toPersist = retries.holdRetries(events);
+        if (toPersist.isEmpty()) {
+            return;
+        }
+        try {
+            processor.finalizeBatch(toPersist);
+        } catch (Exception ex) {
+            log.error(
+                    "Failed to finalize outbox batch. Events are left for the watchdog. size={}",
+                    events.size(),
+                    ex
+            );
         }
     }
 }
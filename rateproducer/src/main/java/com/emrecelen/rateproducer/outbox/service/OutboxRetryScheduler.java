@@ -0,0 +1,328 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import com.emrecelen.rateproducer.common.Constants.OutboxStatus;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retries failed publishes in memory instead of writing them back to the table.
+ *
+ * <p>
+ * When enabled, {@code RETRY} outcomes of a published batch are held on a hashed
+ * timing wheel until their {@code available_at} (exponential backoff with full
+ * jitter, see {@link OutboxEventProcessor}) and then published again with
+ * publisher confirms. Only the final outcome is persisted, so a transient broker
+ * failure costs no {@code RETRY} round trip through the table and no re-claim.
+ * Held events stay {@code PROCESSING}, claimed by this instance, and are
+ * reclaimed by {@link OutboxWatchdog} if the instance dies.
+ * </p>
+ *
+ * <p>
+ * The wheel has {@code wheel-size} buckets of {@code tick-ms} each. Scheduling
+ * is a queue offer; a single thread moves new entries into their bucket and
+ * expires one bucket per tick, so both cost O(1) regardless of how many
+ * retries are held. Due events are published on a virtual thread, off the wheel.
+ * </p>
+ *
+ * <p>
+ * A {@code RETRY} outcome is persisted as before, to be claimed again once its
+ * {@code available_at} has passed, when:
+ * <ul>
+ *     <li>the wheel already holds {@code capacity} events</li>
+ *     <li>the retry would be due more than {@code max-hold-ms} after the event was
+ *     claimed, which must stay well below {@code outbox.watchdog.processing-ttl-ms}</li>
+ *     <li>the scheduler is stopped or this instance's heartbeat is overdue</li>
+ * </ul>
+ * On shutdown, events still on the wheel are persisted the same way.
+ * </p>
+ *
+ * <p>
+ * Covers every publish path: batch-finalize, confirms and hand-off offer the
+ * outcomes of a whole batch, per-event processing offers each event's outcome
+ * as soon as it has been published.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.retry.in-memory.enabled  (default: false)
+ * outbox.retry.tick-ms            (default: 50)
+ * outbox.retry.wheel-size         (default: 512)
+ * outbox.retry.capacity           (default: 10000)
+ * outbox.retry.max-hold-ms        (default: 10000)
+ * </pre>
+ * </p>
+ */
+@Component
+public class OutboxRetryScheduler implements SmartLifecycle {
+
+    private record Entry(OutboxEvent event, long deadlineNanos) {
+    }
+
+    private record Slot(OutboxEvent event, long deadlineTick) {
+    }
+
+    private final OutboxEventProcessor processor;
+    private final OutboxInstanceHeartbeat instance;
+    private final boolean enabled;
+    private final long tickNanos;
+    private final int capacity;
+    private final Duration maxHold;
+
+    private final Queue<Slot>[] wheel;
+    private final int mask;
+    private final Queue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger held = new AtomicInteger();
+
+    private final Counter scheduled;
+    private final Counter overflows;
+
+    private volatile boolean running;
+    private Thread ticker;
+    private ExecutorService republisher;
+    private long startNanos;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    @SuppressWarnings("unchecked")
+    public OutboxRetryScheduler(
+            OutboxEventProcessor processor,
+            OutboxInstanceHeartbeat instance,
+            MeterRegistry registry,
+            @Value("${outbox.retry.in-memory.enabled:false}") boolean enabled,
+            @Value("${outbox.retry.tick-ms:50}") long tickMs,
+            @Value("${outbox.retry.wheel-size:512}") int wheelSize,
+            @Value("${outbox.retry.capacity:10000}") int capacity,
+            @Value("${outbox.retry.max-hold-ms:10000}") long maxHoldMs
+    ) {
+        this.processor = processor;
+        this.instance = instance;
+        this.enabled = enabled;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.capacity = capacity;
+        this.maxHold = Duration.ofMillis(maxHoldMs);
+
+        int buckets = Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1;
+        this.wheel = new Queue[buckets];
+        for (int i = 0; i < buckets; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.mask = buckets - 1;
+
+        this.scheduled = Counter.builder("outbox.retry.scheduled")
+                .description("Number of failed outbox publishes scheduled for an in-memory retry")
+                .register(registry);
+        this.overflows = Counter.builder("outbox.retry.overflows")
+                .description("Number of failed outbox publishes written back as RETRY because the retry wheel was full")
+                .register(registry);
+        Gauge.builder("outbox.retry.held", this, OutboxRetryScheduler::held)
+                .description("Number of failed outbox publishes waiting on the retry wheel")
+                .register(registry);
+    }
+
+    /**
+     * Takes the {@code RETRY} outcomes of a published batch onto the wheel.
+     *
+     * @return events whose outcome must still be persisted: every event that is
+     * not a {@code RETRY} and every retry that is not held in memory
+     */
+    public List<OutboxEvent> holdRetries(List<OutboxEvent> events) {
+        if (!running || !instance.isAlive()) {
+            return events;
+        }
+        List<OutboxEvent> toPersist = new ArrayList<>(events.size());
+        LocalDateTime now = LocalDateTime.now();
+        long nowNanos = System.nanoTime();
+        for (OutboxEvent e : events) {
+            if (e.getStatus() != OutboxStatus.RETRY || !withinHold(e) || !reserve()) {
+                toPersist.add(e);
+                continue;
+            }
+            long delayNanos = Math.max(Duration.between(now, e.getAvailableAt()).toNanos(), 0L);
+            incoming.add(new Entry(e, nowNanos + delayNanos));
+            scheduled.increment();
+        }
+        return toPersist;
+    }
+
+    /**
+     * @return number of events currently held for a retry
+     */
+    public int held() {
+        return held.get();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        republisher = Executors.newVirtualThreadPerTaskExecutor();
+        startNanos = System.nanoTime();
+        running = true;
+        ticker = Thread.ofPlatform()
+                .name("outbox-retry-wheel")
+                .start(this::tickLoop);
+        log.info(
+                "Outbox retry scheduler started. tickMs={} wheelSize={} capacity={}",
+                TimeUnit.NANOSECONDS.toMillis(tickNanos),
+                wheel.length,
+                capacity
+        );
+    }
+
+    /**
+     * Stops the wheel, waits for the retries being published and persists the
+     * events still waiting as {@code RETRY}.
+     */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            ticker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        republisher.close();
+
+        List<OutboxEvent> waiting = new ArrayList<>(held.get());
+        for (Queue<Slot> bucket : wheel) {
+            bucket.forEach(slot -> waiting.add(slot.event()));
+            bucket.clear();
+        }
+        Entry entry;
+        while ((entry = incoming.poll()) != null) {
+            waiting.add(entry.event());
+        }
+        held.addAndGet(-waiting.size());
+        persist(waiting);
+        log.info(
+                "Outbox retry scheduler stopped. persisted={}",
+                waiting.size()
+        );
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the poller and the hand-off, which hand it their retries.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1024;
+    }
+
+    private boolean withinHold(OutboxEvent e) {
+        return e.getProcessingStartedAt() == null
+                || !e.getAvailableAt().isAfter(e.getProcessingStartedAt().plus(maxHold));
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = held.get();
+            if (current >= capacity) {
+                overflows.increment();
+                return false;
+            }
+        } while (!held.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void tickLoop() {
+        long tick = 0;
+        while (running) {
+            long sleepNanos = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            tick++;
+            transferIncoming(tick);
+            List<OutboxEvent> due = expire(tick);
+            if (!due.isEmpty()) {
+                held.addAndGet(-due.size());
+                republisher.execute(() -> republish(due));
+            }
+        }
+    }
+
+    private void transferIncoming(long tick) {
+        Entry entry;
+        while ((entry = incoming.poll()) != null) {
+            long deadlineTick = Math.max(
+                    Math.ceilDiv(entry.deadlineNanos() - startNanos, tickNanos),
+                    tick
+            );
+            wheel[(int) (deadlineTick & mask)].add(new Slot(entry.event(), deadlineTick));
+        }
+    }
+
+    private List<OutboxEvent> expire(long tick) {
+        List<OutboxEvent> due = new ArrayList<>();
+        Iterator<Slot> slots = wheel[(int) (tick & mask)].iterator();
+        while (slots.hasNext()) {
+            Slot slot = slots.next();
+            if (slot.deadlineTick() <= tick) {
+                due.add(slot.event());
+                slots.remove();
+            }
+        }
+        return due;
+    }
+
+    void republish(List<OutboxEvent> due) {
+        CompletableFuture<?>[] confirmations = due.stream()
+                .sorted(OutboxPartitionedDispatcher.SEQUENCE_ORDER)
+                .map(processor::publishConfirmed)
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(confirmations).join();
+        persist(holdRetries(due));
+    }
+
+    private void persist(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            processor.finalizeBatch(events);
+        } catch (Exception ex) {
+            log.error(
+                    "Failed to finalize retried outbox events. Events are left for the watchdog. size={}",
+                    events.size(),
+                    ex
+            );
+        }
+    }
+}
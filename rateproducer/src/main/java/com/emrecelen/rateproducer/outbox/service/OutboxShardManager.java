@@ -0,0 +1,185 @@
+package com.emrecelen.rateproducer.outbox.service;
+
+import com.emrecelen.rateproducer.repository.OutboxShardLeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assigns outbox shards to live producer instances through leases.
+ *
+ * <p>
+ * Every outbox event belongs to one of a fixed number of shards, derived by the
+ * database from its pair ({@code aggregate_key}, falling back to
+ * {@code event_key}). With sharding enabled, an instance claims only events of
+ * the shards it holds a lease on ({@link #ownedShards()}). Instances never lock
+ * each other's rows, and all events of one pair are published by one instance.
+ * </p>
+ *
+ * <p>
+ * On every heartbeat the instance:
+ * <ul>
+ *     <li>renews the leases it holds</li>
+ *     <li>computes its fair share, {@code ceil(shards / live instances)}, with
+ *     live instances as seen by {@link OutboxInstanceHeartbeat}</li>
+ *     <li>releases shards above its share, or takes over expired and released
+ *     shards up to its share</li>
+ * </ul>
+ * A released shard can only be taken over after {@code handover-grace-ms}, so
+ * the batch the previous owner already claimed is published before the new
+ * owner claims the next events of the same pairs. The shards of a dead
+ * instance are taken over once its leases expire after {@code lease-ttl-ms}.
+ * </p>
+ *
+ * <p>
+ * If heartbeats fail for longer than the lease TTL, the instance stops claiming
+ * until the next successful heartbeat, since its leases may already belong to
+ * another instance.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.shard.enabled             (default: false)
+ * outbox.shard.heartbeat-ms        (default: 2000)
+ * outbox.shard.lease-ttl-ms        (default: 10000)
+ * outbox.shard.handover-grace-ms   (default: 3000)
+ * </pre>
+ * </p>
+ */
+@Component
+public class OutboxShardManager {
+
+    private final OutboxShardLeaseRepository repository;
+    private final OutboxInstanceHeartbeat instance;
+    private final boolean enabled;
+    private final long leaseTtlMs;
+    private final long handoverGraceMs;
+
+    private volatile List<Short> owned = List.of();
+    private volatile long ownedValidUntil;
+    private int shardCount;
+
+    private final Counter rebalances;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public OutboxShardManager(
+            OutboxShardLeaseRepository repository,
+            OutboxInstanceHeartbeat instance,
+            MeterRegistry registry,
+            @Value("${outbox.shard.enabled:false}") boolean enabled,
+            @Value("${outbox.shard.lease-ttl-ms:10000}") long leaseTtlMs,
+            @Value("${outbox.shard.handover-grace-ms:3000}") long handoverGraceMs
+    ) {
+        this.repository = repository;
+        this.instance = instance;
+        this.enabled = enabled;
+        this.leaseTtlMs = leaseTtlMs;
+        this.handoverGraceMs = handoverGraceMs;
+
+        this.rebalances = Counter.builder("outbox.shard.rebalances")
+                .description("Number of heartbeats that acquired or released outbox shards")
+                .register(registry);
+        Gauge.builder("outbox.shard.owned", this, m -> m.ownedShards().size())
+                .description("Number of outbox shards this instance holds a lease on")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return shards this instance may claim events of, empty if its leases
+     * could not be renewed in time
+     */
+    public List<Short> ownedShards() {
+        if (System.nanoTime() - ownedValidUntil > 0) {
+            return List.of();
+        }
+        return owned;
+    }
+
+    @Transactional
+    @Scheduled(fixedDelayString = "${outbox.shard.heartbeat-ms:2000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        if (shardCount == 0) {
+            shardCount = (int) repository.count();
+        }
+
+        String instanceId = instance.instanceId();
+        List<Short> current = new ArrayList<>(repository.renew(instanceId, leaseTtlMs));
+        long live = Math.max(1, instance.countLiveInstances());
+        int fairShare = (int) ((shardCount + live - 1) / live);
+
+        if (current.size() > fairShare) {
+            current.sort(Comparator.naturalOrder());
+            List<Short> surplus = List.copyOf(current.subList(fairShare, current.size()));
+            repository.release(instanceId, surplus, handoverGraceMs);
+            current.removeAll(surplus);
+            rebalances.increment();
+            log.info(
+                    "Released outbox shards to rebalance. instance={} released={} owned={} liveInstances={}",
+                    instanceId,
+                    surplus,
+                    current.size(),
+                    live
+            );
+        } else if (current.size() < fairShare) {
+            List<Short> acquired = repository.acquire(instanceId, leaseTtlMs, fairShare - current.size());
+            if (!acquired.isEmpty()) {
+                current.addAll(acquired);
+                rebalances.increment();
+                log.info(
+                        "Acquired outbox shards. instance={} acquired={} owned={} liveInstances={}",
+                        instanceId,
+                        acquired,
+                        current.size(),
+                        live
+                );
+            }
+        }
+
+        current.sort(Comparator.naturalOrder());
+        owned = List.copyOf(current);
+        ownedValidUntil = startedAt + TimeUnit.MILLISECONDS.toNanos(leaseTtlMs);
+    }
+
+    /**
+     * Releases every shard on shutdown, so other instances take over after the
+     * handover grace instead of waiting for the leases to expire.
+     */
+    @Transactional
+    @EventListener(ContextClosedEvent.class)
+    public void leave() {
+        if (!enabled || owned.isEmpty()) {
+            return;
+        }
+        List<Short> released = owned;
+        owned = List.of();
+        repository.release(instance.instanceId(), released, handoverGraceMs);
+        log.info(
+                "Left outbox shard group. instance={} released={}",
+                instance.instanceId(),
+                released.size()
+        );
+    }
+}
@@ -5,6 +5,7 @@ import com.emrecelen.rateproducer.repository.OutboxEventRepository;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -21,42 +22,74 @@ import java.time.LocalDateTime;
  * </p>
  *
  * <p>
- * If an event stays in processing state longer than {@link #PROCESSING_TTL},
- * it is considered stuck and moved back to {@code RETRY} state so it can be
- * picked up again by the poller.
+ * Every event is claimed by one instance ({@code claimed_by}). When that
+ * instance has not heartbeated for {@code outbox.instance.ttl-ms} (see
+ * {@link OutboxInstanceHeartbeat}), it is considered dead and its events are
+ * moved back to {@code RETRY} on the next run, so a crashed instance delays its
+ * in-flight events by a few heartbeat intervals only.
+ * </p>
+ *
+ * <p>
+ * Events of a live instance are only reclaimed once they have been
+ * {@code PROCESSING} for longer than {@code processing-ttl-ms}, e.g. when the
+ * instance failed to persist the publish outcome.
  * </p>
  *
  * <p>
  * This mechanism guarantees at-least-once delivery and prevents silent
  * message loss in distributed environments.
  * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * outbox.watchdog.delay-ms            (default: 2000)
+ * outbox.watchdog.processing-ttl-ms   (default: 30000)
+ * </pre>
+ * </p>
  */
 @Component
 public class OutboxWatchdog {
 
-    private static final Duration PROCESSING_TTL = Duration.ofSeconds(30);
-
     private final OutboxEventRepository repository;
+    private final OutboxInstanceHeartbeat instance;
+    private final long processingTtlMs;
+
     private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
 
-    public OutboxWatchdog(OutboxEventRepository repository) {
+    public OutboxWatchdog(
+            OutboxEventRepository repository,
+            OutboxInstanceHeartbeat instance,
+            @Value("${outbox.watchdog.processing-ttl-ms:30000}") long processingTtlMs
+    ) {
         this.repository = repository;
+        this.instance = instance;
+        this.processingTtlMs = processingTtlMs;
     }
 
 
     @Transactional
-    @Scheduled(fixedDelayString = "${outbox.watchdog.delay-ms:10000}")
+    @Scheduled(fixedDelayString = "${outbox.watchdog.delay-ms:2000}")
     public void reclaim() {
-        LocalDateTime threshold = LocalDateTime.now().minus(PROCESSING_TTL);
+        int orphaned = repository.reclaimFromDeadInstances(instance.ttlMs());
+        if (orphaned > 0) {
+            log.warn(
+                    "Reclaimed {} outbox events of instances without a heartbeat for {} ms",
+                    orphaned,
+                    instance.ttlMs()
+            );
+        }
+
+        LocalDateTime threshold = LocalDateTime.now().minus(Duration.ofMillis(processingTtlMs));
         int count = repository.reclaimStuck(Constants.OutboxStatus.RETRY, threshold);
 
         if (count > 0) {
             log.warn(
-                    "Reclaimed {} stuck outbox events older than {} seconds",
+                    "Reclaimed {} stuck outbox events older than {} ms",
                     count,
-                    PROCESSING_TTL.getSeconds()
+                    processingTtlMs
             );
-        } else {
+        } else if (orphaned == 0) {
             log.debug("No stuck outbox events found to reclaim");
         }
     }
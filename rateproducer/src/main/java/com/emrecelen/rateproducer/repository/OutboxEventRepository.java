@@ -2,52 +2,99 @@ package com.emrecelen.rateproducer.repository;
 
 import com.emrecelen.rateproducer.model.OutboxEvent;
 import com.emrecelen.rateproducer.common.Constants;
-import jakarta.persistence.LockModeType;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface OutboxEventRepository extends JpaRepository<OutboxEvent, UUID> {
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("""
-               SELECT event FROM OutboxEvent  event
-               WHERE event.status IN :statuses
-               AND event.availableAt <= :now
-               ORDER BY event.id
-            """)
-    List<OutboxEvent> lockNextBatch(
-            @Param("statuses") List<Constants.OutboxStatus> statuses,
+    /**
+     * Claims up to {@code limit} publishable events and marks them {@code PROCESSING}
+     * in one statement.
+     *
+     * <p>
+     * Candidates are {@code PENDING} and {@code RETRY} events whose
+     * {@code available_at} has passed, oldest first. Rows locked by a concurrent
+     * claim are skipped ({@code FOR UPDATE SKIP LOCKED}) instead of waited for,
+     * so instances claim disjoint batches in parallel.
+     * </p>
+     *
+     * <p>
+     * Claimed events are marked with the claiming instance ({@code claimed_by}),
+     * so the watchdog can return them once that instance stops heartbeating.
+     * </p>
+     */
+    @Query(value = """
+            UPDATE outbox_event o
+            SET status = 'PROCESSING',
+                processing_started_at = :now,
+                claimed_by = :instanceId
+            FROM (
+                SELECT id
+                FROM outbox_event
+                WHERE status IN ('PENDING', 'RETRY')
+                AND available_at <= :now
+                ORDER BY available_at
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            ) next
+            WHERE o.id = next.id
+            RETURNING o.*
+            """, nativeQuery = true)
+    List<OutboxEvent> claimNextBatch(
             @Param("now") LocalDateTime now,
-            Pageable pageable
+            @Param("limit") int limit,
+            @Param("instanceId") String instanceId
     );
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("""
-               SELECT event FROM OutboxEvent event
-               WHERE event.status = :status
-               ORDER BY event.id
-            """)
-    List<OutboxEvent> lockRetryBatch(
-            @Param("status") Constants.OutboxStatus status,
+    /**
+     * Same as {@link #claimNextBatch(LocalDateTime, int, String)}, restricted to the given
+     * shards (see {@link com.emrecelen.rateproducer.outbox.service.OutboxShardManager}).
+     */
+    @Query(value = """
+            UPDATE outbox_event o
+            SET status = 'PROCESSING',
+                processing_started_at = :now,
+                claimed_by = :instanceId
+            FROM (
+                SELECT id
+                FROM outbox_event
+                WHERE status IN ('PENDING', 'RETRY')
+                AND shard IN (:shards)
+                AND available_at <= :now
+                ORDER BY available_at
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            ) next
+            WHERE o.id = next.id
+            RETURNING o.*
+            """, nativeQuery = true)
+    List<OutboxEvent> claimNextBatchInShards(
             @Param("now") LocalDateTime now,
-            Pageable pageable
+            @Param("limit") int limit,
+            @Param("shards") Collection<Short> shards,
+            @Param("instanceId") String instanceId
     );
 
+    /**
+     * Returns events that have been {@code PROCESSING} since before
+     * {@code threshold} to {@code newStatus}, whichever instance claimed them.
+     */
     @Modifying
     @Query("""
             UPDATE OutboxEvent event
             SET event.status = :newStatus,
                 event.processingStartedAt = null,
+                event.claimedBy = null,
                 event.lastError = 'PROCESSING timeout'
             WHERE event.status = 'PROCESSING'
             AND event.processingStartedAt < :threshold
@@ -57,6 +104,437 @@ public interface OutboxEventRepository extends JpaRepository<OutboxEvent, UUID>
             @Param("threshold") LocalDateTime threshold
     );
 
-    @Query("SELECT count(e) FROM OutboxEvent e WHERE e.status = 'PENDING'")
-    long countPending();
+    /**
+     * Returns the {@code PROCESSING} events of every instance without a heartbeat
+     * in the last {@code ttlMs} to {@code RETRY}.
+     *
+     * <p>
+     * Both the claiming instances and their events are read from the partial
+     * {@code PROCESSING} index, so the cost depends on the number of in-flight
+     * events only.
+     * </p>
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE outbox_event
+            SET status = 'RETRY',
+                processing_started_at = NULL,
+                claimed_by = NULL,
+                last_error = 'Claiming instance stopped heartbeating'
+            WHERE status = 'PROCESSING'
+            AND claimed_by IN (
+                SELECT DISTINCT claimed_by
+                FROM outbox_event
+                WHERE status = 'PROCESSING'
+                AND claimed_by IS NOT NULL
+                EXCEPT
+                SELECT instance_id
+                FROM outbox_instance
+                WHERE heartbeat_at > now() - make_interval(secs => :ttlMs / 1000.0)
+            )
+            """, nativeQuery = true)
+    int reclaimFromDeadInstances(@Param("ttlMs") long ttlMs);
+
+    /**
+     * Returns {@code PROCESSING} events the instance claimed before {@code startedAt},
+     * i.e. in a previous run with the same instance id, to {@code RETRY}.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE outbox_event
+            SET status = 'RETRY',
+                processing_started_at = NULL,
+                claimed_by = NULL,
+                last_error = 'Claiming instance restarted'
+            WHERE status = 'PROCESSING'
+            AND claimed_by = :instanceId
+            AND processing_started_at < :startedAt
+            """, nativeQuery = true)
+    int reclaimFromPreviousRun(
+            @Param("instanceId") String instanceId,
+            @Param("startedAt") LocalDateTime startedAt
+    );
+
+    /**
+     * Marks the given events superseded in one statement.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE OutboxEvent event
+            SET event.status = :newStatus,
+                event.processingStartedAt = null
+            WHERE event.id IN :ids
+            """)
+    int markSuperseded(
+            @Param("ids") Collection<UUID> ids,
+            @Param("newStatus") Constants.OutboxStatus newStatus
+    );
+
+    /**
+     * Marks the given published events with the given status in one statement.
+     *
+     * <p>
+     * Only events still {@code PROCESSING} and claimed by {@code instanceId} are
+     * updated, so an instance whose events were reclaimed in the meantime never
+     * overwrites the state written by their new owner.
+     * </p>
+     *
+     * @return number of updated events
+     */
+    @Modifying
+    @Query("""
+            UPDATE OutboxEvent event
+            SET event.status = :newStatus,
+                event.lastError = null
+            WHERE event.id IN :ids
+            AND event.status = com.emrecelen.rateproducer.common.Constants.OutboxStatus.PROCESSING
+            AND event.claimedBy = :instanceId
+            """)
+    int markPublished(
+            @Param("ids") Collection<UUID> ids,
+            @Param("newStatus") Constants.OutboxStatus newStatus,
+            @Param("instanceId") String instanceId
+    );
+
+    /**
+     * Records a failed publish attempt for the given events in one statement.
+     * Every event gets the same status, attempt count and next availability and
+     * its own error, {@code lastErrors[i]} for {@code ids[i]}. Only events still
+     * claimed by {@code instanceId} are updated, like {@link #markPublished}.
+     *
+     * @return number of updated events
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE outbox_event event
+            SET status = :newStatus,
+                attempts = :attempts,
+                available_at = :availableAt,
+                last_error = failed.last_error
+            FROM unnest(CAST(:ids AS uuid[]), CAST(:lastErrors AS text[])) AS failed(id, last_error)
+            WHERE event.id = failed.id
+            AND event.status = 'PROCESSING'
+            AND event.claimed_by = :instanceId
+            """, nativeQuery = true)
+    int markAttemptFailed(
+            @Param("ids") UUID[] ids,
+            @Param("lastErrors") String[] lastErrors,
+            @Param("instanceId") String instanceId,
+            @Param("newStatus") String newStatus,
+            @Param("attempts") int attempts,
+            @Param("availableAt") LocalDateTime availableAt
+    );
+
+    /**
+     * Supersedes every waiting ({@code PENDING}/{@code RETRY}) event of the given
+     * types that has a newer waiting event for the same aggregate, in one statement.
+     *
+     * <p>
+     * Rows locked by a concurrent claim are skipped, and the status is re-checked
+     * when locking, so rows claimed by another instance are left alone.
+     * </p>
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE outbox_event o
+            SET status = 'SUPERSEDED',
+                processing_started_at = NULL
+            FROM (
+                SELECT id
+                FROM outbox_event
+                WHERE id IN (
+                    SELECT id
+                    FROM (
+                        SELECT id,
+                               row_number() OVER (
+                                   PARTITION BY event_type, aggregate_key
+                                   ORDER BY aggregate_seq DESC
+                               ) AS rn
+                        FROM outbox_event
+                        WHERE status IN ('PENDING', 'RETRY')
+                        AND event_type IN (:eventTypes)
+                        AND aggregate_key IS NOT NULL
+                    ) ranked
+                    WHERE ranked.rn > 1
+                )
+                AND status IN ('PENDING', 'RETRY')
+                FOR UPDATE SKIP LOCKED
+            ) older
+            WHERE o.id = older.id
+            """, nativeQuery = true)
+    int supersedeBacklog(@Param("eventTypes") Collection<String> eventTypes);
+
+    /**
+     * Locks up to {@code limit} {@code SENT} events created before {@code cutoff},
+     * oldest first, for archiving. Rows locked by a concurrent archiver are skipped.
+     */
+    @Query(value = """
+            SELECT *
+            FROM outbox_event
+            WHERE status = 'SENT'
+            AND created_at < :cutoff
+            ORDER BY created_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<OutboxEvent> lockArchivable(
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Deletes archived events in one statement.
+     */
+    @Modifying
+    @Query("DELETE FROM OutboxEvent event WHERE event.id IN :ids")
+    int deleteArchived(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Marks {@code RELAY} events the CDC relay has had confirmed by the broker as
+     * {@code SENT}, in one statement. {@code createdAts[i]} belongs to
+     * {@code ids[i]} and lets the update go straight to the partition.
+     *
+     * @return number of updated rows
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE outbox_event event
+            SET status = 'SENT'
+            FROM unnest(CAST(:ids AS uuid[]), CAST(:createdAts AS timestamp[])) AS relayed(id, created_at)
+            WHERE event.id = relayed.id
+            AND event.created_at = relayed.created_at
+            AND event.status = 'RELAY'
+            """, nativeQuery = true)
+    int markRelayed(
+            @Param("ids") UUID[] ids,
+            @Param("createdAts") LocalDateTime[] createdAts
+    );
+
+    /**
+     * Marks a {@code RELAY} event the CDC relay gave up on as {@code FAILED}, so
+     * it shows up with the other dead-lettered events and can be requeued.
+     *
+     * @return number of updated rows, {@code 0} if the row is not a {@code RELAY} row
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE outbox_event
+            SET status = 'FAILED',
+                attempts = :attempts,
+                available_at = NULL,
+                last_error = :lastError
+            WHERE id = :id
+            AND created_at = :createdAt
+            AND status = 'RELAY'
+            """, nativeQuery = true)
+    int markRelayFailed(
+            @Param("id") UUID id,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("attempts") int attempts,
+            @Param("lastError") String lastError
+    );
+
+    /**
+     * Returns up to {@code limit} {@code FAILED} events ordered by
+     * {@code (created_at, id)}, starting after the given key (keyset pagination).
+     *
+     * <p>
+     * Every filter is optional: {@code pair} matches the aggregate key,
+     * {@code from}/{@code to} bound {@code created_at} to {@code [from, to)} and
+     * {@code error} matches a case-insensitive substring of {@code last_error}.
+     * Pass a {@code null} key for the first page.
+     * </p>
+     */
+    @Query(value = """
+            SELECT *
+            FROM outbox_event
+            WHERE status = 'FAILED'
+            AND created_at >= COALESCE(CAST(:from AS timestamp), '-infinity')
+            AND created_at < COALESCE(CAST(:to AS timestamp), 'infinity')
+            AND (CAST(:pair AS text) IS NULL OR aggregate_key = CAST(:pair AS text))
+            AND (CAST(:error AS text) IS NULL OR strpos(lower(last_error), lower(CAST(:error AS text))) > 0)
+            AND (CAST(:afterCreatedAt AS timestamp) IS NULL
+                OR (created_at, id) > (CAST(:afterCreatedAt AS timestamp), CAST(:afterId AS uuid)))
+            ORDER BY created_at, id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<OutboxEvent> findFailedPage(
+            @Param("pair") String pair,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("error") String error,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterId") UUID afterId,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Returns up to {@code limit} of the oldest {@code FAILED} events matching the
+     * filters of {@link #findFailedPage} to {@code PENDING} with a fresh attempt
+     * budget, in one statement. Rows locked by a concurrent writer are skipped.
+     *
+     * <p>
+     * Only events after the given key and created no later than {@code until}
+     * are considered, so a caller that passes the returned key back in walks the
+     * matching events exactly once, even when requeued events fail again.
+     * Pass a {@code null} key for the first chunk.
+     * </p>
+     *
+     * @return number of requeued events and the key of the last one, empty once
+     * nothing matches anymore
+     */
+    @Query(value = """
+            WITH failed AS (
+                SELECT id, created_at
+                FROM outbox_event
+                WHERE status = 'FAILED'
+                AND created_at >= COALESCE(CAST(:from AS timestamp), '-infinity')
+                AND created_at < COALESCE(CAST(:to AS timestamp), 'infinity')
+                AND created_at <= CAST(:until AS timestamp)
+                AND (CAST(:pair AS text) IS NULL OR aggregate_key = CAST(:pair AS text))
+                AND (CAST(:error AS text) IS NULL OR strpos(lower(last_error), lower(CAST(:error AS text))) > 0)
+                AND (CAST(:afterCreatedAt AS timestamp) IS NULL
+                    OR (created_at, id) > (CAST(:afterCreatedAt AS timestamp), CAST(:afterId AS uuid)))
+                ORDER BY created_at, id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            ), requeued AS (
+                UPDATE outbox_event o
+                SET status = 'PENDING',
+                    attempts = 0,
+                    available_at = :now,
+                    processing_started_at = NULL,
+                    claimed_by = NULL
+                FROM failed
+                WHERE o.id = failed.id
+                AND o.created_at = failed.created_at
+                RETURNING o.id
+            )
+            SELECT (SELECT count(*) FROM requeued) AS requeued,
+                   created_at AS lastCreatedAt,
+                   id AS lastId
+            FROM failed
+            ORDER BY created_at DESC, id DESC
+            LIMIT 1
+            """, nativeQuery = true)
+    Optional<RequeueChunk> requeueFailed(
+            @Param("pair") String pair,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("error") String error,
+            @Param("until") LocalDateTime until,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterId") UUID afterId,
+            @Param("now") LocalDateTime now,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Claims the given event keys in {@code outbox_event_key}, the idempotency
+     * guard of the partitioned outbox. Keys already claimed, by an earlier write
+     * within the retention window or by a concurrent transaction that commits
+     * first, are left out.
+     *
+     * @return the keys claimed by this call; only their events may be inserted
+     */
+    @Query(value = """
+            INSERT INTO outbox_event_key (event_key, created_at)
+            SELECT key, :now
+            FROM unnest(CAST(:eventKeys AS text[])) AS key
+            ON CONFLICT (event_key) DO NOTHING
+            RETURNING event_key
+            """, nativeQuery = true)
+    List<String> claimEventKeys(
+            @Param("eventKeys") String[] eventKeys,
+            @Param("now") LocalDateTime now
+    );
+
+    /**
+     * Forgets event keys claimed before {@code cutoff}, once their events have
+     * left the retention window.
+     *
+     * @return number of removed keys
+     */
+    @Modifying
+    @Query(value = "DELETE FROM outbox_event_key WHERE created_at < :cutoff", nativeQuery = true)
+    int pruneEventKeys(@Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * Creates the daily partitions from today up to {@code daysAhead} days ahead
+     * that do not exist yet, plus one for every day that has rows in the
+     * default partition; those rows are moved into it.
+     *
+     * @return number of partitions created
+     */
+    @Query(value = "SELECT outbox_event_create_partitions(:daysAhead)", nativeQuery = true)
+    int createPartitions(@Param("daysAhead") int daysAhead);
+
+    /**
+     * Drops (or detaches) every partition that ended more than
+     * {@code retentionDays} days ago and only holds finished
+     * ({@code SENT}/{@code FAILED}/{@code SUPERSEDED}) events.
+     *
+     * @return names of the removed partitions
+     */
+    @Query(value = "SELECT * FROM outbox_event_expire_partitions(:retentionDays, :detachOnly)", nativeQuery = true)
+    List<String> expirePartitions(
+            @Param("retentionDays") int retentionDays,
+            @Param("detachOnly") boolean detachOnly
+    );
+
+    /**
+     * Locks up to {@code limit} of the oldest rate events still stored as JSON
+     * ({@code schema_version} 1) for conversion to the binary layout.
+     *
+     * <p>
+     * {@code PROCESSING} events are left alone: their publisher holds them in
+     * memory and writes them back. Rows locked by a claim are skipped.
+     * </p>
+     */
+    @Query(value = """
+            SELECT *
+            FROM outbox_event
+            WHERE schema_version = 1
+            AND event_type = 'RATE_EVENT'
+            AND status <> 'PROCESSING'
+            ORDER BY created_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<OutboxEvent> lockJsonPayloads(@Param("limit") int limit);
+
+    /**
+     * Current backlog per tracked status ({@code PENDING}, {@code RETRY},
+     * {@code PROCESSING}, {@code FAILED}) from the trigger-maintained
+     * {@code outbox_backlog} table. Reads a handful of rows, never {@code outbox_event}.
+     */
+    @Query(value = """
+            SELECT status, sum(count) AS count
+            FROM outbox_backlog
+            GROUP BY status
+            """, nativeQuery = true)
+    List<BacklogCount> backlogCounts();
+
+    /**
+     * Folds counters of closed connections together and corrects any drift
+     * between {@code outbox_backlog} and the actual row counts.
+     *
+     * @return total correction applied, {@code 0} if the counters were exact
+     */
+    @Query(value = "SELECT outbox_backlog_resync()", nativeQuery = true)
+    long resyncBacklog();
+
+    interface BacklogCount {
+        String getStatus();
+
+        long getCount();
+    }
+
+    interface RequeueChunk {
+        long getRequeued();
+
+        LocalDateTime getLastCreatedAt();
+
+        UUID getLastId();
+    }
 }
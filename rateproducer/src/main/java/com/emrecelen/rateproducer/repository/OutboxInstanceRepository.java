@@ -0,0 +1,42 @@
+package com.emrecelen.rateproducer.repository;
+
+import com.emrecelen.rateproducer.model.OutboxInstance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Producer instance heartbeats.
+ *
+ * <p>
+ * Heartbeats are database time ({@code now()}), so instances never compare
+ * their own clocks.
+ * </p>
+ */
+@Repository
+public interface OutboxInstanceRepository extends JpaRepository<OutboxInstance, String> {
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO outbox_instance (instance_id, heartbeat_at)
+            VALUES (:instanceId, now())
+            ON CONFLICT (instance_id) DO UPDATE SET heartbeat_at = now()
+            """, nativeQuery = true)
+    int heartbeat(@Param("instanceId") String instanceId);
+
+    @Query(value = """
+            SELECT count(*)
+            FROM outbox_instance
+            WHERE heartbeat_at > now() - make_interval(secs => :ttlMs / 1000.0)
+            """, nativeQuery = true)
+    long countLiveInstances(@Param("ttlMs") long ttlMs);
+
+    @Modifying
+    @Query(value = """
+            DELETE FROM outbox_instance
+            WHERE heartbeat_at < now() - make_interval(secs => :expiredAfterMs / 1000.0)
+            """, nativeQuery = true)
+    int removeExpiredInstances(@Param("expiredAfterMs") long expiredAfterMs);
+}
@@ -0,0 +1,85 @@
+package com.emrecelen.rateproducer.repository;
+
+import com.emrecelen.rateproducer.model.OutboxShardLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Shard leases for sharded outbox claiming.
+ *
+ * <p>
+ * All lease times are database time ({@code now()}), so instances never compare
+ * their own clocks.
+ * </p>
+ */
+@Repository
+public interface OutboxShardLeaseRepository extends JpaRepository<OutboxShardLease, Short> {
+
+    /**
+     * Extends every lease the instance still holds.
+     *
+     * @return shards the instance owns
+     */
+    @Query(value = """
+            UPDATE outbox_shard_lease
+            SET lease_until = now() + make_interval(secs => :ttlMs / 1000.0)
+            WHERE owner = :instanceId
+            RETURNING shard
+            """, nativeQuery = true)
+    List<Short> renew(
+            @Param("instanceId") String instanceId,
+            @Param("ttlMs") long ttlMs
+    );
+
+    /**
+     * Takes over up to {@code limit} shards whose lease has expired or whose
+     * handover grace period has passed.
+     *
+     * @return newly acquired shards
+     */
+    @Query(value = """
+            UPDATE outbox_shard_lease l
+            SET owner = :instanceId,
+                lease_until = now() + make_interval(secs => :ttlMs / 1000.0)
+            FROM (
+                SELECT shard
+                FROM outbox_shard_lease
+                WHERE lease_until < now()
+                ORDER BY shard
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            ) free
+            WHERE l.shard = free.shard
+            RETURNING l.shard
+            """, nativeQuery = true)
+    List<Short> acquire(
+            @Param("instanceId") String instanceId,
+            @Param("ttlMs") long ttlMs,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Gives up the given shards. Other instances may take them over once
+     * {@code graceMs} has passed, so batches already claimed from them can
+     * finish first.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE outbox_shard_lease
+            SET owner = NULL,
+                lease_until = now() + make_interval(secs => :graceMs / 1000.0)
+            WHERE owner = :instanceId
+            AND shard IN (:shards)
+            """, nativeQuery = true)
+    int release(
+            @Param("instanceId") String instanceId,
+            @Param("shards") Collection<Short> shards,
+            @Param("graceMs") long graceMs
+    );
+}
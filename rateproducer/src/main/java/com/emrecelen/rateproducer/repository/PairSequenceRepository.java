@@ -21,4 +21,19 @@ public interface PairSequenceRepository extends JpaRepository<PairSequence, Stri
     Optional<PairSequence> findByPairForUpdate(
             @Param("pair") String pair
     );
+
+    /**
+     * Atomically advances the sequence row by {@code size} and returns the new high-water mark.
+     * The reserved block is {@code (lastSeq - size, lastSeq]}.
+     */
+    @Query(value = """
+                UPDATE pair_sequence
+                SET last_seq = last_seq + :size
+                WHERE pair = :pair
+                RETURNING last_seq
+            """, nativeQuery = true)
+    Optional<Long> reserveBlock(
+            @Param("pair") String pair,
+            @Param("size") long size
+    );
 }
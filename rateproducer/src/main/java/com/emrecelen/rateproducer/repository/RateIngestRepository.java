@@ -0,0 +1,113 @@
+package com.emrecelen.rateproducer.repository;
+
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Fast-path ingest that performs pair creation, sequence bump and outbox insert
+ * in a single native statement.
+ *
+ * <p>
+ * The statement is a chain of data-modifying CTEs:
+ * <ol>
+ *     <li>{@code new_pair}: creates the pair as active if it does not exist yet</li>
+ *     <li>{@code active_pair}: resolves the pair only if it is active</li>
+ *     <li>{@code next_seq}: creates or bumps the {@code pair_sequence} row
+ *     ({@code INSERT ... ON CONFLICT DO UPDATE ... RETURNING last_seq})</li>
+ *     <li>{@code new_key}: claims the event key in {@code outbox_event_key}
+ *     ({@code ON CONFLICT DO NOTHING}), the idempotency guard of the partitioned
+ *     outbox</li>
+ *     <li>{@code event}: inserts the outbox row; the event key and {@code seq}
+ *     field of the payload are derived from the bumped sequence. Exactly one of
+ *     {@code payload} (JSON) and {@code payloadBin} (binary layout, see
+ *     {@link com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec}) is given;
+ *     {@code seq} is written into the binary layout at its fixed offset</li>
+ * </ol>
+ * </p>
+ *
+ * <p>
+ * The row is inserted with the given initial status ({@code PENDING}, or
+ * {@code RELAY} in CDC relay mode). An inactive pair yields no row, and so does
+ * a new pair that a concurrent statement created first: the row it inserted is
+ * not in this statement's snapshot. The event key is built from the source,
+ * the pair and the freshly bumped sequence; should it still have been written
+ * before (e.g. a sequence reset), the key claim fails, no event is inserted and
+ * {@code inserted} is {@code false}.
+ * </p>
+ */
+@Repository
+public interface RateIngestRepository extends org.springframework.data.repository.Repository<OutboxEvent, UUID> {
+
+    @Query(value = """
+            WITH new_pair AS (
+                INSERT INTO allowed_pair (pair, is_active, created_at)
+                VALUES (:pair, true, :now)
+                ON CONFLICT (pair) DO NOTHING
+                RETURNING pair, is_active
+            ), active_pair AS (
+                SELECT pair FROM new_pair WHERE is_active
+                UNION ALL
+                SELECT pair FROM allowed_pair WHERE pair = :pair AND is_active
+            ), next_seq AS (
+                INSERT INTO pair_sequence (pair, last_seq)
+                SELECT pair, 1 FROM active_pair
+                ON CONFLICT (pair) DO UPDATE SET last_seq = pair_sequence.last_seq + 1
+                RETURNING pair, last_seq
+            ), new_key AS (
+                INSERT INTO outbox_event_key (event_key, created_at)
+                SELECT :source || ':' || pair || ':' || last_seq, :now
+                FROM next_seq
+                ON CONFLICT (event_key) DO NOTHING
+                RETURNING event_key
+            ), event AS (
+                INSERT INTO outbox_event (
+                    id, event_key, event_type, schema_version, payload, payload_bin,
+                    status, attempts, available_at, created_at, processing_started_at,
+                    aggregate_key, aggregate_seq
+                )
+                SELECT gen_random_uuid(),
+                       :source || ':' || s.pair || ':' || s.last_seq,
+                       :eventType,
+                       :schemaVersion,
+                       CAST(:payload AS jsonb) || jsonb_build_object(
+                               'eventKey', :source || ':' || s.pair || ':' || s.last_seq,
+                               'seq', s.last_seq
+                       ),
+                       overlay(CAST(:payloadBin AS bytea) PLACING int8send(s.last_seq) FROM 2 FOR 8),
+                       :status,
+                       0,
+                       :now,
+                       :now,
+                       NULL,
+                       s.pair,
+                       s.last_seq
+                FROM next_seq s
+                JOIN new_key k ON k.event_key = :source || ':' || s.pair || ':' || s.last_seq
+            )
+            SELECT s.last_seq AS seq,
+                   EXISTS (SELECT 1 FROM new_key) AS inserted
+            FROM next_seq s
+            """, nativeQuery = true)
+    Optional<IngestResult> ingest(
+            @Param("pair") String pair,
+            @Param("source") String source,
+            @Param("eventType") String eventType,
+            @Param("schemaVersion") int schemaVersion,
+            @Param("payload") String payload,
+            @Param("payloadBin") byte[] payloadBin,
+            @Param("status") String status,
+            @Param("now") LocalDateTime now
+    );
+
+    interface IngestResult {
+        long getSeq();
+
+        boolean getInserted();
+    }
+}
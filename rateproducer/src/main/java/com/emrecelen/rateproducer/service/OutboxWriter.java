@@ -2,34 +2,52 @@ package com.emrecelen.rateproducer.service;
 
 import com.emrecelen.rateproducer.common.Constants;
 import com.emrecelen.rateproducer.common.JsonUtil;
+import com.emrecelen.rateproducer.domain.model.RateEvent;
 import com.emrecelen.rateproducer.domain.registry.EventFactoryRegistry;
 import com.emrecelen.rateproducer.domain.service.DomainEventFactory;
 import com.emrecelen.rateproducer.model.OutboxEvent;
 import com.emrecelen.rateproducer.monitoring.metrics.RateProducerMetrics;
+import com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec;
+import com.emrecelen.rateproducer.outbox.service.OutboxHandoff;
 import com.emrecelen.rateproducer.repository.OutboxEventRepository;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 @Service
 public class OutboxWriter {
 
     private final OutboxEventRepository repository;
     private final EventFactoryRegistry registry;
     private final RateProducerMetrics rateProducerMetrics;
+    private final OutboxHandoff handoff;
+    private final Constants.OutboxRelayMode relayMode;
+    private final Constants.OutboxPayloadFormat payloadFormat;
 
     private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
 
     public OutboxWriter(
             OutboxEventRepository repository,
             EventFactoryRegistry registry,
-            RateProducerMetrics rateProducerMetrics
+            RateProducerMetrics rateProducerMetrics,
+            OutboxHandoff handoff,
+            @Value("${outbox.relay.mode:POLL}") Constants.OutboxRelayMode relayMode,
+            @Value("${outbox.payload.format:JSON}") Constants.OutboxPayloadFormat payloadFormat
     ) {
         this.repository = repository;
         this.registry = registry;
         this.rateProducerMetrics = rateProducerMetrics;
+        this.handoff = handoff;
+        this.relayMode = relayMode;
+        this.payloadFormat = payloadFormat;
     }
 
     /**
@@ -42,10 +60,17 @@ public class OutboxWriter {
      *
      * <ul>
      *   <li>Transactional consistency with the business operation</li>
-     *   <li>Idempotency via unique event key constraint</li>
+     *   <li>Idempotency via the event key claim in {@code outbox_event_key}</li>
      *   <li>Safe retry by outbox poller</li>
      * </ul>
      *
+     * <p>
+     * When the in-process hand-off is enabled and has room, the event is written
+     * as {@code PROCESSING} and published right after commit instead of being
+     * claimed by the poller (see {@link OutboxHandoff}). In CDC relay mode the
+     * event is written as {@code RELAY} and published from the WAL instead.
+     * </p>
+     *
      * @param eventType logical event type (e.g. RATE_EVENT)
      * @param input     domain object used to build the event
      * @param <T>       domain input type
@@ -58,28 +83,138 @@ public class OutboxWriter {
                 input.getClass().getSimpleName()
         );
         DomainEventFactory<T> factory = registry.get(eventType);
+        OutboxEvent entity = toOutboxEvent(factory, input);
+
+        if (claimEventKeys(List.of(entity)).isEmpty()) {
+            return;
+        }
+        prepare(List.of(entity));
+        repository.saveAndFlush(entity);
+        log.info(
+                "Outbox event persisted successfully. eventKey={} schemaVersion={}",
+                entity.getEventKey(),
+                entity.getSchemaVersion()
+        );
+    }
+
+    /**
+     * Persists several domain events of the same type into the outbox table.
+     *
+     * <p>
+     * Entities are saved without intermediate flushes and flushed once at the
+     * end, which lets Hibernate group the inserts into JDBC batches
+     * ({@code hibernate.jdbc.batch_size}).
+     * </p>
+     *
+     * <p>
+     * Like {@link #write(String, Object)}, events whose key was already written
+     * are skipped, and the batch is handed off to the publisher
+     * after commit when the hand-off has room for all of its events, or written
+     * as {@code RELAY} in CDC relay mode.
+     * </p>
+     *
+     * @param eventType logical event type (e.g. RATE_EVENT)
+     * @param inputs    domain objects used to build the events
+     * @param <T>       domain input type
+     */
+    @Transactional
+    public <T> void writeAll(String eventType, List<T> inputs) {
+        if (inputs.isEmpty()) {
+            return;
+        }
+        DomainEventFactory<T> factory = registry.get(eventType);
+        List<OutboxEvent> entities = claimEventKeys(inputs.stream()
+                .map(input -> toOutboxEvent(factory, input))
+                .toList());
+        if (entities.isEmpty()) {
+            return;
+        }
+
+        prepare(entities);
+        repository.saveAll(entities);
+        repository.flush();
+        log.info(
+                "Outbox events persisted successfully. eventType={} count={}",
+                eventType,
+                entities.size()
+        );
+    }
+
+    /**
+     * Builds the outbox row of an event, with its payload in the configured
+     * format ({@code outbox.payload.format}). Only rate events have a binary
+     * layout (see {@link OutboxPayloadCodec}); other events are always stored as JSON.
+     */
+    private <T> OutboxEvent toOutboxEvent(DomainEventFactory<T> factory, T input) {
         Object event = factory.createEvent(input);
-        OutboxEvent entity = OutboxEvent.pending(
+        if (payloadFormat == Constants.OutboxPayloadFormat.BINARY && event instanceof RateEvent rateEvent) {
+            return OutboxEvent.pendingBinary(
+                    factory.eventKey(input),
+                    Constants.OutboxType.RATE_EVENT,
+                    OutboxPayloadCodec.BINARY_SCHEMA_VERSION,
+                    OutboxPayloadCodec.encode(rateEvent),
+                    factory.aggregateKey(input),
+                    factory.aggregateSeq(input)
+            );
+        }
+        return OutboxEvent.pending(
                 factory.eventKey(input),
                 Constants.OutboxType.RATE_EVENT,
                 factory.schemaVersion(),
-                JsonUtil.toJson(event)
+                JsonUtil.toJsonString(event),
+                factory.aggregateKey(input),
+                factory.aggregateSeq(input)
         );
+    }
 
-        try {
-            repository.saveAndFlush(entity);
-            log.info(
-                    "Outbox event persisted successfully. eventKey={} schemaVersion={}",
-                    entity.getEventKey(),
-                    entity.getSchemaVersion()
-            );
-        } catch (DataIntegrityViolationException ex) {
-            // idempotent duplicate
+    /**
+     * Claims the event keys and drops the events whose key is already taken.
+     *
+     * <p>
+     * {@code outbox_event} is partitioned by {@code created_at} and cannot carry
+     * a unique index on {@code event_key} alone, so the keys are claimed in
+     * {@code outbox_event_key} instead. A duplicate is logged and skipped
+     * without failing the transaction or the rest of the batch.
+     * </p>
+     *
+     * @return the events to insert, in their original order
+     */
+    private List<OutboxEvent> claimEventKeys(List<OutboxEvent> entities) {
+        Set<String> claimed = new HashSet<>(repository.claimEventKeys(
+                entities.stream().map(OutboxEvent::getEventKey).toArray(String[]::new),
+                LocalDateTime.now()
+        ));
+        List<OutboxEvent> fresh = new ArrayList<>(entities.size());
+        for (OutboxEvent e : entities) {
+            if (claimed.remove(e.getEventKey())) {
+                fresh.add(e);
+                continue;
+            }
             log.warn(
                     "Duplicate outbox event detected (idempotent). eventKey={}",
-                    entity.getEventKey()
+                    e.getEventKey()
             );
             rateProducerMetrics.publishFailed();
         }
+        return fresh;
+    }
+
+    /**
+     * Sets the initial state of events about to be inserted.
+     *
+     * <p>
+     * A hand-off reservation is tied to the transaction before the events are
+     * inserted, so it is handed off on commit and returned on rollback, including
+     * when the insert itself fails.
+     * </p>
+     */
+    private void prepare(List<OutboxEvent> entities) {
+        if (relayMode == Constants.OutboxRelayMode.CDC) {
+            entities.forEach(e -> e.setStatus(Constants.OutboxStatus.RELAY));
+            return;
+        }
+        if (handoff.reserve(entities)) {
+            handoff.afterCommit(entities);
+        }
     }
 }
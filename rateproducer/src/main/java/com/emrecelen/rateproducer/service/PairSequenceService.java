@@ -2,28 +2,107 @@ package com.emrecelen.rateproducer.service;
 
 import com.emrecelen.rateproducer.model.PairSequence;
 import com.emrecelen.rateproducer.repository.PairSequenceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Allocates per-pair sequence numbers.
+ *
+ * <p>
+ * Two allocation modes are supported, selected by {@code rate.sequence.block-size}:
+ * <ul>
+ *     <li>{@code 1} (default): every allocation locks the {@code pair_sequence} row
+ *     inside the caller's transaction. Sequence order equals commit order, even
+ *     across instances.</li>
+ *     <li>{@code > 1}: block (hi/lo) allocation. An instance reserves a whole range
+ *     with one {@code UPDATE ... RETURNING} and hands numbers out from memory.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * A block is reserved in the caller's transaction, on the caller's connection,
+ * so a pair and sequence row created earlier in the same transaction are
+ * visible and no second pooled connection is needed. The rest of the block is
+ * only handed out to other callers once that transaction has committed; on
+ * rollback it is discarded together with the reservation. The row lock of a
+ * reservation is therefore held until the caller commits, once per block.
+ * </p>
+ *
+ * <p>
+ * Refills are serialised per pair in memory: the caller that finds the block
+ * exhausted closes it and holds the pair's refill lock until its transaction
+ * completes, so callers that also need a new block wait for the committed one
+ * instead of reserving a higher block of their own. In block mode sequences are
+ * therefore unique and handed out in increasing order per pair within an
+ * instance: no number is handed out below one already handed out. They are
+ * never reused across instances or restarts because only committed
+ * reservations are handed out. The rest of a closed block and of the block
+ * held at shutdown is lost, so gaps are expected.
+ * </p>
+ *
+ * <p>
+ * Hand-out order is not commit order. Numbers from the same block go to
+ * concurrent callers without a lock, and a caller holding a higher number may
+ * commit first; a consumer that drops lower sequences can then discard a tick.
+ * Only a block size of 1, which holds the row lock until commit, makes
+ * sequence order equal commit order. The same applies between instances, whose
+ * blocks interleave; block mode is meant for deployments where one instance
+ * owns a pair at a time and out-of-order commits are tolerated.
+ * </p>
+ *
+ * <p>
+ * A waiting caller may already hold row locks of other pairs in its
+ * transaction. Batches allocate their pairs in sorted order, so refill locks
+ * and row locks are always taken in the same order and cannot deadlock.
+ * </p>
+ */
 @Service
 public class PairSequenceService {
 
     private final PairSequenceRepository repository;
+    private final int blockSize;
+    private final Counter blockReservations;
+
+    private final Map<String, SequenceBlock> blocks = new ConcurrentHashMap<>();
+    private final Map<String, ReentrantLock> refillLocks = new ConcurrentHashMap<>();
 
     private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
 
-    public PairSequenceService(PairSequenceRepository repository) {
+    public PairSequenceService(
+            PairSequenceRepository repository,
+            MeterRegistry registry,
+            @Value("${rate.sequence.block-size:1}") int blockSize
+    ) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("rate.sequence.block-size must be at least 1");
+        }
         this.repository = repository;
+        this.blockSize = blockSize;
+        this.blockReservations = registry.counter("rate.sequence.block.reservations");
+        Gauge.builder("rate.sequence.block.size", () -> this.blockSize)
+                .description("Number of sequence numbers reserved per pair in one round trip")
+                .register(registry);
     }
 
     /**
-     * Generates and persists the next sequence number for the given currency pair.
+     * Generates the next sequence number for the given currency pair.
      *
      * <p>
-     * This method uses a database-level lock (FOR UPDATE) to ensure
-     * sequence consistency under concurrent access.
+     * With a block size of 1 this method uses a database-level lock (FOR UPDATE)
+     * to ensure sequence consistency under concurrent access.
      * </p>
      * <p>
      * Workflow:
@@ -32,6 +111,9 @@ public class PairSequenceService {
      *   <li>Increments sequence atomically</li>
      *   <li>Persists updated value immediately</li>
      * </ul>
+     * <p>
+     * With a larger block size the number is taken from the in-memory block of the
+     * pair, reserving a new block when the current one is exhausted.
      *
      * @param pair currency pair (e.g. EUR/USD)
      * @return next sequence number
@@ -41,6 +123,10 @@ public class PairSequenceService {
     public long nextSeq(String pair) {
         log.debug("Generating next sequence for pair={}", pair);
 
+        if (blockSize > 1) {
+            return takeFromBlock(pair, 1);
+        }
+
         PairSequence seq = repository.findByPairForUpdate(pair)
                 .orElseThrow(() -> {
                             log.error(
@@ -65,4 +151,178 @@ public class PairSequenceService {
 
         return next;
     }
+
+    /**
+     * Reserves {@code count} consecutive sequence numbers for the given currency pair.
+     *
+     * <p>
+     * With a block size of 1 the {@link PairSequence} row is locked once and
+     * advanced by {@code count}, so a batch of ticks for the same pair costs a
+     * single lock instead of one lock per tick. The change is flushed together
+     * with the rest of the surrounding transaction. With a larger block size the
+     * range is taken from the in-memory block of the pair.
+     * </p>
+     *
+     * @param pair  currency pair (e.g. EUR/USD)
+     * @param count number of sequence numbers to reserve, must be positive
+     * @return first reserved sequence number; the range is {@code [first, first + count)}
+     * @throws IllegalStateException if sequence record does not exist
+     */
+    @Transactional
+    public long nextSeqRange(String pair, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        if (blockSize > 1) {
+            return takeFromBlock(pair, count);
+        }
+        PairSequence seq = repository.findByPairForUpdate(pair)
+                .orElseThrow(() -> new IllegalStateException(
+                        "PairSequence not found for pair=" + pair
+                ));
+        long first = seq.getLastSeq() + 1;
+        seq.advance(count);
+        log.debug(
+                "Sequence range reserved. pair={} firstSeq={} lastSeq={}",
+                pair,
+                first,
+                seq.getLastSeq()
+        );
+        return first;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Takes {@code count} consecutive numbers from the pair's current block.
+     *
+     * <p>
+     * The fast path is a lock-free CAS on the block. When the block cannot serve
+     * the request, the caller takes the pair's refill lock, closes the block so no
+     * lower number is handed out after its own, reserves a new block and takes its
+     * numbers from it. The rest is published and the lock released once the
+     * reservation commits, see {@link #publishAfterCommit}.
+     * </p>
+     */
+    private long takeFromBlock(String pair, int count) {
+        long first = takeFromCurrent(pair, count);
+        if (first > 0) {
+            return first;
+        }
+
+        ReentrantLock refill = refillLocks.computeIfAbsent(pair, p -> new ReentrantLock());
+        refill.lock();
+        boolean reserved = false;
+        try {
+            // a block committed while this caller waited may serve it
+            first = takeFromCurrent(pair, count);
+            if (first > 0) {
+                return first;
+            }
+            SequenceBlock current = blocks.get(pair);
+            if (current != null) {
+                current.close();
+            }
+            SequenceBlock block = reserveBlock(pair, Math.max(blockSize, count));
+            first = block.take(count);
+            publishAfterCommit(pair, block, refill);
+            reserved = true;
+            return first;
+        } finally {
+            if (!reserved) {
+                refill.unlock();
+            }
+        }
+    }
+
+    private long takeFromCurrent(String pair, int count) {
+        SequenceBlock block = blocks.get(pair);
+        return block == null ? -1 : block.take(count);
+    }
+
+    /**
+     * Reserves a new block in the caller's transaction.
+     */
+    private SequenceBlock reserveBlock(String pair, int size) {
+        long last = repository.reserveBlock(pair, size).orElseThrow(() -> {
+            log.error(
+                    "PairSequence not found while reserving sequence block. pair={}",
+                    pair
+            );
+            return new IllegalStateException(
+                    "PairSequence not found for pair=" + pair
+            );
+        });
+        blockReservations.increment();
+        long first = last - size + 1;
+        log.info(
+                "Sequence block reserved. pair={} firstSeq={} lastSeq={}",
+                pair,
+                first,
+                last
+        );
+        return new SequenceBlock(first, last);
+    }
+
+    /**
+     * Makes the rest of a reserved block available to other callers once the
+     * reservation is committed, and releases the pair's refill lock when the
+     * transaction completes either way. On rollback the block is discarded and
+     * the next waiting caller reserves its own.
+     */
+    private void publishAfterCommit(String pair, SequenceBlock reserved, ReentrantLock refill) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            blocks.put(pair, reserved);
+            refill.unlock();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                blocks.put(pair, reserved);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                refill.unlock();
+            }
+        });
+    }
+
+    /**
+     * Range of reserved sequence numbers {@code [next, last]} handed out from memory.
+     */
+    private static final class SequenceBlock {
+        private final AtomicLong next;
+        private final long last;
+
+        private SequenceBlock(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+
+        /**
+         * Stops handing out numbers from this block.
+         */
+        private void close() {
+            next.accumulateAndGet(last + 1, Math::max);
+        }
+
+        /**
+         * @return first number of the taken range, or {@code -1} if the block cannot serve {@code count}
+         */
+        private long take(int count) {
+            while (true) {
+                long current = next.get();
+                if (current + count - 1 > last) {
+                    return -1;
+                }
+                if (next.compareAndSet(current, current + count)) {
+                    return current;
+                }
+            }
+        }
+    }
 }
@@ -1,43 +1,81 @@
 package com.emrecelen.rateproducer.service;
 
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse;
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse.ItemResult;
 import com.emrecelen.rateproducer.api.dto.RawRateRequest;
 import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.common.JsonUtil;
+import com.emrecelen.rateproducer.domain.model.MoneyScale;
+import com.emrecelen.rateproducer.domain.model.RateTick;
 import com.emrecelen.rateproducer.domain.model.RateEvent;
 import com.emrecelen.rateproducer.domain.model.RawRate;
 import com.emrecelen.rateproducer.domain.service.RateEventFactory;
+import com.emrecelen.rateproducer.exception.InvalidBatchException;
 import com.emrecelen.rateproducer.exception.InvalidRateException;
 import com.emrecelen.rateproducer.exception.PairNotActiveException;
 import com.emrecelen.rateproducer.mapper.RateEventMapper;
 import com.emrecelen.rateproducer.model.Pair;
 import com.emrecelen.rateproducer.model.PairSequence;
 import com.emrecelen.rateproducer.monitoring.metrics.RateProducerMetrics;
+import com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec;
 import com.emrecelen.rateproducer.repository.PairRepository;
 import com.emrecelen.rateproducer.repository.PairSequenceRepository;
+import com.emrecelen.rateproducer.repository.RateIngestRepository;
 import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Service
 public class RateEventService {
 
+    private static final Pattern PAIR_FORMAT = Pattern.compile(RawRateRequest.PAIR_PATTERN);
+
     @Value("${spring.application.name}")
     private String appName;
 
     @Value("${server.port}")
     private String serverPort;
 
+    @Value("${rate.ingest.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${rate.ingest.fast-path.enabled:false}")
+    private boolean fastPathEnabled;
+
+    @Value("${outbox.relay.mode:POLL}")
+    private Constants.OutboxRelayMode relayMode = Constants.OutboxRelayMode.POLL;
+
+    @Value("${outbox.payload.format:JSON}")
+    private Constants.OutboxPayloadFormat payloadFormat = Constants.OutboxPayloadFormat.JSON;
+
     private final OutboxWriter outboxWriter;
     private final PairRepository pairRepository;
     private final RateEventMapper rateEventMapper;
     private final RateProducerMetrics rateProducerMetrics;
     private final PairSequenceService pairSequenceService;
     private final PairSequenceRepository pairSequenceRepository;
-
+    private final Validator validator;
+    private final RateEventFactory rateEventFactory;
+    private final RateIngestRepository rateIngestRepository;
 
     private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
 
@@ -47,7 +85,10 @@ public class RateEventService {
             RateEventMapper rateEventMapper,
             RateProducerMetrics rateProducerMetrics,
             PairSequenceService pairSequenceService,
-            PairSequenceRepository pairSequenceRepository
+            PairSequenceRepository pairSequenceRepository,
+            Validator validator,
+            RateEventFactory rateEventFactory,
+            RateIngestRepository rateIngestRepository
     ) {
         this.outboxWriter = outboxWriter;
         this.pairRepository = pairRepository;
@@ -55,6 +96,9 @@ public class RateEventService {
         this.rateProducerMetrics = rateProducerMetrics;
         this.pairSequenceService = pairSequenceService;
         this.pairSequenceRepository = pairSequenceRepository;
+        this.validator = validator;
+        this.rateEventFactory = rateEventFactory;
+        this.rateIngestRepository = rateIngestRepository;
     }
 
     /**
@@ -73,6 +117,10 @@ public class RateEventService {
      * <p>
      * All operations are executed within a single transaction to guarantee
      * consistency between sequence generation and outbox persistence.
+     * <p>
+     * When {@code rate.ingest.fast-path.enabled} is set, pair lookup/creation,
+     * sequence generation and the outbox insert are collapsed into a single
+     * statement (see {@link RateIngestRepository}).
      *
      * @param request incoming raw rate request
      * @throws PairNotActiveException if requested pair is not active
@@ -86,7 +134,11 @@ public class RateEventService {
         rateProducerMetrics.received();
 
         rateProducerMetrics.recordLatency(() -> {
-            isValid(request);
+            Quote quote = toQuote(request);
+            if (fastPathEnabled) {
+                ingestInSingleStatement(request, quote);
+                return;
+            }
             Pair pair = pairRepository.findById(request.pair())
                     .orElseGet(() -> {
                         log.info(
@@ -101,6 +153,7 @@ public class RateEventService {
                         "Pair is inactive. pair={}",
                         request.pair()
                 );
+                rateProducerMetrics.rejected();
                 throw new PairNotActiveException(pair.getCurrencyPair());
             }
             ensureSequenceExists(pair.getCurrencyPair());
@@ -109,7 +162,9 @@ public class RateEventService {
             RawRate raw = rateEventMapper.toRawRate(
                     toSource(),
                     seq,
-                    request
+                    pair.getCurrencyPair(),
+                    quote.bidPips(),
+                    quote.askPips()
             );
             outboxWriter.write(Constants.OutboxType.RATE_EVENT.name(), raw);
             log.info(
@@ -120,6 +175,307 @@ public class RateEventService {
         });
     }
 
+    /**
+     * Writes a validated request with one round trip to the database.
+     * <p>
+     * The payload is serialized from a template event with {@code seq = 0};
+     * the statement overwrites {@code eventKey} and {@code seq} with the values
+     * derived from the bumped sequence, so the stored payload has the same shape
+     * as the one produced by {@link OutboxWriter}, in JSON or in the binary layout
+     * ({@code outbox.payload.format}).
+     * <p>
+     * When another request creates the same new pair concurrently, the statement
+     * that loses the insert cannot see the winner's row in its snapshot and
+     * yields no row, like for an inactive pair. An empty result is therefore
+     * retried once; the retry runs with a new snapshot that includes the pair.
+     *
+     * @throws PairNotActiveException if requested pair is not active
+     */
+    private void ingestInSingleStatement(RawRateRequest request, Quote quote) {
+        String source = toSource();
+        RateEvent template = rateEventFactory.createEvent(
+                rateEventMapper.toRawRate(source, 0L, request.pair(), quote.bidPips(), quote.askPips())
+        );
+        boolean binary = payloadFormat == Constants.OutboxPayloadFormat.BINARY;
+        Supplier<Optional<RateIngestRepository.IngestResult>> ingest = () -> rateIngestRepository.ingest(
+                request.pair(),
+                source,
+                rateEventFactory.eventType(),
+                binary ? OutboxPayloadCodec.BINARY_SCHEMA_VERSION : rateEventFactory.schemaVersion(),
+                binary ? null : JsonUtil.toJsonString(template),
+                binary ? OutboxPayloadCodec.encode(template) : null,
+                relayMode.initialStatus().name(),
+                LocalDateTime.now()
+        );
+        RateIngestRepository.IngestResult result = ingest.get().or(() -> {
+            log.debug(
+                    "Single-statement ingest found no active pair, retrying once. pair={}",
+                    request.pair()
+            );
+            return ingest.get();
+        }).orElseThrow(() -> {
+            log.warn(
+                    "Pair is inactive. pair={}",
+                    request.pair()
+            );
+            rateProducerMetrics.rejected();
+            return new PairNotActiveException(request.pair());
+        });
+
+        if (!result.getInserted()) {
+            log.warn(
+                    "Duplicate outbox event detected (idempotent). pair={} seq={}",
+                    request.pair(),
+                    result.getSeq()
+            );
+            rateProducerMetrics.publishFailed();
+            return;
+        }
+        log.info(
+                "Rate event successfully written to outbox. pair={} seq={}",
+                request.pair(),
+                result.getSeq()
+        );
+    }
+
+    /**
+     * Creates rate events for a batch of incoming requests in a single transaction.
+     * <p>
+     * Flow:
+     * <ul>
+     *   <li>Validates every item in one pass (bean validation and bid/ask rules)</li>
+     *   <li>Resolves all referenced pairs with one lookup, creating missing ones</li>
+     *   <li>Reserves one sequence range per pair, locking each sequence row once</li>
+     *   <li>Writes all outbox rows with a single flush so inserts are JDBC-batched</li>
+     * </ul>
+     * <p>
+     * Invalid items and items for inactive pairs are reported as rejected in the
+     * response instead of failing the whole batch. Within a pair, sequence numbers
+     * follow the order of the items in the request.
+     *
+     * @param requests incoming raw rate requests
+     * @return per-item accept/reject results, in request order
+     * @throws InvalidBatchException if the batch is empty or exceeds the configured maximum size
+     */
+    @Transactional
+    public RateBatchResponse createRateEvents(List<RawRateRequest> requests) {
+        int size = checkBatchSize(requests);
+        log.info(
+                "Rate event batch received. size={}",
+                size
+        );
+        rateProducerMetrics.received(size);
+
+        return rateProducerMetrics.recordLatency(() -> {
+            ItemResult[] results = new ItemResult[size];
+            RateTick[] ticks = new RateTick[size];
+            long now = Instant.now().toEpochMilli();
+            for (int i = 0; i < size; i++) {
+                results[i] = validateItem(i, requests.get(i), ticks, now);
+            }
+            return writeBatch(ticks, results);
+        });
+    }
+
+    /**
+     * Creates rate events for a batch of ticks whose prices are already in pips.
+     * <p>
+     * Used by ingest paths that do not carry decimal strings (e.g. the binary TCP
+     * listener). The pair format and bid/ask rules are the same as for
+     * {@link #createRateEvents(List)}; sequencing and outbox persistence are shared.
+     *
+     * @param ticks incoming ticks
+     * @return per-item accept/reject results, in input order
+     * @throws InvalidBatchException if the batch is empty or exceeds the configured maximum size
+     */
+    @Transactional
+    public RateBatchResponse createRateTicks(List<RateTick> ticks) {
+        int size = checkBatchSize(ticks);
+        log.debug(
+                "Rate tick batch received. size={}",
+                size
+        );
+        rateProducerMetrics.received(size);
+
+        return rateProducerMetrics.recordLatency(() -> {
+            ItemResult[] results = new ItemResult[size];
+            RateTick[] valid = new RateTick[size];
+            for (int i = 0; i < size; i++) {
+                RateTick tick = ticks.get(i);
+                results[i] = validateTick(i, tick);
+                if (results[i] == null) {
+                    valid[i] = tick;
+                }
+            }
+            return writeBatch(valid, results);
+        });
+    }
+
+    private int checkBatchSize(List<?> items) {
+        int size = items == null ? 0 : items.size();
+        if (size == 0 || size > maxBatchSize) {
+            log.warn(
+                    "Rate event batch rejected. size={} maxSize={}",
+                    size,
+                    maxBatchSize
+            );
+            throw new InvalidBatchException(
+                    "batch size must be between 1 and " + maxBatchSize,
+                    size
+            );
+        }
+        return size;
+    }
+
+    /**
+     * Sequences and writes the valid items of a batch.
+     *
+     * @param ticks   validated ticks, {@code null} where the item was rejected
+     * @param results rejection results, {@code null} where the item is valid;
+     *                filled in for the remaining items
+     */
+    private RateBatchResponse writeBatch(RateTick[] ticks, ItemResult[] results) {
+        Map<String, List<Integer>> indexesByPair = new TreeMap<>();
+        for (int i = 0; i < ticks.length; i++) {
+            if (results[i] == null) {
+                indexesByPair.computeIfAbsent(ticks[i].pair(), p -> new ArrayList<>()).add(i);
+            }
+        }
+
+        Map<String, Pair> pairs = resolvePairs(indexesByPair.keySet());
+        List<String> activePairs = indexesByPair.keySet().stream()
+                .filter(p -> pairs.get(p).isActive())
+                .toList();
+        ensureSequencesExist(activePairs);
+
+        String source = toSource();
+        List<RawRate> raws = new ArrayList<>();
+        indexesByPair.forEach((pair, indexes) -> {
+            if (!pairs.get(pair).isActive()) {
+                log.warn(
+                        "Pair is inactive, rejecting batch items. pair={} count={}",
+                        pair,
+                        indexes.size()
+                );
+                indexes.forEach(i -> results[i] = ItemResult.rejected(
+                        i,
+                        pair,
+                        "PAIR_NOT_AVAILABLE",
+                        "Requested pair is currently not available"
+                ));
+                return;
+            }
+            long seq = pairSequenceService.nextSeqRange(pair, indexes.size());
+            for (int i : indexes) {
+                raws.add(rateEventMapper.toRawRate(source, seq, ticks[i]));
+                results[i] = ItemResult.accepted(i, pair, seq);
+                seq++;
+            }
+        });
+
+        if (!raws.isEmpty()) {
+            outboxWriter.writeAll(Constants.OutboxType.RATE_EVENT.name(), raws);
+        }
+
+        RateBatchResponse response = RateBatchResponse.of(Arrays.asList(results));
+        if (response.rejected() > 0) {
+            rateProducerMetrics.rejected(response.rejected());
+        }
+        log.info(
+                "Rate event batch written to outbox. accepted={} rejected={}",
+                response.accepted(),
+                response.rejected()
+        );
+        return response;
+    }
+
+    /**
+     * Validates a single batch item without throwing and stores its parsed tick
+     * in {@code ticks[index]} when it is valid.
+     *
+     * @return rejection result, or {@code null} if the item is valid
+     */
+    private ItemResult validateItem(int index, RawRateRequest request, RateTick[] ticks, long timestamp) {
+        if (request == null) {
+            return ItemResult.rejected(index, null, "VALIDATION_ERROR", "item must not be null");
+        }
+        Set<ConstraintViolation<RawRateRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            return ItemResult.rejected(index, request.pair(), "VALIDATION_ERROR", message);
+        }
+        try {
+            Quote quote = toQuote(request);
+            ticks[index] = new RateTick(request.pair(), quote.bidPips(), quote.askPips(), timestamp);
+            return null;
+        } catch (InvalidRateException ex) {
+            return ItemResult.rejected(index, request.pair(), "INVALID_RATE", ex.getMessage());
+        }
+    }
+
+    /**
+     * Applies the request validation rules to a tick that is already in pips.
+     *
+     * @return rejection result, or {@code null} if the tick is valid
+     */
+    private ItemResult validateTick(int index, RateTick tick) {
+        if (tick == null) {
+            return ItemResult.rejected(index, null, "VALIDATION_ERROR", "item must not be null");
+        }
+        if (tick.pair() == null || !PAIR_FORMAT.matcher(tick.pair()).matches()) {
+            return ItemResult.rejected(
+                    index,
+                    tick.pair(),
+                    "VALIDATION_ERROR",
+                    "pair: pair format must be like EUR/USD or BTC/USDT"
+            );
+        }
+        if (tick.bidPips() < 0 || tick.askPips() < 0) {
+            return ItemResult.rejected(index, tick.pair(), "INVALID_RATE", "bid/ask must not be negative");
+        }
+        if (tick.bidPips() >= tick.askPips()) {
+            return ItemResult.rejected(index, tick.pair(), "INVALID_RATE", "bid must be smaller than ask");
+        }
+        return null;
+    }
+
+    /**
+     * Loads all given pairs with a single query and creates the missing ones.
+     */
+    private Map<String, Pair> resolvePairs(Collection<String> codes) {
+        Map<String, Pair> pairs = pairRepository.findAllById(codes).stream()
+                .collect(Collectors.toMap(Pair::getCurrencyPair, Function.identity()));
+        for (String code : codes) {
+            if (!pairs.containsKey(code)) {
+                pairs.put(code, createPair(code));
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Batch variant of {@link #ensureSequenceExists(String)}.
+     */
+    private void ensureSequencesExist(Collection<String> pairs) {
+        Set<String> existing = pairSequenceRepository.findAllById(pairs).stream()
+                .map(PairSequence::getPair)
+                .collect(Collectors.toSet());
+        List<PairSequence> missing = pairs.stream()
+                .filter(p -> !existing.contains(p))
+                .map(p -> PairSequence.builder(p).seq(0).build())
+                .toList();
+        if (!missing.isEmpty()) {
+            log.info(
+                    "Initializing sequences for new pairs. count={}",
+                    missing.size()
+            );
+            pairSequenceRepository.saveAll(missing);
+        }
+    }
+
     /**
      * Creates and persists a new currency pair if it does not exist.
      * <p>
@@ -179,51 +535,68 @@ public class RateEventService {
     }
 
     /**
-     * Validates bid/ask values of incoming rate request.
+     * Parses bid/ask of incoming rate request into pips and validates them.
+     *
+     * <p>
+     * Both values are parsed once with {@link MoneyScale#parsePips(CharSequence)};
+     * the same result is used for validation and for the event, so no
+     * {@code BigDecimal} is created on the ingest path.
+     * </p>
      *
      * Business rules:
+     * - values must be valid decimal numbers with at most {@value MoneyScale#SCALE} decimal places
      * - bid must be smaller than ask
-     * - values must be valid decimal numbers
      *
      * If validation fails, a domain-specific {@link InvalidRateException} is thrown.
      *
      * @param request incoming raw rate request
+     * @return parsed quote
      * @throws InvalidRateException if bid >= ask or values are invalid
      */
-    private void isValid(RawRateRequest request) {
+    private Quote toQuote(RawRateRequest request) {
+        long bid;
+        long ask;
         try {
-            BigDecimal bid = new BigDecimal(request.bid());
-            BigDecimal ask = new BigDecimal(request.ask());
-
-            if (bid.compareTo(ask) >= 0) {
-                log.warn(
-                        "Invalid rate detected. bid >= ask. bid={} ask={}",
-                        request.bid(),
-                        request.ask()
-                );
-                throw new InvalidRateException(
-                        "bid must be smaller than ask",
-                        request.bid(),
-                        request.ask()
-                );
-            }
-            log.debug(
-                    "Rate validation passed. bid={} ask={}",
+            bid = MoneyScale.parsePips(request.bid());
+            ask = MoneyScale.parsePips(request.ask());
+        } catch (NumberFormatException ex) {
+            log.warn(
+                    "Invalid numeric format for rate values. bid={} ask={} error={}",
+                    request.bid(),
+                    request.ask(),
+                    ex.getMessage()
+            );
+            throw new InvalidRateException(
+                    "bid/ask must be valid decimal numbers with at most "
+                            + MoneyScale.SCALE + " decimal places",
                     request.bid(),
                     request.ask()
             );
-        } catch (NumberFormatException ex) {
+        }
+
+        if (bid >= ask) {
             log.warn(
-                    "Invalid numeric format for rate values. bid={} ask={}",
+                    "Invalid rate detected. bid >= ask. bid={} ask={}",
                     request.bid(),
-                    request.ask(),
-                    ex
+                    request.ask()
             );
             throw new InvalidRateException(
-                    "bid/ask must be valid decimal numbers",
+                    "bid must be smaller than ask",
                     request.bid(),
                     request.ask()
             );
         }
+        log.debug(
+                "Rate validation passed. bid={} ask={}",
+                request.bid(),
+                request.ask()
+        );
+        return new Quote(bid, ask);
+    }
+
+    /**
+     * Validated bid/ask pair in pips.
+     */
+    private record Quote(long bidPips, long askPips) {
     }
 }
@@ -0,0 +1,288 @@
+package com.emrecelen.rateproducer.service;
+
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse;
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse.ItemResult;
+import com.emrecelen.rateproducer.api.dto.RawRateRequest;
+import com.emrecelen.rateproducer.exception.IngestOverloadedException;
+import com.emrecelen.rateproducer.exception.InvalidRateException;
+import com.emrecelen.rateproducer.exception.PairNotActiveException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Group-commit pipeline for single-tick ingest.
+ *
+ * <p>
+ * Request threads enqueue their tick into a bounded in-memory queue and wait.
+ * A small, fixed set of writer threads drain the queue into micro-batches and
+ * commit each micro-batch in one transaction through
+ * {@link RateEventService#createRateEvents(List)} (one sequence range per pair
+ * plus a JDBC-batched outbox insert).
+ * </p>
+ *
+ * <p>
+ * A request completes only after the transaction containing its tick has
+ * committed, so durability semantics are the same as the direct path. The
+ * number of connections used for ingest is bounded by the number of writers
+ * instead of the number of request threads.
+ * </p>
+ *
+ * <p>
+ * A request that times out while its tick is still queued withdraws the tick
+ * and fails with {@link IngestOverloadedException}, so nothing is written for
+ * it. Once a writer has taken the tick into a micro-batch it can no longer be
+ * withdrawn, and the request waits for that commit to finish instead of
+ * reporting a failure that might not be true.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * rate.ingest.group-commit.enabled          (default: false)
+ * rate.ingest.group-commit.writers          (default: 2)
+ * rate.ingest.group-commit.queue-capacity   (default: 10000)
+ * rate.ingest.group-commit.max-batch-size   (default: 200, at most rate.ingest.batch.max-size)
+ * rate.ingest.group-commit.max-linger-ms    (default: 2)
+ * rate.ingest.group-commit.await-timeout-ms (default: 5000)
+ * </pre>
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "rate.ingest.group-commit.enabled", havingValue = "true")
+public class RateIngestPipeline implements SmartLifecycle {
+
+    private final RateEventService rateEventService;
+    private final BlockingQueue<PendingTick> queue;
+    private final int writers;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final Duration awaitTimeout;
+
+    private final DistributionSummary batchFill;
+    private final Timer commitLatency;
+
+    private final List<Thread> writerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public RateIngestPipeline(
+            RateEventService rateEventService,
+            MeterRegistry registry,
+            @Value("${rate.ingest.group-commit.writers:2}") int writers,
+            @Value("${rate.ingest.group-commit.queue-capacity:10000}") int queueCapacity,
+            @Value("${rate.ingest.group-commit.max-batch-size:200}") int maxBatchSize,
+            @Value("${rate.ingest.group-commit.max-linger-ms:2}") long maxLingerMs,
+            @Value("${rate.ingest.group-commit.await-timeout-ms:5000}") long awaitTimeoutMs,
+            @Value("${rate.ingest.batch.max-size:1000}") int batchMaxSize
+    ) {
+        this.rateEventService = rateEventService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writers = writers;
+        // a micro-batch is committed through createRateEvents, which rejects larger batches
+        this.maxBatchSize = Math.min(maxBatchSize, batchMaxSize);
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMs);
+        this.awaitTimeout = Duration.ofMillis(awaitTimeoutMs);
+
+        this.batchFill = DistributionSummary.builder("rate.ingest.group.batch.fill")
+                .description("Number of ticks committed per group-commit transaction")
+                .register(registry);
+        this.commitLatency = Timer.builder("rate.ingest.group.commit.latency")
+                .description("Duration of one group-commit transaction")
+                .register(registry);
+        Gauge.builder("rate.ingest.group.queue.depth", queue, BlockingQueue::size)
+                .description("Number of ticks waiting for a group commit")
+                .register(registry);
+    }
+
+    /**
+     * Enqueues a tick and blocks until the transaction containing it has committed.
+     *
+     * @return assigned sequence number
+     * @throws IngestOverloadedException if the queue is full or no writer took the tick in time;
+     *                                   the tick is not written in either case
+     * @throws InvalidRateException      if bid/ask are invalid
+     * @throws PairNotActiveException    if requested pair is not active
+     */
+    public long submit(RawRateRequest request) {
+        if (!running) {
+            throw new IngestOverloadedException("Ingest pipeline is not running");
+        }
+        PendingTick tick = new PendingTick(request, new CompletableFuture<>(), new AtomicBoolean());
+        if (!queue.offer(tick)) {
+            log.warn(
+                    "Group-commit queue is full, rejecting tick. pair={}",
+                    request.pair()
+            );
+            throw new IngestOverloadedException("Ingest queue is full");
+        }
+
+        try {
+            try {
+                return tick.result().get(awaitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                if (tick.taken().compareAndSet(false, true)) {
+                    queue.remove(tick);
+                    throw new IngestOverloadedException("Group commit did not start in time");
+                }
+                log.warn(
+                        "Group commit is slow, waiting for the commit that holds the tick. pair={}",
+                        request.pair()
+                );
+                return tick.result().get();
+            }
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Group commit failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", ex);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (int i = 0; i < writers; i++) {
+            Thread thread = Thread.ofPlatform()
+                    .name("ingest-writer-" + i)
+                    .start(this::drainLoop);
+            writerThreads.add(thread);
+        }
+        log.info(
+                "Group-commit ingest pipeline started. writers={} maxBatchSize={} maxLingerMs={}",
+                writers,
+                maxBatchSize,
+                TimeUnit.NANOSECONDS.toMillis(maxLingerNanos)
+        );
+    }
+
+    /**
+     * Stops accepting ticks and lets the writers commit what is already queued.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        for (Thread thread : writerThreads) {
+            try {
+                thread.join(awaitTimeout.toMillis());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writerThreads.clear();
+        log.info("Group-commit ingest pipeline stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainLoop() {
+        List<PendingTick> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingTick first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingTick next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                // ticks whose request already gave up are dropped
+                batch.removeIf(tick -> !tick.taken().compareAndSet(false, true));
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Commits one micro-batch and completes the waiting requests.
+     */
+    void commit(List<PendingTick> batch) {
+        batchFill.record(batch.size());
+        long start = System.nanoTime();
+        try {
+            RateBatchResponse response = rateEventService.createRateEvents(
+                    batch.stream().map(PendingTick::request).toList()
+            );
+            commitLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            List<ItemResult> results = response.results();
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), results.get(i));
+            }
+            log.debug(
+                    "Group commit completed. size={} accepted={} rejected={}",
+                    batch.size(),
+                    response.accepted(),
+                    response.rejected()
+            );
+        } catch (Exception ex) {
+            commitLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.error(
+                    "Group commit failed. size={}",
+                    batch.size(),
+                    ex
+            );
+            batch.forEach(tick -> tick.result().completeExceptionally(ex));
+        }
+    }
+
+    private void complete(PendingTick tick, ItemResult result) {
+        if (result.status() == RateBatchResponse.ItemStatus.ACCEPTED) {
+            tick.result().complete(result.seq());
+            return;
+        }
+        RawRateRequest request = tick.request();
+        RuntimeException failure = switch (result.code()) {
+            case "PAIR_NOT_AVAILABLE" -> new PairNotActiveException(request.pair());
+            default -> new InvalidRateException(result.message(), request.bid(), request.ask());
+        };
+        tick.result().completeExceptionally(failure);
+    }
+
+    record PendingTick(RawRateRequest request, CompletableFuture<Long> result, AtomicBoolean taken) {
+    }
+}
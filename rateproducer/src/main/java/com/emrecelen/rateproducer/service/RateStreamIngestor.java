@@ -0,0 +1,249 @@
+package com.emrecelen.rateproducer.service;
+
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse;
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse.ItemResult;
+import com.emrecelen.rateproducer.api.dto.RateStreamAck;
+import com.emrecelen.rateproducer.api.dto.RateStreamAck.LineRejection;
+import com.emrecelen.rateproducer.api.dto.RawRateRequest;
+import com.emrecelen.rateproducer.common.JsonUtil;
+import com.emrecelen.rateproducer.monitoring.metrics.RateProducerMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingests a long-lived stream of newline-delimited {@link RawRateRequest} JSON.
+ *
+ * <p>
+ * Lines are parsed as they arrive and committed in micro-batches through
+ * {@link RateEventService#createRateEvents(List)}. A micro-batch is committed
+ * when it is full or when no more input is buffered, so a fast sender gets large
+ * batches and a slow sender does not wait for a batch to fill up.
+ * </p>
+ *
+ * <p>
+ * Commits run on the thread that reads the stream. While the outbox write is
+ * slow nothing is read, the socket buffers fill up and TCP flow control slows
+ * the sender down; no ticks are buffered beyond one micro-batch.
+ * </p>
+ *
+ * <p>
+ * After a commit that made progress a cumulative {@link RateStreamAck} line is
+ * written when the input is idle or the ack interval has passed, and always when
+ * the stream ends.
+ * If a commit fails, an ack with {@code error} set is written and the stream is
+ * closed; the sender should resend from {@code committed}.
+ * </p>
+ *
+ * <p>
+ * Configuration:
+ * <pre>
+ * rate.ingest.stream.batch-size       (default: 200, capped by rate.ingest.batch.max-size)
+ * rate.ingest.stream.ack-interval-ms  (default: 1000)
+ * </pre>
+ * </p>
+ */
+@Service
+public class RateStreamIngestor {
+
+    private static final byte[] NEW_LINE = {'\n'};
+
+    private final RateEventService rateEventService;
+    private final RateProducerMetrics rateProducerMetrics;
+    private final int batchSize;
+    private final long ackIntervalNanos;
+
+    private final DistributionSummary batchFill;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getSimpleName());
+
+    public RateStreamIngestor(
+            RateEventService rateEventService,
+            RateProducerMetrics rateProducerMetrics,
+            MeterRegistry registry,
+            @Value("${rate.ingest.stream.batch-size:200}") int batchSize,
+            @Value("${rate.ingest.batch.max-size:1000}") int serviceMaxBatchSize,
+            @Value("${rate.ingest.stream.ack-interval-ms:1000}") long ackIntervalMs
+    ) {
+        this.rateEventService = rateEventService;
+        this.rateProducerMetrics = rateProducerMetrics;
+        this.batchSize = Math.min(batchSize, serviceMaxBatchSize);
+        this.ackIntervalNanos = TimeUnit.MILLISECONDS.toNanos(ackIntervalMs);
+
+        this.batchFill = DistributionSummary.builder("rate.ingest.stream.batch.size")
+                .description("Number of ticks committed per stream micro-batch")
+                .register(registry);
+        Gauge.builder("rate.ingest.stream.active", activeStreams, AtomicInteger::get)
+                .description("Number of open rate streams")
+                .register(registry);
+    }
+
+    /**
+     * Reads the stream until it ends and writes acknowledgements to {@code out}.
+     *
+     * @return last acknowledgement written
+     * @throws IOException if reading the stream or writing an acknowledgement fails
+     */
+    public RateStreamAck ingest(InputStream in, OutputStream out) throws IOException {
+        activeStreams.incrementAndGet();
+        StreamState state = new StreamState(out);
+        log.info("Rate stream opened");
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                state.add(line);
+                if (state.batch.size() >= batchSize || !reader.ready()) {
+                    if (!commit(state)) {
+                        return state.lastAck;
+                    }
+                    boolean progressed = state.lastAck == null || state.committed > state.lastAck.committed();
+                    if (progressed && (!reader.ready() || System.nanoTime() - state.lastAckAt >= ackIntervalNanos)) {
+                        ack(state, false, null);
+                    }
+                }
+            }
+            if (commit(state)) {
+                ack(state, true, null);
+            }
+            return state.lastAck;
+        } finally {
+            activeStreams.decrementAndGet();
+            log.info(
+                    "Rate stream closed. lines={} accepted={} rejected={}",
+                    state.lines,
+                    state.accepted,
+                    state.rejected
+            );
+        }
+    }
+
+    /**
+     * Commits the pending micro-batch.
+     *
+     * @return {@code false} if the commit failed and the stream was aborted
+     */
+    private boolean commit(StreamState state) throws IOException {
+        if (state.batch.isEmpty()) {
+            state.committed = state.lines;
+            return true;
+        }
+        batchFill.record(state.batch.size());
+        RateBatchResponse response;
+        try {
+            response = rateEventService.createRateEvents(state.batch);
+        } catch (RuntimeException ex) {
+            log.error(
+                    "Rate stream micro-batch failed, aborting stream. committed={} size={}",
+                    state.committed,
+                    state.batch.size(),
+                    ex
+            );
+            ack(state, true, "commit failed, resend from line " + state.committed);
+            return false;
+        }
+        state.accepted += response.accepted();
+        state.rejected += response.rejected();
+        for (ItemResult result : response.results()) {
+            if (result.status() == RateBatchResponse.ItemStatus.REJECTED) {
+                state.rejections.add(withLine(result, state.batchLines.get(result.index())));
+            }
+        }
+        state.batch.clear();
+        state.batchLines.clear();
+        state.committed = state.lines;
+        return true;
+    }
+
+    private void ack(StreamState state, boolean complete, String error) throws IOException {
+        RateStreamAck ack = new RateStreamAck(
+                state.committed,
+                state.accepted,
+                state.rejected,
+                List.copyOf(state.rejections),
+                complete,
+                error
+        );
+        state.out.write(JsonUtil.toJsonString(ack).getBytes(StandardCharsets.UTF_8));
+        state.out.write(NEW_LINE);
+        state.out.flush();
+        state.rejections.clear();
+        state.lastAck = ack;
+        state.lastAckAt = System.nanoTime();
+    }
+
+    private static LineRejection withLine(ItemResult result, long line) {
+        return new LineRejection(
+                line,
+                result.pair(),
+                result.code(),
+                result.message()
+        );
+    }
+
+    /**
+     * Per-stream progress, only touched by the thread reading the stream.
+     */
+    private final class StreamState {
+        private final OutputStream out;
+        private final List<RawRateRequest> batch = new ArrayList<>();
+        private final List<Long> batchLines = new ArrayList<>();
+        private final List<LineRejection> rejections = new ArrayList<>();
+        private long lines;
+        private long committed;
+        private long accepted;
+        private long rejected;
+        private RateStreamAck lastAck;
+        private long lastAckAt = System.nanoTime();
+
+        private StreamState(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Parses a line into the pending micro-batch; malformed lines are rejected
+         * right away. Blank lines are counted, so line numbers and
+         * {@code committed} stay physical line offsets, but not parsed.
+         */
+        private void add(String line) {
+            long index = lines++;
+            if (line.isBlank()) {
+                return;
+            }
+            try {
+                batch.add(JsonUtil.fromJson(line, RawRateRequest.class));
+                batchLines.add(index);
+            } catch (IllegalArgumentException ex) {
+                log.warn(
+                        "Malformed rate stream line rejected. line={}",
+                        index
+                );
+                rateProducerMetrics.received();
+                rateProducerMetrics.rejected();
+                rejected++;
+                rejections.add(new LineRejection(
+                        index,
+                        null,
+                        "MALFORMED_LINE",
+                        "line is not a valid rate request"
+                ));
+            }
+        }
+    }
+}
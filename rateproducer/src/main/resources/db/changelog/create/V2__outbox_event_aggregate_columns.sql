@@ -0,0 +1,5 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_002
+ALTER TABLE outbox_event
+    ADD COLUMN IF NOT EXISTS aggregate_key VARCHAR(63) NULL,
+    ADD COLUMN IF NOT EXISTS aggregate_seq BIGINT NULL;
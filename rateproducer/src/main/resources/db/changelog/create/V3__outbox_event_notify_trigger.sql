@@ -0,0 +1,13 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_003 splitStatements:false
+CREATE OR REPLACE FUNCTION outbox_event_notify() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('outbox_event', '');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_outbox_event_notify
+    AFTER INSERT ON outbox_event
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_event_notify();
@@ -0,0 +1,18 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_004 splitStatements:false
+CREATE OR REPLACE FUNCTION outbox_event_notify() RETURNS trigger AS $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM inserted_rows WHERE status IN ('PENDING', 'RETRY')) THEN
+        PERFORM pg_notify('outbox_event', '');
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_outbox_event_notify ON outbox_event;
+
+CREATE TRIGGER trg_outbox_event_notify
+    AFTER INSERT ON outbox_event
+    REFERENCING NEW TABLE AS inserted_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_event_notify();
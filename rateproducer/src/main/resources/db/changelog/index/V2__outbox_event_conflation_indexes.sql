@@ -0,0 +1,5 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_indexes_002
+CREATE INDEX ix_outbox_conflation_backlog
+    ON outbox_event(event_type, aggregate_key, aggregate_seq)
+    WHERE status IN ('PENDING', 'RETRY');
@@ -0,0 +1,5 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_indexes_003
+CREATE INDEX ix_outbox_claimable
+    ON outbox_event(available_at)
+    WHERE status IN ('PENDING', 'RETRY');
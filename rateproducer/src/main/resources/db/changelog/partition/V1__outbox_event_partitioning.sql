@@ -0,0 +1,168 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_partition_functions runOnChange:true splitStatements:false
+-- The only definition of the partition maintenance functions: edit them here.
+CREATE OR REPLACE FUNCTION outbox_event_create_partitions(days_ahead INT) RETURNS INT AS $$
+DECLARE
+    day            DATE;
+    partition_name TEXT;
+    moved          BIGINT;
+    columns        TEXT;
+    created        INT := 0;
+BEGIN
+    -- Days that already got rows in the default partition are created too,
+    -- otherwise those rows would never expire.
+    FOR day IN
+        SELECT CURRENT_DATE + i FROM generate_series(0, days_ahead) AS i
+        UNION
+        SELECT DISTINCT created_at::DATE FROM outbox_event_default
+        ORDER BY 1
+    LOOP
+        partition_name := 'outbox_event_p' || to_char(day, 'YYYYMMDD');
+        CONTINUE WHEN to_regclass(partition_name) IS NOT NULL;
+
+        -- CREATE TABLE ... PARTITION OF fails while the default partition holds
+        -- rows of the new range, so those rows are moved into a plain table
+        -- that is attached afterwards. Direct DML on the partitions fires
+        -- neither the backlog nor the notify trigger, and is not published.
+        LOCK TABLE outbox_event_default IN EXCLUSIVE MODE;
+        IF EXISTS (
+            SELECT 1 FROM outbox_event_default
+            WHERE created_at >= day::TIMESTAMP AND created_at < (day + 1)::TIMESTAMP
+        ) THEN
+            SELECT string_agg(quote_ident(attname), ', ' ORDER BY attnum) INTO columns
+            FROM pg_attribute
+            WHERE attrelid = 'outbox_event'::REGCLASS
+              AND attnum > 0 AND NOT attisdropped AND attgenerated = '';
+            EXECUTE format(
+                'CREATE TABLE %I (LIKE outbox_event INCLUDING DEFAULTS INCLUDING GENERATED INCLUDING CONSTRAINTS)',
+                partition_name
+            );
+            EXECUTE format(
+                'WITH moved AS (
+                     DELETE FROM outbox_event_default
+                     WHERE created_at >= %L AND created_at < %L
+                     RETURNING %s
+                 )
+                 INSERT INTO %I (%s) SELECT %s FROM moved',
+                day::TIMESTAMP, (day + 1)::TIMESTAMP, columns, partition_name, columns, columns
+            );
+            GET DIAGNOSTICS moved = ROW_COUNT;
+            EXECUTE format(
+                'ALTER TABLE outbox_event ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                partition_name, day::TIMESTAMP, (day + 1)::TIMESTAMP
+            );
+            RAISE WARNING 'Moved % outbox_event rows from the default partition to %', moved, partition_name;
+        ELSE
+            EXECUTE format(
+                'CREATE TABLE %I PARTITION OF outbox_event FOR VALUES FROM (%L) TO (%L)',
+                partition_name, day::TIMESTAMP, (day + 1)::TIMESTAMP
+            );
+        END IF;
+        created := created + 1;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION outbox_event_expire_partitions(retention_days INT, detach_only BOOLEAN)
+    RETURNS SETOF TEXT AS $$
+DECLARE
+    part        RECORD;
+    cutoff      TIMESTAMP := (CURRENT_DATE - retention_days)::TIMESTAMP;
+    upper_bound TIMESTAMP;
+    unfinished  BOOLEAN;
+BEGIN
+    FOR part IN
+        SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'outbox_event'::REGCLASS
+    LOOP
+        CONTINUE WHEN part.bound = 'DEFAULT';
+        upper_bound := substring(part.bound FROM 'TO \(''([^'']+)''\)')::TIMESTAMP;
+        CONTINUE WHEN upper_bound IS NULL OR upper_bound > cutoff;
+
+        -- RELAY rows are marked SENT once the relay has them confirmed; until then
+        -- they may still be parked as FAILED, so they keep the partition.
+        EXECUTE format(
+            'SELECT EXISTS (SELECT 1 FROM %I WHERE status NOT IN (''SENT'', ''FAILED'', ''SUPERSEDED''))',
+            part.relname
+        ) INTO unfinished;
+        CONTINUE WHEN unfinished;
+
+        -- Dropping or detaching a partition fires no DELETE trigger.
+        EXECUTE format(
+            'INSERT INTO outbox_backlog (status, backend, count)
+             SELECT status, 0, -count(*) FROM %I WHERE status = ''FAILED'' GROUP BY status
+             ON CONFLICT (status, backend) DO UPDATE SET count = outbox_backlog.count + EXCLUDED.count',
+            part.relname
+        );
+
+        IF detach_only THEN
+            EXECUTE format('ALTER TABLE outbox_event DETACH PARTITION %I', part.relname);
+        ELSE
+            EXECUTE format('DROP TABLE %I', part.relname);
+        END IF;
+        RETURN NEXT part.relname;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- changeset emrcelen:outbox_event_partition_001 splitStatements:false
+ALTER TABLE outbox_event RENAME TO outbox_event_unpartitioned;
+ALTER INDEX outbox_event_pkey RENAME TO outbox_event_unpartitioned_pkey;
+DROP TRIGGER IF EXISTS trg_outbox_event_notify ON outbox_event_unpartitioned;
+
+CREATE TABLE outbox_event (
+  id                        UUID NOT NULL,
+  event_key                 VARCHAR(127) NOT NULL,
+  event_type                VARCHAR(31) NOT NULL,
+  schema_version            INT NOT NULL,
+  payload                   JSONB NOT NULL,
+  status                    VARCHAR(31) NOT NULL,
+  attempts                  INT NOT NULL DEFAULT 0,
+  available_at              TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+  created_at                TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  processing_started_at     TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+  last_error                TEXT NULL,
+  aggregate_key             VARCHAR(63) NULL,
+  aggregate_seq             BIGINT NULL,
+  PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+DO $$
+BEGIN
+    EXECUTE format(
+        'CREATE TABLE outbox_event_legacy PARTITION OF outbox_event FOR VALUES FROM (MINVALUE) TO (%L)',
+        CURRENT_DATE::TIMESTAMP
+    );
+END;
+$$;
+CREATE TABLE outbox_event_default PARTITION OF outbox_event DEFAULT;
+SELECT outbox_event_create_partitions(3);
+
+INSERT INTO outbox_event (
+    id, event_key, event_type, schema_version, payload,
+    status, attempts, available_at, created_at, processing_started_at,
+    last_error, aggregate_key, aggregate_seq
+)
+SELECT id, event_key, event_type, schema_version, payload,
+       status, attempts, available_at, created_at, processing_started_at,
+       last_error, aggregate_key, aggregate_seq
+FROM outbox_event_unpartitioned;
+
+DROP TABLE outbox_event_unpartitioned;
+
+CREATE INDEX ix_outbox_status_available ON outbox_event(status, available_at);
+CREATE INDEX ix_outbox_conflation_backlog
+    ON outbox_event(event_type, aggregate_key, aggregate_seq)
+    WHERE status IN ('PENDING', 'RETRY');
+CREATE INDEX ix_outbox_claimable
+    ON outbox_event(available_at)
+    WHERE status IN ('PENDING', 'RETRY');
+
+CREATE TRIGGER trg_outbox_event_notify
+    AFTER INSERT ON outbox_event
+    REFERENCING NEW TABLE AS inserted_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_event_notify();
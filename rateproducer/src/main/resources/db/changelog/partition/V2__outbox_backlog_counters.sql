@@ -0,0 +1,109 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_partition_002 splitStatements:false
+CREATE TABLE outbox_backlog (
+  status                    VARCHAR(31) NOT NULL,
+  backend                   INT NOT NULL,
+  count                     BIGINT NOT NULL,
+  PRIMARY KEY (status, backend)
+);
+
+CREATE OR REPLACE FUNCTION outbox_backlog_track() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO outbox_backlog (status, backend, count)
+        SELECT status, pg_backend_pid(), count(*)
+        FROM new_rows
+        WHERE status IN ('PENDING', 'RETRY', 'PROCESSING', 'FAILED')
+        GROUP BY status
+        ORDER BY status
+        ON CONFLICT (status, backend) DO UPDATE SET count = outbox_backlog.count + EXCLUDED.count;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO outbox_backlog (status, backend, count)
+        SELECT status, pg_backend_pid(), sum(delta)
+        FROM (
+            SELECT status, 1 AS delta FROM new_rows
+            UNION ALL
+            SELECT status, -1 AS delta FROM old_rows
+        ) changed
+        WHERE status IN ('PENDING', 'RETRY', 'PROCESSING', 'FAILED')
+        GROUP BY status
+        HAVING sum(delta) <> 0
+        ORDER BY status
+        ON CONFLICT (status, backend) DO UPDATE SET count = outbox_backlog.count + EXCLUDED.count;
+    ELSE
+        INSERT INTO outbox_backlog (status, backend, count)
+        SELECT status, pg_backend_pid(), -count(*)
+        FROM old_rows
+        WHERE status IN ('PENDING', 'RETRY', 'PROCESSING', 'FAILED')
+        GROUP BY status
+        ORDER BY status
+        ON CONFLICT (status, backend) DO UPDATE SET count = outbox_backlog.count + EXCLUDED.count;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_outbox_backlog_insert
+    AFTER INSERT ON outbox_event
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_backlog_track();
+
+CREATE TRIGGER trg_outbox_backlog_update
+    AFTER UPDATE ON outbox_event
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_backlog_track();
+
+CREATE TRIGGER trg_outbox_backlog_delete
+    AFTER DELETE ON outbox_event
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION outbox_backlog_track();
+
+CREATE OR REPLACE FUNCTION outbox_backlog_resync() RETURNS BIGINT AS $$
+DECLARE
+    drift BIGINT;
+BEGIN
+    -- Concurrent resyncs would apply the same correction twice.
+    PERFORM pg_advisory_xact_lock(hashtext('outbox_backlog_resync'));
+
+    WITH gone AS (
+        DELETE FROM outbox_backlog
+        WHERE backend <> 0
+        AND backend NOT IN (SELECT pid FROM pg_stat_activity)
+        RETURNING status, count
+    )
+    INSERT INTO outbox_backlog (status, backend, count)
+    SELECT status, 0, sum(count)
+    FROM gone
+    GROUP BY status
+    ON CONFLICT (status, backend) DO UPDATE SET count = outbox_backlog.count + EXCLUDED.count;
+
+    WITH actual AS (
+        SELECT status, count(*) AS count
+        FROM outbox_event
+        WHERE status IN ('PENDING', 'RETRY', 'PROCESSING', 'FAILED')
+        GROUP BY status
+    ), tracked AS (
+        SELECT status, sum(count) AS count
+        FROM outbox_backlog
+        GROUP BY status
+    ), diff AS (
+        SELECT s.status, coalesce(a.count, 0) - coalesce(t.count, 0) AS count
+        FROM (VALUES ('PENDING'), ('RETRY'), ('PROCESSING'), ('FAILED')) s(status)
+        LEFT JOIN actual a ON a.status = s.status
+        LEFT JOIN tracked t ON t.status = s.status
+        WHERE coalesce(a.count, 0) <> coalesce(t.count, 0)
+    ), correction AS (
+        INSERT INTO outbox_backlog (status, backend, count)
+        SELECT status, 0, count
+        FROM diff
+        ON CONFLICT (status, backend) DO UPDATE SET count = outbox_backlog.count + EXCLUDED.count
+    )
+    SELECT coalesce(sum(abs(count)), 0) INTO drift FROM diff;
+    RETURN drift;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT outbox_backlog_resync();
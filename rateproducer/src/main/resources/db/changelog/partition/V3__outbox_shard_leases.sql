@@ -0,0 +1,23 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_partition_003 splitStatements:false
+ALTER TABLE outbox_event
+    ADD COLUMN shard SMALLINT NOT NULL
+    GENERATED ALWAYS AS ((hashtext(coalesce(aggregate_key, event_key)) & 2147483647) % 64) STORED;
+
+CREATE INDEX ix_outbox_claimable_shard
+    ON outbox_event(shard, available_at)
+    WHERE status IN ('PENDING', 'RETRY');
+
+CREATE TABLE outbox_shard_lease (
+  shard                     SMALLINT PRIMARY KEY,
+  owner                     VARCHAR(127) NULL,
+  lease_until               TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT '-infinity'
+);
+
+INSERT INTO outbox_shard_lease (shard)
+SELECT generate_series(0, 63);
+
+CREATE TABLE outbox_instance (
+  instance_id               VARCHAR(127) PRIMARY KEY,
+  heartbeat_at              TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
@@ -0,0 +1,5 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_partition_004 splitStatements:false
+-- Inserts into any partition are published as inserts into outbox_event.
+CREATE PUBLICATION outbox_relay FOR TABLE outbox_event
+    WITH (publish = 'insert', publish_via_partition_root = true);
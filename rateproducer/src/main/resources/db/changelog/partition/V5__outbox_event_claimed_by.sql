@@ -0,0 +1,10 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_partition_005 splitStatements:false
+ALTER TABLE outbox_event
+    ADD COLUMN claimed_by VARCHAR(127) NULL;
+
+-- Only PROCESSING rows are indexed, so the watchdog reads the in-flight events
+-- instead of scanning by processing_started_at.
+CREATE INDEX ix_outbox_processing_owner
+    ON outbox_event(claimed_by, processing_started_at)
+    WHERE status = 'PROCESSING';
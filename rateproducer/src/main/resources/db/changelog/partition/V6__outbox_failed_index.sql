@@ -0,0 +1,7 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_partition_006 splitStatements:false
+-- Only FAILED rows are indexed, in keyset order, so listing and requeueing
+-- dead-lettered events never scans the live outbox.
+CREATE INDEX ix_outbox_failed
+    ON outbox_event(created_at, id)
+    WHERE status = 'FAILED';
@@ -0,0 +1,19 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_partition_007 splitStatements:false
+-- Rows with schema_version 2 keep the event in payload_bin instead of payload.
+-- Exactly one of the two columns is set.
+ALTER TABLE outbox_event
+    ADD COLUMN payload_bin BYTEA NULL;
+
+ALTER TABLE outbox_event
+    ALTER COLUMN payload DROP NOT NULL;
+
+ALTER TABLE outbox_event
+    ADD CONSTRAINT ck_outbox_event_payload
+        CHECK ((payload IS NULL) <> (payload_bin IS NULL));
+
+-- Rows still stored as JSON, oldest first, for OutboxPayloadMigrator. The index
+-- empties as rows are converted and stays empty once the binary format is on.
+CREATE INDEX ix_outbox_json_payload
+    ON outbox_event(created_at)
+    WHERE schema_version = 1;
@@ -0,0 +1,28 @@
+-- liquibase formatted sql
+-- changeset emrcelen:outbox_event_partition_008 splitStatements:false
+-- Event key idempotency for the partitioned outbox_event.
+--
+-- A unique index on a partitioned table must include the partition key, so
+-- UNIQUE (event_key, created_at) would only catch a duplicate written in the
+-- same instant, and the global ux_outbox_event_key went away with partitioning.
+-- Writers claim the key here first (INSERT ... ON CONFLICT DO NOTHING) and only
+-- insert the event when the claim succeeded.
+--
+-- Trade-offs:
+--   * one extra index insert per event, about what the global unique index cost
+--   * keys are pruned with the outbox retention (OutboxPartitionManager), so a
+--     duplicate is only detected within outbox.partition.retention-days; a replay
+--     of an older key is written again
+--   * pruning is a row-level DELETE, unlike the partition drop, so the table
+--     needs regular autovacuum
+CREATE TABLE outbox_event_key (
+  event_key                 VARCHAR(127) NOT NULL PRIMARY KEY,
+  created_at                TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX ix_outbox_event_key_created_at ON outbox_event_key(created_at);
+
+INSERT INTO outbox_event_key (event_key, created_at)
+SELECT event_key, min(created_at)
+FROM outbox_event
+GROUP BY event_key;
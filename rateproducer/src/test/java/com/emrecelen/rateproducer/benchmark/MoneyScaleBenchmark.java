@@ -0,0 +1,90 @@
+package com.emrecelen.rateproducer.benchmark;
+
+import com.emrecelen.rateproducer.domain.model.MoneyScale;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the fixed-point pips parser with the previous {@link BigDecimal}
+ * based validation and conversion of one bid/ask pair.
+ *
+ * <p>
+ * Not part of the test suite. Run with:
+ * <pre>
+ * mvn test-compile
+ * mvn exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.emrecelen.rateproducer.benchmark.MoneyScaleBenchmark
+ * </pre>
+ * Add {@code -prof gc} in {@link #main(String[])} to see allocation per operation.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyScaleBenchmark {
+
+    @Param({"1.08455", "150.5", "0.00001"})
+    public String bid;
+
+    private String ask;
+
+    @Setup
+    public void setUp() {
+        ask = new BigDecimal(bid).add(new BigDecimal("0.0002")).toPlainString();
+    }
+
+    /**
+     * Previous ingest path: two {@link BigDecimal}s for validation and two more
+     * for the conversion to pips.
+     */
+    @Benchmark
+    public long bigDecimal() {
+        BigDecimal b = new BigDecimal(bid);
+        BigDecimal a = new BigDecimal(ask);
+        if (b.compareTo(a) >= 0) {
+            throw new IllegalStateException();
+        }
+        long bidPips = new BigDecimal(bid).movePointRight(MoneyScale.SCALE).longValueExact();
+        long askPips = new BigDecimal(ask).movePointRight(MoneyScale.SCALE).longValueExact();
+        return bidPips ^ askPips;
+    }
+
+    /**
+     * Current ingest path: each value is parsed once and the result is used for
+     * both validation and the event.
+     */
+    @Benchmark
+    public long fixedPoint() {
+        long bidPips = MoneyScale.parsePips(bid);
+        long askPips = MoneyScale.parsePips(ask);
+        if (bidPips >= askPips) {
+            throw new IllegalStateException();
+        }
+        return bidPips ^ askPips;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MoneyScaleBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,190 @@
+package com.emrecelen.rateproducer.benchmark;
+
+import com.emrecelen.rateproducer.common.JsonUtil;
+import com.emrecelen.rateproducer.domain.model.RateEvent;
+import com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares storing rate events as JSONB ({@code payload}) with the binary
+ * layout of {@link OutboxPayloadCodec} ({@code payload_bin}) against a real
+ * Postgres.
+ *
+ * <p>
+ * Each operation handles a batch of {@value #BATCH} events on a scratch table
+ * with the payload column of the given format:
+ * <ul>
+ *     <li>{@code insert}: encode and insert, as the outbox writer does</li>
+ *     <li>{@code read}: select and turn into the published JSON body, as the
+ *     publisher does</li>
+ * </ul>
+ * Table size per row (heap, TOAST and primary key) is printed at the end of
+ * each trial.
+ * </p>
+ *
+ * <p>
+ * Not part of the test suite. Needs a Postgres that accepts
+ * {@code CREATE TABLE}. Run with:
+ * <pre>
+ * mvn test-compile
+ * mvn exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.emrecelen.rateproducer.benchmark.OutboxPayloadBenchmark \
+ *     -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/postgres \
+ *     -Dbenchmark.jdbc.user=postgres -Dbenchmark.jdbc.password=
+ * </pre>
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutboxPayloadBenchmark {
+
+    private static final int BATCH = 100;
+    private static final int PRELOADED = 100_000;
+    private static final String TABLE = "outbox_payload_benchmark";
+
+    @Param({"JSON", "BINARY"})
+    public String format;
+
+    private Connection connection;
+    private PreparedStatement insert;
+    private PreparedStatement read;
+    private long seq;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/postgres"),
+                System.getProperty("benchmark.jdbc.user", "postgres"),
+                System.getProperty("benchmark.jdbc.password", "")
+        );
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE IF EXISTS " + TABLE);
+            ddl.execute("CREATE TABLE " + TABLE + " ("
+                    + "id BIGSERIAL PRIMARY KEY, "
+                    + (isBinary() ? "payload_bin BYTEA NOT NULL" : "payload JSONB NOT NULL")
+                    + ")");
+        }
+        insert = connection.prepareStatement(isBinary()
+                ? "INSERT INTO " + TABLE + " (payload_bin) VALUES (?)"
+                : "INSERT INTO " + TABLE + " (payload) VALUES (CAST(? AS jsonb))");
+        read = connection.prepareStatement(isBinary()
+                ? "SELECT payload_bin FROM " + TABLE + " WHERE id > ? ORDER BY id LIMIT " + BATCH
+                : "SELECT payload FROM " + TABLE + " WHERE id > ? ORDER BY id LIMIT " + BATCH);
+
+        for (int i = 0; i < PRELOADED; i += BATCH) {
+            insert();
+        }
+        try (Statement analyze = connection.createStatement()) {
+            analyze.execute("VACUUM ANALYZE " + TABLE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement stats = connection.createStatement();
+             ResultSet rs = stats.executeQuery("SELECT pg_total_relation_size('" + TABLE + "'), "
+                     + "pg_relation_size('" + TABLE + "'), count(*), "
+                     + "avg(pg_column_size(" + (isBinary() ? "payload_bin" : "payload") + ")) FROM " + TABLE)) {
+            rs.next();
+            long rows = rs.getLong(3);
+            System.out.printf(
+                    "%n%s: rows=%d payloadBytes=%.1f heapBytesPerRow=%d totalBytesPerRow=%d%n",
+                    format,
+                    rows,
+                    rs.getDouble(4),
+                    rs.getLong(2) / rows,
+                    rs.getLong(1) / rows
+            );
+            stats.execute("DROP TABLE " + TABLE);
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public int insert() throws SQLException {
+        for (int i = 0; i < BATCH; i++) {
+            RateEvent event = nextEvent();
+            if (isBinary()) {
+                insert.setBytes(1, OutboxPayloadCodec.encode(event));
+            } else {
+                insert.setString(1, JsonUtil.toJsonString(event));
+            }
+            insert.addBatch();
+        }
+        return insert.executeBatch().length;
+    }
+
+    @Benchmark
+    public void read(Blackhole bh) throws SQLException {
+        read.setLong(1, ThreadLocalRandom.current().nextLong(PRELOADED - BATCH));
+        try (ResultSet rs = read.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(isBinary()
+                        ? JsonUtil.toJsonString(OutboxPayloadCodec.decode(rs.getBytes(1)))
+                        : rs.getString(1));
+            }
+        }
+    }
+
+    private boolean isBinary() {
+        return "BINARY".equals(format);
+    }
+
+    private RateEvent nextEvent() {
+        long s = seq++;
+        long bidPips = 108_000 + s % 1_000;
+        return new RateEvent(
+                "rate-producer:8181:EUR/USD:" + s,
+                OutboxPayloadCodec.JSON_SCHEMA_VERSION,
+                LocalDateTime.now(),
+                "rate-producer:8181",
+                "EUR/USD",
+                s,
+                bidPips,
+                bidPips + 20
+        );
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        // the benchmark runs in a forked JVM, which does not inherit system properties
+        String[] jvmArgs = System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("benchmark.jdbc."))
+                .map(name -> "-D" + name + "=" + System.getProperty(name))
+                .toArray(String[]::new);
+        new Runner(new OptionsBuilder()
+                .include(OutboxPayloadBenchmark.class.getSimpleName())
+                .jvmArgsAppend(jvmArgs)
+                .build()
+        ).run();
+    }
+}
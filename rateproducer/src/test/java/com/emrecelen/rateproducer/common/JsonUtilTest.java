@@ -21,8 +21,8 @@ class JsonUtilTest {
                 "anySource",
                 "EUR/USD",
                 1,
-                "anybid",
-                "anyask",
+                108450L,
+                108470L,
                 1
         );
         JsonNode node = JsonUtil.toJson(rawRate);
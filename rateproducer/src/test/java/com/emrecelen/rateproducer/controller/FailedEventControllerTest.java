@@ -0,0 +1,135 @@
+package com.emrecelen.rateproducer.controller;
+
+import com.emrecelen.rateproducer.api.controller.FailedEventController;
+import com.emrecelen.rateproducer.api.dto.FailedRequeueRequest;
+import com.emrecelen.rateproducer.api.error.GlobalExceptionHandler;
+import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.config.TestConfig;
+import com.emrecelen.rateproducer.exception.InvalidCursorException;
+import com.emrecelen.rateproducer.exception.RequeueInProgressException;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.service.OutboxFailedEventService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Import({
+        GlobalExceptionHandler.class,
+        TestConfig.class
+})
+@WebMvcTest(FailedEventController.class)
+class FailedEventControllerTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2026, 1, 5, 10, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @MockitoBean
+    private OutboxFailedEventService failedEventService;
+
+    @Test
+    void should_return_page_with_cursor_of_last_event_when_page_is_full() throws Exception {
+        UUID afterId = UUID.randomUUID();
+        OutboxEvent first = failed(UUID.randomUUID());
+        OutboxEvent last = failed(UUID.randomUUID());
+        when(failedEventService.pageSize(2)).thenReturn(2);
+        when(failedEventService.listFailed("EUR/USD", null, null, "timeout", FROM, afterId, 2))
+                .thenReturn(List.of(first, last));
+
+        mockMvc.perform(get("/api/outbox/failed")
+                        .param("pair", "EUR/USD")
+                        .param("error", "timeout")
+                        .param("afterCreatedAt", FROM.toString())
+                        .param("afterId", afterId.toString())
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].pair").value("EUR/USD"))
+                .andExpect(jsonPath("$.items[0].lastError").value("confirm timeout"))
+                .andExpect(jsonPath("$.next.afterId").value(last.getId().toString()));
+    }
+
+    @Test
+    void should_return_400_when_cursor_has_no_id() throws Exception {
+        when(failedEventService.pageSize(100)).thenReturn(100);
+        when(failedEventService.listFailed(null, null, null, null, FROM, null, 100))
+                .thenThrow(new InvalidCursorException("afterCreatedAt and afterId must be given together"));
+
+        mockMvc.perform(get("/api/outbox/failed")
+                        .param("afterCreatedAt", FROM.toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("INVALID_CURSOR"));
+    }
+
+    @Test
+    void should_start_requeue_and_return_202() throws Exception {
+        FailedRequeueRequest request = new FailedRequeueRequest("EUR/USD", FROM, FROM.plusHours(1), null);
+
+        mockMvc.perform(post("/api/outbox/failed/requeue")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted());
+
+        verify(failedEventService).startRequeue("EUR/USD", FROM, FROM.plusHours(1), null);
+    }
+
+    @Test
+    void should_return_409_when_requeue_already_running() throws Exception {
+        doThrow(new RequeueInProgressException("A requeue of failed outbox events is already running"))
+                .when(failedEventService).startRequeue(any(), any(), any(), any());
+
+        mockMvc.perform(post("/api/outbox/failed/requeue")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.code").value("REQUEUE_IN_PROGRESS"));
+    }
+
+    @Test
+    void should_return_400_when_range_is_inverted() throws Exception {
+        FailedRequeueRequest request = new FailedRequeueRequest(null, FROM.plusHours(1), FROM, null);
+
+        mockMvc.perform(post("/api/outbox/failed/requeue")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("VALIDATION_ERROR"));
+    }
+
+    private static OutboxEvent failed(UUID id) {
+        OutboxEvent event = OutboxEvent.pending(
+                "FX:EUR/USD:1",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                "{}",
+                "EUR/USD",
+                1L
+        );
+        ReflectionTestUtils.setField(event, "id", id);
+        event.setStatus(Constants.OutboxStatus.FAILED);
+        event.setAttempts(5);
+        event.setLastError("confirm timeout");
+        return event;
+    }
+}
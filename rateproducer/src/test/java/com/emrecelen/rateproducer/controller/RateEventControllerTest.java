@@ -1,11 +1,14 @@
 package com.emrecelen.rateproducer.controller;
 
 import com.emrecelen.rateproducer.api.controller.RateEventController;
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse;
 import com.emrecelen.rateproducer.api.dto.RawRateRequest;
 import com.emrecelen.rateproducer.api.error.GlobalExceptionHandler;
 import com.emrecelen.rateproducer.config.TestConfig;
+import com.emrecelen.rateproducer.exception.InvalidBatchException;
 import com.emrecelen.rateproducer.exception.PairNotActiveException;
 import com.emrecelen.rateproducer.service.RateEventService;
+import com.emrecelen.rateproducer.service.RateStreamIngestor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
@@ -15,10 +18,16 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import tools.jackson.databind.ObjectMapper;
 
+import java.util.List;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNotNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -35,6 +44,8 @@ class RateEventControllerTest {
     private ObjectMapper objectMapper;
     @MockitoBean
     private RateEventService rateEventService;
+    @MockitoBean
+    private RateStreamIngestor rateStreamIngestor;
 
     @Test
     void should_create_rate_event_and_return_202() throws Exception {
@@ -92,4 +103,50 @@ class RateEventControllerTest {
                         .value("Requested pair is currently not available"))
                 .andExpect(jsonPath("$.items").doesNotExist());
     }
+
+    @Test
+    void should_return_per_item_results_for_batch() throws Exception {
+        List<RawRateRequest> requests = List.of(
+                new RawRateRequest("EUR/USD", "1.0845", "1.0847"),
+                new RawRateRequest("EUR/USD", "1.0850", "1.0840")
+        );
+        when(rateEventService.createRateEvents(anyList())).thenReturn(RateBatchResponse.of(List.of(
+                RateBatchResponse.ItemResult.accepted(0, "EUR/USD", 7),
+                RateBatchResponse.ItemResult.rejected(1, "EUR/USD", "INVALID_RATE", "bid must be smaller than ask")
+        )));
+
+        mockMvc.perform(post("/api/rates/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.results[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.results[0].seq").value(7))
+                .andExpect(jsonPath("$.results[1].status").value("REJECTED"))
+                .andExpect(jsonPath("$.results[1].code").value("INVALID_RATE"));
+    }
+
+    @Test
+    void should_return_400_when_batch_invalid() throws Exception {
+        when(rateEventService.createRateEvents(anyList()))
+                .thenThrow(new InvalidBatchException("batch size must be between 1 and 1000", 0));
+
+        mockMvc.perform(post("/api/rates/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("INVALID_BATCH"));
+    }
+
+    @Test
+    void should_hand_ndjson_stream_to_stream_ingestor() throws Exception {
+        mockMvc.perform(post("/api/rates/stream")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"pair\":\"EUR/USD\",\"bid\":\"1.0845\",\"ask\":\"1.0847\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+        verify(rateStreamIngestor).ingest(isNotNull(), isNotNull());
+    }
 }
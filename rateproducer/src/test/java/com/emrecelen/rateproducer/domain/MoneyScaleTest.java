@@ -0,0 +1,67 @@
+package com.emrecelen.rateproducer.domain;
+
+import com.emrecelen.rateproducer.domain.model.MoneyScale;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyScaleTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "1.08455, 108455",
+            "1.0845, 108450",
+            "1, 100000",
+            "0.00001, 1",
+            ".5, 50000",
+            "1., 100000",
+            "-0.5, -50000",
+            "+2.25, 225000",
+            "1.084550000, 108455",
+            "92233720368547.75807, 9223372036854775807"
+    })
+    void should_parse_decimal_string_to_pips(String value, long expected) {
+        assertThat(MoneyScale.parsePips(value)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1.08455", "0.00001", "150.5", "123456789.12345"})
+    void should_match_big_decimal_conversion(String value) {
+        long expected = new BigDecimal(value).movePointRight(MoneyScale.SCALE).longValueExact();
+
+        assertThat(MoneyScale.parsePips(value)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "-", ".", "1.2.3", "1,5", "abc", "1e5", " 1"})
+    void should_reject_malformed_values(String value) {
+        assertThatThrownBy(() -> MoneyScale.parsePips(value))
+                .isInstanceOf(NumberFormatException.class)
+                .hasMessageContaining("not a decimal number");
+    }
+
+    @Test
+    void should_reject_values_with_more_significant_decimal_places_than_scale() {
+        assertThatThrownBy(() -> MoneyScale.parsePips("1.084551"))
+                .isInstanceOf(NumberFormatException.class)
+                .hasMessageContaining("decimal places");
+    }
+
+    @Test
+    void should_reject_values_that_overflow() {
+        assertThatThrownBy(() -> MoneyScale.parsePips("92233720368547.75808"))
+                .isInstanceOf(NumberFormatException.class)
+                .hasMessageContaining("out of range");
+    }
+
+    @Test
+    void should_treat_null_as_zero_in_to_pips() {
+        assertThat(MoneyScale.toPips(null)).isZero();
+    }
+}
@@ -1,7 +1,6 @@
 package com.emrecelen.rateproducer.domain;
 
 import com.emrecelen.rateproducer.common.Constants;
-import com.emrecelen.rateproducer.domain.model.MoneyScale;
 import com.emrecelen.rateproducer.domain.model.RateEvent;
 import com.emrecelen.rateproducer.domain.model.RawRate;
 import com.emrecelen.rateproducer.domain.service.RateEventFactory;
@@ -32,8 +31,8 @@ class RateEventFactoryTest {
                 "FX",
                 "EUR/USD",
                 42,
-                "1.100001",
-                "1.100001",
+                110000L,
+                110001L,
                 1
         );
         String key = factory.eventKey(raw);
@@ -46,8 +45,8 @@ class RateEventFactoryTest {
                 "FX",
                 "EUR/USD",
                 10,
-                "1.12345",
-                "1.56789",
+                112345L,
+                156789L,
                 1
         );
 
@@ -64,8 +63,8 @@ class RateEventFactoryTest {
         assertThat(event.pair()).isEqualTo("EUR/USD");
         assertThat(event.seq()).isEqualTo(10);
 
-        assertThat(event.bidPips()).isEqualTo(MoneyScale.toPips(raw.bid()));
-        assertThat(event.askPips()).isEqualTo(MoneyScale.toPips(raw.ask()));
+        assertThat(event.bidPips()).isEqualTo(112345L);
+        assertThat(event.askPips()).isEqualTo(156789L);
 
         assertThat(event.producedAt())
                 .isAfterOrEqualTo(before)
@@ -2,24 +2,33 @@ package com.emrecelen.rateproducer.infra;
 
 import com.emrecelen.rateproducer.common.Constants;
 import com.emrecelen.rateproducer.common.JsonUtil;
+import com.emrecelen.rateproducer.domain.model.RateEvent;
 import com.emrecelen.rateproducer.infra.rabbit.RateRabbitPublisher;
 import com.emrecelen.rateproducer.model.OutboxEvent;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageBuilder;
-import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -41,10 +50,9 @@ class RateRabbitPublisherTest {
     }
 
     @Test
-    void should_publish_event_with_headers() {
+    void should_publish_stored_payload_as_raw_bytes_with_headers() {
         // given
-        JsonNode payload = JsonNodeFactory.instance.objectNode()
-                .put("pair", "EUR/USD");
+        String payload = "{\"pair\":\"EUR/USD\",\"seq\":10}";
 
         OutboxEvent event = mock(OutboxEvent.class);
         when(event.getPayload()).thenReturn(payload);
@@ -52,29 +60,131 @@ class RateRabbitPublisherTest {
         when(event.getSchemaVersion()).thenReturn(1);
         when(event.getEventType()).thenReturn(Constants.OutboxType.RATE_EVENT);
 
-        ArgumentCaptor<MessagePostProcessor> mppCaptor =
-                ArgumentCaptor.forClass(MessagePostProcessor.class);
+        ArgumentCaptor<Message> messageCaptor = ArgumentCaptor.forClass(Message.class);
 
         // when
         publisher.publish(event);
 
         // then
-        verify(rabbitTemplate).convertAndSend(
+        verify(rabbitTemplate).send(
                 eq("rate.exchange"),
                 eq("rate.update"),
-                eq(JsonUtil.toJsonString(payload)),
-                mppCaptor.capture()
+                messageCaptor.capture()
         );
 
-        Message message = MessageBuilder.withBody(new byte[0]).build();
-        Message processed = mppCaptor.getValue().postProcessMessage(message);
-
-        MessageProperties props = processed.getMessageProperties();
+        Message message = messageCaptor.getValue();
+        assertThat(new String(message.getBody(), StandardCharsets.UTF_8)).isEqualTo(payload);
 
+        MessageProperties props = message.getMessageProperties();
+        assertThat(props.getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
         assertThat(props.getHeaders())
                 .containsEntry("eventKey", "FX:EUR/USD:10")
                 .containsEntry("schemaVersion", 1)
                 .containsEntry("eventType", Constants.OutboxType.RATE_EVENT.name());
     }
 
+    @Test
+    void should_publish_binary_payload_as_json_document() {
+        RateEvent rate = new RateEvent(
+                "FX:EUR/USD:10",
+                1,
+                LocalDateTime.of(2026, 1, 5, 10, 15, 30, 123_456_789),
+                "FX",
+                "EUR/USD",
+                10,
+                108450,
+                108470
+        );
+        OutboxEvent event = OutboxEvent.pendingBinary(
+                "FX:EUR/USD:10",
+                Constants.OutboxType.RATE_EVENT,
+                OutboxPayloadCodec.BINARY_SCHEMA_VERSION,
+                OutboxPayloadCodec.encode(rate),
+                "EUR/USD",
+                10L
+        );
+        ArgumentCaptor<Message> messageCaptor = ArgumentCaptor.forClass(Message.class);
+
+        publisher.publish(event);
+
+        verify(rabbitTemplate).send(
+                eq("rate.exchange"),
+                eq("rate.update"),
+                messageCaptor.capture()
+        );
+        Message message = messageCaptor.getValue();
+        assertThat(new String(message.getBody(), StandardCharsets.UTF_8))
+                .isEqualTo(JsonUtil.toJsonString(rate));
+        assertThat(message.getMessageProperties().getHeaders())
+                .containsEntry("schemaVersion", 1);
+    }
+
+    @Test
+    void should_complete_only_when_broker_acks() {
+        OutboxEvent event = rateEvent();
+        ArgumentCaptor<CorrelationData> correlationCaptor = ArgumentCaptor.forClass(CorrelationData.class);
+
+        CompletableFuture<Void> confirmed = publisher.publishConfirmed(event);
+
+        verify(rabbitTemplate).send(
+                eq("rate.exchange"),
+                eq("rate.update"),
+                any(Message.class),
+                correlationCaptor.capture()
+        );
+        CorrelationData correlation = correlationCaptor.getValue();
+        assertThat(correlation.getId()).isEqualTo(event.getId().toString());
+        assertThat(confirmed).isNotDone();
+
+        correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+
+        assertThat(confirmed).isCompleted();
+    }
+
+    @Test
+    void should_fail_when_broker_nacks() {
+        OutboxEvent event = rateEvent();
+        ArgumentCaptor<CorrelationData> correlationCaptor = ArgumentCaptor.forClass(CorrelationData.class);
+
+        CompletableFuture<Void> confirmed = publisher.publishConfirmed(event);
+
+        verify(rabbitTemplate).send(anyString(), anyString(), any(Message.class), correlationCaptor.capture());
+        correlationCaptor.getValue().getFuture().complete(new CorrelationData.Confirm(false, "queue full"));
+
+        assertThat(confirmed)
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(ExecutionException.class)
+                .withMessageContaining("Broker nack: queue full");
+    }
+
+    @Test
+    void should_fail_when_message_is_returned_as_unroutable() {
+        OutboxEvent event = rateEvent();
+        ArgumentCaptor<CorrelationData> correlationCaptor = ArgumentCaptor.forClass(CorrelationData.class);
+
+        CompletableFuture<Void> confirmed = publisher.publishConfirmed(event);
+
+        verify(rabbitTemplate).send(anyString(), anyString(), any(Message.class), correlationCaptor.capture());
+        CorrelationData correlation = correlationCaptor.getValue();
+        correlation.setReturned(new ReturnedMessage(
+                new Message(new byte[0]), 312, "NO_ROUTE", "rate.exchange", "rate.update"
+        ));
+        correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+
+        assertThat(confirmed)
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(ExecutionException.class)
+                .withMessageContaining("NO_ROUTE");
+    }
+
+    private static OutboxEvent rateEvent() {
+        OutboxEvent event = mock(OutboxEvent.class);
+        when(event.getId()).thenReturn(UUID.randomUUID());
+        when(event.getPayload()).thenReturn("{\"pair\":\"EUR/USD\",\"seq\":10}");
+        when(event.getEventKey()).thenReturn("FX:EUR/USD:10");
+        when(event.getSchemaVersion()).thenReturn(1);
+        when(event.getEventType()).thenReturn(Constants.OutboxType.RATE_EVENT);
+        return event;
+    }
+
 }
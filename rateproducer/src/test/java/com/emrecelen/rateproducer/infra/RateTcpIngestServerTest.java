@@ -0,0 +1,165 @@
+package com.emrecelen.rateproducer.infra;
+
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse;
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse.ItemResult;
+import com.emrecelen.rateproducer.domain.model.RateTick;
+import com.emrecelen.rateproducer.infra.tcp.RateTcpIngestClient;
+import com.emrecelen.rateproducer.infra.tcp.RateTcpIngestServer;
+import com.emrecelen.rateproducer.infra.tcp.TickAck;
+import com.emrecelen.rateproducer.service.RateEventService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RateTcpIngestServerTest {
+
+    @Mock
+    private RateEventService rateEventService;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private RateTcpIngestServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private RateTcpIngestServer start(int maxPendingFrames) {
+        server = new RateTcpIngestServer(
+                rateEventService,
+                registry,
+                "127.0.0.1",
+                0,
+                1,
+                10,
+                1000,
+                maxPendingFrames,
+                1024 * 1024
+        );
+        server.start();
+        return server;
+    }
+
+    /**
+     * Accepts every tick and uses its timestamp as the assigned sequence number,
+     * rejecting ticks of {@code XXX/YYY}.
+     */
+    private static RateBatchResponse answer(List<RateTick> ticks) {
+        List<ItemResult> results = new ArrayList<>();
+        for (int i = 0; i < ticks.size(); i++) {
+            RateTick tick = ticks.get(i);
+            results.add("XXX/YYY".equals(tick.pair())
+                    ? ItemResult.rejected(i, tick.pair(), "PAIR_NOT_AVAILABLE", "not available")
+                    : ItemResult.accepted(i, tick.pair(), tick.timestamp()));
+        }
+        return RateBatchResponse.of(results);
+    }
+
+    @Test
+    void should_acknowledge_ticks_with_assigned_sequence_numbers() throws Exception {
+        when(rateEventService.createRateTicks(anyList()))
+                .thenAnswer(inv -> answer(inv.getArgument(0)));
+        start(100);
+
+        List<TickAck> acks = new ArrayList<>();
+        try (RateTcpIngestClient client = RateTcpIngestClient.connect("127.0.0.1", server.port())) {
+            client.send(new RateTick("EUR/USD", 108450, 108452, 11));
+            client.send(new RateTick("XXX/YYY", 108450, 108452, 12));
+            client.send(new RateTick("GBP/USD", 125000, 125002, 13));
+            client.flush();
+            while (acks.size() < 3) {
+                acks.addAll(client.readAcks());
+            }
+        }
+
+        assertThat(acks)
+                .extracting(TickAck::correlationId, TickAck::status, TickAck::seq)
+                .containsExactly(
+                        tuple(1L, TickAck.Status.ACCEPTED, 11L),
+                        tuple(2L, TickAck.Status.PAIR_NOT_AVAILABLE, 0L),
+                        tuple(3L, TickAck.Status.ACCEPTED, 13L)
+                );
+    }
+
+    @Test
+    void should_close_only_the_connection_that_sends_a_truncated_frame() throws Exception {
+        when(rateEventService.createRateTicks(anyList()))
+                .thenAnswer(inv -> answer(inv.getArgument(0)));
+        start(100);
+
+        try (Socket malformed = new Socket("127.0.0.1", server.port())) {
+            DataOutputStream out = new DataOutputStream(malformed.getOutputStream());
+            out.writeInt(1);
+            out.writeByte(1);
+            out.flush();
+            malformed.setSoTimeout(5_000);
+            assertThat(malformed.getInputStream().read()).isEqualTo(-1);
+        }
+
+        List<TickAck> acks = new ArrayList<>();
+        try (RateTcpIngestClient client = RateTcpIngestClient.connect("127.0.0.1", server.port())) {
+            client.send(new RateTick("EUR/USD", 108450, 108452, 11));
+            client.flush();
+            while (acks.isEmpty()) {
+                acks.addAll(client.readAcks());
+            }
+        }
+        assertThat(acks).extracting(TickAck::seq).containsExactly(11L);
+        assertThat(registry.counter("rate.ingest.tcp.protocol.errors").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void should_stop_reading_while_commit_is_slow_and_acknowledge_everything_in_order() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(rateEventService.createRateTicks(anyList())).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return answer(inv.getArgument(0));
+        });
+        start(5);
+
+        int count = 200;
+        List<TickAck> acks = new ArrayList<>();
+        try (RateTcpIngestClient client = RateTcpIngestClient.connect("127.0.0.1", server.port())) {
+            for (int i = 1; i <= count; i++) {
+                client.send(new RateTick("EUR/USD", 108450, 108452, i));
+            }
+            client.flush();
+
+            await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                    assertThat(registry.counter("rate.ingest.tcp.backpressure.pauses").count())
+                            .isPositive()
+            );
+            release.countDown();
+
+            while (acks.size() < count) {
+                acks.addAll(client.readAcks());
+            }
+        }
+
+        assertThat(acks).extracting(TickAck::seq)
+                .containsExactlyElementsOf(
+                        LongStream.rangeClosed(1, count).boxed().toList()
+                );
+        assertThat(registry.get("rate.ingest.tcp.batch.size").summary().max()).isLessThanOrEqualTo(10);
+    }
+}
@@ -1,6 +1,5 @@
 package com.emrecelen.rateproducer.mapper;
 
-import com.emrecelen.rateproducer.api.dto.RawRateRequest;
 import com.emrecelen.rateproducer.domain.model.RawRate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,17 +21,11 @@ class RateEventMapperTest {
     void should_map_raw_rate_correctly() {
         // given
         String source = "FX";
-        Long seq = 42L;
-
-        RawRateRequest request = new RawRateRequest(
-                "EUR/USD",
-                "1.0850",
-                "1.0870"
-        );
+        long seq = 42L;
 
         long before = Instant.now().toEpochMilli();
 
-        RawRate result = mapper.toRawRate(source, seq, request);
+        RawRate result = mapper.toRawRate(source, seq, "EUR/USD", 108500L, 108700L);
 
         long after = Instant.now().toEpochMilli();
 
@@ -40,8 +33,8 @@ class RateEventMapperTest {
         assertThat(result.source()).isEqualTo("FX");
         assertThat(result.pair()).isEqualTo("EUR/USD");
         assertThat(result.seq()).isEqualTo(42L);
-        assertThat(result.bid()).isEqualTo("1.0850");
-        assertThat(result.ask()).isEqualTo("1.0870");
+        assertThat(result.bidPips()).isEqualTo(108500L);
+        assertThat(result.askPips()).isEqualTo(108700L);
         assertThat(result.timestamp())
                 .isBetween(before, after);
     }
@@ -0,0 +1,102 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.outbox.archive.ArchivedEvent;
+import com.emrecelen.rateproducer.outbox.archive.OutboxArchiveStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboxArchiveStoreTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 5, 10, 0);
+
+    @TempDir
+    private Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void should_scan_only_the_requested_pair_and_range_across_blocks_and_segments() throws IOException {
+        List<ArchivedEvent> events = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            events.add(event(i % 2 == 0 ? "EUR/USD" : "GBP/USD", i, START.plusSeconds(i)));
+        }
+
+        try (OutboxArchiveStore store = new OutboxArchiveStore(registry, dir, 4096, 50)) {
+            store.append(events);
+
+            assertThat(registry.get("outbox.archive.segments").gauge().value()).isGreaterThan(1);
+            assertThat(registry.get("outbox.archive.events").counter().count()).isEqualTo(500);
+            assertThat(scan(store, "EUR/USD", START.plusSeconds(100), START.plusSeconds(200)))
+                    .extracting(ArchivedEvent::aggregateSeq)
+                    .containsExactlyElementsOf(evenSeqs(100, 200));
+        }
+
+        try (OutboxArchiveStore reopened = new OutboxArchiveStore(new SimpleMeterRegistry(), dir, 4096, 50)) {
+            List<ArchivedEvent> scanned = scan(reopened, "GBP/USD", START, START.plusSeconds(500));
+            assertThat(scanned).hasSize(250);
+            assertThat(scanned.getFirst()).isEqualTo(events.get(1));
+        }
+    }
+
+    @Test
+    void should_drop_partially_written_block_when_reopened() throws IOException {
+        try (OutboxArchiveStore store = new OutboxArchiveStore(registry, dir, 1 << 20, 100)) {
+            store.append(List.of(event("EUR/USD", 1, START), event("EUR/USD", 2, START.plusSeconds(1))));
+        }
+        Path data = dir.resolve("00000000000000000000.seg");
+        Path index = dir.resolve("00000000000000000000.idx");
+        long dataSize = Files.size(data);
+        long indexSize = Files.size(index);
+        Files.write(data, new byte[]{1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+        Files.write(index, new byte[]{0, 7, 'E', 'U'}, StandardOpenOption.APPEND);
+
+        try (OutboxArchiveStore reopened = new OutboxArchiveStore(new SimpleMeterRegistry(), dir, 1 << 20, 100)) {
+            assertThat(Files.size(data)).isEqualTo(dataSize);
+            assertThat(Files.size(index)).isEqualTo(indexSize);
+
+            reopened.append(List.of(event("EUR/USD", 3, START.plusSeconds(2))));
+            assertThat(scan(reopened, "EUR/USD", START, START.plusMinutes(1)))
+                    .extracting(ArchivedEvent::aggregateSeq)
+                    .containsExactly(1L, 2L, 3L);
+        }
+    }
+
+    private static List<ArchivedEvent> scan(OutboxArchiveStore store, String pair, LocalDateTime from, LocalDateTime to) {
+        List<ArchivedEvent> scanned = new ArrayList<>();
+        store.scan(pair, from, to, scanned::add);
+        return scanned;
+    }
+
+    private static List<Long> evenSeqs(int from, int to) {
+        List<Long> seqs = new ArrayList<>();
+        for (long seq = from; seq < to; seq += 2) {
+            seqs.add(seq);
+        }
+        return seqs;
+    }
+
+    private static ArchivedEvent event(String pair, long seq, LocalDateTime createdAt) {
+        return new ArchivedEvent(
+                UUID.randomUUID(),
+                "FX:" + pair + ":" + seq,
+                "RATE_EVENT",
+                1,
+                pair,
+                seq,
+                createdAt,
+                "{\"pair\":\"" + pair + "\",\"seq\":" + seq + ",\"bid\":\"1.08123\",\"ask\":\"1.08131\"}"
+        );
+    }
+}
@@ -0,0 +1,73 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.common.Constants.OutboxStatus;
+import com.emrecelen.rateproducer.monitoring.metrics.OutboxBacklogTracker;
+import com.emrecelen.rateproducer.monitoring.metrics.OutboxGauges;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxBacklogTrackerTest {
+
+    @Mock
+    private OutboxEventRepository repository;
+
+    @Test
+    void should_serve_gauges_from_last_refreshed_snapshot_without_querying() {
+        OutboxBacklogTracker tracker = new OutboxBacklogTracker(repository);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new OutboxGauges(registry, tracker);
+
+        assertThat(registry.get("outbox.pending.count").gauge().value()).isZero();
+        verifyNoInteractions(repository);
+
+        when(repository.backlogCounts()).thenReturn(List.of(
+                count("PENDING", 120),
+                count("RETRY", 7),
+                count("FAILED", 3)
+        ));
+        tracker.refresh();
+
+        assertThat(registry.get("outbox.pending.count").gauge().value()).isEqualTo(120);
+        assertThat(registry.get("outbox.backlog").tag("status", "RETRY").gauge().value()).isEqualTo(7);
+        assertThat(registry.get("outbox.backlog").tag("status", "PROCESSING").gauge().value()).isZero();
+        assertThat(registry.get("outbox.backlog").tag("status", "FAILED").gauge().value()).isEqualTo(3);
+        verify(repository).backlogCounts();
+    }
+
+    @Test
+    void should_resync_counters_against_table() {
+        OutboxBacklogTracker tracker = new OutboxBacklogTracker(repository);
+        when(repository.resyncBacklog()).thenReturn(4L);
+
+        tracker.resync();
+
+        verify(repository).resyncBacklog();
+        assertThat(tracker.count(OutboxStatus.PENDING)).isZero();
+    }
+
+    private static OutboxEventRepository.BacklogCount count(String status, long count) {
+        return new OutboxEventRepository.BacklogCount() {
+            @Override
+            public String getStatus() {
+                return status;
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+}
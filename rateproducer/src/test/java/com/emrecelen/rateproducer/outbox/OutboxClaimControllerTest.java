@@ -0,0 +1,83 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.outbox.service.OutboxClaimController;
+import com.emrecelen.rateproducer.outbox.service.OutboxClaimController.Decision;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboxClaimControllerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void should_grow_up_to_max_while_claims_come_back_full() {
+        OutboxClaimController controller = controller(true);
+
+        assertThat(controller.record(100, 100, FAST)).isEqualTo(Decision.GROW);
+        assertThat(controller.batchSize()).isEqualTo(200);
+        assertThat(controller.shouldClaimAgain()).isTrue();
+
+        controller.record(200, 200, FAST);
+        controller.record(400, 400, FAST);
+        controller.record(800, 800, FAST);
+
+        assertThat(controller.batchSize()).isEqualTo(1000);
+        assertThat(registry.get("outbox.claim.batch.size").gauge().value()).isEqualTo(1000);
+        assertThat(registry.get("outbox.claim.decisions").tag("decision", "GROW").counter().count()).isEqualTo(4);
+    }
+
+    @Test
+    void should_shrink_in_proportion_to_publish_latency_overrun() {
+        OutboxClaimController controller = controller(true);
+        controller.record(100, 100, FAST);
+
+        Decision decision = controller.record(200, 200, TimeUnit.MILLISECONDS.toNanos(1000));
+
+        assertThat(decision).isEqualTo(Decision.SHRINK);
+        assertThat(controller.batchSize()).isEqualTo(100);
+        assertThat(controller.shouldClaimAgain()).isTrue();
+    }
+
+    @Test
+    void should_back_off_exponentially_on_empty_claims_and_reset_on_work() {
+        OutboxClaimController controller = controller(true);
+
+        assertThat(controller.record(100, 0, 0)).isEqualTo(Decision.BACKOFF);
+        assertThat(controller.batchSize()).isEqualTo(50);
+        assertThat(controller.isPollDue()).isFalse();
+        assertThat(registry.get("outbox.claim.idle.delay").gauge().value()).isEqualTo(200);
+
+        controller.record(50, 0, 0);
+        controller.record(50, 0, 0);
+        controller.record(50, 0, 0);
+        controller.record(50, 0, 0);
+        assertThat(registry.get("outbox.claim.idle.delay").gauge().value()).isEqualTo(2000);
+
+        assertThat(controller.record(50, 10, FAST)).isEqualTo(Decision.HOLD);
+        assertThat(controller.isPollDue()).isTrue();
+        assertThat(controller.shouldClaimAgain()).isFalse();
+        assertThat(registry.get("outbox.claim.idle.delay").gauge().value()).isZero();
+    }
+
+    @Test
+    void should_keep_fixed_batch_size_when_not_adaptive() {
+        OutboxClaimController controller = controller(false);
+
+        controller.record(100, 100, FAST);
+        controller.record(100, 0, 0);
+
+        assertThat(controller.batchSize()).isEqualTo(100);
+        assertThat(controller.isPollDue()).isTrue();
+        assertThat(controller.shouldClaimAgain()).isFalse();
+    }
+
+    private OutboxClaimController controller(boolean adaptive) {
+        return new OutboxClaimController(registry, 100, adaptive, 50, 1000, 500, 200, 2000);
+    }
+}
@@ -3,23 +3,29 @@ package com.emrecelen.rateproducer.outbox;
 import com.emrecelen.rateproducer.common.Constants;
 import com.emrecelen.rateproducer.model.OutboxEvent;
 import com.emrecelen.rateproducer.outbox.service.OutboxClaimService;
+import com.emrecelen.rateproducer.outbox.service.OutboxConflator;
+import com.emrecelen.rateproducer.outbox.service.OutboxInstanceHeartbeat;
+import com.emrecelen.rateproducer.outbox.service.OutboxShardManager;
 import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,22 +34,35 @@ class OutboxClaimServiceTest {
     @Mock
     private OutboxEventRepository repository;
 
+    @Mock
+    private OutboxShardManager shardManager;
+
+    @Mock
+    private OutboxInstanceHeartbeat instance;
+
     private OutboxClaimService service;
 
     @BeforeEach
     void setUp() {
-        service = new OutboxClaimService(repository);
+        service = new OutboxClaimService(
+                repository,
+                new OutboxConflator(repository, new SimpleMeterRegistry(), List.of(), OutboxConflator.Scope.BATCH),
+                shardManager,
+                instance
+        );
+        lenient().when(instance.isAlive()).thenReturn(true);
+        lenient().when(instance.instanceId()).thenReturn("producer-1");
     }
 
     @Test
-    void should_claim_and_mark_events_as_processing() {
+    void should_claim_batch_in_single_statement() {
         OutboxEvent e1 = OutboxEvent.pending(
                 "anyEventKey1",
                 Constants.OutboxType.RATE_EVENT,
                 1,
                 null
         );
-        e1.setStatus(Constants.OutboxStatus.PENDING);
+        e1.setStatus(Constants.OutboxStatus.PROCESSING);
 
         OutboxEvent e2 = OutboxEvent.pending(
                 "anyEventKey2",
@@ -51,44 +70,64 @@ class OutboxClaimServiceTest {
                 1,
                 null
         );
-        e2.setStatus(Constants.OutboxStatus.FAILED);
+        e2.setStatus(Constants.OutboxStatus.PROCESSING);
 
         List<OutboxEvent> events = List.of(e1, e2);
 
-        when(repository.lockNextBatch(
-                eq(List.of(Constants.OutboxStatus.PENDING)),
+        when(repository.claimNextBatch(
                 any(LocalDateTime.class),
-                eq(PageRequest.of(0, 200))
+                eq(200),
+                eq("producer-1")
         )).thenReturn(events);
-        List<OutboxEvent> result = service.claimBatch();
+        List<OutboxEvent> result = service.claimBatch(200);
 
-        assertThat(result).hasSize(2);
-
-        for (OutboxEvent event : result) {
-            assertThat(event.getStatus())
-                    .isEqualTo(Constants.OutboxStatus.PROCESSING);
-
-            assertThat(event.getProcessingStartedAt())
-                    .isNotNull();
-        }
-        verify(repository).saveAll(events);
+        assertThat(result).containsExactly(e1, e2);
+        verify(repository, never()).saveAll(anyList());
     }
 
     @Test
     void should_return_empty_list_when_no_events_available() {
         // given
-        when(repository.lockNextBatch(
-                anyList(),
+        when(repository.claimNextBatch(
                 any(LocalDateTime.class),
-                any(Pageable.class)
+                anyInt(),
+                any()
         )).thenReturn(List.of());
 
         // when
-        List<OutboxEvent> result = service.claimBatch();
+        List<OutboxEvent> result = service.claimBatch(200);
 
         // then
         assertThat(result).isEmpty();
-        verify(repository).saveAll(List.of());
     }
 
+    @Test
+    void should_claim_only_owned_shards_when_sharded() {
+        List<Short> owned = List.of((short) 3, (short) 17);
+        when(shardManager.isEnabled()).thenReturn(true);
+        when(shardManager.ownedShards()).thenReturn(owned);
+        when(repository.claimNextBatchInShards(any(LocalDateTime.class), eq(200), eq(owned), eq("producer-1")))
+                .thenReturn(List.of());
+
+        assertThat(service.claimBatch(200)).isEmpty();
+        verify(repository, never()).claimNextBatch(any(), anyInt(), any());
+    }
+
+    @Test
+    void should_not_claim_without_owned_shards() {
+        when(shardManager.isEnabled()).thenReturn(true);
+        when(shardManager.ownedShards()).thenReturn(List.of());
+
+        assertThat(service.claimBatch(200)).isEmpty();
+        verify(repository, never()).claimNextBatchInShards(any(), anyInt(), any(), any());
+        verify(repository, never()).claimNextBatch(any(), anyInt(), any());
+    }
+
+    @Test
+    void should_not_claim_while_heartbeat_overdue() {
+        when(instance.isAlive()).thenReturn(false);
+
+        assertThat(service.claimBatch(200)).isEmpty();
+        verifyNoInteractions(repository, shardManager);
+    }
 }
@@ -0,0 +1,88 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.service.OutboxConflator;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxConflatorTest {
+
+    @Mock
+    private OutboxEventRepository repository;
+
+    private OutboxConflator conflator(List<Constants.OutboxType> types, OutboxConflator.Scope scope) {
+        return new OutboxConflator(repository, new SimpleMeterRegistry(), types, scope);
+    }
+
+    private static OutboxEvent rate(String pair, long seq) {
+        OutboxEvent event = OutboxEvent.pending(
+                "src:" + pair + ":" + seq,
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null,
+                pair,
+                seq
+        );
+        ReflectionTestUtils.setField(event, "id", UUID.randomUUID());
+        return event;
+    }
+
+    @Test
+    void should_publish_only_newest_event_per_pair_and_supersede_the_rest_at_once() {
+        OutboxEvent eur1 = rate("EUR/USD", 1);
+        OutboxEvent gbp7 = rate("GBP/USD", 7);
+        OutboxEvent eur3 = rate("EUR/USD", 3);
+        OutboxEvent eur2 = rate("EUR/USD", 2);
+
+        List<OutboxEvent> published = conflator(List.of(Constants.OutboxType.RATE_EVENT), OutboxConflator.Scope.BATCH)
+                .conflateBatch(List.of(eur1, gbp7, eur3, eur2));
+
+        assertThat(published).containsExactly(gbp7, eur3);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<UUID>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(repository).markSuperseded(ids.capture(), eq(Constants.OutboxStatus.SUPERSEDED));
+        assertThat(ids.getValue()).containsExactlyInAnyOrder(eur1.getId(), eur2.getId());
+    }
+
+    @Test
+    void should_leave_batch_untouched_when_event_type_is_not_conflated() {
+        List<OutboxEvent> claimed = List.of(rate("EUR/USD", 1), rate("EUR/USD", 2));
+
+        List<OutboxEvent> published = conflator(List.of(), OutboxConflator.Scope.BACKLOG)
+                .conflateBatch(claimed);
+
+        assertThat(published).isSameAs(claimed);
+        verify(repository, never()).markSuperseded(anyCollection(), any());
+    }
+
+    @Test
+    void should_conflate_backlog_only_in_backlog_scope() {
+        when(repository.supersedeBacklog(List.of("RATE_EVENT"))).thenReturn(5);
+
+        assertThat(conflator(List.of(Constants.OutboxType.RATE_EVENT), OutboxConflator.Scope.BATCH)
+                .conflateBacklog()).isZero();
+        assertThat(conflator(List.of(Constants.OutboxType.RATE_EVENT), OutboxConflator.Scope.BACKLOG)
+                .conflateBacklog()).isEqualTo(5);
+    }
+}
@@ -5,16 +5,30 @@ import com.emrecelen.rateproducer.model.OutboxEvent;
 import com.emrecelen.rateproducer.outbox.publisher.EventPublisher;
 import com.emrecelen.rateproducer.outbox.registry.PublisherRegistry;
 import com.emrecelen.rateproducer.outbox.service.OutboxEventProcessor;
+import com.emrecelen.rateproducer.outbox.service.OutboxInstanceHeartbeat;
 import com.emrecelen.rateproducer.repository.OutboxEventRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -30,24 +44,24 @@ class OutboxEventProcessorTest {
     @Mock
     private OutboxEventRepository repository;
 
+    @Mock
+    private OutboxInstanceHeartbeat instance;
+
     private OutboxEventProcessor processor;
 
     @BeforeEach
     void setUp() {
-        processor = new OutboxEventProcessor(registry, repository);
+        lenient().when(instance.instanceId()).thenReturn("A");
+        processor = new OutboxEventProcessor(registry, repository, instance);
     }
 
     @Test
     void should_mark_event_as_sent_when_publish_succeeds() {
-        OutboxEvent event = OutboxEvent.pending(
-                "anyEventKey",
-                Constants.OutboxType.RATE_EVENT,
-                1,
-                null
-        );
-        event.setAttempts(0);
+        OutboxEvent event = claimed(UUID.randomUUID(), 0);
         when(registry.get(Constants.OutboxType.RATE_EVENT.name()))
                 .thenReturn(publisher);
+        when(repository.markPublished(List.of(event.getId()), Constants.OutboxStatus.SENT, "A"))
+                .thenReturn(1);
 
         processor.process(event);
 
@@ -55,18 +69,12 @@ class OutboxEventProcessorTest {
         assertThat(event.getStatus()).isEqualTo(Constants.OutboxStatus.SENT);
         assertThat(event.getLastError()).isNull();
         assertThat(event.getAttempts()).isEqualTo(0);
-        verify(repository).save(event);
+        verify(repository, never()).save(any());
     }
 
     @Test
     void should_retry_when_publish_fails_and_attempts_below_max() {
-        OutboxEvent event = OutboxEvent.pending(
-                "anyEventKey",
-                Constants.OutboxType.RATE_EVENT,
-                1,
-                null
-        );
-        event.setAttempts(2);
+        OutboxEvent event = claimed(UUID.randomUUID(), 2);
 
         when(registry.get(Constants.OutboxType.RATE_EVENT.name()))
                 .thenReturn(publisher);
@@ -79,19 +87,21 @@ class OutboxEventProcessorTest {
         assertThat(event.getStatus()).isEqualTo(Constants.OutboxStatus.RETRY);
         assertThat(event.getLastError()).isEqualTo("broker down");
         assertThat(event.getAvailableAt()).isNotNull();
-        verify(repository).save(event);
+        verify(repository).markAttemptFailed(
+                aryEq(new UUID[]{event.getId()}),
+                aryEq(new String[]{"broker down"}),
+                eq("A"),
+                eq(Constants.OutboxStatus.RETRY.name()),
+                eq(3),
+                any(LocalDateTime.class)
+        );
+        verify(repository, never()).save(any());
     }
 
     @Test
     void should_mark_event_as_failed_when_max_attempts_reached() {
         // given
-        OutboxEvent event = OutboxEvent.pending(
-                "anyEventKey",
-                Constants.OutboxType.RATE_EVENT,
-                1,
-                null
-        );
-        event.setAttempts(4);
+        OutboxEvent event = claimed(UUID.randomUUID(), 4);
 
         when(registry.get(Constants.OutboxType.RATE_EVENT.name()))
                 .thenReturn(publisher);
@@ -106,19 +116,20 @@ class OutboxEventProcessorTest {
         assertThat(event.getAvailableAt()).isNull();
         assertThat(event.getLastError()).isEqualTo("permanent failure");
 
-        verify(repository).save(event);
+        verify(repository).markAttemptFailed(
+                aryEq(new UUID[]{event.getId()}),
+                aryEq(new String[]{"permanent failure"}),
+                eq("A"),
+                eq(Constants.OutboxStatus.FAILED.name()),
+                eq(5),
+                isNull()
+        );
     }
 
     @Test
     void should_fail_and_retry_when_publisher_not_found() {
         // given
-        OutboxEvent event = OutboxEvent.pending(
-                "anyEventKey",
-                Constants.OutboxType.RATE_EVENT,
-                1,
-                null
-        );
-        event.setAttempts(0);
+        OutboxEvent event = claimed(UUID.randomUUID(), 0);
 
         when(registry.get(anyString()))
                 .thenThrow(new IllegalStateException("No publisher"));
@@ -131,7 +142,117 @@ class OutboxEventProcessorTest {
         assertThat(event.getStatus()).isEqualTo(Constants.OutboxStatus.RETRY);
         assertThat(event.getLastError()).isEqualTo("No publisher");
 
-        verify(repository).save(event);
+        verify(repository).markAttemptFailed(
+                aryEq(new UUID[]{event.getId()}),
+                aryEq(new String[]{"No publisher"}),
+                eq("A"),
+                eq(Constants.OutboxStatus.RETRY.name()),
+                eq(1),
+                any(LocalDateTime.class)
+        );
+    }
+
+    @Test
+    void should_not_overwrite_event_reclaimed_by_another_instance() {
+        OutboxEvent event = claimed(UUID.randomUUID(), 0);
+        when(registry.get(Constants.OutboxType.RATE_EVENT.name()))
+                .thenReturn(publisher);
+        // the watchdog handed the event to another instance: the owner guard matches no row
+        when(repository.markPublished(List.of(event.getId()), Constants.OutboxStatus.SENT, "A"))
+                .thenReturn(0);
+
+        processor.process(event);
+
+        verify(repository).markPublished(List.of(event.getId()), Constants.OutboxStatus.SENT, "A");
+        verify(repository, never()).save(any());
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    void should_finalize_batch_with_one_update_per_outcome() {
+        OutboxEvent sent1 = claimed(UUID.randomUUID(), 0);
+        OutboxEvent sent2 = claimed(UUID.randomUUID(), 2);
+        OutboxEvent retry1 = claimed(UUID.randomUUID(), 1);
+        OutboxEvent retry2 = claimed(UUID.randomUUID(), 1);
+        OutboxEvent failed = claimed(UUID.randomUUID(), 4);
+
+        when(registry.get(Constants.OutboxType.RATE_EVENT.name()))
+                .thenReturn(publisher);
+        doAnswer(invocation -> {
+            OutboxEvent event = invocation.getArgument(0);
+            if (event == retry2) {
+                throw new RuntimeException("channel closed");
+            }
+            if (event != sent1 && event != sent2) {
+                throw new RuntimeException("broker down");
+            }
+            return null;
+        }).when(publisher).publish(any(OutboxEvent.class));
+
+        List<OutboxEvent> batch = List.of(sent1, retry1, failed, sent2, retry2);
+        batch.forEach(processor::publish);
+        processor.finalizeBatch(batch);
+
+        verify(repository).markPublished(
+                List.of(sent1.getId(), sent2.getId()),
+                Constants.OutboxStatus.SENT,
+                "A"
+        );
+        verify(repository).markAttemptFailed(
+                aryEq(new UUID[]{retry1.getId(), retry2.getId()}),
+                aryEq(new String[]{"broker down", "channel closed"}),
+                eq("A"),
+                eq(Constants.OutboxStatus.RETRY.name()),
+                eq(2),
+                any(LocalDateTime.class)
+        );
+        verify(repository).markAttemptFailed(
+                aryEq(new UUID[]{failed.getId()}),
+                aryEq(new String[]{"broker down"}),
+                eq("A"),
+                eq(Constants.OutboxStatus.FAILED.name()),
+                eq(5),
+                isNull()
+        );
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void should_mark_sent_only_after_confirm_and_retry_on_nack() {
+        OutboxEvent confirmed = claimed(UUID.randomUUID(), 0);
+        OutboxEvent rejected = claimed(UUID.randomUUID(), 0);
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        when(registry.get(Constants.OutboxType.RATE_EVENT.name()))
+                .thenReturn(publisher);
+        when(publisher.publishConfirmed(confirmed)).thenReturn(ack);
+        when(publisher.publishConfirmed(rejected))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Broker nack: queue full")));
+
+        CompletableFuture<OutboxEvent> first = processor.publishConfirmed(confirmed);
+        CompletableFuture<OutboxEvent> second = processor.publishConfirmed(rejected);
+
+        assertThat(first).isNotDone();
+        assertThat(confirmed.getStatus()).isEqualTo(Constants.OutboxStatus.PROCESSING);
+        ack.complete(null);
+
+        assertThat(first.join().getStatus()).isEqualTo(Constants.OutboxStatus.SENT);
+        assertThat(second.join().getStatus()).isEqualTo(Constants.OutboxStatus.RETRY);
+        assertThat(rejected.getAttempts()).isEqualTo(1);
+        assertThat(rejected.getLastError()).isEqualTo("Broker nack: queue full");
+        verify(repository, never()).save(any());
+    }
+
+    private static OutboxEvent claimed(UUID id, int attempts) {
+        OutboxEvent event = OutboxEvent.pending(
+                "anyEventKey-" + id,
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null
+        );
+        ReflectionTestUtils.setField(event, "id", id);
+        event.setStatus(Constants.OutboxStatus.PROCESSING);
+        event.setAttempts(attempts);
+        return event;
     }
 
 }
@@ -0,0 +1,154 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.exception.InvalidCursorException;
+import com.emrecelen.rateproducer.exception.RequeueInProgressException;
+import com.emrecelen.rateproducer.outbox.service.OutboxFailedEventService;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxFailedEventServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2026, 1, 5, 10, 0);
+    private static final LocalDateTime TO = FROM.plusHours(1);
+
+    @Mock
+    private OutboxEventRepository repository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private OutboxFailedEventService service;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        service = new OutboxFailedEventService(repository, transactionManager, registry, 50, 100, 1000);
+    }
+
+    @Test
+    void should_requeue_in_chunks_until_nothing_matches_at_the_configured_rate() {
+        when(repository.requeueFailed(eq("EUR/USD"), eq(FROM), eq(TO), eq("timeout"), any(), any(), any(), any(), eq(100)))
+                .thenReturn(chunk(100, 1))
+                .thenReturn(chunk(100, 2))
+                .thenReturn(chunk(40, 3))
+                .thenReturn(Optional.empty());
+        long startedAt = System.nanoTime();
+
+        long requeued = service.requeue("EUR/USD", FROM, TO, "timeout");
+
+        assertThat(requeued).isEqualTo(240);
+        assertThat(System.nanoTime() - startedAt).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(240));
+        verify(transactionManager, times(4)).commit(any());
+        assertThat(registry.get("outbox.failed.requeued").counter().count()).isEqualTo(240.0);
+    }
+
+    @Test
+    void should_continue_after_the_last_chunk_up_to_the_start_of_the_run() {
+        UUID lastId = UUID.randomUUID();
+        Optional<OutboxEventRepository.RequeueChunk> first = Optional.of(chunk(100, FROM.plusMinutes(1), lastId));
+        when(repository.requeueFailed(isNull(), isNull(), isNull(), isNull(), any(), isNull(), isNull(), any(), eq(100)))
+                .thenReturn(first);
+        when(repository.requeueFailed(isNull(), isNull(), isNull(), isNull(), any(), eq(FROM.plusMinutes(1)), eq(lastId), any(), eq(100)))
+                .thenReturn(Optional.empty());
+        LocalDateTime before = LocalDateTime.now();
+
+        assertThat(service.requeue(null, null, null, null)).isEqualTo(100);
+
+        ArgumentCaptor<LocalDateTime> until = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository, times(2))
+                .requeueFailed(isNull(), isNull(), isNull(), isNull(), until.capture(), any(), any(), any(), eq(100));
+        assertThat(until.getAllValues().getFirst()).isAfterOrEqualTo(before);
+        assertThat(until.getAllValues()).containsOnly(until.getAllValues().getFirst());
+    }
+
+    @Test
+    void should_reject_a_second_requeue_while_one_is_running() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.requeueFailed(any(), any(), any(), any(), any(), any(), any(), any(), eq(100))).thenAnswer(inv -> {
+            release.await(2, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+
+        service.startRequeue(null, null, null, null);
+
+        assertThatThrownBy(() -> service.startRequeue(null, null, null, null))
+                .isInstanceOf(RequeueInProgressException.class);
+        release.countDown();
+        await()
+                .atMost(2, TimeUnit.SECONDS)
+                .ignoreException(RequeueInProgressException.class)
+                .untilAsserted(() -> service.startRequeue(null, null, null, null));
+        await()
+                .atMost(2, TimeUnit.SECONDS)
+                .untilAsserted(() -> verify(repository, times(2))
+                        .requeueFailed(isNull(), isNull(), isNull(), isNull(), any(), isNull(), isNull(), any(), eq(100)));
+    }
+
+    @Test
+    void should_cap_page_size() {
+        when(repository.findFailedPage(null, null, null, null, null, null, 50)).thenReturn(List.of());
+
+        assertThat(service.listFailed(null, null, null, null, null, null, 10_000)).isEmpty();
+        assertThat(service.pageSize(0)).isEqualTo(1);
+    }
+
+    @Test
+    void should_reject_half_a_cursor() {
+        assertThatThrownBy(() -> service.listFailed(null, null, null, null, FROM, null, 10))
+                .isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> service.listFailed(null, null, null, null, null, UUID.randomUUID(), 10))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    private static Optional<OutboxEventRepository.RequeueChunk> chunk(long requeued, int minute) {
+        return Optional.of(chunk(requeued, FROM.plusMinutes(minute), UUID.randomUUID()));
+    }
+
+    private static OutboxEventRepository.RequeueChunk chunk(long requeued, LocalDateTime lastCreatedAt, UUID lastId) {
+        return new OutboxEventRepository.RequeueChunk() {
+            @Override
+            public long getRequeued() {
+                return requeued;
+            }
+
+            @Override
+            public LocalDateTime getLastCreatedAt() {
+                return lastCreatedAt;
+            }
+
+            @Override
+            public UUID getLastId() {
+                return lastId;
+            }
+        };
+    }
+}
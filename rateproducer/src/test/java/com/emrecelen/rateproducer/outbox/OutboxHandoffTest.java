@@ -0,0 +1,113 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.service.OutboxEventProcessor;
+import com.emrecelen.rateproducer.outbox.service.OutboxHandoff;
+import com.emrecelen.rateproducer.outbox.service.OutboxInstanceHeartbeat;
+import com.emrecelen.rateproducer.outbox.service.OutboxRetryScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxHandoffTest {
+
+    @Mock
+    private OutboxEventProcessor processor;
+
+    @Mock
+    private OutboxRetryScheduler retries;
+
+    @Mock
+    private OutboxInstanceHeartbeat instance;
+
+    private OutboxHandoff handoff;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(instance.isAlive()).thenReturn(true);
+        lenient().when(retries.holdRetries(any())).thenAnswer(inv -> inv.getArgument(0));
+        lenient().when(instance.instanceId()).thenReturn("producer-1");
+        handoff = new OutboxHandoff(processor, retries, instance, new SimpleMeterRegistry(), true, 2, 200);
+        handoff.start();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+        handoff.stop();
+    }
+
+    @Test
+    void should_publish_reserved_events_after_commit() {
+        OutboxEvent event = event("anyEventKey1");
+        when(processor.publishConfirmed(event)).thenReturn(CompletableFuture.completedFuture(event));
+
+        assertThat(handoff.reserve(List.of(event))).isTrue();
+        assertThat(event.getStatus()).isEqualTo(Constants.OutboxStatus.PROCESSING);
+        assertThat(event.getProcessingStartedAt()).isNotNull();
+        assertThat(event.getClaimedBy()).isEqualTo("producer-1");
+
+        handoff.afterCommit(List.of(event));
+        verify(processor, never()).publishConfirmed(any());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        await()
+                .atMost(2, TimeUnit.SECONDS)
+                .untilAsserted(() -> verify(processor).finalizeBatch(List.of(event)));
+    }
+
+    @Test
+    void should_release_reservation_on_rollback_and_fall_back_when_full() {
+        OutboxEvent first = event("anyEventKey1");
+        OutboxEvent second = event("anyEventKey2");
+        OutboxEvent third = event("anyEventKey3");
+
+        assertThat(handoff.reserve(List.of(first, second))).isTrue();
+        assertThat(handoff.reserve(List.of(third))).isFalse();
+        assertThat(third.getStatus()).isEqualTo(Constants.OutboxStatus.PENDING);
+
+        handoff.afterCommit(List.of(first, second));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(handoff.reserve(List.of(third))).isTrue();
+        verify(processor, never()).publishConfirmed(any());
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(s -> s.afterCompletion(status));
+    }
+
+    private static OutboxEvent event(String eventKey) {
+        return OutboxEvent.pending(
+                eventKey,
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                "{}"
+        );
+    }
+}
@@ -0,0 +1,72 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.outbox.service.OutboxPartitionManager;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxPartitionManagerTest {
+
+    @Mock
+    private OutboxEventRepository repository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void should_precreate_partitions_before_expiring_old_ones() {
+        OutboxPartitionManager manager = new OutboxPartitionManager(repository, transactionManager, 3, 7, false);
+        when(repository.createPartitions(3)).thenReturn(1);
+        when(repository.expirePartitions(7, false)).thenReturn(List.of("outbox_event_p20260101"));
+
+        manager.maintain();
+
+        var order = inOrder(repository);
+        order.verify(repository).createPartitions(3);
+        order.verify(repository).expirePartitions(7, false);
+        order.verify(repository).pruneEventKeys(LocalDate.now().minusDays(7).atStartOfDay());
+    }
+
+    @Test
+    void should_detach_instead_of_drop_when_configured() {
+        OutboxPartitionManager manager = new OutboxPartitionManager(repository, transactionManager, 2, 30, true);
+        when(repository.createPartitions(2)).thenReturn(0);
+        when(repository.expirePartitions(30, true)).thenReturn(List.of());
+
+        manager.maintain();
+
+        var order = inOrder(repository);
+        order.verify(repository).createPartitions(2);
+        order.verify(repository).expirePartitions(30, true);
+    }
+
+    @Test
+    void should_still_expire_when_creating_partitions_fails() {
+        OutboxPartitionManager manager = new OutboxPartitionManager(repository, transactionManager, 3, 7, false);
+        when(repository.createPartitions(3)).thenThrow(new DataAccessResourceFailureException("lock timeout"));
+        when(repository.expirePartitions(7, false)).thenReturn(List.of("outbox_event_p20260101"));
+
+        manager.maintain();
+
+        verify(repository).expirePartitions(7, false);
+    }
+
+    @Test
+    void should_reject_retention_shorter_than_a_day() {
+        assertThatThrownBy(() -> new OutboxPartitionManager(repository, transactionManager, 3, 0, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
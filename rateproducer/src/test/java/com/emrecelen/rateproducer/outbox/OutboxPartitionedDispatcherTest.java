@@ -0,0 +1,100 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.service.OutboxPartitionedDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboxPartitionedDispatcherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final OutboxPartitionedDispatcher dispatcher = new OutboxPartitionedDispatcher(registry, 4);
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.close();
+    }
+
+    @Test
+    void should_publish_each_pair_in_sequence_order_while_pairs_run_in_parallel() {
+        List<String> pairs = List.of(
+                "EUR/USD", "GBP/USD", "USD/JPY", "USD/TRY", "EUR/TRY",
+                "AUD/USD", "USD/CHF", "EUR/GBP", "XAU/USD", "USD/CAD"
+        );
+        List<OutboxEvent> events = new ArrayList<>();
+        for (String pair : pairs) {
+            for (long seq = 1; seq <= 100; seq++) {
+                events.add(event(pair, seq));
+            }
+        }
+        Collections.shuffle(events, new Random(42));
+
+        Map<String, List<Long>> delivered = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Random jitter = new Random(7);
+
+        dispatcher.dispatch(events, event -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            LockSupport.parkNanos(jitter.nextInt(50_000));
+            delivered.computeIfAbsent(event.getAggregateKey(), k -> new CopyOnWriteArrayList<>())
+                    .add(event.getAggregateSeq());
+            inFlight.decrementAndGet();
+        });
+
+        assertThat(delivered).hasSize(pairs.size());
+        delivered.forEach((pair, seqs) -> assertThat(seqs)
+                .as("delivery order of %s", pair)
+                .hasSize(100)
+                .isSorted());
+        assertThat(maxInFlight.get()).isGreaterThan(1);
+    }
+
+    @Test
+    void should_report_queue_depth_per_partition() {
+        List<Double> observed = new CopyOnWriteArrayList<>();
+
+        dispatcher.dispatch(List.of(event("EUR/USD", 1), event("EUR/USD", 2), event("EUR/USD", 3)), event -> {
+            if (event.getAggregateSeq() == 1L) {
+                observed.add(totalDepth());
+            }
+        });
+
+        assertThat(observed).containsExactly(3.0);
+        assertThat(totalDepth()).isZero();
+        assertThat(registry.find("outbox.dispatch.partition.depth").gauges()).hasSize(4);
+    }
+
+    private double totalDepth() {
+        return registry.find("outbox.dispatch.partition.depth").gauges().stream()
+                .mapToDouble(gauge -> gauge.value())
+                .sum();
+    }
+
+    private static OutboxEvent event(String pair, long seq) {
+        OutboxEvent event = OutboxEvent.pending(
+                "FX:" + pair + ":" + seq,
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null,
+                pair,
+                seq
+        );
+        event.setStatus(Constants.OutboxStatus.PROCESSING);
+        return event;
+    }
+}
@@ -0,0 +1,87 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.common.JsonUtil;
+import com.emrecelen.rateproducer.domain.model.RateEvent;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OutboxPayloadCodecTest {
+
+    private static final RateEvent EVENT = new RateEvent(
+            "rate-producer:8181:EUR/USD:42",
+            1,
+            LocalDateTime.of(2026, 1, 5, 10, 15, 30, 123_456_789),
+            "rate-producer:8181",
+            "EUR/USD",
+            42,
+            108450,
+            108470
+    );
+
+    @Test
+    void should_round_trip_rate_event() {
+        assertThat(OutboxPayloadCodec.decode(OutboxPayloadCodec.encode(EVENT))).isEqualTo(EVENT);
+    }
+
+    @Test
+    void should_encode_much_smaller_than_json() {
+        int binary = OutboxPayloadCodec.encode(EVENT).length;
+        int json = JsonUtil.toJsonString(EVENT).getBytes(StandardCharsets.UTF_8).length;
+
+        assertThat(binary).isLessThan(json / 3);
+    }
+
+    @Test
+    void should_store_seq_big_endian_at_fixed_offset() {
+        byte[] encoded = OutboxPayloadCodec.encode(EVENT);
+
+        assertThat(ByteBuffer.wrap(encoded).getLong(OutboxPayloadCodec.SEQ_OFFSET)).isEqualTo(42);
+    }
+
+    @Test
+    void should_return_same_json_for_both_formats() {
+        OutboxEvent json = OutboxEvent.pending(
+                EVENT.eventKey(),
+                Constants.OutboxType.RATE_EVENT,
+                OutboxPayloadCodec.JSON_SCHEMA_VERSION,
+                JsonUtil.toJsonString(EVENT),
+                EVENT.pair(),
+                EVENT.seq()
+        );
+        OutboxEvent binary = OutboxEvent.pendingBinary(
+                EVENT.eventKey(),
+                Constants.OutboxType.RATE_EVENT,
+                OutboxPayloadCodec.BINARY_SCHEMA_VERSION,
+                OutboxPayloadCodec.encode(EVENT),
+                EVENT.pair(),
+                EVENT.seq()
+        );
+
+        assertThat(OutboxPayloadCodec.toJson(binary)).isEqualTo(OutboxPayloadCodec.toJson(json));
+        assertThat(OutboxPayloadCodec.jsonSchemaVersion(binary)).isEqualTo(OutboxPayloadCodec.JSON_SCHEMA_VERSION);
+    }
+
+    @Test
+    void should_reject_unknown_layout_and_truncated_payload() {
+        byte[] encoded = OutboxPayloadCodec.encode(EVENT);
+        byte[] unknown = encoded.clone();
+        unknown[0] = 9;
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 2);
+
+        assertThatThrownBy(() -> OutboxPayloadCodec.decode(unknown))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("layout");
+        assertThatThrownBy(() -> OutboxPayloadCodec.decode(truncated))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
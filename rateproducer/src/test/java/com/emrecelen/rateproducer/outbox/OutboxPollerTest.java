@@ -2,9 +2,11 @@ package com.emrecelen.rateproducer.outbox;
 
 import com.emrecelen.rateproducer.common.Constants;
 import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.service.OutboxClaimController;
 import com.emrecelen.rateproducer.outbox.service.OutboxClaimService;
 import com.emrecelen.rateproducer.outbox.service.OutboxPoller;
 import com.emrecelen.rateproducer.outbox.service.OutboxPublishCoordinator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,10 +14,13 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -32,7 +37,7 @@ class OutboxPollerTest {
 
     @BeforeEach
     void setUp() {
-        poller = new OutboxPoller(claimService, coordinator);
+        poller = new OutboxPoller(claimService, coordinator, controller(false), false, 10);
     }
 
     @Test
@@ -51,16 +56,16 @@ class OutboxPollerTest {
                         null
                 )
         );
-        when(claimService.claimBatch()).thenReturn(events);
+        when(claimService.claimBatch(200)).thenReturn(events);
         poller.poll();
-        verify(claimService).claimBatch();
+        verify(claimService).claimBatch(200);
         verify(coordinator).publishAsync(events);
     }
 
 
     @Test
     void should_propagate_exception_when_claim_fails() {
-        when(claimService.claimBatch())
+        when(claimService.claimBatch(200))
                 .thenThrow(new RuntimeException("db down"));
 
         assertThatThrownBy(() -> poller.poll())
@@ -70,4 +75,89 @@ class OutboxPollerTest {
         verify(coordinator, never()).publishAsync(any());
     }
 
+    @Test
+    void should_drain_until_no_events_left() {
+        List<OutboxEvent> first = List.of(OutboxEvent.pending(
+                "anyEventKey1",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null
+        ));
+        List<OutboxEvent> second = List.of(OutboxEvent.pending(
+                "anyEventKey2",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null
+        ));
+        when(claimService.claimBatch(200))
+                .thenReturn(first)
+                .thenReturn(second)
+                .thenReturn(List.of());
+
+        poller.drain();
+
+        verify(claimService, times(3)).claimBatch(200);
+        verify(coordinator).publishAsync(first);
+        verify(coordinator).publishAsync(second);
+    }
+
+    @Test
+    void should_drain_on_timed_poll_in_wakeup_mode() {
+        poller = new OutboxPoller(claimService, coordinator, controller(false), true, 10);
+        List<OutboxEvent> events = List.of(OutboxEvent.pending(
+                "anyEventKey1",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null
+        ));
+        when(claimService.claimBatch(200))
+                .thenReturn(events)
+                .thenReturn(List.of());
+
+        poller.poll();
+
+        verify(claimService, times(2)).claimBatch(200);
+        verify(coordinator).publishAsync(events);
+    }
+
+    @Test
+    void should_claim_back_to_back_while_batches_are_full_when_adaptive() {
+        poller = new OutboxPoller(claimService, coordinator, controller(true), false, 10);
+        List<OutboxEvent> full = events(100);
+        List<OutboxEvent> partial = events(50);
+        when(claimService.claimBatch(100)).thenReturn(full);
+        when(claimService.claimBatch(200)).thenReturn(partial);
+
+        poller.poll();
+
+        verify(claimService).claimBatch(100);
+        verify(claimService).claimBatch(200);
+        verify(coordinator).publishAsync(full);
+        verify(coordinator).publishAsync(partial);
+    }
+
+    @Test
+    void should_stop_claiming_back_to_back_at_the_claim_limit() {
+        poller = new OutboxPoller(claimService, coordinator, controller(true), false, 3);
+        when(claimService.claimBatch(anyInt())).thenAnswer(inv -> events(inv.getArgument(0)));
+
+        poller.poll();
+
+        verify(claimService, times(3)).claimBatch(anyInt());
+    }
+
+    private static OutboxClaimController controller(boolean adaptive) {
+        return new OutboxClaimController(new SimpleMeterRegistry(), adaptive ? 100 : 200, adaptive, 50, 400, 500, 200, 2000);
+    }
+
+    private static List<OutboxEvent> events(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> OutboxEvent.pending(
+                        "anyEventKey" + i,
+                        Constants.OutboxType.RATE_EVENT,
+                        1,
+                        null
+                ))
+                .toList();
+    }
 }
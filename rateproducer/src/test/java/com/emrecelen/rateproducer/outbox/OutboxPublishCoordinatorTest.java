@@ -3,19 +3,29 @@ package com.emrecelen.rateproducer.outbox;
 import com.emrecelen.rateproducer.common.Constants;
 import com.emrecelen.rateproducer.model.OutboxEvent;
 import com.emrecelen.rateproducer.outbox.service.OutboxEventProcessor;
+import com.emrecelen.rateproducer.outbox.service.OutboxPartitionedDispatcher;
 import com.emrecelen.rateproducer.outbox.service.OutboxPublishCoordinator;
+import com.emrecelen.rateproducer.outbox.service.OutboxRetryScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class OutboxPublishCoordinatorTest {
@@ -23,11 +33,18 @@ class OutboxPublishCoordinatorTest {
     @Mock
     private OutboxEventProcessor processor;
 
+    @Mock
+    private OutboxRetryScheduler retries;
+
+    private final OutboxPartitionedDispatcher dispatcher =
+            new OutboxPartitionedDispatcher(new SimpleMeterRegistry(), 4);
+
     private OutboxPublishCoordinator coordinator;
 
     @BeforeEach
     void setUp() {
-        coordinator = new OutboxPublishCoordinator(processor);
+        lenient().when(retries.holdRetries(any())).thenAnswer(inv -> inv.getArgument(0));
+        coordinator = new OutboxPublishCoordinator(processor, dispatcher, retries, false, false, false);
     }
 
 
@@ -60,12 +77,121 @@ class OutboxPublishCoordinatorTest {
         await()
                 .atMost(2, TimeUnit.SECONDS)
                 .untilAsserted(() -> {
-                    verify(processor).process(e1);
-                    verify(processor).process(e2);
-                    verify(processor).process(e3);
+                    verify(processor).publish(e1);
+                    verify(processor).publish(e2);
+                    verify(processor).publish(e3);
+                    verify(processor).finalizeBatch(List.of(e1));
+                    verify(processor).finalizeBatch(List.of(e2));
+                    verify(processor).finalizeBatch(List.of(e3));
                 });
     }
 
+    @Test
+    void should_not_persist_retry_held_by_scheduler_in_per_event_mode() {
+        OutboxEvent e1 = OutboxEvent.pending(
+                "anyEventKey1",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null
+        );
+        when(retries.holdRetries(List.of(e1))).thenReturn(List.of());
+
+        coordinator.publishAsync(List.of(e1));
+
+        verify(processor).publish(e1);
+        verify(retries).holdRetries(List.of(e1));
+        verify(processor, never()).finalizeBatch(any());
+    }
+
+    @Test
+    void should_publish_all_events_before_finalizing_batch_in_batch_mode() {
+        coordinator = new OutboxPublishCoordinator(processor, dispatcher, retries, true, false, false);
+        OutboxEvent e1 = OutboxEvent.pending(
+                "anyEventKey1",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null
+        );
+        OutboxEvent e2 = OutboxEvent.pending(
+                "anyEventKey2",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null
+        );
+        List<OutboxEvent> events = List.of(e1, e2);
+
+        coordinator.publishAsync(events);
+
+        InOrder inOrder = inOrder(processor);
+        inOrder.verify(processor).publish(e1);
+        inOrder.verify(processor).finalizeBatch(events);
+        verify(processor).publish(e2);
+        verify(processor, never()).process(any());
+    }
+
+    @Test
+    void should_finalize_batch_after_all_confirms_in_confirms_mode() {
+        coordinator = new OutboxPublishCoordinator(processor, dispatcher, retries, false, true, false);
+        OutboxEvent e1 = OutboxEvent.pending(
+                "anyEventKey1",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null
+        );
+        OutboxEvent e2 = OutboxEvent.pending(
+                "anyEventKey2",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null
+        );
+        CompletableFuture<OutboxEvent> confirm2 = new CompletableFuture<>();
+        when(processor.publishConfirmed(e1)).thenReturn(CompletableFuture.completedFuture(e1));
+        when(processor.publishConfirmed(e2)).thenReturn(confirm2);
+        List<OutboxEvent> events = List.of(e1, e2);
+
+        CompletableFuture<Void> publishing = CompletableFuture.runAsync(() -> coordinator.publishAsync(events));
+
+        await()
+                .atMost(2, TimeUnit.SECONDS)
+                .untilAsserted(() -> verify(processor).publishConfirmed(e2));
+        verify(processor, never()).finalizeBatch(any());
+
+        confirm2.complete(e2);
+        publishing.join();
+
+        verify(processor).finalizeBatch(events);
+        verify(processor, never()).publish(any());
+    }
+
+    @Test
+    void should_publish_through_partitioned_dispatcher_in_partitioned_mode() {
+        coordinator = new OutboxPublishCoordinator(processor, dispatcher, retries, false, false, true);
+        OutboxEvent e1 = OutboxEvent.pending(
+                "FX:EUR/USD:2",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null,
+                "EUR/USD",
+                2L
+        );
+        OutboxEvent e2 = OutboxEvent.pending(
+                "FX:EUR/USD:1",
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                null,
+                "EUR/USD",
+                1L
+        );
+
+        coordinator.publishAsync(List.of(e1, e2));
+
+        InOrder inOrder = inOrder(processor);
+        inOrder.verify(processor).publish(e2);
+        inOrder.verify(processor).finalizeBatch(List.of(e2));
+        inOrder.verify(processor).publish(e1);
+        inOrder.verify(processor).finalizeBatch(List.of(e1));
+    }
+
     @Test
     void should_not_call_processor_when_no_events() {
         coordinator.publishAsync(List.of());
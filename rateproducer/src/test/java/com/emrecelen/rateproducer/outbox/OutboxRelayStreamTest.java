@@ -0,0 +1,290 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.cdc.OutboxRelayStream;
+import com.emrecelen.rateproducer.outbox.publisher.EventPublisher;
+import com.emrecelen.rateproducer.outbox.registry.PublisherRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayStreamTest {
+
+    private static final int RELATION_ID = 16400;
+    private static final List<String> COLUMNS = List.of(
+            "id", "event_key", "event_type", "schema_version", "payload", "status", "aggregate_key", "aggregate_seq"
+    );
+
+    @Mock
+    private PGReplicationStream stream;
+    @Mock
+    private EventPublisher publisher;
+
+    private final List<CompletableFuture<Void>> confirms = new ArrayList<>();
+    private final List<String> parkedKeys = new ArrayList<>();
+    private final List<String> deliveredKeys = new ArrayList<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private OutboxRelayStream relay;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(publisher.eventType()).thenReturn("RATE_EVENT");
+        lenient().when(publisher.publishConfirmed(any())).thenAnswer(inv -> {
+            CompletableFuture<Void> confirm = new CompletableFuture<>();
+            confirms.add(confirm);
+            return confirm;
+        });
+        lenient().when(stream.getLastReceiveLSN()).thenReturn(LogSequenceNumber.valueOf(10));
+        relay = new OutboxRelayStream(
+                stream,
+                new PublisherRegistry(List.of(publisher)),
+                (columns, attempts, error) -> parkedKeys.add(columns.get("event_key") + "@" + attempts),
+                delivered -> delivered.forEach(columns -> deliveredKeys.add(columns.get("event_key"))),
+                100,
+                2,
+                Counter.builder("relayed").register(registry),
+                Counter.builder("parked").register(registry),
+                Timer.builder("lag").register(registry)
+        );
+    }
+
+    @Test
+    void should_publish_inserts_and_acknowledge_commit_only_after_confirm() throws Exception {
+        when(stream.readPending()).thenReturn(
+                relation(),
+                begin(),
+                insert("EUR/USD", 7, "RELAY"),
+                insert("GBP/USD", 3, "RELAY"),
+                commit(500)
+        );
+
+        for (int i = 0; i < 5; i++) {
+            relay.pollOnce();
+        }
+
+        ArgumentCaptor<OutboxEvent> published = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(publisher, times(2)).publishConfirmed(published.capture());
+        assertThat(published.getAllValues())
+                .extracting(OutboxEvent::getAggregateKey, OutboxEvent::getAggregateSeq, OutboxEvent::getPayload)
+                .containsExactly(
+                        tuple("EUR/USD", 7L, "{\"seq\": 7}"),
+                        tuple("GBP/USD", 3L, "{\"seq\": 3}")
+                );
+        verify(stream, never()).setFlushedLSN(LogSequenceNumber.valueOf(500));
+        assertThat(relay.inFlight()).isEqualTo(2);
+        assertThat(deliveredKeys).isEmpty();
+
+        confirms.forEach(c -> c.complete(null));
+        when(stream.readPending()).thenReturn(null);
+        relay.pollOnce();
+
+        verify(stream).setFlushedLSN(LogSequenceNumber.valueOf(500));
+        verify(stream).setAppliedLSN(LogSequenceNumber.valueOf(500));
+        assertThat(relay.inFlight()).isZero();
+        assertThat(registry.get("relayed").counter().count()).isEqualTo(2.0);
+        assertThat(deliveredKeys).containsExactly("rate-producer:EUR/USD:7", "rate-producer:GBP/USD:3");
+    }
+
+    @Test
+    void should_skip_rows_not_written_for_the_relay() throws Exception {
+        when(stream.readPending()).thenReturn(
+                relation(),
+                begin(),
+                insert("EUR/USD", 7, "PENDING"),
+                commit(500)
+        );
+
+        for (int i = 0; i < 4; i++) {
+            relay.pollOnce();
+        }
+
+        verify(publisher, never()).publishConfirmed(any());
+        verify(stream).setFlushedLSN(LogSequenceNumber.valueOf(500));
+    }
+
+    @Test
+    void should_publish_again_when_broker_rejects_and_acknowledge_once_confirmed() throws Exception {
+        when(stream.readPending()).thenReturn(
+                relation(),
+                begin(),
+                insert("EUR/USD", 7, "RELAY"),
+                commit(500)
+        );
+        for (int i = 0; i < 4; i++) {
+            relay.pollOnce();
+        }
+
+        confirms.getFirst().completeExceptionally(new IllegalStateException("nack"));
+        when(stream.readPending()).thenReturn(null);
+        relay.pollOnce();
+
+        verify(publisher, times(2)).publishConfirmed(any());
+        verify(stream, never()).setFlushedLSN(LogSequenceNumber.valueOf(500));
+
+        confirms.getLast().complete(null);
+        relay.pollOnce();
+
+        verify(stream).setFlushedLSN(LogSequenceNumber.valueOf(500));
+        assertThat(parkedKeys).isEmpty();
+    }
+
+    @Test
+    void should_park_event_out_of_attempts_and_move_past_it() throws Exception {
+        when(stream.readPending()).thenReturn(
+                relation(),
+                begin(),
+                insert("EUR/USD", 7, "RELAY"),
+                commit(500)
+        );
+        for (int i = 0; i < 4; i++) {
+            relay.pollOnce();
+        }
+
+        confirms.getFirst().completeExceptionally(new IllegalStateException("nack"));
+        when(stream.readPending()).thenReturn(null);
+        relay.pollOnce();
+        confirms.getLast().completeExceptionally(new IllegalStateException("nack"));
+        relay.pollOnce();
+
+        assertThat(parkedKeys).containsExactly("rate-producer:EUR/USD:7@2");
+        assertThat(deliveredKeys).isEmpty();
+        verify(stream).setFlushedLSN(LogSequenceNumber.valueOf(500));
+        assertThat(relay.inFlight()).isZero();
+        assertThat(registry.get("parked").counter().count()).isEqualTo(1.0);
+        assertThat(registry.get("relayed").counter().count()).isZero();
+    }
+
+    @Test
+    void should_park_event_of_unknown_type_without_publishing() throws Exception {
+        when(stream.readPending()).thenReturn(
+                relation(),
+                begin(),
+                insert("EUR/USD", 7, "RELAY", "USER_EVENT"),
+                commit(500)
+        );
+
+        for (int i = 0; i < 4; i++) {
+            relay.pollOnce();
+        }
+
+        verify(publisher, never()).publishConfirmed(any());
+        assertThat(parkedKeys).containsExactly("rate-producer:EUR/USD:7@0");
+        verify(stream).setFlushedLSN(LogSequenceNumber.valueOf(500));
+    }
+
+    @Test
+    void should_advance_to_received_position_when_idle() throws Exception {
+        when(stream.readPending()).thenReturn(null);
+
+        relay.pollOnce();
+
+        verify(stream).setFlushedLSN(LogSequenceNumber.valueOf(10));
+    }
+
+    private static ByteBuffer relation() throws IOException {
+        return message(out -> {
+            out.writeByte('R');
+            out.writeInt(RELATION_ID);
+            writeString(out, "public");
+            writeString(out, "outbox_event");
+            out.writeByte('d');
+            out.writeShort(COLUMNS.size());
+            for (String column : COLUMNS) {
+                out.writeByte(0);
+                writeString(out, column);
+                out.writeInt(25);
+                out.writeInt(-1);
+            }
+        });
+    }
+
+    private static ByteBuffer begin() throws IOException {
+        return message(out -> {
+            out.writeByte('B');
+            out.writeLong(490);
+            out.writeLong(0);
+            out.writeInt(1234);
+        });
+    }
+
+    private static ByteBuffer insert(String pair, long seq, String status) throws IOException {
+        return insert(pair, seq, status, "RATE_EVENT");
+    }
+
+    private static ByteBuffer insert(String pair, long seq, String status, String eventType) throws IOException {
+        List<String> values = List.of(
+                "6f1c0d4e-1f60-4bb0-9d1f-0d8f3b2f9a11",
+                "rate-producer:" + pair + ":" + seq,
+                eventType,
+                "1",
+                "{\"seq\": " + seq + "}",
+                status,
+                pair,
+                String.valueOf(seq)
+        );
+        return message(out -> {
+            out.writeByte('I');
+            out.writeInt(RELATION_ID);
+            out.writeByte('N');
+            out.writeShort(values.size());
+            for (String value : values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeByte('t');
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        });
+    }
+
+    private static ByteBuffer commit(long endLsn) throws IOException {
+        return message(out -> {
+            out.writeByte('C');
+            out.writeByte(0);
+            out.writeLong(endLsn - 8);
+            out.writeLong(endLsn);
+            out.writeLong(0);
+        });
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static ByteBuffer message(Writer writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+        out.writeByte(0);
+    }
+}
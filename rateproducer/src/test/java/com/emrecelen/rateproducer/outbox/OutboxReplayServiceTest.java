@@ -0,0 +1,97 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.archive.ArchivedEvent;
+import com.emrecelen.rateproducer.outbox.archive.OutboxArchiveStore;
+import com.emrecelen.rateproducer.outbox.archive.OutboxReplayService;
+import com.emrecelen.rateproducer.outbox.publisher.EventPublisher;
+import com.emrecelen.rateproducer.outbox.registry.PublisherRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxReplayServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 5, 10, 0);
+
+    @TempDir
+    private Path dir;
+
+    @Mock
+    private EventPublisher publisher;
+
+    private OutboxArchiveStore store;
+    private OutboxReplayService replayService;
+    private final List<Long> published = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new OutboxArchiveStore(new SimpleMeterRegistry(), dir, 1 << 20, 100);
+        store.append(List.of(
+                event("EUR/USD", 1, START),
+                event("GBP/USD", 1, START.plusNanos(100_000_000)),
+                event("EUR/USD", 2, START.plusNanos(200_000_000)),
+                event("EUR/USD", 3, START.plusNanos(400_000_000))
+        ));
+        when(publisher.eventType()).thenReturn("RATE_EVENT");
+        doAnswer(invocation -> {
+            published.add(invocation.<OutboxEvent>getArgument(0).getAggregateSeq());
+            return null;
+        }).when(publisher).publish(any());
+        replayService = new OutboxReplayService(store, new PublisherRegistry(List.of(publisher)), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    void should_publish_archived_ticks_of_the_pair_in_order() {
+        long count = replayService.replay("EUR/USD", START, START.plusSeconds(1), 0);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(published).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void should_pace_replay_by_original_gaps_divided_by_speed() {
+        long startedAt = System.nanoTime();
+
+        replayService.replay("EUR/USD", START, START.plusSeconds(1), 2.0);
+
+        assertThat(published).containsExactly(1L, 2L, 3L);
+        assertThat(System.nanoTime() - startedAt).isGreaterThanOrEqualTo(200_000_000L);
+    }
+
+    private static ArchivedEvent event(String pair, long seq, LocalDateTime createdAt) {
+        return new ArchivedEvent(
+                UUID.randomUUID(),
+                "FX:" + pair + ":" + seq,
+                "RATE_EVENT",
+                1,
+                pair,
+                seq,
+                createdAt,
+                "{}"
+        );
+    }
+}
@@ -0,0 +1,137 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.outbox.service.OutboxEventProcessor;
+import com.emrecelen.rateproducer.outbox.service.OutboxInstanceHeartbeat;
+import com.emrecelen.rateproducer.outbox.service.OutboxRetryScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRetrySchedulerTest {
+
+    @Mock
+    private OutboxEventProcessor processor;
+
+    @Mock
+    private OutboxInstanceHeartbeat instance;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private OutboxRetryScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(instance.isAlive()).thenReturn(true);
+        scheduler = new OutboxRetryScheduler(processor, instance, registry, true, 10, 64, 2, 10_000);
+        scheduler.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    void should_retry_held_events_in_memory_and_persist_only_the_final_outcome() {
+        OutboxEvent event = retry("anyEventKey1", 50);
+        when(processor.publishConfirmed(event)).thenAnswer(inv -> {
+            event.setStatus(Constants.OutboxStatus.SENT);
+            return CompletableFuture.completedFuture(event);
+        });
+
+        List<OutboxEvent> toPersist = scheduler.holdRetries(List.of(event));
+
+        assertThat(toPersist).isEmpty();
+        assertThat(scheduler.held()).isEqualTo(1);
+        await()
+                .atMost(2, TimeUnit.SECONDS)
+                .untilAsserted(() -> verify(processor).finalizeBatch(List.of(event)));
+        assertThat(event.getStatus()).isEqualTo(Constants.OutboxStatus.SENT);
+        assertThat(scheduler.held()).isZero();
+        assertThat(registry.get("outbox.retry.scheduled").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void should_return_settled_events_and_retries_that_overflow_the_wheel() {
+        OutboxEvent sent = retry("anyEventKey1", 5_000);
+        sent.setStatus(Constants.OutboxStatus.SENT);
+        OutboxEvent first = retry("anyEventKey2", 5_000);
+        OutboxEvent second = retry("anyEventKey3", 5_000);
+        OutboxEvent third = retry("anyEventKey4", 5_000);
+
+        List<OutboxEvent> toPersist = scheduler.holdRetries(List.of(sent, first, second, third));
+
+        assertThat(toPersist).containsExactly(sent, third);
+        assertThat(scheduler.held()).isEqualTo(2);
+        assertThat(registry.get("outbox.retry.overflows").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void should_return_retries_due_after_the_hold_limit() {
+        OutboxEvent event = retry("anyEventKey1", 1_000);
+        event.setProcessingStartedAt(LocalDateTime.now().minusSeconds(20));
+
+        assertThat(scheduler.holdRetries(List.of(event))).containsExactly(event);
+        assertThat(scheduler.held()).isZero();
+    }
+
+    @Test
+    void should_persist_waiting_retries_on_stop() {
+        OutboxEvent event = retry("anyEventKey1", 5_000);
+        assertThat(scheduler.holdRetries(List.of(event))).isEmpty();
+
+        scheduler.stop();
+
+        verify(processor).finalizeBatch(List.of(event));
+        verify(processor, never()).publishConfirmed(any());
+        assertThat(event.getStatus()).isEqualTo(Constants.OutboxStatus.RETRY);
+        assertThat(scheduler.held()).isZero();
+        assertThat(scheduler.holdRetries(List.of(event))).containsExactly(event);
+    }
+
+    @Test
+    void should_hold_nothing_when_disabled() {
+        scheduler.stop();
+        scheduler = new OutboxRetryScheduler(processor, instance, new SimpleMeterRegistry(), false, 10, 64, 2, 10_000);
+        scheduler.start();
+        OutboxEvent event = retry("anyEventKey1", 50);
+
+        assertThat(scheduler.holdRetries(List.of(event))).containsExactly(event);
+        verifyNoInteractions(processor);
+    }
+
+    private static OutboxEvent retry(String eventKey, long delayMs) {
+        OutboxEvent event = OutboxEvent.pending(
+                eventKey,
+                Constants.OutboxType.RATE_EVENT,
+                1,
+                "{}"
+        );
+        LocalDateTime now = LocalDateTime.now();
+        event.setStatus(Constants.OutboxStatus.RETRY);
+        event.setAttempts(1);
+        event.setProcessingStartedAt(now);
+        event.setAvailableAt(now.plusNanos(TimeUnit.MILLISECONDS.toNanos(delayMs)));
+        return event;
+    }
+}
@@ -0,0 +1,80 @@
+package com.emrecelen.rateproducer.outbox;
+
+import com.emrecelen.rateproducer.outbox.service.OutboxInstanceHeartbeat;
+import com.emrecelen.rateproducer.outbox.service.OutboxShardManager;
+import com.emrecelen.rateproducer.repository.OutboxShardLeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxShardManagerTest {
+
+    private static final String INSTANCE = "producer-1";
+
+    @Mock
+    private OutboxShardLeaseRepository repository;
+
+    @Mock
+    private OutboxInstanceHeartbeat instance;
+
+    private OutboxShardManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new OutboxShardManager(repository, instance, new SimpleMeterRegistry(), true, 10_000, 3_000);
+    }
+
+    @Test
+    void should_acquire_up_to_fair_share() {
+        when(repository.count()).thenReturn(8L);
+        when(repository.renew(INSTANCE, 10_000)).thenReturn(List.of((short) 0));
+        when(instance.instanceId()).thenReturn(INSTANCE);
+        when(instance.countLiveInstances()).thenReturn(2L);
+        when(repository.acquire(INSTANCE, 10_000, 3)).thenReturn(List.of((short) 5, (short) 2));
+
+        manager.heartbeat();
+
+        assertThat(manager.ownedShards()).containsExactly((short) 0, (short) 2, (short) 5);
+    }
+
+    @Test
+    void should_release_surplus_when_instances_join() {
+        when(repository.count()).thenReturn(8L);
+        when(repository.renew(INSTANCE, 10_000)).thenReturn(List.of(
+                (short) 7, (short) 1, (short) 0, (short) 3, (short) 2, (short) 6, (short) 5, (short) 4
+        ));
+        when(instance.instanceId()).thenReturn(INSTANCE);
+        when(instance.countLiveInstances()).thenReturn(3L);
+
+        manager.heartbeat();
+
+        verify(repository).release(INSTANCE, List.of((short) 3, (short) 4, (short) 5, (short) 6, (short) 7), 3_000);
+        verify(repository, never()).acquire(anyString(), anyLong(), anyInt());
+        assertThat(manager.ownedShards()).containsExactly((short) 0, (short) 1, (short) 2);
+    }
+
+    @Test
+    void should_not_touch_leases_when_disabled() {
+        manager = new OutboxShardManager(repository, instance, new SimpleMeterRegistry(), false, 10_000, 3_000);
+
+        manager.heartbeat();
+
+        verifyNoInteractions(repository, instance);
+        assertThat(manager.ownedShards()).isEmpty();
+    }
+}
@@ -1,6 +1,7 @@
 package com.emrecelen.rateproducer.outbox;
 
 import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.outbox.service.OutboxInstanceHeartbeat;
 import com.emrecelen.rateproducer.outbox.service.OutboxWatchdog;
 import com.emrecelen.rateproducer.repository.OutboxEventRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +16,7 @@ import java.time.LocalDateTime;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -24,11 +26,15 @@ class OutboxWatchdogTest {
     @Mock
     private OutboxEventRepository repository;
 
+    @Mock
+    private OutboxInstanceHeartbeat instance;
+
     private OutboxWatchdog watchdog;
 
     @BeforeEach
     void setUp() {
-        watchdog = new OutboxWatchdog(repository);
+        lenient().when(instance.ttlMs()).thenReturn(6_000L);
+        watchdog = new OutboxWatchdog(repository, instance, 30_000);
     }
 
     @Test
@@ -46,6 +52,16 @@ class OutboxWatchdogTest {
         );
     }
 
+    @Test
+    void should_reclaim_events_of_instances_without_heartbeat() {
+        when(repository.reclaimFromDeadInstances(6_000L)).thenReturn(4);
+        when(repository.reclaimStuck(any(), any())).thenReturn(0);
+
+        watchdog.reclaim();
+
+        verify(repository).reclaimFromDeadInstances(6_000L);
+    }
+
     @Test
     void should_do_nothing_when_no_stuck_events() {
         when(repository.reclaimStuck(any(), any()))
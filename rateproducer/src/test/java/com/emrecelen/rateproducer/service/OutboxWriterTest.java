@@ -0,0 +1,120 @@
+package com.emrecelen.rateproducer.service;
+
+import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.domain.model.RawRate;
+import com.emrecelen.rateproducer.domain.registry.EventFactoryRegistry;
+import com.emrecelen.rateproducer.domain.service.RateEventFactory;
+import com.emrecelen.rateproducer.model.OutboxEvent;
+import com.emrecelen.rateproducer.monitoring.metrics.RateProducerMetrics;
+import com.emrecelen.rateproducer.outbox.service.OutboxEventProcessor;
+import com.emrecelen.rateproducer.outbox.service.OutboxHandoff;
+import com.emrecelen.rateproducer.outbox.service.OutboxInstanceHeartbeat;
+import com.emrecelen.rateproducer.outbox.service.OutboxRetryScheduler;
+import com.emrecelen.rateproducer.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxWriterTest {
+
+    @Mock
+    private OutboxEventRepository repository;
+
+    @Mock
+    private OutboxEventProcessor processor;
+
+    @Mock
+    private OutboxRetryScheduler retries;
+
+    @Mock
+    private OutboxInstanceHeartbeat instance;
+
+    @Captor
+    private ArgumentCaptor<List<OutboxEvent>> saved;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private OutboxHandoff handoff;
+    private OutboxWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(instance.isAlive()).thenReturn(true);
+        lenient().when(instance.instanceId()).thenReturn("producer-1");
+        lenient().when(repository.claimEventKeys(any(), any()))
+                .thenAnswer(invocation -> Arrays.asList(invocation.<String[]>getArgument(0)));
+        handoff = new OutboxHandoff(processor, retries, instance, registry, true, 2, 200);
+        handoff.start();
+        writer = new OutboxWriter(
+                repository,
+                new EventFactoryRegistry(List.of(new RateEventFactory())),
+                new RateProducerMetrics(registry),
+                handoff,
+                Constants.OutboxRelayMode.POLL,
+                Constants.OutboxPayloadFormat.JSON
+        );
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+        handoff.stop();
+    }
+
+    @Test
+    void should_return_handoff_reservation_when_insert_fails() {
+        doThrow(new DataAccessResourceFailureException("connection lost")).when(repository).flush();
+
+        assertThatThrownBy(() -> writer.writeAll(
+                Constants.OutboxType.RATE_EVENT.name(),
+                List.of(raw(1), raw(2))
+        )).isInstanceOf(DataAccessResourceFailureException.class);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(handoff.reserve(List.of(event("anyEventKey1"), event("anyEventKey2")))).isTrue();
+    }
+
+    @Test
+    void should_skip_events_whose_key_was_already_written() {
+        doReturn(List.of("rate-producer:8181:EUR/USD:1"))
+                .when(repository).claimEventKeys(any(), any());
+
+        writer.writeAll(Constants.OutboxType.RATE_EVENT.name(), List.of(raw(1), raw(2)));
+
+        verify(repository).saveAll(saved.capture());
+        assertThat(saved.getValue())
+                .extracting(OutboxEvent::getEventKey)
+                .containsExactly("rate-producer:8181:EUR/USD:1");
+        assertThat(registry.counter("rate.publish.failed").count()).isEqualTo(1);
+    }
+
+    private static RawRate raw(long seq) {
+        return new RawRate("rate-producer:8181", "EUR/USD", seq, 108450, 108452, 1L);
+    }
+
+    private static OutboxEvent event(String eventKey) {
+        return OutboxEvent.pending(eventKey, Constants.OutboxType.RATE_EVENT, 1, "{}");
+    }
+}
@@ -0,0 +1,170 @@
+package com.emrecelen.rateproducer.service;
+
+import com.emrecelen.rateproducer.model.PairSequence;
+import com.emrecelen.rateproducer.repository.PairSequenceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PairSequenceServiceTest {
+
+    @Mock
+    private PairSequenceRepository repository;
+
+    private PairSequenceService service(int blockSize) {
+        return new PairSequenceService(repository, new SimpleMeterRegistry(), blockSize);
+    }
+
+    @Test
+    void should_lock_row_per_call_when_block_size_is_one() {
+        when(repository.findByPairForUpdate("EUR/USD"))
+                .thenReturn(Optional.of(PairSequence.builder("EUR/USD").seq(41).build()));
+
+        long seq = service(1).nextSeq("EUR/USD");
+
+        assertThat(seq).isEqualTo(42);
+        verify(repository, never()).reserveBlock(eq("EUR/USD"), anyLong());
+    }
+
+    @Test
+    void should_hand_out_numbers_from_reserved_block() {
+        when(repository.reserveBlock("EUR/USD", 3))
+                .thenReturn(Optional.of(3L))
+                .thenReturn(Optional.of(6L));
+        PairSequenceService service = service(3);
+
+        List<Long> seqs = IntStream.range(0, 5)
+                .mapToObj(i -> service.nextSeq("EUR/USD"))
+                .toList();
+
+        assertThat(seqs).containsExactly(1L, 2L, 3L, 4L, 5L);
+        verify(repository, times(2)).reserveBlock("EUR/USD", 3);
+        verify(repository, never()).findByPairForUpdate("EUR/USD");
+    }
+
+    @Test
+    void should_reserve_larger_block_when_range_exceeds_block_size() {
+        when(repository.reserveBlock("EUR/USD", 10)).thenReturn(Optional.of(110L));
+
+        long first = service(4).nextSeqRange("EUR/USD", 10);
+
+        assertThat(first).isEqualTo(101L);
+    }
+
+    @Test
+    void should_hand_out_rest_of_block_only_after_commit() {
+        when(repository.reserveBlock("EUR/USD", 3))
+                .thenReturn(Optional.of(3L))
+                .thenReturn(Optional.of(6L));
+        PairSequenceService service = service(3);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(service.nextSeq("EUR/USD")).isEqualTo(1L);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(service.nextSeq("EUR/USD")).isEqualTo(4L);
+        assertThat(service.nextSeq("EUR/USD")).isEqualTo(5L);
+        verify(repository, times(2)).reserveBlock("EUR/USD", 3);
+    }
+
+    @Test
+    void should_fail_when_sequence_row_missing() {
+        when(repository.reserveBlock("EUR/USD", 5)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service(5).nextSeq("EUR/USD"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void should_never_hand_out_duplicates_under_concurrency() throws Exception {
+        AtomicLong highWaterMark = new AtomicLong();
+        when(repository.reserveBlock(eq("EUR/USD"), anyLong()))
+                .thenAnswer(inv -> Optional.of(highWaterMark.addAndGet(inv.getArgument(1, Long.class))));
+        PairSequenceService service = service(16);
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> futures = IntStream.range(0, 8)
+                    .<Future<?>>mapToObj(t -> executor.submit(() -> {
+                        for (int i = 0; i < 500; i++) {
+                            assertThat(seen.add(service.nextSeq("EUR/USD"))).isTrue();
+                        }
+                    }))
+                    .toList();
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        }
+
+        assertThat(seen).hasSize(4000);
+    }
+
+    @Test
+    void should_wait_for_pending_refill_instead_of_handing_out_higher_block() throws Exception {
+        AtomicLong highWaterMark = new AtomicLong();
+        when(repository.reserveBlock(eq("EUR/USD"), anyLong()))
+                .thenAnswer(inv -> Optional.of(highWaterMark.addAndGet(inv.getArgument(1, Long.class))));
+        PairSequenceService service = service(100);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            CountDownLatch reserved = new CountDownLatch(1);
+            CountDownLatch commit = new CountDownLatch(1);
+            Future<Long> first = executor.submit(() -> {
+                TransactionSynchronizationManager.initSynchronization();
+                try {
+                    long seq = service.nextSeq("EUR/USD");
+                    reserved.countDown();
+                    commit.await();
+                    List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+                    synchronizations.forEach(TransactionSynchronization::afterCommit);
+                    synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+                    return seq;
+                } finally {
+                    TransactionSynchronizationManager.clearSynchronization();
+                }
+            });
+            reserved.await();
+            Future<Long> second = executor.submit(() -> service.nextSeq("EUR/USD"));
+
+            assertThatThrownBy(() -> second.get(200, TimeUnit.MILLISECONDS))
+                    .isInstanceOf(TimeoutException.class);
+            commit.countDown();
+
+            assertThat(first.get()).isEqualTo(1L);
+            assertThat(second.get()).isEqualTo(2L);
+        }
+        verify(repository, times(1)).reserveBlock("EUR/USD", 100);
+    }
+}
@@ -0,0 +1,284 @@
+package com.emrecelen.rateproducer.service;
+
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse;
+import com.emrecelen.rateproducer.api.dto.RawRateRequest;
+import com.emrecelen.rateproducer.common.Constants;
+import com.emrecelen.rateproducer.domain.model.RateEvent;
+import com.emrecelen.rateproducer.domain.model.RateTick;
+import com.emrecelen.rateproducer.domain.model.RawRate;
+import com.emrecelen.rateproducer.domain.service.RateEventFactory;
+import com.emrecelen.rateproducer.exception.InvalidBatchException;
+import com.emrecelen.rateproducer.exception.PairNotActiveException;
+import com.emrecelen.rateproducer.mapper.RateEventMapper;
+import com.emrecelen.rateproducer.model.Pair;
+import com.emrecelen.rateproducer.model.PairSequence;
+import com.emrecelen.rateproducer.monitoring.metrics.RateProducerMetrics;
+import com.emrecelen.rateproducer.outbox.codec.OutboxPayloadCodec;
+import com.emrecelen.rateproducer.repository.PairRepository;
+import com.emrecelen.rateproducer.repository.PairSequenceRepository;
+import com.emrecelen.rateproducer.repository.RateIngestRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RateEventServiceTest {
+
+    @Mock
+    private OutboxWriter outboxWriter;
+    @Mock
+    private PairRepository pairRepository;
+    @Mock
+    private PairSequenceService pairSequenceService;
+    @Mock
+    private PairSequenceRepository pairSequenceRepository;
+    @Mock
+    private RateIngestRepository rateIngestRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RateEventService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RateEventService(
+                outboxWriter,
+                pairRepository,
+                new RateEventMapper(),
+                new RateProducerMetrics(meterRegistry),
+                pairSequenceService,
+                pairSequenceRepository,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new RateEventFactory(),
+                rateIngestRepository
+        );
+        ReflectionTestUtils.setField(service, "appName", "rate-producer");
+        ReflectionTestUtils.setField(service, "serverPort", "8181");
+        ReflectionTestUtils.setField(service, "maxBatchSize", 3);
+    }
+
+    @Test
+    void should_allocate_one_sequence_range_per_pair_and_write_all_events_at_once() {
+        when(pairRepository.findAllById(anyCollection())).thenReturn(List.of(
+                Pair.builder("EUR/USD").build(),
+                Pair.builder("GBP/USD").build()
+        ));
+        when(pairSequenceRepository.findAllById(anyCollection())).thenReturn(List.of(
+                PairSequence.builder("EUR/USD").seq(9).build(),
+                PairSequence.builder("GBP/USD").seq(0).build()
+        ));
+        when(pairSequenceService.nextSeqRange("EUR/USD", 2)).thenReturn(10L);
+        when(pairSequenceService.nextSeqRange("GBP/USD", 1)).thenReturn(1L);
+
+        RateBatchResponse response = service.createRateEvents(List.of(
+                new RawRateRequest("EUR/USD", "1.0845", "1.0847"),
+                new RawRateRequest("GBP/USD", "1.2500", "1.2502"),
+                new RawRateRequest("EUR/USD", "1.0846", "1.0848")
+        ));
+
+        assertThat(response.accepted()).isEqualTo(3);
+        assertThat(response.rejected()).isZero();
+        assertThat(response.results())
+                .extracting(RateBatchResponse.ItemResult::seq)
+                .containsExactly(10L, 1L, 11L);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<RawRate>> captor = ArgumentCaptor.forClass(List.class);
+        verify(outboxWriter).writeAll(eq(Constants.OutboxType.RATE_EVENT.name()), captor.capture());
+        assertThat(captor.getValue())
+                .extracting(RawRate::pair, RawRate::seq)
+                .containsExactlyInAnyOrder(
+                        tuple("EUR/USD", 10L),
+                        tuple("EUR/USD", 11L),
+                        tuple("GBP/USD", 1L)
+                );
+    }
+
+    @Test
+    void should_reject_invalid_items_without_failing_the_batch() {
+        when(pairRepository.findAllById(anyCollection()))
+                .thenReturn(List.of(Pair.builder("EUR/USD").build()));
+        when(pairSequenceRepository.findAllById(anyCollection()))
+                .thenReturn(List.of(PairSequence.builder("EUR/USD").seq(0).build()));
+        when(pairSequenceService.nextSeqRange("EUR/USD", 1)).thenReturn(1L);
+
+        RateBatchResponse response = service.createRateEvents(List.of(
+                new RawRateRequest("EURUSD", "1.0845", "1.0847"),
+                new RawRateRequest("EUR/USD", "1.0850", "1.0840"),
+                new RawRateRequest("EUR/USD", "1.0845", "1.0847")
+        ));
+
+        assertThat(response.accepted()).isEqualTo(1);
+        assertThat(response.rejected()).isEqualTo(2);
+        assertThat(response.results())
+                .extracting(RateBatchResponse.ItemResult::code)
+                .containsExactly("VALIDATION_ERROR", "INVALID_RATE", null);
+    }
+
+    @Test
+    void should_reject_items_of_inactive_pairs() {
+        when(pairRepository.findAllById(anyCollection()))
+                .thenReturn(List.of(Pair.builder("EUR/USD").active(false).build()));
+
+        RateBatchResponse response = service.createRateEvents(List.of(
+                new RawRateRequest("EUR/USD", "1.0845", "1.0847")
+        ));
+
+        assertThat(response.rejected()).isEqualTo(1);
+        assertThat(response.results().getFirst().code()).isEqualTo("PAIR_NOT_AVAILABLE");
+        verify(pairSequenceService, never()).nextSeqRange(anyString(), anyInt());
+    }
+
+    @Test
+    void should_apply_request_rules_to_ticks_in_pips_and_keep_client_timestamp() {
+        when(pairRepository.findAllById(anyCollection()))
+                .thenReturn(List.of(Pair.builder("EUR/USD").build()));
+        when(pairSequenceRepository.findAllById(anyCollection()))
+                .thenReturn(List.of(PairSequence.builder("EUR/USD").seq(4).build()));
+        when(pairSequenceService.nextSeqRange("EUR/USD", 1)).thenReturn(5L);
+
+        RateBatchResponse response = service.createRateTicks(List.of(
+                new RateTick("eurusd", 108450, 108470, 1L),
+                new RateTick("EUR/USD", 108470, 108450, 2L),
+                new RateTick("EUR/USD", 108450, 108470, 3L)
+        ));
+
+        assertThat(response.results())
+                .extracting(RateBatchResponse.ItemResult::code, RateBatchResponse.ItemResult::seq)
+                .containsExactly(
+                        tuple("VALIDATION_ERROR", null),
+                        tuple("INVALID_RATE", null),
+                        tuple(null, 5L)
+                );
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<RawRate>> captor = ArgumentCaptor.forClass(List.class);
+        verify(outboxWriter).writeAll(eq(Constants.OutboxType.RATE_EVENT.name()), captor.capture());
+        assertThat(captor.getValue())
+                .extracting(RawRate::bidPips, RawRate::askPips, RawRate::timestamp)
+                .containsExactly(tuple(108450L, 108470L, 3L));
+    }
+
+    @Test
+    void should_fail_when_batch_exceeds_max_size() {
+        RawRateRequest request = new RawRateRequest("EUR/USD", "1.0845", "1.0847");
+
+        assertThatThrownBy(() -> service.createRateEvents(List.of(request, request, request, request)))
+                .isInstanceOf(InvalidBatchException.class);
+        verify(outboxWriter, never()).writeAll(anyString(), anyList());
+    }
+
+    @Test
+    void should_ingest_in_single_statement_when_fast_path_enabled() {
+        ReflectionTestUtils.setField(service, "fastPathEnabled", true);
+        RateIngestRepository.IngestResult result = mock(RateIngestRepository.IngestResult.class);
+        when(result.getInserted()).thenReturn(true);
+        when(rateIngestRepository.ingest(
+                eq("EUR/USD"),
+                eq("rate-producer:8181"),
+                eq(Constants.OutboxType.RATE_EVENT.name()),
+                eq(1),
+                anyString(),
+                isNull(),
+                eq(Constants.OutboxStatus.PENDING.name()),
+                any(LocalDateTime.class)
+        )).thenReturn(Optional.of(result));
+
+        service.createRateEvent(new RawRateRequest("EUR/USD", "1.0845", "1.0847"));
+
+        verify(pairRepository, never()).findById(anyString());
+        verify(pairSequenceService, never()).nextSeq(anyString());
+        verify(outboxWriter, never()).write(anyString(), any());
+    }
+
+    @Test
+    void should_ingest_binary_payload_in_single_statement_when_binary_format_configured() {
+        ReflectionTestUtils.setField(service, "fastPathEnabled", true);
+        ReflectionTestUtils.setField(service, "payloadFormat", Constants.OutboxPayloadFormat.BINARY);
+        RateIngestRepository.IngestResult result = mock(RateIngestRepository.IngestResult.class);
+        when(result.getInserted()).thenReturn(true);
+        ArgumentCaptor<byte[]> payloadBin = ArgumentCaptor.forClass(byte[].class);
+        when(rateIngestRepository.ingest(
+                eq("EUR/USD"),
+                eq("rate-producer:8181"),
+                eq(Constants.OutboxType.RATE_EVENT.name()),
+                eq(OutboxPayloadCodec.BINARY_SCHEMA_VERSION),
+                isNull(),
+                payloadBin.capture(),
+                eq(Constants.OutboxStatus.PENDING.name()),
+                any(LocalDateTime.class)
+        )).thenReturn(Optional.of(result));
+
+        service.createRateEvent(new RawRateRequest("EUR/USD", "1.0845", "1.0847"));
+
+        RateEvent template = OutboxPayloadCodec.decode(payloadBin.getValue());
+        assertThat(template.pair()).isEqualTo("EUR/USD");
+        assertThat(template.seq()).isZero();
+        assertThat(template.bidPips()).isEqualTo(108450);
+        assertThat(template.askPips()).isEqualTo(108470);
+    }
+
+    @Test
+    void should_reject_inactive_pair_on_fast_path() {
+        ReflectionTestUtils.setField(service, "fastPathEnabled", true);
+        when(rateIngestRepository.ingest(any(), any(), any(), anyInt(), any(), any(), any(), any()))
+                .thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.createRateEvent(new RawRateRequest("EUR/USD", "1.0845", "1.0847")))
+                .isInstanceOf(PairNotActiveException.class);
+        verify(rateIngestRepository, times(2)).ingest(any(), any(), any(), anyInt(), any(), any(), any(), any());
+    }
+
+    @Test
+    void should_retry_once_when_pair_was_created_concurrently_on_fast_path() {
+        ReflectionTestUtils.setField(service, "fastPathEnabled", true);
+        RateIngestRepository.IngestResult result = mock(RateIngestRepository.IngestResult.class);
+        when(result.getInserted()).thenReturn(true);
+        when(rateIngestRepository.ingest(any(), any(), any(), anyInt(), any(), any(), any(), any()))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(result));
+
+        service.createRateEvent(new RawRateRequest("EUR/USD", "1.0845", "1.0847"));
+
+        verify(rateIngestRepository, times(2)).ingest(any(), any(), any(), anyInt(), any(), any(), any(), any());
+    }
+
+    @Test
+    void should_skip_duplicate_event_key_on_fast_path() {
+        ReflectionTestUtils.setField(service, "fastPathEnabled", true);
+        RateIngestRepository.IngestResult result = mock(RateIngestRepository.IngestResult.class);
+        when(result.getInserted()).thenReturn(false);
+        when(rateIngestRepository.ingest(any(), any(), any(), anyInt(), any(), any(), any(), any()))
+                .thenReturn(Optional.of(result));
+
+        service.createRateEvent(new RawRateRequest("EUR/USD", "1.0845", "1.0847"));
+
+        verify(rateIngestRepository).ingest(any(), any(), any(), anyInt(), any(), any(), any(), any());
+        assertThat(meterRegistry.counter("rate.publish.failed").count()).isEqualTo(1);
+    }
+}
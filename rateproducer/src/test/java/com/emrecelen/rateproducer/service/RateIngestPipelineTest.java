@@ -0,0 +1,181 @@
+package com.emrecelen.rateproducer.service;
+
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse;
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse.ItemResult;
+import com.emrecelen.rateproducer.api.dto.RawRateRequest;
+import com.emrecelen.rateproducer.exception.IngestOverloadedException;
+import com.emrecelen.rateproducer.exception.PairNotActiveException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RateIngestPipelineTest {
+
+    @Mock
+    private RateEventService rateEventService;
+
+    private RateIngestPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+
+    private RateIngestPipeline start(int queueCapacity) {
+        return start(queueCapacity, 50, 2000, 1000);
+    }
+
+    private RateIngestPipeline start(int queueCapacity, int maxBatchSize, long awaitTimeoutMs, int batchMaxSize) {
+        pipeline = new RateIngestPipeline(
+                rateEventService,
+                new SimpleMeterRegistry(),
+                1,
+                queueCapacity,
+                maxBatchSize,
+                20,
+                awaitTimeoutMs,
+                batchMaxSize
+        );
+        pipeline.start();
+        return pipeline;
+    }
+
+    @Test
+    void should_commit_concurrent_ticks_in_shared_transactions() throws Exception {
+        AtomicLong seq = new AtomicLong();
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        when(rateEventService.createRateEvents(anyList())).thenAnswer(inv -> {
+            List<RawRateRequest> requests = inv.getArgument(0);
+            batchSizes.add(requests.size());
+            return RateBatchResponse.of(IntStream.range(0, requests.size())
+                    .mapToObj(i -> ItemResult.accepted(i, requests.get(i).pair(), seq.incrementAndGet()))
+                    .toList());
+        });
+        start(1000);
+        Set<Long> seqs = ConcurrentHashMap.newKeySet();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(32)) {
+            List<Future<?>> futures = IntStream.range(0, 200)
+                    .<Future<?>>mapToObj(i -> executor.submit(() ->
+                            seqs.add(pipeline.submit(new RawRateRequest("EUR/USD", "1.0845", "1.0847")))))
+                    .toList();
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        }
+
+        assertThat(seqs).hasSize(200);
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(200);
+        assertThat(batchSizes.size()).isLessThan(200);
+    }
+
+    @Test
+    void should_not_commit_micro_batches_above_the_batch_limit() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        when(rateEventService.createRateEvents(anyList())).thenAnswer(inv -> {
+            List<RawRateRequest> requests = inv.getArgument(0);
+            batchSizes.add(requests.size());
+            return accepted(requests);
+        });
+        start(1000, 50, 2000, 5);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(32)) {
+            List<Future<?>> futures = IntStream.range(0, 100)
+                    .<Future<?>>mapToObj(i -> executor.submit(() ->
+                            pipeline.submit(new RawRateRequest("EUR/USD", "1.0845", "1.0847"))))
+                    .toList();
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        }
+
+        assertThat(batchSizes).allSatisfy(size -> assertThat(size).isLessThanOrEqualTo(5));
+    }
+
+    @Test
+    void should_withdraw_queued_tick_on_timeout_and_wait_for_a_running_commit() throws Exception {
+        CountDownLatch commitStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> committedPairs = new CopyOnWriteArrayList<>();
+        when(rateEventService.createRateEvents(anyList())).thenAnswer(inv -> {
+            List<RawRateRequest> requests = inv.getArgument(0);
+            requests.forEach(r -> committedPairs.add(r.pair()));
+            commitStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return accepted(requests);
+        });
+        start(10, 1, 200, 1000);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<Long> running = executor.submit(() ->
+                    pipeline.submit(new RawRateRequest("EUR/USD", "1.0845", "1.0847")));
+            assertThat(commitStarted.await(2, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> pipeline.submit(new RawRateRequest("GBP/USD", "1.2700", "1.2702")))
+                    .isInstanceOf(IngestOverloadedException.class);
+            Thread.sleep(300);
+            release.countDown();
+
+            assertThat(running.get(2, TimeUnit.SECONDS)).isEqualTo(1L);
+        }
+        assertThat(committedPairs).containsExactly("EUR/USD");
+    }
+
+    @Test
+    void should_surface_item_rejection_as_domain_exception() {
+        when(rateEventService.createRateEvents(anyList())).thenReturn(RateBatchResponse.of(List.of(
+                ItemResult.rejected(0, "EUR/USD", "PAIR_NOT_AVAILABLE", "Requested pair is currently not available")
+        )));
+        start(10);
+
+        assertThatThrownBy(() -> pipeline.submit(new RawRateRequest("EUR/USD", "1.0845", "1.0847")))
+                .isInstanceOf(PairNotActiveException.class);
+    }
+
+    @Test
+    void should_fail_every_tick_of_a_failed_commit() {
+        when(rateEventService.createRateEvents(anyList())).thenThrow(new IllegalStateException("db down"));
+        start(10);
+
+        assertThatThrownBy(() -> pipeline.submit(new RawRateRequest("EUR/USD", "1.0845", "1.0847")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("db down");
+    }
+
+    @Test
+    void should_reject_when_not_running() {
+        pipeline = new RateIngestPipeline(rateEventService, new SimpleMeterRegistry(), 1, 1, 1, 1, 100, 1000);
+
+        assertThatThrownBy(() -> pipeline.submit(new RawRateRequest("EUR/USD", "1.0845", "1.0847")))
+                .isInstanceOf(IngestOverloadedException.class);
+    }
+
+    private static RateBatchResponse accepted(List<RawRateRequest> requests) {
+        return RateBatchResponse.of(IntStream.range(0, requests.size())
+                .mapToObj(i -> ItemResult.accepted(i, requests.get(i).pair(), i + 1))
+                .toList());
+    }
+}
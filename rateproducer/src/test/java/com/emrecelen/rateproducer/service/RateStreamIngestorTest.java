@@ -0,0 +1,153 @@
+package com.emrecelen.rateproducer.service;
+
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse;
+import com.emrecelen.rateproducer.api.dto.RateBatchResponse.ItemResult;
+import com.emrecelen.rateproducer.api.dto.RateStreamAck;
+import com.emrecelen.rateproducer.api.dto.RateStreamAck.LineRejection;
+import com.emrecelen.rateproducer.api.dto.RawRateRequest;
+import com.emrecelen.rateproducer.common.JsonUtil;
+import com.emrecelen.rateproducer.monitoring.metrics.RateProducerMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RateStreamIngestorTest {
+
+    @Mock
+    private RateEventService rateEventService;
+
+    private RateStreamIngestor ingestor;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ingestor = new RateStreamIngestor(
+                rateEventService,
+                new RateProducerMetrics(registry),
+                registry,
+                2,
+                1000,
+                60_000
+        );
+    }
+
+    private static String line(String pair, String bid, String ask) {
+        return JsonUtil.toJsonString(new RawRateRequest(pair, bid, ask)) + "\n";
+    }
+
+    /**
+     * Accepts every request except bid {@code 9}, using a running seq.
+     */
+    private void acceptAll() {
+        long[] seq = {0};
+        when(rateEventService.createRateEvents(anyList())).thenAnswer(inv -> {
+            List<RawRateRequest> batch = inv.getArgument(0);
+            List<ItemResult> results = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                results.add("9".equals(batch.get(i).bid())
+                        ? ItemResult.rejected(i, batch.get(i).pair(), "INVALID_RATE", "bid must be smaller than ask")
+                        : ItemResult.accepted(i, batch.get(i).pair(), ++seq[0]));
+            }
+            return RateBatchResponse.of(results);
+        });
+    }
+
+    private static List<RateStreamAck> acks(ByteArrayOutputStream out) {
+        return out.toString(StandardCharsets.UTF_8).lines()
+                .map(l -> JsonUtil.fromJson(l, RateStreamAck.class))
+                .toList();
+    }
+
+    @Test
+    void should_commit_in_micro_batches_and_acknowledge_cumulatively() throws Exception {
+        acceptAll();
+        String body = line("EUR/USD", "1.0845", "1.0847")
+                + "not json\n"
+                + line("EUR/USD", "9", "1.0847")
+                + "\n"
+                + line("GBP/USD", "1.2500", "1.2502")
+                + line("GBP/USD", "1.2501", "1.2503");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        RateStreamAck last = ingestor.ingest(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                out
+        );
+
+        verify(rateEventService, times(2)).createRateEvents(anyList());
+        assertThat(last.complete()).isTrue();
+        assertThat(last.committed()).isEqualTo(6);
+        assertThat(last.accepted()).isEqualTo(3);
+        assertThat(last.rejected()).isEqualTo(2);
+
+        List<RateStreamAck> acks = acks(out);
+        assertThat(acks).last().isEqualTo(last);
+        assertThat(acks.stream().flatMap(a -> a.rejections().stream()).toList())
+                .extracting(LineRejection::line, LineRejection::code)
+                .containsExactlyInAnyOrder(
+                        tuple(1L, "MALFORMED_LINE"),
+                        tuple(2L, "INVALID_RATE")
+                );
+    }
+
+    @Test
+    void should_count_blank_lines_in_line_numbers_and_committed() throws Exception {
+        acceptAll();
+        String body = "\n"
+                + line("EUR/USD", "1.0845", "1.0847")
+                + "   \n"
+                + line("EUR/USD", "9", "1.0847")
+                + "\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        RateStreamAck last = ingestor.ingest(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                out
+        );
+
+        assertThat(last.committed()).isEqualTo(5);
+        assertThat(last.accepted()).isEqualTo(1);
+        assertThat(last.rejected()).isEqualTo(1);
+        assertThat(acks(out).stream().flatMap(a -> a.rejections().stream()).toList())
+                .extracting(LineRejection::line, LineRejection::code)
+                .containsExactly(tuple(3L, "INVALID_RATE"));
+    }
+
+    @Test
+    void should_abort_stream_with_error_ack_when_commit_fails() throws Exception {
+        when(rateEventService.createRateEvents(anyList()))
+                .thenThrow(new IllegalStateException("database unavailable"));
+        String body = line("EUR/USD", "1.0845", "1.0847")
+                + line("EUR/USD", "1.0846", "1.0848")
+                + line("EUR/USD", "1.0847", "1.0849");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        RateStreamAck last = ingestor.ingest(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                out
+        );
+
+        verify(rateEventService, times(1)).createRateEvents(anyList());
+        assertThat(last.complete()).isTrue();
+        assertThat(last.committed()).isZero();
+        assertThat(last.error()).contains("resend from line 0");
+        assertThat(acks(out)).containsExactly(last);
+    }
+}